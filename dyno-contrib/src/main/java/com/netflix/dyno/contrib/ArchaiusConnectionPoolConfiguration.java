@@ -23,6 +23,7 @@ public class ArchaiusConnectionPoolConfiguration extends ConnectionPoolConfigura
 	private final DynamicIntProperty port;
 	private final DynamicIntProperty maxConnsPerHost;
 	private final DynamicIntProperty maxTimeoutWhenExhausted;
+	private final DynamicBooleanProperty failFastWhenExhausted;
 	private final DynamicIntProperty maxFailoverCount;
 	private final DynamicIntProperty connectTimeout;
 	private final DynamicIntProperty socketTimeout;
@@ -41,6 +42,7 @@ public class ArchaiusConnectionPoolConfiguration extends ConnectionPoolConfigura
 		port = DynamicPropertyFactory.getInstance().getIntProperty(propertyPrefix + ".connection.port", super.getPort());
 		maxConnsPerHost = DynamicPropertyFactory.getInstance().getIntProperty(propertyPrefix + ".connection.maxConnsPerHost", super.getMaxConnsPerHost());
 		maxTimeoutWhenExhausted = DynamicPropertyFactory.getInstance().getIntProperty(propertyPrefix + ".connection.maxTimeoutWhenExhausted", super.getMaxTimeoutWhenExhausted());
+		failFastWhenExhausted = DynamicPropertyFactory.getInstance().getBooleanProperty(propertyPrefix + ".connection.failFastWhenExhausted", super.failFastWhenExhausted());
 		maxFailoverCount = DynamicPropertyFactory.getInstance().getIntProperty(propertyPrefix + ".connection.maxFailoverCount", super.getMaxFailoverCount());
 		connectTimeout = DynamicPropertyFactory.getInstance().getIntProperty(propertyPrefix + ".connection.connectTimeout", super.getConnectTimeout());
 		socketTimeout = DynamicPropertyFactory.getInstance().getIntProperty(propertyPrefix + ".connection.socketTimeout", super.getSocketTimeout());
@@ -74,6 +76,11 @@ public class ArchaiusConnectionPoolConfiguration extends ConnectionPoolConfigura
 		return maxTimeoutWhenExhausted.get();
 	}
 
+	@Override
+	public boolean failFastWhenExhausted() {
+		return failFastWhenExhausted.get();
+	}
+
 	@Override
 	public int getMaxFailoverCount() {
 		return maxFailoverCount.get();
@@ -3,13 +3,17 @@ package com.netflix.dyno.contrib;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.netflix.dyno.connectionpool.impl.CountingConnectionPoolMonitor;
+import com.netflix.dyno.connectionpool.RequestPhase;
+import com.netflix.dyno.connectionpool.impl.StripedConnectionPoolMonitor;
+import com.netflix.dyno.connectionpool.impl.utils.LatencyRecorder;
+import com.netflix.dyno.contrib.LatencyRecorderBasedCounter.LatencyRecorderMean;
+import com.netflix.dyno.contrib.LatencyRecorderBasedCounter.LatencyRecorderPercentile;
 import com.netflix.servo.DefaultMonitorRegistry;
 import com.netflix.servo.annotations.DataSourceType;
 import com.netflix.servo.annotations.Monitor;
 import com.netflix.servo.monitor.Monitors;
 
-public class DynoCPMonitor extends CountingConnectionPoolMonitor {
+public class DynoCPMonitor extends StripedConnectionPoolMonitor {
 	
 	private static final Logger Logger = LoggerFactory.getLogger(DynoCPMonitor.class);
 	
@@ -17,11 +21,26 @@ public class DynoCPMonitor extends CountingConnectionPoolMonitor {
 		
 		try {
 			DefaultMonitorRegistry.getInstance().register(Monitors.newObjectMonitor(namePrefix, this));
+			registerPhaseLatencies(namePrefix);
 		} catch (Exception e) {
 			Logger.warn("Failed to register metrics with monitor registry", e);
 		}
 	}
 	
+	private void registerPhaseLatencies(String namePrefix) {
+		
+		for (RequestPhase phase : RequestPhase.values()) {
+			
+			LatencyRecorder recorder = getPhaseLatencyRecorder(phase);
+			String phaseName = phase.name();
+			String metricPrefix = namePrefix + "__" + phaseName;
+			
+			DefaultMonitorRegistry.getInstance().register(new LatencyRecorderMean(metricPrefix + "__latMean", phaseName, "dyno_phase", recorder));
+			DefaultMonitorRegistry.getInstance().register(new LatencyRecorderPercentile(metricPrefix + "__lat990", phaseName, "dyno_phase", recorder, 0.99));
+			DefaultMonitorRegistry.getInstance().register(new LatencyRecorderPercentile(metricPrefix + "__lat999", phaseName, "dyno_phase", recorder, 0.999));
+		}
+	}
+	
 	@Monitor(name = "OperationSuccess", type = DataSourceType.COUNTER)
 	@Override
 	public long getOperationSuccessCount() {
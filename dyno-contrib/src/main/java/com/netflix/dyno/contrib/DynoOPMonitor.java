@@ -1,12 +1,16 @@
 package com.netflix.dyno.contrib;
 
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
-import com.netflix.dyno.connectionpool.OperationMonitor;
-import com.netflix.dyno.connectionpool.impl.utils.EstimatedHistogram;
-import com.netflix.dyno.contrib.EstimatedHistogramBasedCounter.EstimatedHistogramMean;
-import com.netflix.dyno.contrib.EstimatedHistogramBasedCounter.EstimatedHistogramPercentile;
+import com.netflix.dyno.connectionpool.OperationStatsMonitor;
+import com.netflix.dyno.connectionpool.impl.utils.LatencyRecorder;
+import com.netflix.dyno.connectionpool.impl.utils.LatencyRecorder.Snapshot;
+import com.netflix.dyno.contrib.LatencyRecorderBasedCounter.LatencyRecorderMean;
+import com.netflix.dyno.contrib.LatencyRecorderBasedCounter.LatencyRecorderPercentile;
 import com.netflix.servo.DefaultMonitorRegistry;
 import com.netflix.servo.monitor.BasicCounter;
 import com.netflix.servo.monitor.Counter;
@@ -14,7 +18,7 @@ import com.netflix.servo.monitor.MonitorConfig;
 import com.netflix.servo.monitor.Monitors;
 import com.netflix.servo.tag.BasicTag;
 
-public class DynoOPMonitor implements OperationMonitor {
+public class DynoOPMonitor implements OperationStatsMonitor {
 
 	private final ConcurrentHashMap<String, DynoOpCounter> counterMap = new ConcurrentHashMap<String, DynoOpCounter>();
 	private final ConcurrentHashMap<String, DynoTimingCounters> timerMap = new ConcurrentHashMap<String, DynoTimingCounters>();
@@ -40,6 +44,31 @@ public class DynoOPMonitor implements OperationMonitor {
 		getOrCreateCounter(opName).incrementFailure();
 	}
 	
+	@Override
+	public Collection<String> getOperationNames() {
+		Set<String> opNames = new HashSet<String>(counterMap.keySet());
+		opNames.addAll(timerMap.keySet());
+		return opNames;
+	}
+
+	@Override
+	public long getSuccessCount(String opName) {
+		DynoOpCounter counter = counterMap.get(opName);
+		return (counter != null) ? counter.success.getValue().longValue() : 0L;
+	}
+
+	@Override
+	public long getFailureCount(String opName) {
+		DynoOpCounter counter = counterMap.get(opName);
+		return (counter != null) ? counter.failure.getValue().longValue() : 0L;
+	}
+
+	@Override
+	public Snapshot getLatencies(String opName) {
+		DynoTimingCounters timer = timerMap.get(opName);
+		return (timer != null) ? timer.latencyRecorder.getIntervalSnapshot() : Snapshot.EMPTY;
+	}
+	
 	private class DynoOpCounter {
 		
 		private final Counter success; 
@@ -83,25 +112,24 @@ public class DynoOPMonitor implements OperationMonitor {
 
 	private class DynoTimingCounters {
 		
-		private final EstimatedHistogramMean latMean; 
-		private final EstimatedHistogramPercentile lat99;
-		private final EstimatedHistogramPercentile lat995;
-		private final EstimatedHistogramPercentile lat999;
+		private final LatencyRecorderMean latMean; 
+		private final LatencyRecorderPercentile lat99;
+		private final LatencyRecorderPercentile lat995;
+		private final LatencyRecorderPercentile lat999;
 		
-		private final EstimatedHistogram estHistogram; 
+		private final LatencyRecorder latencyRecorder; 
 		
 		private DynoTimingCounters(String appName, String opName) {
 
-			estHistogram = new EstimatedHistogram();
-			latMean = new EstimatedHistogramMean("Dyno__" + appName + "__" + opName + "__latMean", opName, estHistogram);
-			lat99 = new EstimatedHistogramPercentile("Dyno__" + appName + "__" + opName + "__lat990", opName, estHistogram, 0.99);
-			lat995 = new EstimatedHistogramPercentile("Dyno__" + appName + "__" + opName + "__lat995", opName, estHistogram, 0.995);
-			lat999 = new EstimatedHistogramPercentile("Dyno__" + appName + "__" + opName + "__lat999", opName, estHistogram, 0.999);
+			latencyRecorder = new LatencyRecorder();
+			latMean = new LatencyRecorderMean("Dyno__" + appName + "__" + opName + "__latMean", opName, latencyRecorder);
+			lat99 = new LatencyRecorderPercentile("Dyno__" + appName + "__" + opName + "__lat990", opName, latencyRecorder, 0.99);
+			lat995 = new LatencyRecorderPercentile("Dyno__" + appName + "__" + opName + "__lat995", opName, latencyRecorder, 0.995);
+			lat999 = new LatencyRecorderPercentile("Dyno__" + appName + "__" + opName + "__lat999", opName, latencyRecorder, 0.999);
 		}
 		
 		public void recordLatency(long duration, TimeUnit unit) {
-			long durationMicros = TimeUnit.MICROSECONDS.convert(duration, unit);
-			estHistogram.add(durationMicros);
+			latencyRecorder.recordLatency(duration, unit);
 		}
 	}
 
@@ -0,0 +1,92 @@
+package com.netflix.dyno.contrib;
+
+import com.google.common.base.Objects;
+import com.netflix.dyno.connectionpool.impl.utils.LatencyRecorder;
+import com.netflix.servo.annotations.DataSourceType;
+import com.netflix.servo.monitor.AbstractMonitor;
+import com.netflix.servo.monitor.MonitorConfig;
+import com.netflix.servo.tag.BasicTag;
+
+/**
+ * Gauges over the last completed interval of a {@link LatencyRecorder}.
+ * All the gauges for a recorder read the same interval snapshot, see {@link LatencyRecorder#getIntervalSnapshot()}
+ */
+public abstract class LatencyRecorderBasedCounter extends AbstractMonitor<Number> {
+
+	protected final LatencyRecorder recorder;
+
+	/**
+	 * Creates a new instance of the counter.
+	 */
+	public LatencyRecorderBasedCounter(final String name, final String opName, final LatencyRecorder latencyRecorder) {
+		this(name, opName, "dyno_op", latencyRecorder);
+	}
+
+	public LatencyRecorderBasedCounter(final String name, final String opName, final String tagName, final LatencyRecorder latencyRecorder) {
+		super(MonitorConfig.builder(name).build()
+				.withAdditionalTag(DataSourceType.GAUGE)
+				.withAdditionalTag(new BasicTag(tagName, opName)));
+		this.recorder = latencyRecorder;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == null || !(obj instanceof LatencyRecorderBasedCounter)) {
+			return false;
+		}
+		LatencyRecorderBasedCounter m = (LatencyRecorderBasedCounter) obj;
+		return config.equals(m.getConfig()) && recorder == m.recorder;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int hashCode() {
+		return Objects.hashCode(config, System.identityHashCode(recorder));
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public String toString() {
+		return Objects.toStringHelper(this)
+				.add("config", config)
+				.add("count", getValue())
+				.toString();
+	}
+
+	public static class LatencyRecorderMean extends LatencyRecorderBasedCounter {
+
+		public LatencyRecorderMean(final String name, final String opName, final LatencyRecorder latencyRecorder) {
+			super(name, opName, latencyRecorder);
+		}
+
+		public LatencyRecorderMean(final String name, final String opName, final String tagName, final LatencyRecorder latencyRecorder) {
+			super(name, opName, tagName, latencyRecorder);
+		}
+
+		@Override
+		public Number getValue() {
+			return recorder.getIntervalSnapshot().getMean();
+		}
+	}
+
+	public static class LatencyRecorderPercentile extends LatencyRecorderBasedCounter {
+
+		private final double percentile;
+
+		public LatencyRecorderPercentile(final String name, final String opName, final LatencyRecorder latencyRecorder, double pVal) {
+			super(name, opName, latencyRecorder);
+			percentile = pVal;
+		}
+
+		public LatencyRecorderPercentile(final String name, final String opName, final String tagName, final LatencyRecorder latencyRecorder, double pVal) {
+			super(name, opName, tagName, latencyRecorder);
+			percentile = pVal;
+		}
+
+		@Override
+		public Number getValue() {
+			return recorder.getIntervalSnapshot().getPercentile(percentile);
+		}
+	}
+}
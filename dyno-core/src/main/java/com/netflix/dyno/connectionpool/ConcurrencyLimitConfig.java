@@ -0,0 +1,66 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.dyno.connectionpool;
+
+import com.netflix.dyno.connectionpool.impl.lb.HostSelectionWithFallback;
+import com.netflix.dyno.connectionpool.impl.utils.AdaptiveConcurrencyLimiter;
+
+/**
+ * Interface for config required for limiting the number of requests in flight to each host, see {@link AdaptiveConcurrencyLimiter}
+ * 
+ * The limit of a host is not fixed. It grows by one for every limit's worth of requests that come back at close to the lowest 
+ * latency seen for that host, and it is cut by the backoff ratio when the latency climbs above the tolerance or requests 
+ * time out. A request over the limit never waits on the host pool, {@link HostSelectionWithFallback} sends it to a remote rack 
+ * or fails it right away. 
+ * 
+ * @author poberai
+ *
+ */
+public interface ConcurrencyLimitConfig {
+
+	/**
+	 * @return the limit of a host before any latency is seen
+	 */
+	public int getInitialLimit();
+
+	/**
+	 * @return the limit never goes below this
+	 */
+	public int getMinLimit();
+
+	/**
+	 * The limit never goes above this. Keep it at or under the max connections per host, else requests can still queue on the host pool.
+	 * @return int
+	 */
+	public int getMaxLimit();
+
+	/**
+	 * @return the fraction of the limit that is kept when the host is overloaded, e.g 0.9
+	 */
+	public double getBackoffRatio();
+
+	/**
+	 * The host is overloaded once its smoothed latency goes over this multiple of the lowest latency seen
+	 * @return double
+	 */
+	public double getLatencyTolerance();
+
+	/**
+	 * The lowest latency is measured again after this many requests, so that the limit follows a lasting change in the host's capacity
+	 * @return int
+	 */
+	public int getMinLatencyWindow();
+}
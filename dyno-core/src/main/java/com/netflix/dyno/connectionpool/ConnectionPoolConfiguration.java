@@ -49,6 +49,13 @@ public interface ConnectionPoolConfiguration {
      */
     public int getMaxTimeoutWhenExhausted();
 
+    /**
+     * @return true if an exhausted local pool should not be waited on before trying a remote rack, i.e 
+     * the local host is tried without waiting, then a remote host for the same token and only then do we wait 
+     * for {@link #getMaxTimeoutWhenExhausted()} 
+     */
+    public boolean failFastWhenExhausted();
+
     /**
      * @return Get the max number of failover attempts
      */
@@ -116,4 +123,37 @@ public interface ConnectionPoolConfiguration {
      * @return
      */
     public String getLocalDC();
+    
+    /**
+     * Config for ejecting hosts whose latencies are outliers when compared to their rack peers.
+     * @return LatencyOutlierConfig or null when latency based ejection is disabled
+     */
+    public LatencyOutlierConfig getLatencyOutlierConfig();
+
+    /**
+     * Config for tracing a sample of the operations as well as the slow operations.
+     * @return RequestTracerConfig or null when tracing is disabled
+     */
+    public RequestTracerConfig getRequestTracerConfig();
+
+    /**
+     * Config for tracking the hottest keys.
+     * @return HotKeyTrackerConfig or null when hot key tracking is disabled
+     */
+    public HotKeyTrackerConfig getHotKeyTrackerConfig();
+    
+    /**
+     * @return ReplicaReadConfig or null when reads only go to the remote racks on failure
+     */
+    public ReplicaReadConfig getReplicaReadConfig();
+    
+    /**
+     * @return ThrottleConfig or null when requests are not throttled on the client side
+     */
+    public ThrottleConfig getThrottleConfig();
+    
+    /**
+     * @return ConcurrencyLimitConfig or null when the requests in flight to a host are only bounded by its max connections
+     */
+    public ConcurrencyLimitConfig getConcurrencyLimitConfig();
 }
\ No newline at end of file
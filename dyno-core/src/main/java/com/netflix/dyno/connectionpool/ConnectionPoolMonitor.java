@@ -31,6 +31,7 @@ public interface ConnectionPoolMonitor {
      * 
      * @param host
      * @param latency
+     *            Total time (in nanos) to execute the operation, including the time spent borrowing the connection
      */
 	public void incOperationSuccess(Host host, long latency);
 
@@ -89,7 +90,7 @@ public interface ConnectionPoolMonitor {
      * @param host
      *            Host from which the connection was borrowed
      * @param delay
-     *            Time spent in the connection pool borrowing the connection
+     *            Time spent (in nanos) in the connection pool borrowing the connection
      */
     public void incConnectionBorrowed(Host host, long delay);
 
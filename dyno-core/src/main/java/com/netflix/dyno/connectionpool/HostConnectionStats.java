@@ -15,6 +15,8 @@
  ******************************************************************************/
 package com.netflix.dyno.connectionpool;
 
+import com.netflix.dyno.connectionpool.impl.utils.LatencyRecorder.Snapshot;
+
 /**
  * Stats for connection operations for each {@code Host}
  * These are tracked by the {@link ConnectionPoolMonitor} for the {@link ConnectionPool}
@@ -62,5 +64,9 @@ public interface HostConnectionStats {
 	 * @return long
 	 */
 	public long getOperationErrorCount();
-}
 
+	/**
+	 * @return the latencies (in micros) of successful operations over the last completed interval
+	 */
+	public Snapshot getOperationLatencies();
+}
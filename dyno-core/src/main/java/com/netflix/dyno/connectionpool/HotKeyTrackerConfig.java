@@ -0,0 +1,50 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.dyno.connectionpool;
+
+import com.netflix.dyno.connectionpool.impl.lb.HotKeyTracker;
+
+/**
+ * Interface for config required by {@link HotKeyTracker}
+ * @author poberai
+ *
+ */
+public interface HotKeyTrackerConfig {
+
+	/**
+	 * Only 1 out of every N keys is tracked, which keeps the overhead low and still catches the keys that are really hot.
+	 * @return int
+	 */
+	public int getSamplingRatio();
+
+	/**
+	 * Number of hot keys to report
+	 * @return int
+	 */
+	public int getTopKeyCount();
+
+	/**
+	 * Number of counters in each row of the Count-Min sketch. Wider sketches overestimate the counts less.
+	 * @return int
+	 */
+	public int getSketchWidth();
+
+	/**
+	 * The counts are reset after each window, so that the hot keys reflect recent traffic.
+	 * @return int
+	 */
+	public int getWindowSeconds();
+}
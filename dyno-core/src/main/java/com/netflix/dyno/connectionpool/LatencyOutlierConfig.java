@@ -0,0 +1,66 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.dyno.connectionpool;
+
+import com.netflix.dyno.connectionpool.impl.health.LatencyOutlierDetector;
+
+/**
+ * Interface for config required by {@link LatencyOutlierDetector}
+ * @author poberai
+ *
+ */
+public interface LatencyOutlierConfig {
+
+	/**
+	 * Frequency at which the per host latencies are compared against their rack peers.
+	 * Each check only considers the latencies recorded since the previous check.
+	 * @return int
+	 */
+	public int getCheckFrequencySeconds();
+
+	/**
+	 * How far a host's p99 must stray from the median p99 of its rack peers before it is considered an outlier.
+	 * e.g 300 means that the host must be 3x slower than its peers.
+	 * @return int
+	 */
+	public int getOutlierThresholdPercentage();
+
+	/**
+	 * Hosts whose p99 is below this floor are never ejected, no matter how they compare to their peers.
+	 * This prevents ejecting hosts that are relatively slow but still fast enough in absolute terms.
+	 * @return int
+	 */
+	public int getMinOutlierLatencyMicros();
+
+	/**
+	 * Min number of latency samples that a host must have within a check interval for it to be considered
+	 * @return int
+	 */
+	public int getMinSamplesPerCheck();
+
+	/**
+	 * How long an outlier host stays ejected before it is allowed to take traffic again
+	 * @return int
+	 */
+	public int getEjectionSeconds();
+
+	/**
+	 * Cap on the percentage of hosts that can be ejected at any given time.
+	 * At least one host can always be ejected.
+	 * @return int
+	 */
+	public int getMaxEjectedHostsPercentage();
+}
@@ -0,0 +1,53 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.dyno.connectionpool;
+
+import java.util.Collection;
+
+import com.netflix.dyno.connectionpool.impl.utils.LatencyRecorder.Snapshot;
+
+/**
+ * An {@link OperationMonitor} that can also report the stats that it has recorded for each operation, 
+ * e.g so that they can be exported by the MonitorConsole
+ * 
+ * @author poberai
+ *
+ */
+public interface OperationStatsMonitor extends OperationMonitor {
+
+	/**
+	 * @return the names of all the operations recorded so far
+	 */
+	public Collection<String> getOperationNames();
+	
+	/**
+	 * @param opName
+	 * @return long
+	 */
+	public long getSuccessCount(String opName);
+	
+	/**
+	 * @param opName
+	 * @return long
+	 */
+	public long getFailureCount(String opName);
+	
+	/**
+	 * @param opName
+	 * @return the latencies (in micros) of the operation over the last completed interval
+	 */
+	public Snapshot getLatencies(String opName);
+}
@@ -0,0 +1,29 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.dyno.connectionpool;
+
+import com.netflix.dyno.connectionpool.impl.lb.HostSelectionWithFallback;
+
+/**
+ * Marker for an operation that only reads data. Dynomite keeps a replica of every key in each rack, hence such an 
+ * operation can be served by the owner of its key in any rack, see {@link ReplicaReadConfig} and {@link HostSelectionWithFallback}
+ * 
+ * @author poberai
+ *
+ */
+public interface ReadOperation {
+
+}
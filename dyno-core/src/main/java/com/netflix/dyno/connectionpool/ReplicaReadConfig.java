@@ -0,0 +1,44 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.dyno.connectionpool;
+
+import com.netflix.dyno.connectionpool.impl.lb.HostSelectionWithFallback;
+
+/**
+ * Interface for config required for routing reads to the replicas in the remote racks, see {@link HostSelectionWithFallback}
+ * 
+ * Reads go to the local rack as long as its host has spare connections. Once the number of connections in flight to the 
+ * local host reaches the saturation ratio, a read would likely have to wait for a connection, hence it goes to the least 
+ * loaded healthy replica in the remote racks instead. Only {@link ReadOperation}s are routed this way.
+ * 
+ * @author poberai
+ *
+ */
+public interface ReplicaReadConfig {
+
+	/**
+	 * The local host is saturated when the connections in flight reach this fraction of the max connections per host
+	 * @return double
+	 */
+	public double getLocalSaturationRatio();
+
+	/**
+	 * Remote replicas with this fraction of the max connections per host in flight or more are not used, 
+	 * so that a busy local rack does not overload the remote racks too. 
+	 * @return double
+	 */
+	public double getMaxRemoteLoadRatio();
+}
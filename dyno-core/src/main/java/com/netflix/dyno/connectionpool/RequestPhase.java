@@ -0,0 +1,47 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.dyno.connectionpool;
+
+/**
+ * The phases that a request goes through in the {@link ConnectionPool}. The time spent in each phase is recorded
+ * separately via {@link RequestPhaseMonitor#recordPhaseLatency(RequestPhase, long)}, so that a latency spike can be
+ * attributed to the phase that caused it.
+ * 
+ * @author poberai
+ *
+ */
+public enum RequestPhase {
+	
+	/**
+	 * Hashing the key and selecting the host pool, including the fallback to remote racks
+	 */
+	ROUTE,
+	
+	/**
+	 * Waiting for a connection from the host pool
+	 */
+	BORROW,
+	
+	/**
+	 * The round trip to the remote server
+	 */
+	EXECUTE,
+	
+	/**
+	 * Returning the connection to the host pool
+	 */
+	RETURN;
+}
@@ -0,0 +1,59 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.dyno.connectionpool;
+
+import com.netflix.dyno.connectionpool.impl.utils.LatencyRecorder.Snapshot;
+
+/**
+ * Optional interface for a {@link ConnectionPoolMonitor} that tracks the time spent in each {@link RequestPhase}. 
+ * It is kept apart from {@link ConnectionPoolMonitor} so that existing monitors keep compiling, the pool only records 
+ * the phases when its monitor implements this too. 
+ * 
+ * @author poberai
+ */
+public interface RequestPhaseMonitor {
+
+	/**
+	 * Does not record anything, for monitors that don't track the phases
+	 */
+	public static final RequestPhaseMonitor NONE = new RequestPhaseMonitor() {
+
+		@Override
+		public void recordPhaseLatency(RequestPhase phase, long latency) {
+		}
+
+		@Override
+		public Snapshot getPhaseLatencies(RequestPhase phase) {
+			return Snapshot.EMPTY;
+		}
+	};
+
+	/**
+	 * Record the time spent in a phase of a request. Note that {@link RequestPhase#BORROW} is recorded by 
+	 * {@link ConnectionPoolMonitor#incConnectionBorrowed(Host, long)}
+	 * 
+	 * @param phase
+	 * @param latency
+	 *            Time spent (in nanos) in the phase
+	 */
+	public void recordPhaseLatency(RequestPhase phase, long latency);
+
+	/**
+	 * @param phase
+	 * @return the latencies (in micros) of the given phase over the last completed interval
+	 */
+	public Snapshot getPhaseLatencies(RequestPhase phase);
+}
@@ -0,0 +1,44 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.dyno.connectionpool;
+
+import com.netflix.dyno.connectionpool.impl.RequestTracer;
+
+/**
+ * Interface for config required by {@link RequestTracer}
+ * @author poberai
+ *
+ */
+public interface RequestTracerConfig {
+
+	/**
+	 * Trace 1 out of every N operations, regardless of their latency. 0 disables sampling.
+	 * @return int
+	 */
+	public int getSamplingRatio();
+
+	/**
+	 * Operations that take longer than this are always traced, in a separate slow op log. 0 disables the slow op log.
+	 * @return int
+	 */
+	public int getSlowOperationThresholdMicros();
+
+	/**
+	 * Max number of traces kept for each of the sampled and slow op logs. The oldest traces are overwritten first.
+	 * @return int
+	 */
+	public int getBufferSize();
+}
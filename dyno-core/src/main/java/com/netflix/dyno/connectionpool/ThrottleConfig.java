@@ -0,0 +1,53 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.dyno.connectionpool;
+
+import com.netflix.dyno.connectionpool.exception.ThrottledException;
+import com.netflix.dyno.connectionpool.impl.utils.TokenBucketRateLimiter;
+
+/**
+ * Interface for config required for throttling requests on the client side, see {@link TokenBucketRateLimiter}
+ * 
+ * Requests over the pool wide rate fail right away with a {@link ThrottledException}. Requests over the rate of the 
+ * host they were routed to go to a remote rack instead, and fail with a {@link ThrottledException} when the remote host 
+ * is over its rate too. Either way a throttled request never borrows a connection and does not count as a host error. 
+ * A rate of 0 or less disables throttling at that level. 
+ * 
+ * @author poberai
+ *
+ */
+public interface ThrottleConfig {
+
+	/**
+	 * @return max requests per second across the whole pool
+	 */
+	public double getPoolRps();
+
+	/**
+	 * @return max requests that the pool can take at once after being idle
+	 */
+	public int getPoolBurst();
+
+	/**
+	 * @return max requests per second to any one host
+	 */
+	public double getHostRps();
+
+	/**
+	 * @return max requests that a host can take at once after being idle
+	 */
+	public int getHostBurst();
+}
@@ -44,4 +44,11 @@ public interface TokenMapSupplier {
 	 * @return
 	 */
 	public HostToken getTokenForHost(final Host host);
+	
+	/**
+	 * A host can own multiple tokens, i.e vnodes
+	 * @param host
+	 * @return all the tokens owned by the host, or an empty list if the host was not found
+	 */
+	public List<HostToken> getTokensForHost(final Host host);
 }
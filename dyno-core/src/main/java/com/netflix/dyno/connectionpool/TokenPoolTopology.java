@@ -5,6 +5,8 @@ import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 
+import com.netflix.dyno.connectionpool.impl.utils.LatencyRecorder.Snapshot;
+
 public class TokenPoolTopology {
 
 	private final ConcurrentHashMap<String, List<TokenStatus>> map = new ConcurrentHashMap<String, List<TokenStatus>>();
@@ -14,6 +16,18 @@ public class TokenPoolTopology {
 	}
 	
 	public void addToken(String rack, Long token, HostConnectionPool<?> hostPool) {
+		addToken(rack, token, hostPool, 0.0, 0L, Snapshot.EMPTY);
+	}
+	
+	/**
+	 * @param rack
+	 * @param token
+	 * @param hostPool
+	 * @param requestRate requests per second routed to the token
+	 * @param inFlight number of requests currently in flight on the token's host
+	 * @param latencies latencies of the token's host
+	 */
+	public void addToken(String rack, Long token, HostConnectionPool<?> hostPool, double requestRate, long inFlight, Snapshot latencies) {
 		
 		List<TokenStatus> list = map.get(rack);
 		if (list == null) {
@@ -21,7 +35,7 @@ public class TokenPoolTopology {
 			map.put(rack, list);
 		}
 		
-		list.add(new TokenStatus(token, hostPool));
+		list.add(new TokenStatus(token, hostPool, requestRate, inFlight, latencies));
 	}
 	
 	public ConcurrentHashMap<String, List<TokenStatus>> getAllTokens() {
@@ -52,10 +66,16 @@ public class TokenPoolTopology {
 		
 		private Long token; 
 		private HostConnectionPool<?> hostPool;
+		private double requestRate;
+		private long inFlight;
+		private Snapshot latencies;
 		
-		private TokenStatus(Long t, HostConnectionPool<?> pool) {
+		private TokenStatus(Long t, HostConnectionPool<?> pool, double rate, long inFlightCount, Snapshot hostLatencies) {
 			token = t;
 			hostPool = pool;
+			requestRate = rate;
+			inFlight = inFlightCount;
+			latencies = hostLatencies;
 		}
 		
 		public Long getToken() {
@@ -66,13 +86,34 @@ public class TokenPoolTopology {
 			return hostPool;
 		}
 		
+		/**
+		 * @return the average number of requests per second routed to this token, over the last few seconds
+		 */
+		public double getRequestRate() {
+			return requestRate;
+		}
+		
+		/**
+		 * @return the number of requests in flight on the host that owns this token
+		 */
+		public long getInFlight() {
+			return inFlight;
+		}
+		
+		/**
+		 * @return the latencies (in micros) of the host that owns this token, over the last completed interval
+		 */
+		public Snapshot getLatencies() {
+			return latencies;
+		}
+		
 		@Override
 		public int compareTo(TokenStatus o) {
 			return this.token.compareTo(o.token);
 		} 
 		
 		public String toString() {
-			return token + " ==> " + hostPool.toString();
+			return token + " ==> " + hostPool.toString() + ", rate: " + requestRate + ", inFlight: " + inFlight + ", latencies: " + latencies;
 		}
 	}
 	
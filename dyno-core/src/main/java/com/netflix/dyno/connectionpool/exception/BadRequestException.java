@@ -7,4 +7,15 @@ public class BadRequestException extends DynoException {
 	 */
 	private static final long serialVersionUID = 6244389154130041929L;
 
+	public BadRequestException() {
+		super();
+	}
+
+	public BadRequestException(String message) {
+		super(message);
+	}
+
+	public BadRequestException(String message, Throwable cause) {
+		super(message, cause);
+	}
 }
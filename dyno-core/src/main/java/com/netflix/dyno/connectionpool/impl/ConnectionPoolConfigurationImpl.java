@@ -18,11 +18,17 @@ package com.netflix.dyno.connectionpool.impl;
 import java.util.ArrayList;
 import java.util.List;
 
+import com.netflix.dyno.connectionpool.ConcurrencyLimitConfig;
 import com.netflix.dyno.connectionpool.ConnectionPoolConfiguration;
 import com.netflix.dyno.connectionpool.ErrorRateMonitorConfig;
 import com.netflix.dyno.connectionpool.HostSupplier;
+import com.netflix.dyno.connectionpool.HotKeyTrackerConfig;
+import com.netflix.dyno.connectionpool.LatencyOutlierConfig;
+import com.netflix.dyno.connectionpool.ReplicaReadConfig;
+import com.netflix.dyno.connectionpool.RequestTracerConfig;
 import com.netflix.dyno.connectionpool.RetryPolicy;
 import com.netflix.dyno.connectionpool.RetryPolicy.RetryPolicyFactory;
+import com.netflix.dyno.connectionpool.ThrottleConfig;
 import com.netflix.dyno.connectionpool.TokenMapSupplier;
 import com.netflix.dyno.connectionpool.impl.health.ErrorMonitor.ErrorMonitorFactory;
 import com.netflix.dyno.connectionpool.impl.health.SimpleErrorMonitorImpl.SimpleErrorMonitorFactory;
@@ -33,6 +39,7 @@ public class ConnectionPoolConfigurationImpl implements ConnectionPoolConfigurat
 	private static final int DEFAULT_PORT = 8102; 
 	private static final int DEFAULT_MAX_CONNS_PER_HOST = 1; 
 	private static final int DEFAULT_MAX_TIMEOUT_WHEN_EXHAUSTED = 2000; 
+	private static final boolean DEFAULT_FAIL_FAST_WHEN_EXHAUSTED = false; 
 	private static final int DEFAULT_MAX_FAILOVER_COUNT = 3; 
 	private static final int DEFAULT_CONNECT_TIMEOUT = 3000; 
 	private static final int DEFAULT_SOCKET_TIMEOUT = 12000; 
@@ -48,6 +55,7 @@ public class ConnectionPoolConfigurationImpl implements ConnectionPoolConfigurat
 	private int port = DEFAULT_PORT; 
 	private int maxConnsPerHost = DEFAULT_MAX_CONNS_PER_HOST; 
 	private int maxTimeoutWhenExhausted = DEFAULT_MAX_TIMEOUT_WHEN_EXHAUSTED; 
+	private boolean failFastWhenExhausted = DEFAULT_FAIL_FAST_WHEN_EXHAUSTED; 
 	private int maxFailoverCount = DEFAULT_MAX_FAILOVER_COUNT; 
 	private int connectTimeout = DEFAULT_CONNECT_TIMEOUT; 
 	private int socketTimeout = DEFAULT_SOCKET_TIMEOUT; 
@@ -67,6 +75,16 @@ public class ConnectionPoolConfigurationImpl implements ConnectionPoolConfigurat
 	
 	private ErrorMonitorFactory errorMonitorFactory = new SimpleErrorMonitorFactory();
 	
+	private LatencyOutlierConfig latencyOutlierConfig = null;
+	
+	private RequestTracerConfig requestTracerConfig = null;
+	
+	private HotKeyTrackerConfig hotKeyTrackerConfig = null;
+	
+	private ReplicaReadConfig replicaReadConfig = null;
+	private ThrottleConfig throttleConfig = null;
+	private ConcurrencyLimitConfig concurrencyLimitConfig = null;
+	
 	public ConnectionPoolConfigurationImpl(String name) {
 		this.name = name;
 		this.localDC = System.getenv("EC2_AVAILABILITY_ZONE");
@@ -95,6 +113,11 @@ public class ConnectionPoolConfigurationImpl implements ConnectionPoolConfigurat
 		return maxTimeoutWhenExhausted;
 	}
 
+	@Override
+	public boolean failFastWhenExhausted() {
+		return failFastWhenExhausted;
+	}
+
 	@Override
 	public int getMaxFailoverCount() {
 		return maxFailoverCount;
@@ -156,6 +179,11 @@ public class ConnectionPoolConfigurationImpl implements ConnectionPoolConfigurat
 		return this;
 	}
 
+	public ConnectionPoolConfigurationImpl setFailFastWhenExhausted(boolean condition) {
+		this.failFastWhenExhausted = condition;
+		return this;
+	}
+
 	public ConnectionPoolConfigurationImpl setMaxFailoverCount(int maxFailoverCount) {
 		this.maxFailoverCount = maxFailoverCount;
 		return this;
@@ -218,6 +246,66 @@ public class ConnectionPoolConfigurationImpl implements ConnectionPoolConfigurat
 		errorMonitorFactory = factory;
 		return this;
 	}
+
+	@Override
+	public LatencyOutlierConfig getLatencyOutlierConfig() {
+		return latencyOutlierConfig;
+	}
+
+	public ConnectionPoolConfigurationImpl withLatencyOutlierConfig(LatencyOutlierConfig config) {
+		latencyOutlierConfig = config;
+		return this;
+	}
+
+	@Override
+	public RequestTracerConfig getRequestTracerConfig() {
+		return requestTracerConfig;
+	}
+
+	public ConnectionPoolConfigurationImpl withRequestTracerConfig(RequestTracerConfig config) {
+		requestTracerConfig = config;
+		return this;
+	}
+
+	@Override
+	public HotKeyTrackerConfig getHotKeyTrackerConfig() {
+		return hotKeyTrackerConfig;
+	}
+
+	public ConnectionPoolConfigurationImpl withHotKeyTrackerConfig(HotKeyTrackerConfig config) {
+		hotKeyTrackerConfig = config;
+		return this;
+	}
+
+	@Override
+	public ReplicaReadConfig getReplicaReadConfig() {
+		return replicaReadConfig;
+	}
+
+	public ConnectionPoolConfigurationImpl withReplicaReadConfig(ReplicaReadConfig config) {
+		replicaReadConfig = config;
+		return this;
+	}
+
+	@Override
+	public ThrottleConfig getThrottleConfig() {
+		return throttleConfig;
+	}
+
+	public ConnectionPoolConfigurationImpl withThrottleConfig(ThrottleConfig config) {
+		throttleConfig = config;
+		return this;
+	}
+
+	@Override
+	public ConcurrencyLimitConfig getConcurrencyLimitConfig() {
+		return concurrencyLimitConfig;
+	}
+
+	public ConnectionPoolConfigurationImpl withConcurrencyLimitConfig(ConcurrencyLimitConfig config) {
+		concurrencyLimitConfig = config;
+		return this;
+	}
 	
 	public static class ErrorRateMonitorConfigImpl implements ErrorRateMonitorConfig {
 
@@ -279,6 +367,241 @@ public class ConnectionPoolConfigurationImpl implements ConnectionPoolConfigurat
 		}
 	}
 
+	public static class LatencyOutlierConfigImpl implements LatencyOutlierConfig {
+
+		int checkFrequency = 10;
+		int thresholdPercentage = 300;
+		int minLatencyMicros = 2000;
+		int minSamples = 100;
+		int ejectionSeconds = 30;
+		int maxEjectedPercentage = 10;
+
+		public LatencyOutlierConfigImpl() {
+		}
+
+		public LatencyOutlierConfigImpl(int frequency, int threshold, int minLatency, int samples, int ejection, int maxEjected) {
+			this.checkFrequency = frequency;
+			this.thresholdPercentage = threshold;
+			this.minLatencyMicros = minLatency;
+			this.minSamples = samples;
+			this.ejectionSeconds = ejection;
+			this.maxEjectedPercentage = maxEjected;
+		}
+
+		@Override
+		public int getCheckFrequencySeconds() {
+			return checkFrequency;
+		}
+
+		@Override
+		public int getOutlierThresholdPercentage() {
+			return thresholdPercentage;
+		}
+
+		@Override
+		public int getMinOutlierLatencyMicros() {
+			return minLatencyMicros;
+		}
+
+		@Override
+		public int getMinSamplesPerCheck() {
+			return minSamples;
+		}
+
+		@Override
+		public int getEjectionSeconds() {
+			return ejectionSeconds;
+		}
+
+		@Override
+		public int getMaxEjectedHostsPercentage() {
+			return maxEjectedPercentage;
+		}
+	}
+
+	public static class RequestTracerConfigImpl implements RequestTracerConfig {
+
+		int samplingRatio = 1000;
+		int slowThresholdMicros = 10000;
+		int bufferSize = 256;
+
+		public RequestTracerConfigImpl() {
+		}
+
+		public RequestTracerConfigImpl(int ratio, int slowThreshold, int size) {
+			this.samplingRatio = ratio;
+			this.slowThresholdMicros = slowThreshold;
+			this.bufferSize = size;
+		}
+
+		@Override
+		public int getSamplingRatio() {
+			return samplingRatio;
+		}
+
+		@Override
+		public int getSlowOperationThresholdMicros() {
+			return slowThresholdMicros;
+		}
+
+		@Override
+		public int getBufferSize() {
+			return bufferSize;
+		}
+	}
+
+	public static class HotKeyTrackerConfigImpl implements HotKeyTrackerConfig {
+
+		int samplingRatio = 100;
+		int topKeyCount = 20;
+		int sketchWidth = 2048;
+		int windowSeconds = 60;
+
+		public HotKeyTrackerConfigImpl() {
+		}
+
+		public HotKeyTrackerConfigImpl(int ratio, int topKeys, int width, int window) {
+			this.samplingRatio = ratio;
+			this.topKeyCount = topKeys;
+			this.sketchWidth = width;
+			this.windowSeconds = window;
+		}
+
+		@Override
+		public int getSamplingRatio() {
+			return samplingRatio;
+		}
+
+		@Override
+		public int getTopKeyCount() {
+			return topKeyCount;
+		}
+
+		@Override
+		public int getSketchWidth() {
+			return sketchWidth;
+		}
+
+		@Override
+		public int getWindowSeconds() {
+			return windowSeconds;
+		}
+	}
+
+	public static class ReplicaReadConfigImpl implements ReplicaReadConfig {
+
+		double localSaturationRatio = 1.0;
+		double maxRemoteLoadRatio = 0.8;
+
+		public ReplicaReadConfigImpl() {
+		}
+
+		public ReplicaReadConfigImpl(double localRatio, double maxRemoteRatio) {
+			this.localSaturationRatio = localRatio;
+			this.maxRemoteLoadRatio = maxRemoteRatio;
+		}
+
+		@Override
+		public double getLocalSaturationRatio() {
+			return localSaturationRatio;
+		}
+
+		@Override
+		public double getMaxRemoteLoadRatio() {
+			return maxRemoteLoadRatio;
+		}
+	}
+
+	public static class ThrottleConfigImpl implements ThrottleConfig {
+
+		double poolRps = 0;
+		int poolBurst = 1;
+		double hostRps = 0;
+		int hostBurst = 1;
+
+		public ThrottleConfigImpl() {
+		}
+
+		public ThrottleConfigImpl(double poolRps, int poolBurst, double hostRps, int hostBurst) {
+			this.poolRps = poolRps;
+			this.poolBurst = poolBurst;
+			this.hostRps = hostRps;
+			this.hostBurst = hostBurst;
+		}
+
+		@Override
+		public double getPoolRps() {
+			return poolRps;
+		}
+
+		@Override
+		public int getPoolBurst() {
+			return poolBurst;
+		}
+
+		@Override
+		public double getHostRps() {
+			return hostRps;
+		}
+
+		@Override
+		public int getHostBurst() {
+			return hostBurst;
+		}
+	}
+
+	public static class ConcurrencyLimitConfigImpl implements ConcurrencyLimitConfig {
+
+		int initialLimit = 10;
+		int minLimit = 1;
+		int maxLimit = 50;
+		double backoffRatio = 0.9;
+		double latencyTolerance = 2.0;
+		int minLatencyWindow = 1000;
+
+		public ConcurrencyLimitConfigImpl() {
+		}
+
+		public ConcurrencyLimitConfigImpl(int initial, int min, int max, double backoff, double tolerance, int window) {
+			this.initialLimit = initial;
+			this.minLimit = min;
+			this.maxLimit = max;
+			this.backoffRatio = backoff;
+			this.latencyTolerance = tolerance;
+			this.minLatencyWindow = window;
+		}
+
+		@Override
+		public int getInitialLimit() {
+			return initialLimit;
+		}
+
+		@Override
+		public int getMinLimit() {
+			return minLimit;
+		}
+
+		@Override
+		public int getMaxLimit() {
+			return maxLimit;
+		}
+
+		@Override
+		public double getBackoffRatio() {
+			return backoffRatio;
+		}
+
+		@Override
+		public double getLatencyTolerance() {
+			return latencyTolerance;
+		}
+
+		@Override
+		public int getMinLatencyWindow() {
+			return minLatencyWindow;
+		}
+	}
+
 	@Override
 	public String getLocalDC() {
 		return localDC;
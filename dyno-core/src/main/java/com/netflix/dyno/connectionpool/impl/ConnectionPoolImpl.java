@@ -17,7 +17,9 @@ package com.netflix.dyno.connectionpool.impl;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
@@ -46,15 +48,22 @@ import com.netflix.dyno.connectionpool.HostSupplier;
 import com.netflix.dyno.connectionpool.ListenableFuture;
 import com.netflix.dyno.connectionpool.Operation;
 import com.netflix.dyno.connectionpool.OperationResult;
+import com.netflix.dyno.connectionpool.RequestPhase;
+import com.netflix.dyno.connectionpool.RequestPhaseMonitor;
 import com.netflix.dyno.connectionpool.RetryPolicy;
+import com.netflix.dyno.connectionpool.ThrottleConfig;
 import com.netflix.dyno.connectionpool.TokenPoolTopology;
 import com.netflix.dyno.connectionpool.exception.DynoException;
 import com.netflix.dyno.connectionpool.exception.NoAvailableHostsException;
+import com.netflix.dyno.connectionpool.exception.ThrottledException;
 import com.netflix.dyno.connectionpool.impl.ConnectionPoolImpl.HostConnectionPoolFactory.Type;
 import com.netflix.dyno.connectionpool.impl.health.ConnectionPoolHealthTracker;
 import com.netflix.dyno.connectionpool.impl.lb.HostSelectionWithFallback;
+import com.netflix.dyno.connectionpool.impl.lb.HotKeyTracker;
+import com.netflix.dyno.connectionpool.impl.lb.TokenRange;
 import com.netflix.dyno.connectionpool.impl.utils.CollectionUtils;
 import com.netflix.dyno.connectionpool.impl.utils.CollectionUtils.Predicate;
+import com.netflix.dyno.connectionpool.impl.utils.TokenBucketRateLimiter;
 
 /**
  * Main implementation class for {@link ConnectionPool}
@@ -94,6 +103,12 @@ public class ConnectionPoolImpl<CL> implements ConnectionPool<CL> {
 	private final ConnectionFactory<CL> connFactory; 
 	private final ConnectionPoolConfiguration cpConfiguration; 
 	private final ConnectionPoolMonitor cpMonitor; 
+	// the monitor itself when it tracks the request phases, else a no op
+	private final RequestPhaseMonitor phaseMonitor;
+	private final RequestTracer requestTracer;
+	
+	// null when requests are not throttled across the pool, the per host throttle is applied by the selection
+	private final TokenBucketRateLimiter poolLimiter;
 	
 	private final HostsUpdator hostsUpdator; 
 	private final ScheduledExecutorService connPoolThreadPool = Executors.newScheduledThreadPool(1);
@@ -101,6 +116,8 @@ public class ConnectionPoolImpl<CL> implements ConnectionPool<CL> {
 	private final AtomicBoolean started = new AtomicBoolean(false);
 	
 	private HostSelectionWithFallback<CL> selectionStrategy; 
+	// the version of the host status that was last applied to the pools
+	private volatile long hostStatusVersion = 0L;
 	
 	private Type poolType;
 
@@ -112,9 +129,14 @@ public class ConnectionPoolImpl<CL> implements ConnectionPool<CL> {
 		this.connFactory = cFactory;
 		this.cpConfiguration = cpConfig;
 		this.cpMonitor = cpMon;
+		this.phaseMonitor = (cpMon instanceof RequestPhaseMonitor) ? (RequestPhaseMonitor) cpMon : RequestPhaseMonitor.NONE;
 		this.poolType = type; 
 		
 		this.cpHealthTracker = new ConnectionPoolHealthTracker<CL>(cpConfiguration, connPoolThreadPool);
+		this.requestTracer = (cpConfig.getRequestTracerConfig() != null) ? new RequestTracer(cpConfig.getRequestTracerConfig()) : null;
+		ThrottleConfig throttleConfig = cpConfig.getThrottleConfig();
+		this.poolLimiter = (throttleConfig != null && throttleConfig.getPoolRps() > 0) ? 
+				new TokenBucketRateLimiter(throttleConfig.getPoolRps(), throttleConfig.getPoolBurst()) : null;
 
 		switch (type) {
 			case Sync:
@@ -138,6 +160,24 @@ public class ConnectionPoolImpl<CL> implements ConnectionPool<CL> {
 		return cpConfiguration.getName();
 	}
 	
+	/**
+	 * @return RequestTracer or null if tracing is not enabled
+	 */
+	public RequestTracer getRequestTracer() {
+		return requestTracer;
+	}
+	
+	/**
+	 * @return HotKeyTracker or null if hot key tracking is not enabled
+	 */
+	public HotKeyTracker getHotKeyTracker() {
+		return (selectionStrategy != null) ? selectionStrategy.getHotKeyTracker() : null;
+	}
+	
+	public ConnectionPoolConfiguration getConfiguration() {
+		return cpConfiguration;
+	}
+	
 	public ConnectionPoolMonitor getMonitor() {
 		return cpMonitor;
 	}
@@ -247,19 +287,93 @@ public class ConnectionPoolImpl<CL> implements ConnectionPool<CL> {
 	public Future<Boolean> updateHosts(Collection<Host> hostsUp, Collection<Host> hostsDown) {
 		
 		boolean condition = false;
-		if (hostsUp != null && !hostsUp.isEmpty()) {
-			for (Host hostUp : hostsUp) {
-				condition |= addHost(hostUp);
+		if (selectionStrategy == null) {
+			if (hostsUp != null && !hostsUp.isEmpty()) {
+				for (Host hostUp : hostsUp) {
+					condition |= addHost(hostUp, false);
+				}
 			}
-		}
-		if (hostsDown != null && !hostsDown.isEmpty()) {
-			for (Host hostDown : hostsDown) {
-				condition |= removeHost(hostDown);
+			if (hostsDown != null && !hostsDown.isEmpty()) {
+				for (Host hostDown : hostsDown) {
+					condition |= removeHost(hostDown);
+				}
 			}
+		} else {
+			condition = applyHostUpdates(hostsUp, hostsDown);
 		}
 		return getEmptyFutureTask(condition);
 	}
 
+	/**
+	 * Apply the changes from the host status tracker. Only the hosts that changed since the last applied version
+	 * are added or removed. We walk all the hosts when versions were missed, or when the pools have drifted from the
+	 * tracker, e.g when a new host pool failed to prime in an earlier round.
+	 *
+	 * @param hostStatus
+	 */
+	void applyHostStatus(HostStatusTracker hostStatus) {
+
+		if (hostStatus == null) {
+			return;
+		}
+
+		long version = hostStatus.getVersion();
+		if (version == hostStatusVersion + 1) {
+			applyHostUpdates(hostStatus.getHostsAdded(), hostStatus.getHostsRemoved());
+		} else if (version != hostStatusVersion || cpMap.size() != hostStatus.getActiveHosts().size()) {
+			updateHosts(hostStatus.getActiveHosts(), hostStatus.getInactiveHosts());
+		}
+		hostStatusVersion = version;
+	}
+
+	/**
+	 * Creates the pools for the new hosts and removes the pools for the hosts that went away, then updates
+	 * the load balancer with all the changes as one batch, which it publishes with a single swap, i.e requests
+	 * never see part of the changes. The pools for the removed hosts are only shutdown once they can no longer
+	 * be selected.
+	 *
+	 * @param hostsUp
+	 * @param hostsDown
+	 * @return true/false indicating whether any pool was added or removed
+	 */
+	private boolean applyHostUpdates(Collection<Host> hostsUp, Collection<Host> hostsDown) {
+
+		Map<Host, HostConnectionPool<CL>> poolsUp = new HashMap<Host, HostConnectionPool<CL>>();
+		Map<Host, HostConnectionPool<CL>> poolsDown = new HashMap<Host, HostConnectionPool<CL>>();
+
+		if (hostsUp != null) {
+			for (Host host : hostsUp) {
+				if (addHost(host, false)) {
+					poolsUp.put(host, cpMap.get(host));
+				}
+			}
+		}
+		if (hostsDown != null) {
+			for (Host host : hostsDown) {
+				HostConnectionPool<CL> hostPool = cpMap.remove(host);
+				if (hostPool != null) {
+					poolsDown.put(host, hostPool);
+				}
+			}
+		}
+
+		if (poolsUp.isEmpty() && poolsDown.isEmpty()) {
+			return false;
+		}
+
+		Collection<Host> failedHosts = selectionStrategy.updateHosts(poolsUp, poolsDown);
+		for (Host host : failedHosts) {
+			poolsDown.put(host, cpMap.remove(host));
+		}
+
+		for (Host host : poolsDown.keySet()) {
+			cpHealthTracker.removeHost(host);
+			cpMonitor.hostRemoved(host);
+			poolsDown.get(host).shutdown();
+		}
+		return true;
+	}
+
 	@Override
 	public HostConnectionPool<CL> getHostPool(Host host) {
 		return cpMap.get(host);
@@ -269,28 +383,52 @@ public class ConnectionPoolImpl<CL> implements ConnectionPool<CL> {
 	public <R> OperationResult<R> executeWithFailover(Operation<CL, R> op) throws DynoException {
 		
 		// Start recording the operation
-		long startTime = System.currentTimeMillis();
+		long startTime = System.nanoTime();
+		
+		checkPoolThrottle();
 		
 		RetryPolicy retry = cpConfiguration.getRetryPolicyFactory().getRetryPolicy();
 		retry.begin();
 		
 		DynoException lastException = null;
+		Host lastHost = null;
 		
 		do  {
 			Connection<CL> connection = null;
+			long execEndTime = 0L;
+			long attemptStartTime = (requestTracer != null) ? System.nanoTime() : 0L;
+			long execStartTime = 0L;
+			// nanoTime can be negative, hence it can't tell whether the operation was sent on its own
+			boolean executed = false;
+			// outcome of the attempt for the concurrency limiter of the host
+			long execLatency = -1L;
+			DynoException attemptException = null;
 			
 			try { 
 					connection = 
-							selectionStrategy.getConnection(op, cpConfiguration.getMaxTimeoutWhenExhausted(), TimeUnit.MILLISECONDS);
+							selectionStrategy.getAdmittedConnection(op, cpConfiguration.getMaxTimeoutWhenExhausted(), TimeUnit.MILLISECONDS);
 
+				execStartTime = System.nanoTime();
+				executed = true;
 				OperationResult<R> result = connection.execute(op);
+				execEndTime = System.nanoTime();
+				
+				execLatency = execEndTime - execStartTime;
+				phaseMonitor.recordPhaseLatency(RequestPhase.EXECUTE, execLatency);
+				cpHealthTracker.trackConnectionLatency(connection.getParentConnectionPool(), execLatency, TimeUnit.NANOSECONDS);
 				
 				// Add context to the result from the successful execution
 				result.setNode(connection.getHost())
 					  .addMetadata(connection.getContext().getAll());
 				
 				retry.success();
-				cpMonitor.incOperationSuccess(connection.getHost(), System.currentTimeMillis()-startTime);
+				long latency = System.nanoTime()-startTime;
+				cpMonitor.incOperationSuccess(connection.getHost(), latency);
+				
+				if (requestTracer != null) {
+					requestTracer.trace(op, connection.getHost(), retry.getAttemptCount(), 
+							execStartTime-attemptStartTime, execLatency, latency, null);
+				}
 				
 				return result; 
 				
@@ -300,17 +438,30 @@ public class ConnectionPoolImpl<CL> implements ConnectionPool<CL> {
 				throw e;
 			} catch(DynoException e) {
 				
+				execEndTime = System.nanoTime();
 				retry.failure(e);
 				lastException = e;
+				attemptException = e;
+				lastHost = (connection != null) ? connection.getHost() : null;
 				
-				cpMonitor.incOperationFailure(connection != null ? connection.getHost() : null, e);
+				cpMonitor.incOperationFailure(lastHost, e);
+				
+				if (connection == null && e instanceof ThrottledException) {
+					// rejected before borrowing, the selection already tried the other racks and 
+					// a retry would be routed to the same host that is over its limit
+					break;
+				}
 				if (retry.allowRetry()) {
-					cpMonitor.incFailover(connection.getHost(), e);
+					cpMonitor.incFailover(lastHost, e);
 				}
 				
 				// Track the connection health so that the pool can be purged at a later point
 				if (connection != null) {
 					cpHealthTracker.trackConnectionError(connection.getParentConnectionPool(), lastException);
+					// a slow host mostly shows up as timeouts, hence failed attempts count towards its latency too
+					if (executed) {
+						cpHealthTracker.trackConnectionLatency(connection.getParentConnectionPool(), execEndTime-execStartTime, TimeUnit.NANOSECONDS);
+					}
 				}
 				
 			} catch(Throwable t) {
@@ -318,12 +469,22 @@ public class ConnectionPoolImpl<CL> implements ConnectionPool<CL> {
 			} finally {
 				if (connection != null) {
 					connection.getContext().reset();
+					long returnStartTime = System.nanoTime();
 					connection.getParentConnectionPool().returnConnection(connection);
+					phaseMonitor.recordPhaseLatency(RequestPhase.RETURN, System.nanoTime()-returnStartTime);
+					if (execLatency >= 0) {
+						selectionStrategy.releaseAdmission(connection.getHost(), execLatency);
+					} else {
+						selectionStrategy.releaseAdmission(connection.getHost(), attemptException);
+					}
 				}
 			}
 			
 		} while(retry.allowRetry());
 		
+		if (requestTracer != null) {
+			requestTracer.trace(op, lastHost, retry.getAttemptCount(), 0L, 0L, System.nanoTime()-startTime, lastException);
+		}
 		throw lastException;
 	}
 
@@ -331,8 +492,10 @@ public class ConnectionPoolImpl<CL> implements ConnectionPool<CL> {
 	public <R> Collection<OperationResult<R>> executeWithRing(Operation<CL, R> op) throws DynoException {
 
 		// Start recording the operation
-		long startTime = System.currentTimeMillis();
+		long startTime = System.nanoTime();
 
+		checkPoolThrottle();
+		
 		Collection<Connection<CL>> connections = selectionStrategy.getConnectionsToRing(cpConfiguration.getMaxTimeoutWhenExhausted(), TimeUnit.MILLISECONDS);
 
 		LinkedBlockingQueue<Connection<CL>> connQueue = new LinkedBlockingQueue<Connection<CL>>();
@@ -351,15 +514,19 @@ public class ConnectionPoolImpl<CL> implements ConnectionPool<CL> {
 				retry.begin();
 
 				do {
+					long execStartTime = System.nanoTime();
 					try { 
 						OperationResult<R> result = connection.execute(op);
+						long execLatency = System.nanoTime() - execStartTime;
+						phaseMonitor.recordPhaseLatency(RequestPhase.EXECUTE, execLatency);
+						cpHealthTracker.trackConnectionLatency(connection.getParentConnectionPool(), execLatency, TimeUnit.NANOSECONDS);
 
 						// Add context to the result from the successful execution
 						result.setNode(connection.getHost())
 						.addMetadata(connection.getContext().getAll());
 
 						retry.success();
-						cpMonitor.incOperationSuccess(connection.getHost(), System.currentTimeMillis()-startTime);
+						cpMonitor.incOperationSuccess(connection.getHost(), System.nanoTime()-startTime);
 
 						results.add(result); 
 
@@ -377,13 +544,16 @@ public class ConnectionPoolImpl<CL> implements ConnectionPool<CL> {
 						// Track the connection health so that the pool can be purged at a later point
 						if (connection != null) {
 							cpHealthTracker.trackConnectionError(connection.getParentConnectionPool(), lastException);
+							cpHealthTracker.trackConnectionLatency(connection.getParentConnectionPool(), System.nanoTime()-execStartTime, TimeUnit.NANOSECONDS);
 						}
 
 					} catch(Throwable t) {
 						throw new RuntimeException(t);
 					} finally {
 						connection.getContext().reset();
+						long returnStartTime = System.nanoTime();
 						connection.getParentConnectionPool().returnConnection(connection);
+						phaseMonitor.recordPhaseLatency(RequestPhase.RETURN, System.nanoTime()-returnStartTime);
 					}
 
 				} while(retry.allowRetry());
@@ -443,6 +613,7 @@ public class ConnectionPoolImpl<CL> implements ConnectionPool<CL> {
 
 		HostStatusTracker hostStatus = hostsUpdator.refreshHosts();
 		Collection<Host> hostsUp = hostStatus.getActiveHosts();
+		hostStatusVersion = hostStatus.getVersion();
 		
 		if (hostsUp == null || hostsUp.isEmpty()) {
 			throw new NoAvailableHostsException("No available hosts when starting connection pool");
@@ -488,8 +659,7 @@ public class ConnectionPoolImpl<CL> implements ConnectionPool<CL> {
 				@Override
 				public void run() {
 					
-					HostStatusTracker hostStatus = hostsUpdator.refreshHosts();
-					updateHosts(hostStatus.getActiveHosts(), hostStatus.getInactiveHosts());
+					applyHostStatus(hostsUpdator.refreshHosts());
 				}
 				
 			}, 15*1000, 30*1000, TimeUnit.MILLISECONDS);
@@ -505,7 +675,7 @@ public class ConnectionPoolImpl<CL> implements ConnectionPool<CL> {
 		if (cpConfiguration.getTokenSupplier() == null) {
 			throw new RuntimeException("TokenMapSupplier not configured");
 		}
-		HostSelectionWithFallback<CL> selection = new HostSelectionWithFallback<CL>(cpConfiguration, cpMonitor);
+		HostSelectionWithFallback<CL> selection = new HostSelectionWithFallback<CL>(cpConfiguration, cpMonitor, cpHealthTracker.getLatencyOutlierDetector());
 		selection.initWithHosts(cpMap);
 		return selection;
 	}
@@ -554,15 +724,17 @@ public class ConnectionPoolImpl<CL> implements ConnectionPool<CL> {
 		
 		DynoException lastException = null;
 		Connection<CL> connection = null;
-		long startTime = System.currentTimeMillis();
+		long startTime = System.nanoTime();
+		
+		checkPoolThrottle();
 		
 		try { 
 			connection = 
-					selectionStrategy.getConnection(op, cpConfiguration.getMaxTimeoutWhenExhausted(), TimeUnit.MILLISECONDS);
+					selectionStrategy.getAdmittedConnection(op, cpConfiguration.getMaxTimeoutWhenExhausted(), TimeUnit.MILLISECONDS);
 			
 			ListenableFuture<OperationResult<R>> futureResult = connection.executeAsync(op);
 			
-			cpMonitor.incOperationSuccess(connection.getHost(), System.currentTimeMillis()-startTime);
+			cpMonitor.incOperationSuccess(connection.getHost(), System.nanoTime()-startTime);
 		
 			return futureResult; 
 			
@@ -584,12 +756,35 @@ public class ConnectionPoolImpl<CL> implements ConnectionPool<CL> {
 		} finally {
 			if (connection != null) {
 				connection.getParentConnectionPool().returnConnection(connection);
+				// the latency of an async operation is not known here, hence it only counts while it is being sent
+				selectionStrategy.releaseAdmission(connection.getHost(), (DynoException) null);
 			}
 		}
 		return null;
 	}
 
+	/**
+	 * Fail the request right away when the whole pool is over its rate
+	 */
+	private void checkPoolThrottle() {
+		if (poolLimiter != null && !poolLimiter.tryAcquire()) {
+			ThrottledException e = new ThrottledException("Pool " + getName() + " is over " + poolLimiter.getRate() + " requests per sec");
+			cpMonitor.incOperationFailure(null, e);
+			throw e;
+		}
+	}
+	
 	public TokenPoolTopology  getTopology() {
 		return selectionStrategy.getTokenPoolTopology();
 	}
+
+	/**
+	 * Split the local ring into sub ranges along with the pool that owns each of them, so that batch jobs can run 
+	 * range partitioned work in parallel, e.g one worker per node. 
+	 * @param numRanges
+	 * @return the ranges in ring order
+	 */
+	public Map<TokenRange, HostConnectionPool<CL>> getTokenRangePools(int numRanges) {
+		return selectionStrategy.getTokenRangePools(numRanges);
+	}
 }
@@ -17,6 +17,7 @@ package com.netflix.dyno.connectionpool.impl;
 
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -25,19 +26,25 @@ import com.netflix.dyno.connectionpool.Host;
 import com.netflix.dyno.connectionpool.HostConnectionPool;
 import com.netflix.dyno.connectionpool.HostConnectionStats;
 import com.netflix.dyno.connectionpool.HostGroup;
+import com.netflix.dyno.connectionpool.RequestPhase;
+import com.netflix.dyno.connectionpool.RequestPhaseMonitor;
 import com.netflix.dyno.connectionpool.exception.BadRequestException;
 import com.netflix.dyno.connectionpool.exception.NoAvailableHostsException;
 import com.netflix.dyno.connectionpool.exception.PoolExhaustedException;
 import com.netflix.dyno.connectionpool.exception.PoolTimeoutException;
 import com.netflix.dyno.connectionpool.exception.TimeoutException;
+import com.netflix.dyno.connectionpool.impl.utils.LatencyRecorder;
+import com.netflix.dyno.connectionpool.impl.utils.LatencyRecorder.Snapshot;
 
 /**
  * Impl of {@link ConnectionPoolMonitor} using thread safe AtomicLongs
  * @author poberai
  *
  */
-public class CountingConnectionPoolMonitor implements ConnectionPoolMonitor {
+public class CountingConnectionPoolMonitor implements ConnectionPoolMonitor, RequestPhaseMonitor {
 	
+    private static final int PHASE_STRIPES = Math.min(Runtime.getRuntime().availableProcessors(), 8);
+
     // Tracking operation level metrics
     private final AtomicLong operationFailureCount  = new AtomicLong();
     private final AtomicLong operationSuccessCount  = new AtomicLong();
@@ -64,9 +71,15 @@ public class CountingConnectionPoolMonitor implements ConnectionPoolMonitor {
     private final AtomicLong unknownErrorCount      = new AtomicLong();
     private final AtomicLong badRequestCount        = new AtomicLong();
 
+    // Tracking the time spent in each phase of a request. Every request records into these, hence they are striped.
+    private final LatencyRecorder[] phaseLatencies = new LatencyRecorder[RequestPhase.values().length];
+
     private final ConcurrentHashMap<Host, HostConnectionStats> hostStats = new ConcurrentHashMap<Host, HostConnectionStats>();
     
     public CountingConnectionPoolMonitor() {
+        for (int i=0; i<phaseLatencies.length; i++) {
+            phaseLatencies[i] = new LatencyRecorder(LatencyRecorder.DEFAULT_HIGHEST_TRACKABLE_VALUE, LatencyRecorder.DEFAULT_INTERVAL_MILLIS, PHASE_STRIPES);
+        }
     }
     
     private void trackError(Host host, Exception reason) {
@@ -106,7 +119,9 @@ public class CountingConnectionPoolMonitor implements ConnectionPoolMonitor {
     @Override
     public void incOperationSuccess(Host host, long latency) {
         this.operationSuccessCount.incrementAndGet();
-        getOrCreateHostStats(host).opSuccess.incrementAndGet();
+        HostConnectionStatsImpl hStats = getOrCreateHostStats(host);
+        hStats.opSuccess.incrementAndGet();
+        hStats.latencies.recordLatency(latency, TimeUnit.NANOSECONDS);
     }
 
     public long getOperationSuccessCount() {
@@ -146,6 +161,7 @@ public class CountingConnectionPoolMonitor implements ConnectionPoolMonitor {
     @Override
     public void incConnectionBorrowed(Host host, long delay) {
         this.connectionBorrowCount.incrementAndGet();
+        phaseLatencies[RequestPhase.BORROW.ordinal()].recordLatency(delay, TimeUnit.NANOSECONDS);
         if (host == null || (host instanceof HostGroup)) {
         	return;
         }
@@ -169,6 +185,16 @@ public class CountingConnectionPoolMonitor implements ConnectionPoolMonitor {
         return this.connectionReturnCount.get();
     }
 
+    @Override
+    public void recordPhaseLatency(RequestPhase phase, long latency) {
+        phaseLatencies[phase.ordinal()].recordLatency(latency, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public Snapshot getPhaseLatencies(RequestPhase phase) {
+        return phaseLatencies[phase.ordinal()].getIntervalSnapshot();
+    }
+
     public long getPoolExhaustedTimeoutCount() {
         return this.poolExhastedCount.get();
     }
@@ -309,6 +335,7 @@ public class CountingConnectionPoolMonitor implements ConnectionPoolMonitor {
 		private final AtomicLong createFailed = new AtomicLong();
 		private final AtomicLong borrowed  = new AtomicLong();
 		private final AtomicLong returned  = new AtomicLong();
+		private final LatencyRecorder latencies = new LatencyRecorder();
 		    
 		private HostConnectionStatsImpl(Host host) {
 			this.name = host.getHostName();
@@ -353,6 +380,11 @@ public class CountingConnectionPoolMonitor implements ConnectionPoolMonitor {
 		public long getOperationErrorCount() {
 			return opFailure.get();
 		}
+
+		@Override
+		public Snapshot getOperationLatencies() {
+			return latencies.getIntervalSnapshot();
+		}
 		
 		public String toString() {
 			return name + " isUp: " + hostUp.get() + 
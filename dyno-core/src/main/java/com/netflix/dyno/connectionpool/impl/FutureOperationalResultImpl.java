@@ -43,6 +43,7 @@ public class FutureOperationalResultImpl<R> implements ListenableFuture<Operatio
 	
 	private final Future<R> future; 
 	private final OperationResultImpl<R> opResult; 
+	// from System.nanoTime()
 	private final long startTime;
 	private final AtomicBoolean timeRecorded = new AtomicBoolean(false);
 	
@@ -82,7 +83,7 @@ public class FutureOperationalResultImpl<R> implements ListenableFuture<Operatio
 			return;
 		}
 		if (timeRecorded.compareAndSet(false, true)) {
-			opResult.setLatency(System.currentTimeMillis()-startTime, TimeUnit.MILLISECONDS);
+			opResult.setLatency(System.nanoTime()-startTime, TimeUnit.NANOSECONDS);
 		}
 	}
 
@@ -228,6 +228,13 @@ public class HostConnectionPoolImpl<CL> implements HostConnectionPool<CL> {
 		return cpState.get() == cpDown;
 	}
 	
+	/**
+	 * @return the number of connections that are open but not in the pool, i.e borrowed and not returned yet
+	 */
+	public int getConnectionsInFlight() {
+		return Math.max(0, numActiveConnections.get() - availableConnections.size());
+	}
+	
 	/**
 	 * DO NOT call this method on this pool. This pool needs to manage shared thread safe access to connections
 	 * and hence at any given time all connections are being used by some operation. 
@@ -331,7 +338,7 @@ public class HostConnectionPoolImpl<CL> implements HostConnectionPool<CL> {
 		public Connection<CL> borrowConnection(int duration, TimeUnit unit) {
 
 			// Start recording how long it takes to get the connection - for insight/metrics
-			long startTime = System.currentTimeMillis();
+			long startTime = System.nanoTime();
 
 			Connection<CL> conn = null;
 			try {
@@ -342,7 +349,7 @@ public class HostConnectionPoolImpl<CL> implements HostConnectionPool<CL> {
 				throw new DynoConnectException(e);
 			}
 
-			long delay = System.currentTimeMillis() - startTime;
+			long delay = System.nanoTime() - startTime;
 
 			if (conn == null) {
 				throw new PoolTimeoutException("Fast fail waiting for connection from pool")
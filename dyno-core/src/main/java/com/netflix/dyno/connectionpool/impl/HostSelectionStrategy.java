@@ -26,7 +26,9 @@ import com.netflix.dyno.connectionpool.Host;
 import com.netflix.dyno.connectionpool.HostConnectionPool;
 import com.netflix.dyno.connectionpool.exception.NoAvailableHostsException;
 import com.netflix.dyno.connectionpool.exception.PoolExhaustedException;
+import com.netflix.dyno.connectionpool.impl.hash.BinarySearchTokenMapper;
 import com.netflix.dyno.connectionpool.impl.lb.HostToken;
+import com.netflix.dyno.connectionpool.impl.lb.TokenRange;
 
 /**
  * Interface that encapsulates a strategy for selecting a {@link Connection} to a {@link Host} for the given {@link BaseOperation}
@@ -66,12 +68,21 @@ public interface HostSelectionStrategy<CL> {
 	public HostConnectionPool<CL> getPoolForToken(Long token);
 	
 	/**
-	 * 
+	 * Get the pools that own any of the key hashes from start to end (both inclusive). 
+	 * The range wraps around the top of the ring when start is greater than end. 
 	 * @param start
 	 * @param end
-	 * @return
+	 * @return the pools in ring order, each pool only once
 	 */
 	public List<HostConnectionPool<CL>> getPoolsForTokens(Long start, Long end);
+	
+	/**
+	 * Split the ring into sub ranges that are each owned by a single pool, e.g so that batch jobs can work on the 
+	 * ranges in parallel. See {@link BinarySearchTokenMapper#splitRing(int)}
+	 * @param numRanges
+	 * @return the ranges in ring order along with the pool that owns each of them
+	 */
+	public Map<TokenRange, HostConnectionPool<CL>> getTokenRangePools(int numRanges);
 
 	/**
 	 * Init the connection pool with the set of hosts provided
@@ -93,6 +104,14 @@ public interface HostSelectionStrategy<CL> {
 	 * @return true/false indicating whether the pool was indeed removed
 	 */
 	public boolean removeHostPool(HostToken host);
+	
+	/**
+	 * Add and remove a batch of hosts at once. This is cheaper than adding and removing the hosts one by one when 
+	 * many hosts change together, e.g when a rack is scaled down.
+	 * @param hostPoolsAdded
+	 * @param hostTokensRemoved
+	 */
+	public void updateHostPools(Map<HostToken, HostConnectionPool<CL>> hostPoolsAdded, Collection<HostToken> hostTokensRemoved);
 
 	public static interface HostSelectionStrategyFactory<CL> {
 		
@@ -16,6 +16,7 @@
 package com.netflix.dyno.connectionpool.impl;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -31,6 +32,11 @@ import com.netflix.dyno.connectionpool.HostSupplier;
  * Implementations of {@link ConnectionPool} can then use this utility to adapt to topology changes and hence manage the corresponding 
  * {@link HostConnectionPool} objects for the set of active hosts. 
  * 
+ * Each tracker carries a version and the diff from the tracker it was computed from, i.e the hosts that became active
+ * and the hosts that are no longer active. Note that a host that moved racks shows up as removed and added, since the rack 
+ * is part of the host identity. When nothing changed, {@link #computeNewHostStatus(Collection, Collection)} returns the 
+ * same tracker, hence callers can skip the update entirely by comparing versions. 
+ * 
  * @author poberai
  *
  */
@@ -40,7 +46,15 @@ public class HostStatusTracker {
 	private final Set<Host> activeHosts = new HashSet<Host>();
 	private final Set<Host> inactiveHosts = new HashSet<Host>();
 	
+	// the diff from the previous tracker
+	private final long version;
+	private final Set<Host> hostsAdded;
+	private final Set<Host> hostsRemoved;
+	
 	public HostStatusTracker() {
+		this.version = 0L;
+		this.hostsAdded = Collections.emptySet();
+		this.hostsRemoved = Collections.emptySet();
 	}
 	
 	public HostStatusTracker(Collection<Host> up, Collection<Host> down) {
@@ -49,6 +63,20 @@ public class HostStatusTracker {
 		
 		activeHosts.addAll(up);
 		inactiveHosts.addAll(down);
+		
+		this.version = 0L;
+		this.hostsAdded = Collections.emptySet();
+		this.hostsRemoved = Collections.emptySet();
+	}
+	
+	private HostStatusTracker(Set<Host> up, Set<Host> down, long version, Set<Host> added, Set<Host> removed) {
+		
+		activeHosts.addAll(up);
+		inactiveHosts.addAll(down);
+		
+		this.version = version;
+		this.hostsAdded = added;
+		this.hostsRemoved = removed;
 	}
 
 	/**
@@ -127,6 +155,9 @@ public class HostStatusTracker {
 	 * Note that the new HostStatusTracker is returned that holds onto the new state. Calling classes must update their
 	 * references to use the new HostStatusTracker
 	 * 
+	 * The diff is computed in a single pass over the hosts. If no host became active, no host went away and there are 
+	 * no new inactive hosts, then this tracker is returned as is. 
+	 * 
 	 * @param hostsUp
 	 * @param hostsDown
 	 * @return
@@ -137,33 +168,51 @@ public class HostStatusTracker {
 		
 		Set<Host> nextActiveHosts = new HashSet<Host>(hostsUp);
 		
-		// Get the hosts that are currently down
-		Set<Host> nextInactiveHosts = new HashSet<Host>(hostsDown);
-		// add any previous hosts that were currently down
-		nextInactiveHosts.addAll(inactiveHosts);
-		
-		// Now remove from the total set of inactive hosts any host that is currently up. 
-		// This typically happens when a host moves from the inactive state to the active state. 
-		// And hence it will be there in the prev inactive set, and will also be there in the new active set
-		// for this round.
+		// Hosts that were not active before, this includes hosts that move from the inactive state to the active state. 
+		Set<Host> added = new HashSet<Host>();
 		for (Host host : nextActiveHosts) {
-			nextInactiveHosts.remove(host);
+			if (!activeHosts.contains(host)) {
+				added.add(host);
+			}
 		}
 		
-		// Now add any host that is not in the new active hosts set and that was in the previous active set
-		Set<Host> prevActiveHosts = new HashSet<Host>(activeHosts);
-		prevActiveHosts.removeAll(hostsUp);
+		// Hosts that were active before and are now down or have simply gone away
+		Set<Host> removed = new HashSet<Host>();
+		for (Host host : activeHosts) {
+			if (!nextActiveHosts.contains(host)) {
+				removed.add(host);
+			}
+		}
 		
-		// If anyone is remaining in the prev set then add it to the inactive set, since it has gone away
-		nextInactiveHosts.addAll(prevActiveHosts);
+		boolean newInactiveHosts = false;
+		for (Host host : hostsDown) {
+			if (!inactiveHosts.contains(host)) {
+				newInactiveHosts = true;
+				break;
+			}
+		}
 		
-		for (Host host : nextActiveHosts) {
+		if (added.isEmpty() && removed.isEmpty() && !newInactiveHosts) {
+			return this;
+		}
+		
+		// Previous hosts that were down, plus the hosts that are currently down or have gone away, 
+		// minus any host that moved from the inactive state to the active state in this round.
+		Set<Host> nextInactiveHosts = new HashSet<Host>(inactiveHosts);
+		nextInactiveHosts.addAll(hostsDown);
+		nextInactiveHosts.addAll(removed);
+		nextInactiveHosts.removeAll(added);
+		
+		for (Host host : added) {
 			host.setStatus(Status.Up);
 		}
-		for (Host host : nextInactiveHosts) {
+		for (Host host : removed) {
 			host.setStatus(Status.Down);
 		}
-		return new HostStatusTracker(nextActiveHosts, nextInactiveHosts);
+		for (Host host : hostsDown) {
+			host.setStatus(Status.Down);
+		}
+		return new HostStatusTracker(nextActiveHosts, nextInactiveHosts, version + 1, added, removed);
 	}
 	
 	public boolean isHostUp(Host host) {
@@ -178,7 +227,28 @@ public class HostStatusTracker {
 		return inactiveHosts;
 	}
 	
+	/**
+	 * @return the version of the host status, this is bumped every time that the hosts change
+	 */
+	public long getVersion() {
+		return version;
+	}
+	
+	/**
+	 * @return the hosts that became active since the previous version
+	 */
+	public Collection<Host> getHostsAdded() {
+		return hostsAdded;
+	}
+	
+	/**
+	 * @return the hosts that were active in the previous version and are now inactive
+	 */
+	public Collection<Host> getHostsRemoved() {
+		return hostsRemoved;
+	}
+	
 	public String toString() {
-		return "HostStatusTracker \nactiveSet: " + activeHosts.toString() + "\ninactiveSet: " + inactiveHosts.toString();  
+		return "HostStatusTracker version: " + version + "\nactiveSet: " + activeHosts.toString() + "\ninactiveSet: " + inactiveHosts.toString();  
 	}
 }
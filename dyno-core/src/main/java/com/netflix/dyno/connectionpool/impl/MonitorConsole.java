@@ -15,6 +15,8 @@
  ******************************************************************************/
 package com.netflix.dyno.connectionpool.impl;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.Collection;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -23,7 +25,11 @@ import com.netflix.dyno.connectionpool.ConnectionPool;
 import com.netflix.dyno.connectionpool.ConnectionPoolMonitor;
 import com.netflix.dyno.connectionpool.Host;
 import com.netflix.dyno.connectionpool.HostConnectionStats;
+import com.netflix.dyno.connectionpool.OperationStatsMonitor;
+import com.netflix.dyno.connectionpool.RequestPhase;
+import com.netflix.dyno.connectionpool.RequestPhaseMonitor;
 import com.netflix.dyno.connectionpool.TokenPoolTopology;
+import com.netflix.dyno.connectionpool.impl.lb.HotKeyTracker;
 
 /**
  * Console that gives the admin insight into the current status of the Dyno {@link ConnectionPool}
@@ -40,6 +46,7 @@ public class MonitorConsole {
 	}
 
 	private final ConcurrentHashMap<String, ConnectionPoolMonitor> cpMonitors = new ConcurrentHashMap<String, ConnectionPoolMonitor>();
+	private final ConcurrentHashMap<String, OperationStatsMonitor> opMonitors = new ConcurrentHashMap<String, OperationStatsMonitor>();
 	private final ConcurrentHashMap<String, ConnectionPoolImpl<?>> connectionPools = new ConcurrentHashMap<String, ConnectionPoolImpl<?>>();
 	
 	private MonitorConsole() {
@@ -50,10 +57,23 @@ public class MonitorConsole {
 		return cpMonitors.keySet().toString();
 	}
 	
+	public boolean hasMonitor(String name) {
+		return cpMonitors.containsKey(name);
+	}
+	
 	public void addMonitorConsole(String name, ConnectionPoolMonitor monitor) {
 		cpMonitors.put(name, monitor);
 	}
 	
+	/**
+	 * Add the per operation stats for the monitor with the same name
+	 * @param name
+	 * @param monitor
+	 */
+	public void addOperationMonitor(String name, OperationStatsMonitor monitor) {
+		opMonitors.put(name, monitor);
+	}
+	
 	public void registerConnectionPool(ConnectionPoolImpl<?> cp) {
 		connectionPools.put(cp.getName(), cp);
 		addMonitorConsole(cp.getName(), cp.getMonitor());
@@ -86,6 +106,12 @@ public class MonitorConsole {
              .append(",  down="       ).append(cpMonitor.getHostDownCount())
          .append("])");
 		 
+		 if (cpMonitor instanceof RequestPhaseMonitor) {
+			 for (RequestPhase phase : RequestPhase.values()) {
+				 sb.append("\nPhase: " + phase.name() + "\t" + ((RequestPhaseMonitor) cpMonitor).getPhaseLatencies(phase));
+			 }
+		 }
+		 
 		 Map<Host, HostConnectionStats> hostStats = cpMonitor.getHostStats();
 		 for (Host host : hostStats.keySet()) {
 			 
@@ -106,10 +132,46 @@ public class MonitorConsole {
 		 return sb.toString();
 	}
 	
+	/**
+	 * Stream the stats for the given monitor as json
+	 * @param name
+	 * @param writer
+	 * @return false if the monitor was not found
+	 * @throws IOException
+	 */
+	public boolean writeMonitorStatsJson(String name, Writer writer) throws IOException {
+		
+		ConnectionPoolMonitor cpMonitor = cpMonitors.get(name);
+		if (cpMonitor == null) {
+			return false;
+		}
+		new MonitorStatsWriter(writer).writeJson(name, cpMonitor, opMonitors.get(name));
+		return true;
+	}
+	
+	/**
+	 * Stream the stats for all monitors in the Prometheus text format
+	 * @param writer
+	 * @throws IOException
+	 */
+	public void writePrometheusStats(Writer writer) throws IOException {
+		new MonitorStatsWriter(writer).writePrometheus(cpMonitors, opMonitors);
+	}
+	
 	public Collection<String> getConnectionPoolNames() {
 		return connectionPools.keySet();
 	}
 	
+	public RequestTracer getRequestTracer(String cpName) {
+		ConnectionPoolImpl<?> pool = connectionPools.get(cpName);
+		return (pool != null) ? pool.getRequestTracer() : null;
+	}
+	
+	public HotKeyTracker getHotKeyTracker(String cpName) {
+		ConnectionPoolImpl<?> pool = connectionPools.get(cpName);
+		return (pool != null) ? pool.getHotKeyTracker() : null;
+	}
+	
 	public TokenPoolTopology getTopology(String cpName) {
 		ConnectionPoolImpl<?> pool = connectionPools.get(cpName);
 		return (pool != null) ? pool.getTopology() : null;
@@ -15,18 +15,28 @@
  ******************************************************************************/
 package com.netflix.dyno.connectionpool.impl;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import javax.ws.rs.Consumes;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 
+import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -34,6 +44,10 @@ import org.slf4j.LoggerFactory;
 import com.netflix.dyno.connectionpool.HostConnectionPool;
 import com.netflix.dyno.connectionpool.TokenPoolTopology;
 import com.netflix.dyno.connectionpool.TokenPoolTopology.TokenStatus;
+import com.netflix.dyno.connectionpool.impl.RequestTracer.Trace;
+import com.netflix.dyno.connectionpool.impl.lb.HotKeyTracker;
+import com.netflix.dyno.connectionpool.impl.lb.HotKeyTracker.HotKey;
+import com.netflix.dyno.connectionpool.impl.utils.LatencyRecorder.Snapshot;
 
 @Path("/dyno/console")
 public class MonitorConsoleResource {
@@ -61,6 +75,44 @@ public class MonitorConsoleResource {
 		return MonitorConsole.getInstance().getMonitorStats(monitorName);
 	}
 
+	@Path("/monitor/{monitorName}/json")
+	@GET
+	@Consumes(MediaType.TEXT_PLAIN)
+	@Produces(MediaType.APPLICATION_JSON)
+	public Response getMonitorStatsJson(@PathParam("monitorName") final String monitorName) {
+
+		if (!MonitorConsole.getInstance().hasMonitor(monitorName)) {
+			return Response.status(Response.Status.NOT_FOUND).entity("Not Found: " + monitorName).build();
+		}
+
+		StreamingOutput output = new StreamingOutput() {
+
+			@Override
+			public void write(OutputStream os) throws IOException, WebApplicationException {
+				MonitorConsole.getInstance().writeMonitorStatsJson(monitorName, getWriter(os));
+			}
+		};
+		return Response.ok(output).build();
+	}
+
+	@Path("/metrics")
+	@GET
+	@Produces("text/plain; version=0.0.4")
+	public StreamingOutput getPrometheusStats() {
+
+		return new StreamingOutput() {
+
+			@Override
+			public void write(OutputStream os) throws IOException, WebApplicationException {
+				MonitorConsole.getInstance().writePrometheusStats(getWriter(os));
+			}
+		};
+	}
+
+	private Writer getWriter(OutputStream os) throws IOException {
+		return new BufferedWriter(new OutputStreamWriter(os, "UTF-8"));
+	}
+
 	@Path("/topologies")
 	@GET
 	@Consumes(MediaType.TEXT_PLAIN)
@@ -92,6 +144,106 @@ public class MonitorConsoleResource {
 		return json.toJSONString();
 	}
 
+	/**
+	 * Same layout as {@link #getConnectionPoolToplogy(String)}, but with the request rate, in flight count and latencies 
+	 * of each token instead of just the host and its status
+	 * @param cpName
+	 * @return String
+	 */
+	@SuppressWarnings("unchecked")
+	@Path("/topology/{cpName}/load")
+	@GET
+	@Consumes(MediaType.TEXT_PLAIN)
+	@Produces(MediaType.APPLICATION_JSON)
+	public String getConnectionPoolTopologyLoad(@PathParam("cpName") String cpName) {
+
+		TokenPoolTopology topology = MonitorConsole.getInstance().getTopology(cpName);
+		if (topology == null) {
+			return "Not Found: " + cpName;
+		}
+
+		ConcurrentHashMap<String, List<TokenStatus>> map = topology.getAllTokens();
+
+		JSONObject json = new JSONObject();
+
+		for (String rack : map.keySet()) {
+			List<TokenStatus> tokens = map.get(rack);
+			json.put(rack, getTokenLoadMap(tokens));
+		}
+		return json.toJSONString();
+	}
+
+	@SuppressWarnings("unchecked")
+	@Path("/traces/{cpName}")
+	@GET
+	@Consumes(MediaType.TEXT_PLAIN)
+	@Produces(MediaType.APPLICATION_JSON)
+	public String getRequestTraces(@PathParam("cpName") String cpName) {
+
+		RequestTracer tracer = MonitorConsole.getInstance().getRequestTracer(cpName);
+		if (tracer == null) {
+			return "Not Found: " + cpName;
+		}
+
+		JSONObject json = new JSONObject();
+		json.put("slow", getTraces(tracer.getSlowTraces()));
+		json.put("sampled", getTraces(tracer.getSampledTraces()));
+		return json.toJSONString();
+	}
+
+	@SuppressWarnings("unchecked")
+	@Path("/hotkeys/{cpName}")
+	@GET
+	@Consumes(MediaType.TEXT_PLAIN)
+	@Produces(MediaType.APPLICATION_JSON)
+	public String getHotKeys(@PathParam("cpName") String cpName) {
+
+		HotKeyTracker tracker = MonitorConsole.getInstance().getHotKeyTracker(cpName);
+		if (tracker == null) {
+			return "Not Found: " + cpName;
+		}
+
+		JSONArray keys = new JSONArray();
+		for (HotKey hotKey : tracker.getTopKeys()) {
+			Map<String, Object> map = new HashMap<String, Object>();
+			map.put("key", hotKey.getKey());
+			map.put("token", hotKey.getToken());
+			map.put("count", hotKey.getCount());
+			keys.add(map);
+		}
+
+		Map<String, Long> tokenLoad = new HashMap<String, Long>();
+		for (Map.Entry<Long, Long> entry : tracker.getTokenLoad().entrySet()) {
+			tokenLoad.put(entry.getKey().toString(), entry.getValue());
+		}
+
+		JSONObject json = new JSONObject();
+		json.put("topKeys", keys);
+		json.put("tokenLoad", tokenLoad);
+		json.put("tokenLoadSkew", tracker.getTokenLoadSkew());
+		return json.toJSONString();
+	}
+
+	@SuppressWarnings("unchecked")
+	private JSONArray getTraces(List<Trace> traces) {
+
+		JSONArray list = new JSONArray();
+		for (Trace trace : traces) {
+			Map<String, Object> map = new HashMap<String, Object>();
+			map.put("timestamp", trace.getTimestamp());
+			map.put("op", trace.getOpName());
+			map.put("keyHash", trace.getKeyHash());
+			map.put("host", trace.getHost() != null ? trace.getHost().getHostName() : null);
+			map.put("attempts", trace.getAttempts());
+			map.put("borrowMicros", TimeUnit.NANOSECONDS.toMicros(trace.getBorrowNanos()));
+			map.put("executeMicros", TimeUnit.NANOSECONDS.toMicros(trace.getExecuteNanos()));
+			map.put("totalMicros", TimeUnit.NANOSECONDS.toMicros(trace.getTotalNanos()));
+			map.put("error", trace.getError());
+			list.add(map);
+		}
+		return list;
+	}
+
 	private Map<String, String> getTokenStatusMap(List<TokenStatus> tokens) {
 
 		Map<String, String> map = new HashMap<String, String>();
@@ -104,4 +256,25 @@ public class MonitorConsoleResource {
 		return map;
 	}
 
+	private Map<String, Map<String, Object>> getTokenLoadMap(List<TokenStatus> tokens) {
+
+		Map<String, Map<String, Object>> map = new HashMap<String, Map<String, Object>>();
+		for (TokenStatus tokenStatus : tokens) {
+			String token = tokenStatus.getToken().toString();
+			HostConnectionPool<?> hostPool = tokenStatus.getHostPool();
+			Snapshot latencies = tokenStatus.getLatencies();
+
+			Map<String, Object> status = new HashMap<String, Object>();
+			status.put("host", hostPool.getHost().getHostName());
+			status.put("status", hostPool.isActive() ? "UP" : "DOWN");
+			status.put("requestRate", tokenStatus.getRequestRate());
+			status.put("inFlight", tokenStatus.getInFlight());
+			status.put("p50", latencies.getPercentile(0.5));
+			status.put("p99", latencies.getPercentile(0.99));
+			status.put("p999", latencies.getPercentile(0.999));
+			map.put(token, status);
+		}
+		return map;
+	}
+
 }
@@ -0,0 +1,407 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.dyno.connectionpool.impl;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+
+import org.json.simple.JSONValue;
+
+import com.netflix.dyno.connectionpool.ConnectionPoolMonitor;
+import com.netflix.dyno.connectionpool.Host;
+import com.netflix.dyno.connectionpool.HostConnectionStats;
+import com.netflix.dyno.connectionpool.OperationStatsMonitor;
+import com.netflix.dyno.connectionpool.RequestPhase;
+import com.netflix.dyno.connectionpool.RequestPhaseMonitor;
+import com.netflix.dyno.connectionpool.impl.utils.LatencyRecorder.Snapshot;
+
+/**
+ * Writes the stats tracked by the {@link MonitorConsole} straight to a {@link Writer}, either as JSON or in the 
+ * Prometheus text format. The stats are never built up into one big string first, hence they are cheap enough to be 
+ * scraped every few seconds. 
+ * 
+ * All latencies are in micros and are for the last completed interval, see {@link Snapshot}
+ * 
+ * @author poberai
+ *
+ */
+public class MonitorStatsWriter {
+
+	private static final double[] PERCENTILES = { 0.5, 0.99, 0.999 };
+	private static final String[] PERCENTILE_NAMES = { "p50", "p99", "p999" };
+	
+	private final Writer writer;
+	
+	// whether the next json key or value needs to be preceded by a comma
+	private boolean needComma = false;
+	
+	public MonitorStatsWriter(Writer writer) {
+		this.writer = writer;
+	}
+	
+	/**
+	 * Counters and gauges tracked for the entire connection pool
+	 */
+	private enum PoolStat {
+		
+		ConnectionCreated("dyno_connection_created_total", "counter") {
+			long get(ConnectionPoolMonitor m) { return m.getConnectionCreatedCount(); }
+		},
+		ConnectionClosed("dyno_connection_closed_total", "counter") {
+			long get(ConnectionPoolMonitor m) { return m.getConnectionClosedCount(); }
+		},
+		ConnectionCreateFailed("dyno_connection_create_failed_total", "counter") {
+			long get(ConnectionPoolMonitor m) { return m.getConnectionCreateFailedCount(); }
+		},
+		ConnectionBorrowed("dyno_connection_borrowed_total", "counter") {
+			long get(ConnectionPoolMonitor m) { return m.getConnectionBorrowedCount(); }
+		},
+		ConnectionReturned("dyno_connection_returned_total", "counter") {
+			long get(ConnectionPoolMonitor m) { return m.getConnectionReturnedCount(); }
+		},
+		OperationSuccess("dyno_operation_success_total", "counter") {
+			long get(ConnectionPoolMonitor m) { return m.getOperationSuccessCount(); }
+		},
+		OperationFailure("dyno_operation_failure_total", "counter") {
+			long get(ConnectionPoolMonitor m) { return m.getOperationFailureCount(); }
+		},
+		OperationFailover("dyno_operation_failover_total", "counter") {
+			long get(ConnectionPoolMonitor m) { return m.getFailoverCount(); }
+		},
+		PoolExhausted("dyno_pool_exhausted_total", "counter") {
+			long get(ConnectionPoolMonitor m) { return m.getPoolExhaustedTimeoutCount(); }
+		},
+		SocketTimeout("dyno_socket_timeout_total", "counter") {
+			long get(ConnectionPoolMonitor m) { return m.getSocketTimeoutCount(); }
+		},
+		OperationTimeout("dyno_operation_timeout_total", "counter") {
+			long get(ConnectionPoolMonitor m) { return m.getOperationTimeoutCount(); }
+		},
+		NoHost("dyno_no_host_total", "counter") {
+			long get(ConnectionPoolMonitor m) { return m.getNoHostCount(); }
+		},
+		UnknownError("dyno_unknown_error_total", "counter") {
+			long get(ConnectionPoolMonitor m) { return m.getUnknownErrorCount(); }
+		},
+		BadRequest("dyno_bad_request_total", "counter") {
+			long get(ConnectionPoolMonitor m) { return m.getBadRequestCount(); }
+		},
+		HostCount("dyno_host_count", "gauge") {
+			long get(ConnectionPoolMonitor m) { return m.getHostCount(); }
+		},
+		HostUpCount("dyno_host_up_count", "gauge") {
+			long get(ConnectionPoolMonitor m) { return m.getHostUpCount(); }
+		},
+		HostDownCount("dyno_host_down_count", "gauge") {
+			long get(ConnectionPoolMonitor m) { return m.getHostDownCount(); }
+		};
+		
+		private final String metricName;
+		private final String metricType;
+		
+		private PoolStat(String metricName, String metricType) {
+			this.metricName = metricName;
+			this.metricType = metricType;
+		}
+		
+		abstract long get(ConnectionPoolMonitor m);
+	}
+	
+	/**
+	 * Counters and gauges tracked for each host
+	 */
+	private enum HostStat {
+		
+		Up("dyno_host_up", "gauge") {
+			long get(HostConnectionStats s) { return s.isHostUp() ? 1 : 0; }
+		},
+		ConnectionsBorrowed("dyno_host_connection_borrowed_total", "counter") {
+			long get(HostConnectionStats s) { return s.getConnectionsBorrowed(); }
+		},
+		ConnectionsReturned("dyno_host_connection_returned_total", "counter") {
+			long get(HostConnectionStats s) { return s.getConnectionsReturned(); }
+		},
+		ConnectionsCreated("dyno_host_connection_created_total", "counter") {
+			long get(HostConnectionStats s) { return s.getConnectionsCreated(); }
+		},
+		ConnectionsClosed("dyno_host_connection_closed_total", "counter") {
+			long get(HostConnectionStats s) { return s.getConnectionsClosed(); }
+		},
+		ConnectionsCreateFailed("dyno_host_connection_create_failed_total", "counter") {
+			long get(HostConnectionStats s) { return s.getConnectionsCreateFailed(); }
+		},
+		OperationSuccess("dyno_host_operation_success_total", "counter") {
+			long get(HostConnectionStats s) { return s.getOperationSuccessCount(); }
+		},
+		OperationError("dyno_host_operation_error_total", "counter") {
+			long get(HostConnectionStats s) { return s.getOperationErrorCount(); }
+		};
+		
+		private final String metricName;
+		private final String metricType;
+		
+		private HostStat(String metricName, String metricType) {
+			this.metricName = metricName;
+			this.metricType = metricType;
+		}
+		
+		abstract long get(HostConnectionStats s);
+	}
+	
+	/**
+	 * Write the stats for a single connection pool as a json object
+	 * 
+	 * @param name
+	 * @param cpMonitor
+	 * @param opMonitor can be null
+	 * @throws IOException
+	 */
+	public void writeJson(String name, ConnectionPoolMonitor cpMonitor, OperationStatsMonitor opMonitor) throws IOException {
+		
+		startObject();
+		key("name"); value(name);
+		
+		key("stats"); startObject();
+		for (PoolStat stat : PoolStat.values()) {
+			key(stat.name()); value(stat.get(cpMonitor));
+		}
+		endObject();
+		
+		if (cpMonitor instanceof RequestPhaseMonitor) {
+			key("phases"); startObject();
+			for (RequestPhase phase : RequestPhase.values()) {
+				key(phase.name()); writeJson(((RequestPhaseMonitor) cpMonitor).getPhaseLatencies(phase));
+			}
+			endObject();
+		}
+		
+		key("hosts"); startObject();
+		for (Map.Entry<Host, HostConnectionStats> entry : cpMonitor.getHostStats().entrySet()) {
+			
+			Host host = entry.getKey();
+			if (host.getHostName().contains("AllHosts")) {
+				continue;
+			}
+			HostConnectionStats hStats = entry.getValue();
+			
+			key(host.getHostName() + ":" + host.getPort()); startObject();
+			key("rack"); value(host.getRack());
+			for (HostStat stat : HostStat.values()) {
+				key(stat.name()); value(stat.get(hStats));
+			}
+			key("latency"); writeJson(hStats.getOperationLatencies());
+			endObject();
+		}
+		endObject();
+		
+		if (opMonitor != null) {
+			key("operations"); startObject();
+			for (String opName : opMonitor.getOperationNames()) {
+				key(opName); startObject();
+				key("Success"); value(opMonitor.getSuccessCount(opName));
+				key("Failure"); value(opMonitor.getFailureCount(opName));
+				key("latency"); writeJson(opMonitor.getLatencies(opName));
+				endObject();
+			}
+			endObject();
+		}
+		
+		endObject();
+		writer.flush();
+	}
+	
+	private void writeJson(Snapshot snapshot) throws IOException {
+		startObject();
+		key("count"); value(snapshot.getCount());
+		key("mean"); value(snapshot.getMean());
+		for (int i=0; i<PERCENTILES.length; i++) {
+			key(PERCENTILE_NAMES[i]); value(snapshot.getPercentile(PERCENTILES[i]));
+		}
+		key("max"); value(snapshot.getMax());
+		endObject();
+	}
+	
+	private void startObject() throws IOException {
+		if (needComma) {
+			writer.write(',');
+		}
+		writer.write('{');
+		needComma = false;
+	}
+	
+	private void endObject() throws IOException {
+		writer.write('}');
+		needComma = true;
+	}
+	
+	private void key(String key) throws IOException {
+		if (needComma) {
+			writer.write(',');
+		}
+		writer.write('"');
+		writer.write(JSONValue.escape(key));
+		writer.write("\":");
+		needComma = false;
+	}
+	
+	private void value(String value) throws IOException {
+		if (value == null) {
+			writer.write("null");
+		} else {
+			writer.write('"');
+			writer.write(JSONValue.escape(value));
+			writer.write('"');
+		}
+		needComma = true;
+	}
+	
+	private void value(long value) throws IOException {
+		writer.write(Long.toString(value));
+		needComma = true;
+	}
+	
+	/**
+	 * Write the stats for all the connection pools in the Prometheus text format.
+	 * All the samples for a metric are grouped together, hence each metric iterates over all the pools.
+	 * 
+	 * @param cpMonitors
+	 * @param opMonitors
+	 * @throws IOException
+	 */
+	public void writePrometheus(Map<String, ConnectionPoolMonitor> cpMonitors, Map<String, OperationStatsMonitor> opMonitors) throws IOException {
+		
+		for (PoolStat stat : PoolStat.values()) {
+			writeType(stat.metricName, stat.metricType);
+			for (Map.Entry<String, ConnectionPoolMonitor> entry : cpMonitors.entrySet()) {
+				writeSample(stat.metricName, "pool", entry.getKey(), null, null, stat.get(entry.getValue()));
+			}
+		}
+		
+		writeType("dyno_phase_latency_micros", "gauge");
+		for (Map.Entry<String, ConnectionPoolMonitor> entry : cpMonitors.entrySet()) {
+			if (!(entry.getValue() instanceof RequestPhaseMonitor)) {
+				continue;
+			}
+			for (RequestPhase phase : RequestPhase.values()) {
+				writePercentiles("dyno_phase_latency_micros", entry.getKey(), "phase", phase.name(), ((RequestPhaseMonitor) entry.getValue()).getPhaseLatencies(phase));
+			}
+		}
+		
+		for (HostStat stat : HostStat.values()) {
+			writeType(stat.metricName, stat.metricType);
+			for (Map.Entry<String, ConnectionPoolMonitor> entry : cpMonitors.entrySet()) {
+				for (Map.Entry<Host, HostConnectionStats> hostEntry : entry.getValue().getHostStats().entrySet()) {
+					String hostName = getHostLabel(hostEntry.getKey());
+					if (hostName != null) {
+						writeSample(stat.metricName, "pool", entry.getKey(), "host", hostName, stat.get(hostEntry.getValue()));
+					}
+				}
+			}
+		}
+		
+		writeType("dyno_host_latency_micros", "gauge");
+		for (Map.Entry<String, ConnectionPoolMonitor> entry : cpMonitors.entrySet()) {
+			for (Map.Entry<Host, HostConnectionStats> hostEntry : entry.getValue().getHostStats().entrySet()) {
+				String hostName = getHostLabel(hostEntry.getKey());
+				if (hostName != null) {
+					writePercentiles("dyno_host_latency_micros", entry.getKey(), "host", hostName, hostEntry.getValue().getOperationLatencies());
+				}
+			}
+		}
+		
+		writeType("dyno_op_success_total", "counter");
+		for (Map.Entry<String, OperationStatsMonitor> entry : opMonitors.entrySet()) {
+			for (String opName : entry.getValue().getOperationNames()) {
+				writeSample("dyno_op_success_total", "pool", entry.getKey(), "op", opName, entry.getValue().getSuccessCount(opName));
+			}
+		}
+		
+		writeType("dyno_op_failure_total", "counter");
+		for (Map.Entry<String, OperationStatsMonitor> entry : opMonitors.entrySet()) {
+			for (String opName : entry.getValue().getOperationNames()) {
+				writeSample("dyno_op_failure_total", "pool", entry.getKey(), "op", opName, entry.getValue().getFailureCount(opName));
+			}
+		}
+		
+		writeType("dyno_op_latency_micros", "gauge");
+		for (Map.Entry<String, OperationStatsMonitor> entry : opMonitors.entrySet()) {
+			for (String opName : entry.getValue().getOperationNames()) {
+				writePercentiles("dyno_op_latency_micros", entry.getKey(), "op", opName, entry.getValue().getLatencies(opName));
+			}
+		}
+		
+		writer.flush();
+	}
+	
+	private String getHostLabel(Host host) {
+		if (host.getHostName().contains("AllHosts")) {
+			return null;
+		}
+		return host.getHostName() + ":" + host.getPort();
+	}
+	
+	private void writeType(String metricName, String metricType) throws IOException {
+		writer.write("# TYPE ");
+		writer.write(metricName);
+		writer.write(' ');
+		writer.write(metricType);
+		writer.write('\n');
+	}
+	
+	private void writePercentiles(String metricName, String pool, String labelName, String labelValue, Snapshot snapshot) throws IOException {
+		for (int i=0; i<PERCENTILES.length; i++) {
+			writer.write(metricName);
+			writer.write("{pool=\"");
+			writer.write(escapeLabel(pool));
+			writer.write("\",");
+			writer.write(labelName);
+			writer.write("=\"");
+			writer.write(escapeLabel(labelValue));
+			writer.write("\",quantile=\"");
+			writer.write(Double.toString(PERCENTILES[i]));
+			writer.write("\"} ");
+			writer.write(Long.toString(snapshot.getPercentile(PERCENTILES[i])));
+			writer.write('\n');
+		}
+	}
+	
+	private void writeSample(String metricName, String labelName, String labelValue, String labelName2, String labelValue2, long value) throws IOException {
+		writer.write(metricName);
+		writer.write('{');
+		writer.write(labelName);
+		writer.write("=\"");
+		writer.write(escapeLabel(labelValue));
+		writer.write('"');
+		if (labelName2 != null) {
+			writer.write(',');
+			writer.write(labelName2);
+			writer.write("=\"");
+			writer.write(escapeLabel(labelValue2));
+			writer.write('"');
+		}
+		writer.write("} ");
+		writer.write(Long.toString(value));
+		writer.write('\n');
+	}
+	
+	private String escapeLabel(String value) {
+		if (value.indexOf('\\') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+			return value;
+		}
+		return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+}
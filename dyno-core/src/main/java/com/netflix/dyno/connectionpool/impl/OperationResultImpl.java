@@ -39,6 +39,7 @@ public class OperationResultImpl<R> implements OperationResult<R> {
 	private final R result; 
 	private final Future<R> futureResult;
 	private Host host = null;
+	// in nanos
 	private long duration = 0;
 	private int attempts = 0;
 	private final OperationMonitor opMonitor; 
@@ -79,7 +80,7 @@ public class OperationResultImpl<R> implements OperationResult<R> {
 
 	@Override
 	public long getLatency(TimeUnit units) {
-		return units.convert(duration, TimeUnit.MILLISECONDS);
+		return units.convert(duration, TimeUnit.NANOSECONDS);
 	}
 
 	@Override
@@ -103,8 +104,11 @@ public class OperationResultImpl<R> implements OperationResult<R> {
 		return this;
 	}
 	
+	/**
+	 * @param time in millis
+	 */
 	public OperationResultImpl<R> latency(long time) {
-		this.duration = time;
+		this.duration = TimeUnit.MILLISECONDS.toNanos(time);
 		if (opMonitor != null) {
 			opMonitor.recordLatency(opName, time, TimeUnit.MILLISECONDS);
 		}
@@ -113,7 +117,7 @@ public class OperationResultImpl<R> implements OperationResult<R> {
 	
 	@Override
 	public OperationResultImpl<R> setLatency(long time, TimeUnit unit) {
-		this.duration = TimeUnit.MILLISECONDS.convert(time, unit);
+		this.duration = unit.toNanos(time);
 		if (opMonitor != null) {
 			opMonitor.recordLatency(opName, time, unit);
 		}
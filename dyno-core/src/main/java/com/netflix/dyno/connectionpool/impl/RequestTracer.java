@@ -0,0 +1,203 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.dyno.connectionpool.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.netflix.dyno.connectionpool.BaseOperation;
+import com.netflix.dyno.connectionpool.Host;
+import com.netflix.dyno.connectionpool.RequestTracerConfig;
+import com.netflix.dyno.connectionpool.impl.utils.Sampler;
+
+/**
+ * Captures the details of individual operations, so that slow keys and hot keys can be tracked down. 
+ * 
+ * A random sample of all operations (see {@link RequestTracerConfig#getSamplingRatio()}) is kept in one log, and all 
+ * operations slower than {@link RequestTracerConfig#getSlowOperationThresholdMicros()} are kept in a separate slow op log. 
+ * Each log is a fixed size ring buffer where the newest trace overwrites the oldest one. Writers only contend on an 
+ * AtomicLong for the next slot, and only when the operation is actually traced.
+ * 
+ * The {@link ConnectionPoolImpl} only has a tracer when it is configured, hence there is no overhead when tracing is disabled.
+ * 
+ * @author poberai
+ *
+ */
+public class RequestTracer {
+
+	private final int samplingRatio;
+	private final long slowThresholdNanos;
+	
+	private final TraceLog sampledLog;
+	private final TraceLog slowLog;
+	
+	public RequestTracer(RequestTracerConfig config) {
+		this.samplingRatio = config.getSamplingRatio();
+		this.slowThresholdNanos = TimeUnit.MICROSECONDS.toNanos(config.getSlowOperationThresholdMicros());
+		this.sampledLog = new TraceLog(config.getBufferSize());
+		this.slowLog = new TraceLog(config.getBufferSize());
+	}
+	
+	/**
+	 * Trace the operation if it is slow or if it is sampled
+	 * 
+	 * @param op
+	 * @param host the host that served the (last attempt of the) operation, can be null
+	 * @param attempts
+	 * @param borrowNanos time spent selecting the host and borrowing the connection for the last attempt
+	 * @param executeNanos time spent executing the last attempt
+	 * @param totalNanos total time for the operation, including all attempts
+	 * @param error the reason the operation failed, or null if it succeeded
+	 */
+	public void trace(BaseOperation<?, ?> op, Host host, int attempts, long borrowNanos, long executeNanos, long totalNanos, Exception error) {
+		
+		boolean slow = slowThresholdNanos > 0 && totalNanos >= slowThresholdNanos;
+		boolean sampled = Sampler.sample(samplingRatio);
+		
+		if (!slow && !sampled) {
+			return;
+		}
+		
+		Trace trace = new Trace(System.currentTimeMillis(), op.getName(), op.getKey(), host, attempts, 
+				borrowNanos, executeNanos, totalNanos, error != null ? error.getClass().getSimpleName() : null);
+		if (slow) {
+			slowLog.add(trace);
+		} 
+		if (sampled) {
+			sampledLog.add(trace);
+		}
+	}
+	
+	/**
+	 * @return the sampled traces, newest first
+	 */
+	public List<Trace> getSampledTraces() {
+		return sampledLog.getTraces();
+	}
+	
+	/**
+	 * @return the traces of the slow operations, newest first
+	 */
+	public List<Trace> getSlowTraces() {
+		return slowLog.getTraces();
+	}
+	
+	private static class TraceLog {
+		
+		private final AtomicReferenceArray<Trace> buffer;
+		private final AtomicLong nextSlot = new AtomicLong(0L);
+		private final int mask;
+		
+		private TraceLog(int size) {
+			int n = 1;
+			while (n < size) {
+				n <<= 1;
+			}
+			mask = n - 1;
+			buffer = new AtomicReferenceArray<Trace>(n);
+		}
+		
+		private void add(Trace trace) {
+			buffer.set((int) (nextSlot.getAndIncrement() & mask), trace);
+		}
+		
+		private List<Trace> getTraces() {
+			List<Trace> traces = new ArrayList<Trace>();
+			long last = nextSlot.get() - 1;
+			for (int i=0; i<buffer.length() && last - i >= 0; i++) {
+				Trace trace = buffer.get((int) ((last - i) & mask));
+				if (trace != null) {
+					traces.add(trace);
+				}
+			}
+			return traces;
+		}
+	}
+	
+	/**
+	 * Immutable details of a single traced operation
+	 */
+	public static class Trace {
+		
+		private final long timestamp;
+		private final String opName;
+		private final int keyHash;
+		private final Host host;
+		private final int attempts;
+		private final long borrowNanos;
+		private final long executeNanos;
+		private final long totalNanos;
+		private final String error;
+		
+		private Trace(long timestamp, String opName, String key, Host host, int attempts, long borrowNanos, long executeNanos, long totalNanos, String error) {
+			this.timestamp = timestamp;
+			this.opName = opName;
+			// only keep a hash of the key, the key itself may be sensitive
+			this.keyHash = (key != null) ? key.hashCode() : 0;
+			this.host = host;
+			this.attempts = attempts;
+			this.borrowNanos = borrowNanos;
+			this.executeNanos = executeNanos;
+			this.totalNanos = totalNanos;
+			this.error = error;
+		}
+
+		public long getTimestamp() {
+			return timestamp;
+		}
+
+		public String getOpName() {
+			return opName;
+		}
+
+		public int getKeyHash() {
+			return keyHash;
+		}
+
+		public Host getHost() {
+			return host;
+		}
+
+		public int getAttempts() {
+			return attempts;
+		}
+
+		public long getBorrowNanos() {
+			return borrowNanos;
+		}
+
+		public long getExecuteNanos() {
+			return executeNanos;
+		}
+
+		public long getTotalNanos() {
+			return totalNanos;
+		}
+
+		public String getError() {
+			return error;
+		}
+		
+		public String toString() {
+			return "Trace [op=" + opName + ", keyHash=" + keyHash + ", host=" + (host != null ? host.getHostName() : null) + 
+					", attempts=" + attempts + ", borrow=" + borrowNanos + ", execute=" + executeNanos + ", total=" + totalNanos + 
+					", error=" + error + "]";
+		}
+	}
+}
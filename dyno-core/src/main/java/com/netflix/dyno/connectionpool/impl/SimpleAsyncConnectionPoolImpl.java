@@ -52,12 +52,12 @@ public class SimpleAsyncConnectionPoolImpl<CL> implements HostConnectionPool<CL>
 			throw new DynoConnectException("Cannot connect to pool when pool is shutdown for host: " + host);
 		}
 
-		long start = System.currentTimeMillis();
+		long start = System.nanoTime();
 		Connection<CL> connection = rrSelector.getNextElement();
 		if (connection == null) {
 			throw new DynoConnectException("Cannot find connection for host: " + host);
 		}
-		cpMonitor.incConnectionBorrowed(host, System.currentTimeMillis() - start);
+		cpMonitor.incConnectionBorrowed(host, System.nanoTime() - start);
 		return connection;
 	}
 
@@ -0,0 +1,432 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.dyno.connectionpool.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.netflix.dyno.connectionpool.ConnectionPoolMonitor;
+import com.netflix.dyno.connectionpool.Host;
+import com.netflix.dyno.connectionpool.HostConnectionPool;
+import com.netflix.dyno.connectionpool.HostConnectionStats;
+import com.netflix.dyno.connectionpool.HostGroup;
+import com.netflix.dyno.connectionpool.RequestPhase;
+import com.netflix.dyno.connectionpool.RequestPhaseMonitor;
+import com.netflix.dyno.connectionpool.exception.BadRequestException;
+import com.netflix.dyno.connectionpool.exception.NoAvailableHostsException;
+import com.netflix.dyno.connectionpool.exception.PoolExhaustedException;
+import com.netflix.dyno.connectionpool.exception.PoolTimeoutException;
+import com.netflix.dyno.connectionpool.exception.TimeoutException;
+import com.netflix.dyno.connectionpool.impl.utils.LatencyRecorder;
+import com.netflix.dyno.connectionpool.impl.utils.LatencyRecorder.Snapshot;
+import com.netflix.dyno.connectionpool.impl.utils.StripedCounter;
+
+/**
+ * Impl of {@link ConnectionPoolMonitor} for hosts with lots of cores.
+ *
+ * {@link CountingConnectionPoolMonitor} bumps AtomicLongs that are shared by all threads on every borrow, return and
+ * operation, and looks up the per host stats in a ConcurrentHashMap for each of these events.
+ * On large machines the cache lines holding these counters end up bouncing between cores constantly.
+ *
+ * This class uses {@link StripedCounter}s instead. The per host stats are looked up in a copy on write map, which is
+ * a plain HashMap that is replaced (never modified) when a host is first seen, hence reads don't touch any shared
+ * state that is written to. The ConcurrentHashMap of host stats is only used to add hosts and for {@link #getHostStats()}
+ *
+ * @author poberai
+ *
+ */
+public class StripedConnectionPoolMonitor implements ConnectionPoolMonitor, RequestPhaseMonitor {
+
+	// per host counters are far more numerous, hence use fewer stripes for them
+	private static final int HOST_STRIPES = Math.min(Runtime.getRuntime().availableProcessors(), 8);
+	private static final int PHASE_STRIPES = HOST_STRIPES;
+
+	// Tracking operation level metrics
+	private final StripedCounter operationFailureCount  = new StripedCounter();
+	private final StripedCounter operationSuccessCount  = new StripedCounter();
+
+	// Tracking connection counts
+	private final StripedCounter connectionCreateCount  = new StripedCounter();
+	private final StripedCounter connectionClosedCount  = new StripedCounter();
+	private final StripedCounter connectionCreateFailureCount = new StripedCounter();
+	private final StripedCounter connectionBorrowCount  = new StripedCounter();
+	private final StripedCounter connectionReturnCount  = new StripedCounter();
+	private final StripedCounter operationFailoverCount = new StripedCounter();
+
+	// tracking host activity
+	private final StripedCounter hostAddedCount         = new StripedCounter();
+	private final StripedCounter hostDownCount          = new StripedCounter();
+	private final StripedCounter hostReactivatedCount   = new StripedCounter();
+
+	private final StripedCounter poolExhastedCount      = new StripedCounter();
+	private final StripedCounter operationTimeoutCount  = new StripedCounter();
+	private final StripedCounter socketTimeoutCount     = new StripedCounter();
+	private final StripedCounter noHostsCount           = new StripedCounter();
+	private final StripedCounter unknownErrorCount      = new StripedCounter();
+	private final StripedCounter badRequestCount        = new StripedCounter();
+
+	// Tracking the time spent in each phase of a request. Every request records into these, hence they are striped.
+	private final LatencyRecorder[] phaseLatencies = new LatencyRecorder[RequestPhase.values().length];
+
+	private final ConcurrentHashMap<Host, HostConnectionStats> hostStats = new ConcurrentHashMap<Host, HostConnectionStats>();
+
+	// copy on write view of the host stats. Hosts are added rarely.
+	private volatile Map<Host, HostConnectionStatsImpl> hostStatsView = new HashMap<Host, HostConnectionStatsImpl>();
+
+	public StripedConnectionPoolMonitor() {
+		for (int i=0; i<phaseLatencies.length; i++) {
+			phaseLatencies[i] = new LatencyRecorder(LatencyRecorder.DEFAULT_HIGHEST_TRACKABLE_VALUE, LatencyRecorder.DEFAULT_INTERVAL_MILLIS, PHASE_STRIPES);
+		}
+	}
+
+	private void trackError(Host host, Exception reason) {
+		if (reason != null) {
+			if (reason instanceof PoolTimeoutException) {
+				this.poolExhastedCount.increment();
+			} else if (reason instanceof PoolExhaustedException) {
+				this.poolExhastedCount.increment();
+			} else if (reason instanceof TimeoutException) {
+				this.socketTimeoutCount.increment();
+			} else if (reason instanceof BadRequestException) {
+				this.badRequestCount.increment();
+			} else if (reason instanceof NoAvailableHostsException ) {
+				this.noHostsCount.increment();
+			} else {
+				this.unknownErrorCount.increment();
+			}
+		} else {
+			this.unknownErrorCount.increment();
+		}
+
+		if (host != null) {
+			getHostStatsImpl(host).opFailure.increment();
+		}
+	}
+
+	@Override
+	public void incOperationFailure(Host host, Exception reason) {
+		this.operationFailureCount.increment();
+		trackError(host, reason);
+	}
+
+	public long getOperationFailureCount() {
+		return this.operationFailureCount.get();
+	}
+
+	@Override
+	public void incOperationSuccess(Host host, long latency) {
+		this.operationSuccessCount.increment();
+		HostConnectionStatsImpl hStats = getHostStatsImpl(host);
+		hStats.opSuccess.increment();
+		hStats.latencies.recordLatency(latency, TimeUnit.NANOSECONDS);
+	}
+
+	public long getOperationSuccessCount() {
+		return this.operationSuccessCount.get();
+	}
+
+	@Override
+	public void incConnectionCreated(Host host) {
+		this.connectionCreateCount.increment();
+		getHostStatsImpl(host).created.increment();
+	}
+
+	public long getConnectionCreatedCount() {
+		return this.connectionCreateCount.get();
+	}
+
+	@Override
+	public void incConnectionClosed(Host host, Exception reason) {
+		this.connectionClosedCount.increment();
+		getHostStatsImpl(host).closed.increment();
+	}
+
+	public long getConnectionClosedCount() {
+		return this.connectionClosedCount.get();
+	}
+
+	@Override
+	public void incConnectionCreateFailed(Host host, Exception reason) {
+		this.connectionCreateFailureCount.increment();
+		getHostStatsImpl(host).createFailed.increment();
+	}
+
+	public long getConnectionCreateFailedCount() {
+		return this.connectionCreateFailureCount.get();
+	}
+
+	@Override
+	public void incConnectionBorrowed(Host host, long delay) {
+		this.connectionBorrowCount.increment();
+		phaseLatencies[RequestPhase.BORROW.ordinal()].recordLatency(delay, TimeUnit.NANOSECONDS);
+		if (host == null || (host instanceof HostGroup)) {
+			return;
+		}
+		getHostStatsImpl(host).borrowed.increment();
+	}
+
+	public long getConnectionBorrowedCount() {
+		return this.connectionBorrowCount.get();
+	}
+
+	@Override
+	public void incConnectionReturned(Host host) {
+		this.connectionReturnCount.increment();
+		if (host == null || (host instanceof HostGroup)) {
+			return;
+		}
+		getHostStatsImpl(host).returned.increment();
+	}
+
+	public long getConnectionReturnedCount() {
+		return this.connectionReturnCount.get();
+	}
+
+	@Override
+	public void recordPhaseLatency(RequestPhase phase, long latency) {
+		phaseLatencies[phase.ordinal()].recordLatency(latency, TimeUnit.NANOSECONDS);
+	}
+
+	@Override
+	public Snapshot getPhaseLatencies(RequestPhase phase) {
+		return phaseLatencies[phase.ordinal()].getIntervalSnapshot();
+	}
+
+	protected LatencyRecorder getPhaseLatencyRecorder(RequestPhase phase) {
+		return phaseLatencies[phase.ordinal()];
+	}
+
+	public long getPoolExhaustedTimeoutCount() {
+		return this.poolExhastedCount.get();
+	}
+
+	@Override
+	public long getSocketTimeoutCount() {
+		return this.socketTimeoutCount.get();
+	}
+
+	public long getOperationTimeoutCount() {
+		return this.operationTimeoutCount.get();
+	}
+
+	@Override
+	public void incFailover(Host host, Exception reason) {
+		this.operationFailoverCount.increment();
+	}
+
+	@Override
+	public long getFailoverCount() {
+		return this.operationFailoverCount.get();
+	}
+
+	@Override
+	public long getHostDownCount() {
+		return this.hostDownCount.get();
+	}
+
+	@Override
+	public long getNoHostCount() {
+		return this.noHostsCount.get();
+	}
+
+	@Override
+	public long getUnknownErrorCount() {
+		return this.unknownErrorCount.get();
+	}
+
+	@Override
+	public long getBadRequestCount() {
+		return this.badRequestCount.get();
+	}
+
+	public long getNumBusyConnections() {
+		return this.connectionBorrowCount.get() - this.connectionReturnCount.get();
+	}
+
+	public long getNumOpenConnections() {
+		return this.connectionCreateCount.get() - this.connectionClosedCount.get();
+	}
+
+	@Override
+	public long getHostCount() {
+		return hostStats.keySet().size();
+	}
+
+	public String toString() {
+		// Build the complete status string
+		return new StringBuilder()
+				.append("StripedConnectionPoolMonitor(")
+				.append("Connections[" )
+					.append( "open="       ).append(getNumOpenConnections())
+					.append(",busy="       ).append(getNumBusyConnections())
+					.append(",create="     ).append(connectionCreateCount.get())
+					.append(",close="      ).append(connectionClosedCount.get())
+					.append(",failed="     ).append(connectionCreateFailureCount.get())
+					.append(",borrow="     ).append(connectionBorrowCount.get())
+					.append(",return="     ).append(connectionReturnCount.get())
+				.append("], Operations[")
+					.append( "success="    ).append(operationSuccessCount.get())
+					.append(",failure="    ).append(operationFailureCount.get())
+					.append(",optimeout="  ).append(operationTimeoutCount.get())
+					.append(",timeout="    ).append(socketTimeoutCount.get())
+					.append(",failover="   ).append(operationFailoverCount.get())
+					.append(",nohosts="    ).append(noHostsCount.get())
+					.append(",unknown="    ).append(unknownErrorCount.get())
+					.append(",exhausted="  ).append(poolExhastedCount.get())
+				.append("], Hosts[")
+					.append( "add="        ).append(hostAddedCount.get())
+					.append(",down="       ).append(hostDownCount.get())
+					.append(",reactivate=" ).append(hostReactivatedCount.get())
+				.append("])").toString();
+	}
+
+	@Override
+	public long getHostUpCount() {
+		int count = 0;
+		for (HostConnectionStats stats : hostStats.values()) {
+			count = stats.isHostUp() ? count + 1 : count;
+		}
+		return count;
+	}
+
+	@Override
+	public void hostAdded(Host host, HostConnectionPool<?> pool) {
+		hostAddedCount.increment();
+		getHostStatsImpl(host);
+	}
+
+	@Override
+	public void hostRemoved(Host host) {
+		getHostStatsImpl(host).hostUp.set(false);
+	}
+
+	@Override
+	public void hostDown(Host host, Exception reason) {
+		getHostStatsImpl(host).hostUp.set(false);
+	}
+
+	@Override
+	public void hostUp(Host host, HostConnectionPool<?> pool) {
+		getHostStatsImpl(host).hostUp.set(true);
+	}
+
+	@Override
+	public Map<Host, HostConnectionStats> getHostStats() {
+		return hostStats;
+	}
+
+	public HostConnectionStats getOrCreateHostStats(Host host) {
+		return getHostStatsImpl(host);
+	}
+
+	private HostConnectionStatsImpl getHostStatsImpl(Host host) {
+		HostConnectionStatsImpl hStats = hostStatsView.get(host);
+		return (hStats != null) ? hStats : addHost(host);
+	}
+
+	private synchronized HostConnectionStatsImpl addHost(Host host) {
+
+		HostConnectionStatsImpl hStats = hostStatsView.get(host);
+		if (hStats == null) {
+			hStats = new HostConnectionStatsImpl(host);
+
+			Map<Host, HostConnectionStatsImpl> newView = new HashMap<Host, HostConnectionStatsImpl>(hostStatsView);
+			newView.put(host, hStats);
+
+			hostStats.put(host, hStats);
+			hostStatsView = newView;
+		}
+		return hStats;
+	}
+
+	private class HostConnectionStatsImpl implements HostConnectionStats {
+
+		private final AtomicBoolean hostUp = new AtomicBoolean(true);
+		private final Host host;
+
+		private final StripedCounter opFailure  = new StripedCounter(HOST_STRIPES);
+		private final StripedCounter opSuccess  = new StripedCounter(HOST_STRIPES);
+		private final StripedCounter created  = new StripedCounter(HOST_STRIPES);
+		private final StripedCounter closed  = new StripedCounter(HOST_STRIPES);
+		private final StripedCounter createFailed = new StripedCounter(HOST_STRIPES);
+		private final StripedCounter borrowed  = new StripedCounter(HOST_STRIPES);
+		private final StripedCounter returned  = new StripedCounter(HOST_STRIPES);
+		private final LatencyRecorder latencies = new LatencyRecorder();
+
+		private HostConnectionStatsImpl(Host host) {
+			this.host = host;
+		}
+
+		@Override
+		public boolean isHostUp() {
+			return hostUp.get();
+		}
+
+		@Override
+		public long getConnectionsBorrowed() {
+			return borrowed.get();
+		}
+
+		@Override
+		public long getConnectionsReturned() {
+			return returned.get();
+		}
+
+		@Override
+		public long getConnectionsCreated() {
+			return created.get();
+		}
+
+		@Override
+		public long getConnectionsClosed() {
+			return closed.get();
+		}
+
+		@Override
+		public long getConnectionsCreateFailed() {
+			return createFailed.get();
+		}
+
+		@Override
+		public long getOperationSuccessCount() {
+			return opSuccess.get();
+		}
+
+		@Override
+		public long getOperationErrorCount() {
+			return opFailure.get();
+		}
+
+		@Override
+		public Snapshot getOperationLatencies() {
+			return latencies.getIntervalSnapshot();
+		}
+
+		public String toString() {
+			return host.getHostName() + " isUp: " + hostUp.get() +
+					", borrowed: " + borrowed.get() +
+					", returned: " + returned.get() +
+					", created: " + created.get() +
+					", closed: " + closed.get() +
+					", createFailed: " + createFailed.get() +
+					", success: " + opSuccess.get() +
+					", error: " + opFailure.get();
+		}
+	}
+}
@@ -16,30 +16,45 @@
 package com.netflix.dyno.connectionpool.impl.hash;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicReference;
 
 import com.netflix.dyno.connectionpool.HashPartitioner;
 import com.netflix.dyno.connectionpool.Host;
 import com.netflix.dyno.connectionpool.exception.NoAvailableHostsException;
 import com.netflix.dyno.connectionpool.impl.lb.HostToken;
+import com.netflix.dyno.connectionpool.impl.lb.TokenRange;
 
 /**
  * Impl of {@link HashPartitioner} that can be used to keys to the dynomite topology ring using the binary search mechanism. 
  * Note that the class only performs the function of binary search to locate a hash token on the dynomite topology ring. 
  * The hash token to be generated from the key is generated using the HashPartitioner provided to this class. 
+ * 
+ * A host can own multiple tokens (vnodes). The ring is kept as a sorted array of primitive tokens along with the owner 
+ * of each token at the same index, i.e the same mapping as {@link DynoBinarySearch} but without a range object and a 
+ * boxed token per entry. A lookup is a binary search over a single contiguous long[], which stays cache friendly with 
+ * many thousands of tokens. The ring is immutable and swapped in as a whole on every change. 
+ * 
+ * The ring can also be queried by range of hashes, see {@link #getTokenOwners(long, long)} and {@link #splitRing(int)}. 
  *  
  * @author poberai
  *
  */
 public class BinarySearchTokenMapper implements HashPartitioner {
 
+	// the hashes and tokens are unsigned 32 bit ints
+	public static final long MAX_TOKEN = 0xffffffffL;
+
 	private final HashPartitioner partitioner; 
 	
-	private final AtomicReference<DynoBinarySearch<Long>> binarySearch = new AtomicReference<DynoBinarySearch<Long>>(null); 
+	private volatile TokenRing ring = new TokenRing(new long[0], new HostToken[0]); 
 	private final ConcurrentHashMap<Long, HostToken> tokenMap = new ConcurrentHashMap<Long, HostToken>(); 
 	
 	public BinarySearchTokenMapper(HashPartitioner p) {
@@ -63,14 +78,36 @@ public class BinarySearchTokenMapper implements HashPartitioner {
 
 	@Override
 	public HostToken getToken(Long keyHash) {
-		Long token = binarySearch.get().getTokenOwner(keyHash);
-		if (token == null) {
+		HostToken hostToken = ring.getTokenOwner(keyHash);
+		if (hostToken == null) {
 			throw new NoAvailableHostsException("Token not found for key hash: " + keyHash);
 		}
-		return tokenMap.get(token);
+		return hostToken;
+	}
+
+	/**
+	 * @param start
+	 * @param end
+	 * @return the tokens that own any of the hashes from start to end (both inclusive) in ring order, without duplicates. 
+	 * The range wraps around the top of the ring when start is greater than end. 
+	 */
+	public List<HostToken> getTokenOwners(long start, long end) {
+		return ring.getTokenOwners(start, end);
+	}
+
+	/**
+	 * Split the ring into sub ranges that are each owned by a single token, e.g for range partitioned scans. 
+	 * The range of every token is split into a number of parts proportional to its width, with at least one part per token. 
+	 * Hence this returns numRanges ranges when there are fewer tokens than that, and one range per token otherwise. 
+	 * 
+	 * @param numRanges
+	 * @return the ranges in ring order, starting with the range of the lowest token
+	 */
+	public List<TokenRange> splitRing(int numRanges) {
+		return ring.split(numRanges);
 	}
 
-	public void initSearchMecahnism(Collection<HostToken> hostTokens) {
+	public synchronized void initSearchMecahnism(Collection<HostToken> hostTokens) {
 
 		for (HostToken hostToken : hostTokens) {
 			tokenMap.put(hostToken.getToken(), hostToken);
@@ -78,7 +115,7 @@ public class BinarySearchTokenMapper implements HashPartitioner {
 		initBinarySearch();
 	}
 	
-	public void addHostToken(HostToken hostToken) {
+	public synchronized void addHostToken(HostToken hostToken) {
 
 		HostToken prevToken = tokenMap.putIfAbsent(hostToken.getToken(), hostToken);
 		if (prevToken == null) {
@@ -87,40 +124,200 @@ public class BinarySearchTokenMapper implements HashPartitioner {
 	}
 	
 	public void remoteHostToken(HostToken hostToken) {
-
-		HostToken prevToken = tokenMap.remove(hostToken.getToken());
-		if (prevToken != null) {
+		updateHostTokens(Collections.<HostToken>emptyList(), Collections.singletonList(hostToken));
+	}
+	
+	/**
+	 * Add and remove a batch of tokens, with a single rebuild of the ring. 
+	 * 
+	 * @param added
+	 * @param removed
+	 */
+	public synchronized void updateHostTokens(Collection<HostToken> added, Collection<HostToken> removed) {
+		
+		boolean changed = false;
+		Set<Long> addedTokens = new HashSet<Long>();
+		for (HostToken hostToken : added) {
+			HostToken prev = tokenMap.put(hostToken.getToken(), hostToken);
+			changed |= (prev == null || !prev.equals(hostToken));
+			addedTokens.add(hostToken.getToken());
+		}
+		
+		// a token that is removed and added in the same batch just moves to the new host
+		for (HostToken hostToken : removed) {
+			if (!addedTokens.contains(hostToken.getToken())) {
+				changed |= (tokenMap.remove(hostToken.getToken()) != null);
+			}
+		}
+		
+		if (changed) {
 			initBinarySearch();
 		}
 	}
 	
-	public void removeHost(Host host) {
-		
-		HostToken theToken = null;
+	/**
+	 * Remove all the tokens owned by the host
+	 * @param host
+	 */
+	public synchronized void removeHost(Host host) {
 		
+		List<HostToken> hostTokens = new ArrayList<HostToken>();
 		for (HostToken token : tokenMap.values()) {
 			if (token.getHost().getHostName().equals(host.getHostName())) {
-				theToken = token;
-				break;
+				hostTokens.add(token);
 			}
 		}
 		
-		if (theToken != null) {
-			remoteHostToken(theToken);
+		if (!hostTokens.isEmpty()) {
+			updateHostTokens(Collections.<HostToken>emptyList(), hostTokens);
 		}
 	}
 
 	private void initBinarySearch() {
-		List<Long> tokens = new ArrayList<Long>(tokenMap.keySet());
-		Collections.sort(tokens);
-		binarySearch.set(new DynoBinarySearch<Long>(tokens));
+		
+		List<HostToken> hostTokens = new ArrayList<HostToken>(tokenMap.values());
+		Collections.sort(hostTokens, new Comparator<HostToken>() {
+
+			@Override
+			public int compare(HostToken o1, HostToken o2) {
+				return o1.compareTo(o2);
+			}
+		});
+		
+		long[] tokens = new long[hostTokens.size()];
+		HostToken[] owners = new HostToken[hostTokens.size()];
+		for (int i=0; i<tokens.length; i++) {
+			owners[i] = hostTokens.get(i);
+			tokens[i] = owners[i].getToken();
+		}
+		ring = new TokenRing(tokens, owners);
 	}
 
 	public boolean isEmpty() {
 		return this.tokenMap.size() == 0;
 	}
 	
+	/**
+	 * @return the number of tokens on the ring
+	 */
+	public int size() {
+		return ring.tokens.length;
+	}
+	
 	public String toString() {
-		return binarySearch.toString();
+		return ring.toString();
+	}
+	
+	/**
+	 * Immutable sorted ring of tokens. The mapping is the same as {@link DynoBinarySearch}, i.e a hash maps to the first 
+	 * token that is greater than or equal to it, and hashes past the last token wrap around to the first token. 
+	 */
+	private static class TokenRing {
+		
+		private final long[] tokens;
+		private final HostToken[] owners;
+		
+		private TokenRing(long[] tokens, HostToken[] owners) {
+			this.tokens = tokens;
+			this.owners = owners;
+		}
+		
+		private HostToken getTokenOwner(long keyHash) {
+			
+			if (tokens.length == 0) {
+				return null;
+			}
+			
+			int index = Arrays.binarySearch(tokens, keyHash);
+			if (index < 0) {
+				// the insertion point is the first token greater than the hash
+				index = -index - 1;
+				if (index == tokens.length) {
+					index = 0;
+				}
+			}
+			return owners[index];
+		}
+		
+		private List<HostToken> getTokenOwners(long start, long end) {
+			
+			Set<HostToken> result = new LinkedHashSet<HostToken>();
+			if (tokens.length == 0) {
+				return new ArrayList<HostToken>(result);
+			}
+			
+			if (start <= end) {
+				addTokenOwners(start, end, result);
+			} else {
+				addTokenOwners(start, MAX_TOKEN, result);
+				addTokenOwners(0L, end, result);
+			}
+			return new ArrayList<HostToken>(result);
+		}
+		
+		private void addTokenOwners(long start, long end, Set<HostToken> result) {
+			
+			int first = lowerBound(start);
+			int last = lowerBound(end);
+			for (int i=first; i<=last && i<tokens.length; i++) {
+				result.add(owners[i]);
+			}
+			if (last == tokens.length) {
+				// the hashes past the last token belong to the first token
+				result.add(owners[0]);
+			}
+		}
+		
+		/**
+		 * @return the index of the first token that is greater than or equal to the hash, or the number of tokens if none
+		 */
+		private int lowerBound(long keyHash) {
+			int index = Arrays.binarySearch(tokens, keyHash);
+			return (index < 0) ? -index - 1 : index;
+		}
+		
+		private List<TokenRange> split(int numRanges) {
+			
+			List<TokenRange> ranges = new ArrayList<TokenRange>();
+			int numTokens = tokens.length;
+			if (numTokens == 0) {
+				return ranges;
+			}
+			
+			long ringSize = MAX_TOKEN + 1;
+			int extraRanges = Math.max(0, numRanges - numTokens);
+			
+			long covered = 0L;
+			for (int i=0; i<numTokens; i++) {
+				
+				// the range of a token starts right after the previous token, the first token wraps around to the last one
+				long prev = (i > 0) ? tokens[i-1] : tokens[numTokens-1];
+				long width = (numTokens == 1) ? ringSize : (tokens[i] - prev + ringSize) % ringSize;
+				long start = (prev + 1) % ringSize;
+				
+				// spread the extra ranges by cumulative width, so that the parts add up to exactly numRanges
+				long parts = 1 + Math.round((double) (covered + width) * extraRanges / ringSize) 
+							   - Math.round((double) covered * extraRanges / ringSize);
+				parts = Math.min(parts, width);
+				covered += width;
+				
+				for (long k=0; k<parts; k++) {
+					long partStart = (start + k * width / parts) % ringSize;
+					long partEnd = (start + (k + 1) * width / parts - 1) % ringSize;
+					ranges.add(new TokenRange(partStart, partEnd, owners[i]));
+				}
+			}
+			return ranges;
+		}
+		
+		public String toString() {
+			
+			StringBuilder sb = new StringBuilder("[TokenRing:\n");
+			for (int i=0; i<tokens.length; i++) {
+				sb.append(tokens[i]).append(" -> ").append(owners[i].getHost().getHostName()).append("\n");
+			}
+			sb.append("]");
+			return sb.toString();
+		}
 	}
 }
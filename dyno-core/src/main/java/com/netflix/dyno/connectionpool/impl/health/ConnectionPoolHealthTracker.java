@@ -28,6 +28,7 @@ import com.netflix.dyno.connectionpool.ConnectionPoolConfiguration;
 import com.netflix.dyno.connectionpool.Host;
 import com.netflix.dyno.connectionpool.Host.Status;
 import com.netflix.dyno.connectionpool.HostConnectionPool;
+import com.netflix.dyno.connectionpool.LatencyOutlierConfig;
 import com.netflix.dyno.connectionpool.exception.DynoException;
 import com.netflix.dyno.connectionpool.exception.FatalConnectionException;
 import com.netflix.dyno.connectionpool.exception.TimeoutException;
@@ -42,6 +43,10 @@ import com.netflix.dyno.connectionpool.exception.TimeoutException;
  * i.e before borrowing a connection check for isActive(). If not active, then use a fallback pool else throw an ex to the caller. 
  * Resume executing operations against the pool only once the pool becomes active. 
  * 
+ * Since timeouts are not tracked as errors, a host that is alive but very slow is never recycled here. 
+ * For that this class can optionally feed per host latencies to a {@link LatencyOutlierDetector} 
+ * that temporarily ejects slow hosts. See {@link ConnectionPoolConfiguration#getLatencyOutlierConfig()}
+ * 
  * @author poberai
  *
  * @param <CL>
@@ -58,6 +63,9 @@ public class ConnectionPoolHealthTracker<CL> {
 	private final ConcurrentHashMap<Host, HostConnectionPool<CL>> pingingPools = new ConcurrentHashMap<Host, HostConnectionPool<CL>>();
 
 	private final AtomicBoolean startedPing = new AtomicBoolean(false);
+
+	// null when latency based ejection is not configured
+	private final LatencyOutlierDetector latencyOutlierDetector;
 	
 	private static final Integer DEFAULT_SLEEP_MILLIS = 10*1000; 
 	private static final Integer DEFAULT_POOL_RECONNECT_WAIT_MILLIS = 5*1000; 
@@ -73,6 +81,9 @@ public class ConnectionPoolHealthTracker<CL> {
 		threadPool = thPool;
 		SleepMillis = sleepMillis;
 		PoolReconnectWaitMillis = poolReconnectWaitMillis;
+		
+		LatencyOutlierConfig outlierConfig = config.getLatencyOutlierConfig();
+		latencyOutlierDetector = (outlierConfig != null) ? new LatencyOutlierDetector(outlierConfig) : null;
 	}
 
 
@@ -82,6 +93,9 @@ public class ConnectionPoolHealthTracker<CL> {
 			Logger.info("Health tracker marking host as down " + host);
 			destPool.getHost().setStatus(Status.Down);
 		}
+		if (latencyOutlierDetector != null) {
+			latencyOutlierDetector.removeHost(host);
+		}
 	}
 
 	public void start() {
@@ -134,6 +148,29 @@ public class ConnectionPoolHealthTracker<CL> {
 			}
 			
 		}, 1000, SleepMillis, TimeUnit.MILLISECONDS);
+		
+		if (latencyOutlierDetector != null) {
+			
+			int checkFrequency = cpConfiguration.getLatencyOutlierConfig().getCheckFrequencySeconds();
+			
+			threadPool.scheduleWithFixedDelay(new Runnable() {
+
+				@Override
+				public void run() {
+					
+					if(stop.get() || Thread.currentThread().isInterrupted()) {
+						return;
+					}
+					
+					try {
+						latencyOutlierDetector.checkForOutliers();
+					} catch (Exception e) {
+						Logger.warn("Failed to check for latency outliers " + e.getMessage());
+					}
+				}
+				
+			}, checkFrequency, checkFrequency, TimeUnit.SECONDS);
+		}
 	}
 	
 	public void stop() {
@@ -171,6 +208,17 @@ public class ConnectionPoolHealthTracker<CL> {
 		}
 	}
 	
+	public void trackConnectionLatency(HostConnectionPool<CL> hostPool, long duration, TimeUnit unit) {
+		
+		if (latencyOutlierDetector != null) {
+			latencyOutlierDetector.trackLatency(hostPool.getHost(), duration, unit);
+		}
+	}
+	
+	public LatencyOutlierDetector getLatencyOutlierDetector() {
+		return latencyOutlierDetector;
+	}
+	
 	public void reconnectPool(HostConnectionPool<CL> hostPool) {
 		Host host = hostPool.getHost();
 		Logger.error("Enqueueing host cp for recycling due to too many errors: " + hostPool);
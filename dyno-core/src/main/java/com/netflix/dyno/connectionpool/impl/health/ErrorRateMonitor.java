@@ -17,9 +17,8 @@ package com.netflix.dyno.connectionpool.impl.health;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.atomic.AtomicReference;
 
 import com.netflix.dyno.connectionpool.ErrorRateMonitorConfig;
 import com.netflix.dyno.connectionpool.ErrorRateMonitorConfig.ErrorThreshold;
@@ -27,9 +26,13 @@ import com.netflix.dyno.connectionpool.impl.health.RateTracker.Bucket;
 
 /**
  * Class that can be used to track the error rates for {@link ConnectionPoolHealthTracker}
- * It makes use of {@link RateTracker} to track the error rates and then periodically applies the 
+ * It makes use of {@link RingBufferRateTracker} to track the error rates and then periodically applies the 
  * {@link ErrorRateMonitorConfig} to apply error rate check policies to determine error threshold violations.
  * 
+ * Note that this class is on the hot path during error storms, hence the check path does not allocate. 
+ * Only one thread at a time evaluates the policies, and it does so on a reusable primitive snapshot of the window. 
+ * All other threads just track the error and move on. 
+ * 
  * @author poberai
  *
  */
@@ -39,15 +42,18 @@ public class ErrorRateMonitor {
 	private final AtomicLong lastCheckTimestamp = new AtomicLong(0L);
 	private final AtomicLong suppressCheckTimestamp = new AtomicLong(0L);
 	
-	private final AtomicReference<String> errorCheckLock = new AtomicReference<String>(null);
+	// guards the evaluation of the policies, and hence the window snapshot below
+	private final AtomicBoolean evaluating = new AtomicBoolean(false);
 	
 	private final long errorCheckFrequencySeconds; 
-	private final RateTracker rateTracker;
+	private final RingBufferRateTracker rateTracker;
+	private final int[] windowSnapshot;
 	private final int suppressErrorWindow;
 
 	public ErrorRateMonitor(int windowSize, int checkFrequency, int suppressWindow) {
 		
-		this.rateTracker = new RateTracker(windowSize);
+		this.rateTracker = new RingBufferRateTracker(windowSize);
+		this.windowSnapshot = new int[windowSize];
 		this.errorCheckFrequencySeconds = checkFrequency;
 		this.lastCheckTimestamp.set(System.currentTimeMillis()/1000);
 		this.suppressErrorWindow = suppressWindow;
@@ -78,18 +84,26 @@ public class ErrorRateMonitor {
 				return true; 
 			}
 
-			String expected = errorCheckLock.get();
-			boolean casWon = errorCheckLock.compareAndSet(expected, UUID.randomUUID().toString());
+			if (!evaluating.compareAndSet(false, true)) {
+				// some other thread is already checking
+				return true;
+			}
 			
-			if (casWon) {
+			try {
+				if ((timestamp - lastCheckTimestamp.get()) < errorCheckFrequencySeconds) {
+					// some other thread just finished checking
+					return true;
+				}
+				
 				// record that we checked
 				lastCheckTimestamp.set(timestamp);
 				
+				rateTracker.snapshot(windowSnapshot);
+				
 				boolean failure = false;
-				List<Bucket> buckets = rateTracker.getAllBuckets();
 				
 				for (ErrorCheckPolicy policy : policies) {
-					failure = policy.checkErrorRate(buckets);
+					failure = policy.checkErrorRate(windowSnapshot);
 					if (failure) {
 						break;
 					}
@@ -100,6 +114,9 @@ public class ErrorRateMonitor {
 					suppressCheckTimestamp.set(timestamp);
 				}
 				return !failure;
+				
+			} finally {
+				evaluating.set(false);
 			}
 		}
 		
@@ -108,7 +125,12 @@ public class ErrorRateMonitor {
 	
 	public interface ErrorCheckPolicy {
 		
-		public boolean checkErrorRate(List<Bucket> buckets);
+		/**
+		 * @param window the counts for each second in the window, with the current second first. 
+		 * Note that the array is reused across checks, hence impls must not hold on to it.
+		 * @return true if the error rate is over the threshold
+		 */
+		public boolean checkErrorRate(int[] window);
 	}
 	
 	public static class SimpleErrorCheckPolicy implements ErrorCheckPolicy {
@@ -127,14 +149,27 @@ public class ErrorRateMonitor {
 			this(threshold.getThresholdPerSecond(), threshold.getWindowSeconds(), threshold.getWindowCoveragePercentage());
 		}
 		
-		@Override
+		/**
+		 * @deprecated the monitor only checks the primitive window, use {@link #checkErrorRate(int[])}
+		 */
+		@Deprecated
 		public boolean checkErrorRate(List<Bucket> buckets) {
 			
+			int[] window = new int[buckets.size()];
+			for (int i=0; i<window.length; i++) {
+				window[i] = buckets.get(i).count();
+			}
+			return checkErrorRate(window);
+		}
+		
+		@Override
+		public boolean checkErrorRate(int[] window) {
+			
 			int minViolationBucketThreshold = (windowSize * bucketCoveragePercentage)/100;
 			
 			int numBucketsOverThreshold = 0;
-			for (Bucket b : buckets) {
-				if (b.count() >= perBucketThreshold) {
+			for (int count : window) {
+				if (count >= perBucketThreshold) {
 					numBucketsOverThreshold++;
 				}
 			}
@@ -144,7 +179,7 @@ public class ErrorRateMonitor {
 	}
 	
 	// used for unit tests
-	RateTracker getRateTracker() {
+	RingBufferRateTracker getRateTracker() {
 		return rateTracker;
 	}
 }
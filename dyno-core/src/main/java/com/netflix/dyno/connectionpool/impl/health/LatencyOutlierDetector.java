@@ -0,0 +1,268 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.dyno.connectionpool.impl.health;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.netflix.dyno.connectionpool.Host;
+import com.netflix.dyno.connectionpool.LatencyOutlierConfig;
+import com.netflix.dyno.connectionpool.impl.lb.HostSelectionWithFallback;
+import com.netflix.dyno.connectionpool.impl.utils.LatencyRecorder;
+import com.netflix.dyno.connectionpool.impl.utils.LatencyRecorder.Snapshot;
+
+/**
+ * Class that detects hosts that are alive but are much slower than their peers.
+ * {@link ConnectionPoolHealthTracker} only recycles pools based on connection errors, and explicitly ignores timeouts.
+ * Hence a host that is 10x slower than the rest of the ring is never taken out of rotation.
+ *
+ * This class records the latencies for each host, including the time spent on failed and timed out attempts, and then periodically compares the p99 for each host against
+ * the median p99 of the other hosts in the same rack. Hosts that stray too far from their peers are ejected for
+ * a configured duration, which means that {@link HostSelectionWithFallback} will route requests for those tokens
+ * to a remote rack instead. Once the ejection period ends the host is given traffic again, and will be
+ * ejected again at the next check if it is still slow.
+ *
+ * Note that each check only considers the latencies recorded since the previous check, and that the number of hosts
+ * that can be ejected at any given time is capped by {@link LatencyOutlierConfig#getMaxEjectedHostsPercentage()} of the hosts 
+ * that are up
+ *
+ * @author poberai
+ *
+ */
+public class LatencyOutlierDetector {
+
+	private static final Logger Logger = LoggerFactory.getLogger(LatencyOutlierDetector.class);
+
+	private final LatencyOutlierConfig config;
+
+	// latencies (in micros) recorded for each host since the last check
+	private final ConcurrentHashMap<Host, LatencyRecorder> hostLatencies = new ConcurrentHashMap<Host, LatencyRecorder>();
+	// the set of ejected hosts, along with the time (in millis) until which they stay ejected
+	private final ConcurrentHashMap<Host, Long> ejectedHosts = new ConcurrentHashMap<Host, Long>();
+
+	public LatencyOutlierDetector(LatencyOutlierConfig config) {
+		this.config = config;
+	}
+
+	public void trackLatency(Host host, long duration, TimeUnit unit) {
+
+		LatencyRecorder recorder = hostLatencies.get(host);
+		if (recorder == null) {
+			recorder = new LatencyRecorder();
+			LatencyRecorder prev = hostLatencies.putIfAbsent(host, recorder);
+			if (prev != null) {
+				recorder = prev;
+			}
+		}
+		recorder.recordLatency(duration, unit);
+	}
+
+	public boolean isEjected(Host host) {
+
+		if (ejectedHosts.isEmpty()) {
+			return false;
+		}
+
+		Long ejectedUntil = ejectedHosts.get(host);
+		if (ejectedUntil == null) {
+			return false;
+		}
+
+		if (System.currentTimeMillis() < ejectedUntil) {
+			return true;
+		}
+
+		if (ejectedHosts.remove(host, ejectedUntil)) {
+			Logger.info("Ejection period over for host: " + host);
+		}
+		return false;
+	}
+
+	public Collection<Host> getEjectedHosts() {
+
+		List<Host> hosts = new ArrayList<Host>();
+		for (Host host : ejectedHosts.keySet()) {
+			if (isEjected(host)) {
+				hosts.add(host);
+			}
+		}
+		return hosts;
+	}
+
+	public void removeHost(Host host) {
+		hostLatencies.remove(host);
+		ejectedHosts.remove(host);
+	}
+
+	/**
+	 * Compare the latencies recorded since the last check for each host against it's rack peers
+	 * and eject the worst outliers.
+	 * @return the hosts that were newly ejected by this check
+	 */
+	public Collection<Host> checkForOutliers() {
+
+		// Purge expired ejections first so that they don't count against the cap
+		getEjectedHosts();
+
+		Map<String, Map<Host, Long>> rackLatencies = snapshotRackLatencies();
+
+		List<OutlierCandidate> candidates = new ArrayList<OutlierCandidate>();
+
+		for (Map<Host, Long> hostP99s : rackLatencies.values()) {
+
+			if (hostP99s.size() < 2) {
+				// no peers to compare against
+				continue;
+			}
+
+			for (Host host : hostP99s.keySet()) {
+
+				long p99 = hostP99s.get(host);
+				if (p99 < config.getMinOutlierLatencyMicros()) {
+					continue;
+				}
+
+				long peerMedian = getPeerMedian(host, hostP99s);
+				long threshold = (Math.max(peerMedian, 1) * config.getOutlierThresholdPercentage()) / 100;
+
+				if (p99 > threshold) {
+					candidates.add(new OutlierCandidate(host, p99, peerMedian));
+				}
+			}
+		}
+
+		if (candidates.isEmpty()) {
+			return Collections.emptyList();
+		}
+
+		// Eject the worst offenders first, since we may not be able to eject all of them
+		Collections.sort(candidates, new Comparator<OutlierCandidate>() {
+			@Override
+			public int compare(OutlierCandidate o1, OutlierCandidate o2) {
+				return Double.compare(o2.ratio(), o1.ratio());
+			}
+		});
+
+		int maxEjected = Math.max(1, (getLiveHostCount() * config.getMaxEjectedHostsPercentage()) / 100);
+		long ejectedUntil = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(config.getEjectionSeconds());
+
+		List<Host> newlyEjected = new ArrayList<Host>();
+
+		for (OutlierCandidate candidate : candidates) {
+
+			if (ejectedHosts.containsKey(candidate.host)) {
+				// extend the ejection, the host is still slow
+				ejectedHosts.put(candidate.host, ejectedUntil);
+				continue;
+			}
+
+			if (ejectedHosts.size() >= maxEjected) {
+				Logger.warn("Not ejecting latency outlier: " + candidate + " since " + ejectedHosts.size() + " hosts are already ejected");
+				continue;
+			}
+
+			Logger.warn("Ejecting latency outlier: " + candidate);
+			ejectedHosts.put(candidate.host, ejectedUntil);
+			newlyEjected.add(candidate.host);
+		}
+
+		return newlyEjected;
+	}
+
+	/**
+	 * Removed hosts are purged via {@link #removeHost(Host)}, hosts that are marked down don't count either
+	 */
+	private int getLiveHostCount() {
+		int count = 0;
+		for (Host host : hostLatencies.keySet()) {
+			if (host.isUp()) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private Map<String, Map<Host, Long>> snapshotRackLatencies() {
+
+		Map<String, Map<Host, Long>> rackLatencies = new HashMap<String, Map<Host, Long>>();
+
+		for (Host host : hostLatencies.keySet()) {
+
+			LatencyRecorder recorder = hostLatencies.get(host);
+			if (recorder == null) {
+				continue;
+			}
+
+			// reset the counts so that the next check only sees the latencies for the next interval
+			Snapshot snapshot = recorder.getSnapshot(true);
+			if (snapshot.getCount() < config.getMinSamplesPerCheck()) {
+				continue;
+			}
+
+			Map<Host, Long> hostP99s = rackLatencies.get(host.getRack());
+			if (hostP99s == null) {
+				hostP99s = new HashMap<Host, Long>();
+				rackLatencies.put(host.getRack(), hostP99s);
+			}
+			hostP99s.put(host, snapshot.getPercentile(0.99));
+		}
+
+		return rackLatencies;
+	}
+
+	private long getPeerMedian(Host host, Map<Host, Long> hostP99s) {
+
+		List<Long> peers = new ArrayList<Long>();
+		for (Map.Entry<Host, Long> entry : hostP99s.entrySet()) {
+			if (!entry.getKey().equals(host)) {
+				peers.add(entry.getValue());
+			}
+		}
+		Collections.sort(peers);
+		return peers.get(peers.size()/2);
+	}
+
+	private static class OutlierCandidate {
+
+		private final Host host;
+		private final long p99;
+		private final long peerMedian;
+
+		private OutlierCandidate(Host host, long p99, long peerMedian) {
+			this.host = host;
+			this.p99 = p99;
+			this.peerMedian = peerMedian;
+		}
+
+		private double ratio() {
+			return (double) p99 / Math.max(peerMedian, 1);
+		}
+
+		public String toString() {
+			return host + " p99: " + p99 + " micros, rack peer median p99: " + peerMedian + " micros";
+		}
+	}
+}
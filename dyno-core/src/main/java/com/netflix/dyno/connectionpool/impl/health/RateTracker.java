@@ -34,6 +34,8 @@ import com.netflix.dyno.connectionpool.exception.DynoException;
  * Class that tracks the rate at which events occur over a specified rolling time window (in seconds)
  * This is useful for tracking error rates from {@link ErrorRateMonitor}
  * 
+ * Note that {@link ErrorRateMonitor} now uses the lock free {@link RingBufferRateTracker} instead.
+ * 
  * @author poberai
  *
  */
@@ -214,7 +216,7 @@ public class RateTracker {
 			this(System.currentTimeMillis()/1000); // the current second
 		}
 		
-		private Bucket(long timestamp) {
+		Bucket(long timestamp) {
 			lastTimestamp.set(timestamp); // the current second
 		}
 
@@ -0,0 +1,152 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.dyno.connectionpool.impl.health;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.netflix.dyno.connectionpool.impl.health.RateTracker.Bucket;
+
+/**
+ * Lock free replacement for {@link RateTracker}.
+ *
+ * The rolling window is a fixed {@link AtomicLongArray} ring with one slot per second, indexed by the epoch second.
+ * Each slot packs the second that it belongs to (upper 32 bits) together with the count for that second (lower 32 bits),
+ * hence rolling over to a new second and tracking the count within a second are both a single CAS on the slot.
+ * There are no allocations, locks or waiting when tracking the rate.
+ *
+ * Slots that were not written to in a given second still carry an older second, and are simply read as 0
+ * by {@link #getCount(long)}. Hence there is no need to eagerly clear slots when time moves on.
+ *
+ * @author poberai
+ *
+ */
+public class RingBufferRateTracker {
+
+	private static final long COUNT_MASK = 0xFFFFFFFFL;
+
+	private final int windowSize;
+	private final AtomicLongArray ring;
+
+	public RingBufferRateTracker(int numSeconds) {
+		if (numSeconds <= 0) {
+			throw new IllegalArgumentException("Window size must be positive: " + numSeconds);
+		}
+		windowSize = numSeconds;
+		ring = new AtomicLongArray(numSeconds);
+	}
+
+	public void trackRate() {
+		trackRate(1);
+	}
+
+	public void trackRate(int count) {
+		trackRate(count, currentSecond());
+	}
+
+	void trackRate(int count, long second) {
+
+		int index = indexFor(second);
+		long stamp = second & COUNT_MASK;
+
+		while (true) {
+
+			long current = ring.get(index);
+			long currentStamp = current >>> 32;
+
+			if (currentStamp > stamp) {
+				// the slot has already moved on to a later second, let the request through
+				return;
+			}
+
+			long update;
+			if (currentStamp == stamp) {
+				// same second, just add to the count
+				update = current + count;
+			} else {
+				// the slot belongs to an older second, roll it over. It does not matter which thread wins,
+				// the losers will simply see the new second and add to it.
+				update = (stamp << 32) | (count & COUNT_MASK);
+			}
+
+			if (ring.compareAndSet(index, current, update)) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * @param second the epoch second
+	 * @return the count for the given second, or 0 if the second is no longer (or not yet) in the window
+	 */
+	public int getCount(long second) {
+		long value = ring.get(indexFor(second));
+		if ((value >>> 32) != (second & COUNT_MASK)) {
+			return 0;
+		}
+		return (int) (value & COUNT_MASK);
+	}
+
+	/**
+	 * @param lookback the number of seconds to look back, where 0 is the current second
+	 * @return the count for the given second
+	 */
+	public int getCountAgo(int lookback) {
+		return getCount(currentSecond() - lookback);
+	}
+
+	/**
+	 * Copy the counts for the entire window into the given array, with the current second first.
+	 * This lets callers evaluate the window on a reusable primitive snapshot without allocating.
+	 * @param counts array of at least {@link #getWindowSize()} elements
+	 */
+	public void snapshot(int[] counts) {
+		long now = currentSecond();
+		for (int i=0; i<windowSize; i++) {
+			counts[i] = getCount(now - i);
+		}
+	}
+
+	public int getWindowSize() {
+		return windowSize;
+	}
+
+	/**
+	 * Copy of the window as buckets, with the current second first.
+	 * Meant for diagnostics, the error check policies should evaluate a {@link #snapshot(int[])} instead
+	 * @return List<Bucket>
+	 */
+	public List<Bucket> getAllBuckets() {
+
+		long now = currentSecond();
+		List<Bucket> list = new ArrayList<Bucket>(windowSize);
+		for (int i=0; i<windowSize; i++) {
+			Bucket b = new Bucket(now - i);
+			b.track(getCount(now - i));
+			list.add(b);
+		}
+		return list;
+	}
+
+	static long currentSecond() {
+		return System.currentTimeMillis() / 1000;
+	}
+
+	private int indexFor(long second) {
+		return (int) (second % windowSize);
+	}
+}
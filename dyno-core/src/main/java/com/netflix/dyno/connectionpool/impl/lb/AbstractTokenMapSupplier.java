@@ -1,21 +1,29 @@
 package com.netflix.dyno.connectionpool.impl.lb;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
-import org.json.simple.JSONArray;
-import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
-import org.json.simple.parser.ParseException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.netflix.dyno.connectionpool.Host;
-import com.netflix.dyno.connectionpool.Host.Status;
 import com.netflix.dyno.connectionpool.TokenMapSupplier;
 import com.netflix.dyno.connectionpool.impl.utils.CollectionUtils;
 import com.netflix.dyno.connectionpool.impl.utils.CollectionUtils.Predicate;
@@ -33,6 +41,13 @@ import com.netflix.dyno.connectionpool.impl.utils.CollectionUtils.Predicate;
  *   {"token":"1669478519","hostname":"ec2-54-80-65-203.compute-1.amazonaws.com" ,"dc":"florida-v000","ip":"54.80.65.203", "zone":"us-east-1e", "location":"us-east-1"}
  * ]
  * 
+ * Since not all tokens are received from an individual call to a dynomite server, {@link #getTokens()} asks all the 
+ * local zone hosts in parallel and stops as soon as every one of them is covered by a token. The result is cached 
+ * for a short while, so that repeated calls don't go back to the servers. 
+ * 
+ * {@link #getTokensForHost(Host)} is served from the same cache, hence adding many hosts at once only needs a single fetch 
+ * of the topology. The topology is fetched again when it has expired, or when the host is not part of it, e.g a new host. 
+ * 
  * @author poberai
  *
  */
@@ -40,31 +55,69 @@ public abstract class AbstractTokenMapSupplier implements TokenMapSupplier {
 
 	private static final Logger Logger = LoggerFactory.getLogger(AbstractTokenMapSupplier.class);
 	
+	public static final long DefaultTokenCacheTtlMillis = 10 * 1000;
+	
+	// Max number of dynomite servers that are asked for the topology in parallel
+	private static final int MaxConcurrentFetches = 16;
+	private static final long FetchTimeoutMillis = 10 * 1000;
+	// Don't fetch the topology again for a missing host if it was fetched very recently
+	private static final long MinRefetchIntervalMillis = 1000;
+	
 	private final String localZone;
-	private final List<Host> hosts = new ArrayList<Host>();
+	private final CopyOnWriteArrayList<Host> hosts = new CopyOnWriteArrayList<Host>();
 	private int port; 
+	
+	private final long tokenCacheTtlMillis;
+	private volatile CachedTokens cachedTokens = null;
+	private final Object fetchLock = new Object();
 
 	public AbstractTokenMapSupplier() {
+		this(DefaultTokenCacheTtlMillis);
+	}
+
+	public AbstractTokenMapSupplier(long tokenCacheTtlMillis) {
 		localZone = System.getenv("EC2_AVAILABILITY_ZONE");
 		port = -1;
+		this.tokenCacheTtlMillis = tokenCacheTtlMillis;
 	}
 
 	public abstract String getTopologyJsonPayload();
 	
 	public abstract String getTopologyJsonPayload(String hostname);
 
+	/**
+	 * Get the token topology from any of the hosts. By default this parses {@link #getTopologyJsonPayload()}, 
+	 * sub classes can override this to parse the response as it is being read. 
+	 * @return List<HostToken>
+	 * @throws Exception
+	 */
+	protected List<HostToken> getTopologyTokens() throws Exception {
+		return parseTokenListFromJson(getTopologyJsonPayload());
+	}
+
+	/**
+	 * Get the token topology from the given host, see {@link #getTopologyTokens()}
+	 * @param hostname
+	 * @return List<HostToken>
+	 * @throws Exception
+	 */
+	protected List<HostToken> getTopologyTokens(String hostname) throws Exception {
+		return parseTokenListFromJson(getTopologyJsonPayload(hostname));
+	}
+
 	@Override
 	public void initWithHosts(Collection<Host> hostList) {
 		
 		port = hostList.iterator().next().getPort();
 		
-		hosts.addAll(CollectionUtils.filter(hostList, new Predicate<Host>() {
+		hosts.addAllAbsent(CollectionUtils.filter(hostList, new Predicate<Host>() {
 
 			@Override
 			public boolean apply(Host host) {
 				return isLocalZoneHost(host);
 			}
 		}));
+		cachedTokens = null;
 	}
 	
 	protected List<Host> getHosts() {
@@ -74,36 +127,110 @@ public abstract class AbstractTokenMapSupplier implements TokenMapSupplier {
 	@Override
 	public List<HostToken> getTokens() {
 
-		// Doing this since not all tokens are received from an individual call to a dynomite server
-		// hence trying them all
+		CachedTokens cached = cachedTokens;
+		if (cached != null && !cached.isExpired(tokenCacheTtlMillis)) {
+			return new ArrayList<HostToken>(cached.tokens);
+		}
+		
+		List<HostToken> tokens = fetchTokens(new ArrayList<Host>(hosts));
+		if (!tokens.isEmpty()) {
+			cachedTokens = new CachedTokens(tokens);
+		}
+		return new ArrayList<HostToken>(tokens);
+	}
+	
+	private List<HostToken> fetchTokens(List<Host> hostList) {
+		
 		Set<HostToken> allTokens = new HashSet<HostToken>();
+		if (hostList.isEmpty()) {
+			return new ArrayList<HostToken>(allTokens);
+		}
 		
-		for (Host host : hosts) {
-			try {
-				List<HostToken> hostTokens = parseTokenListFromJson(getTopologyJsonPayload((host.getHostName())));
-				for (HostToken hToken : hostTokens) {
-					allTokens.add(hToken);
+		// the hosts that we still need a token for
+		Set<String> uncovered = new HashSet<String>();
+		for (Host host : hostList) {
+			uncovered.add(host.getHostName());
+		}
+
+		ExecutorService threadPool = Executors.newFixedThreadPool(Math.min(MaxConcurrentFetches, hostList.size()));
+		CompletionService<List<HostToken>> completionService = new ExecutorCompletionService<List<HostToken>>(threadPool);
+		
+		try {
+			for (final Host host : hostList) {
+				completionService.submit(new Callable<List<HostToken>>() {
+
+					@Override
+					public List<HostToken> call() throws Exception {
+						return getTopologyTokens(host.getHostName());
+					}
+				});
+			}
+			
+			long deadline = System.currentTimeMillis() + FetchTimeoutMillis;
+			
+			for (int i=0; i<hostList.size() && !uncovered.isEmpty(); i++) {
+				
+				Future<List<HostToken>> future = completionService.poll(deadline - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+				if (future == null) {
+					Logger.warn("Timed out getting token topology, hosts without tokens: " + uncovered);
+					break;
+				}
+				try {
+					for (HostToken hToken : future.get()) {
+						allTokens.add(hToken);
+						uncovered.remove(hToken.getHost().getHostName());
+					}
+				} catch (ExecutionException e) {
+					Logger.warn("Could not get json response for token topology [" + e.getCause().getMessage() + "]");
 				}
-			} catch (Exception e) {
-				Logger.warn("Could not get json response for token topology [" + e.getMessage() + "]");
 			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			// Stop any requests that are still in flight
+			threadPool.shutdownNow();
 		}
+		
 		return new ArrayList<HostToken>(allTokens);
 	}
 	
 	@Override
 	public HostToken getTokenForHost(final Host host) {
-		this.hosts.add(host);
-		String jsonPayload = getTopologyJsonPayload();
-		List<HostToken> hostTokens = parseTokenListFromJson(jsonPayload);
+		List<HostToken> hostTokens = getTokensForHost(host);
+		return hostTokens.isEmpty() ? null : hostTokens.get(0);
+	}
+	
+	@Override
+	public List<HostToken> getTokensForHost(final Host host) {
 		
-		return CollectionUtils.find(hostTokens, new Predicate<HostToken>() {
-
-			@Override
-			public boolean apply(HostToken x) {
-				return x.getHost().getHostName().equals(host.getHostName());
+		hosts.addIfAbsent(host);
+		
+		CachedTokens cached = cachedTokens;
+		if (cached != null && !cached.isExpired(tokenCacheTtlMillis)) {
+			List<HostToken> hostTokens = cached.getTokens(host);
+			if (!hostTokens.isEmpty()) {
+				return hostTokens;
+			}
+		}
+		
+		synchronized (fetchLock) {
+			
+			// another thread may have fetched the topology while we were waiting
+			cached = cachedTokens;
+			if (cached == null || cached.isExpired(tokenCacheTtlMillis) || 
+					(cached.getTokens(host).isEmpty() && (System.currentTimeMillis() - cached.fetchTime) >= MinRefetchIntervalMillis)) {
+				
+				try {
+					cached = new CachedTokens(getTopologyTokens());
+				} catch (RuntimeException e) {
+					throw e;
+				} catch (Exception e) {
+					throw new RuntimeException(e);
+				}
+				cachedTokens = cached;
 			}
-		});
+			return cached.getTokens(host);
+		}
 	}
 	
 	private boolean isLocalZoneHost(Host host) {
@@ -114,37 +241,55 @@ public abstract class AbstractTokenMapSupplier implements TokenMapSupplier {
 	}
 
 
-	private List<HostToken> parseTokenListFromJson(String json) {
+	private static class CachedTokens {
 		
-		List<HostToken> hostTokens = new ArrayList<HostToken>();
+		private final List<HostToken> tokens;
+		private final Map<String, List<HostToken>> hostTokens = new HashMap<String, List<HostToken>>();
+		private final long fetchTime = System.currentTimeMillis();
 		
-		JSONParser parser = new JSONParser();
-		try {
-			JSONArray arr = (JSONArray) parser.parse(json);
-			
-			Iterator<?> iter = arr.iterator();
-			while (iter.hasNext()) {
-				
-				Object item = iter.next();
-				if (!(item instanceof JSONObject)) {
-					continue;
+		private CachedTokens(List<HostToken> tokens) {
+			this.tokens = tokens;
+			for (HostToken hToken : tokens) {
+				List<HostToken> list = hostTokens.get(hToken.getHost().getHostName());
+				if (list == null) {
+					list = new ArrayList<HostToken>();
+					hostTokens.put(hToken.getHost().getHostName(), list);
 				}
-				JSONObject jItem = (JSONObject)item;
-				
-				Long token = Long.parseLong((String)jItem.get("token"));
-				String hostname = (String)jItem.get("hostname");
-				String zone = (String)jItem.get("zone");
-				
-				Host host = new Host(hostname, port, Status.Up).setRack(zone);
-				HostToken hostToken = new HostToken(token, host);
-				hostTokens.add(hostToken);
+				list.add(hToken);
 			}
-			
-		} catch (ParseException e) {
+		}
+		
+		private List<HostToken> getTokens(Host host) {
+			List<HostToken> list = hostTokens.get(host.getHostName());
+			return (list != null) ? Collections.unmodifiableList(list) : Collections.<HostToken>emptyList();
+		}
+		
+		private boolean isExpired(long ttlMillis) {
+			return (System.currentTimeMillis() - fetchTime) >= ttlMillis;
+		}
+	}
+
+	/**
+	 * Parse the token topology, see {@link ClusterDescribeParser}
+	 * @param json
+	 * @return List<HostToken>
+	 */
+	protected List<HostToken> parseTokenListFromJson(String json) {
+		try {
+			return ClusterDescribeParser.parse(json, port);
+		} catch (IOException e) {
 			Logger.error("Failed to parse json response: " + json, e);
 			throw new RuntimeException(e);
 		}
+	}
 
-		return hostTokens;
+	/**
+	 * Parse the token topology straight from the response stream, without reading the whole response first
+	 * @param in
+	 * @return List<HostToken>
+	 * @throws IOException
+	 */
+	protected List<HostToken> parseTokenListFromJson(InputStream in) throws IOException {
+		return ClusterDescribeParser.parse(in, port);
 	}
 }
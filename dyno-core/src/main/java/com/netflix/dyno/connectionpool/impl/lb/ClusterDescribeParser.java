@@ -0,0 +1,399 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.dyno.connectionpool.impl.lb;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.netflix.dyno.connectionpool.Host;
+import com.netflix.dyno.connectionpool.Host.Status;
+
+/**
+ * Streaming parser for the json payload from the cluster_describe endpoint of a dynomite server, 
+ * see {@link AbstractTokenMapSupplier} for an example. 
+ * 
+ * The parser reads straight from the response through a fixed size buffer, hence it does not need the whole 
+ * payload in memory, and it does not build a DOM. Only the token, hostname and zone of each entry are kept, 
+ * all other values are skipped without being copied. A host with multiple tokens (vnodes) can either have an entry per 
+ * token, or a single entry with the tokens as a comma separated string. 
+ * 
+ * The parser is lenient in the same way as the json-simple based parsing was, i.e elements of the top level array 
+ * that are not objects are skipped and anything after the end of the array is ignored. 
+ * 
+ * Instances are not thread safe, use one per payload. 
+ * 
+ * @author poberai
+ *
+ */
+public class ClusterDescribeParser {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final int BufferSize = 8 * 1024;
+
+	private final Reader reader;
+	private final int port;
+
+	private final char[] buffer = new char[BufferSize];
+	private int pos = 0;
+	private int limit = 0;
+	private long offset = 0;
+
+	// re-used for the keys and values that we keep
+	private final StringBuilder sb = new StringBuilder();
+	// re-used for the tokens of an entry
+	private long[] tokens = new long[8];
+
+	public ClusterDescribeParser(Reader reader, int port) {
+		this.reader = reader;
+		this.port = port;
+	}
+
+	public static List<HostToken> parse(InputStream in, int port) throws IOException {
+		return new ClusterDescribeParser(new InputStreamReader(in, UTF8), port).parse();
+	}
+
+	public static List<HostToken> parse(String json, int port) throws IOException {
+		return new ClusterDescribeParser(new StringReader(json), port).parse();
+	}
+
+	/**
+	 * @return the tokens in the payload, in the same order
+	 * @throws IOException if the payload could not be read or is not valid json
+	 */
+	public List<HostToken> parse() throws IOException {
+
+		List<HostToken> hostTokens = new ArrayList<HostToken>();
+
+		int c = nextNonWhitespace();
+		if (c != '[') {
+			throw error("Expected '[' but found " + describe(c));
+		}
+
+		while (true) {
+			c = nextNonWhitespace();
+			switch (c) {
+			case ']':
+				return hostTokens;
+			case ',':
+				break;
+			case '{':
+				parseEntry(hostTokens);
+				break;
+			case -1:
+				throw error("Unexpected end of payload");
+			default:
+				skipValue(c);
+			}
+		}
+	}
+
+	/**
+	 * Parse one entry of the array, the opening brace has already been read
+	 * @param hostTokens the list to add the tokens of the entry to
+	 */
+	private void parseEntry(List<HostToken> hostTokens) throws IOException {
+
+		int numTokens = 0;
+		String hostname = null;
+		String zone = null;
+
+		while (true) {
+			int c = nextNonWhitespace();
+			if (c == '}') {
+				break;
+			}
+			if (c == ',') {
+				continue;
+			}
+			if (c != '"') {
+				throw error("Expected a key but found " + describe(c));
+			}
+
+			sb.setLength(0);
+			readString(true);
+
+			c = nextNonWhitespace();
+			if (c != ':') {
+				throw error("Expected ':' but found " + describe(c));
+			}
+			c = nextNonWhitespace();
+
+			if ("token".contentEquals(sb)) {
+				numTokens = readTokens(c);
+			} else if ("hostname".contentEquals(sb)) {
+				hostname = readStringValue(c);
+			} else if ("zone".contentEquals(sb)) {
+				zone = readStringValue(c);
+			} else {
+				skipValue(c);
+			}
+		}
+
+		if (numTokens == 0 || hostname == null) {
+			return;
+		}
+		Host host = new Host(hostname, port, Status.Up).setRack(zone);
+		for (int i=0; i<numTokens; i++) {
+			hostTokens.add(new HostToken(tokens[i], host));
+		}
+	}
+
+	/**
+	 * The token is an unsigned 32 bit number, either as a string or as a number. A host with multiple tokens (vnodes) 
+	 * has them as a comma separated string, the same as in the dynomite config. 
+	 * @return the number of tokens read into {@link #tokens}
+	 */
+	private int readTokens(int c) throws IOException {
+
+		boolean quoted = (c == '"');
+		if (quoted) {
+			c = read();
+		}
+
+		int numTokens = 0;
+		while (true) {
+			while (c == ' ') {
+				c = read();
+			}
+			long token = 0;
+			int digits = 0;
+			while (c >= '0' && c <= '9') {
+				token = token * 10 + (c - '0');
+				if (++digits > 18) {
+					throw error("Token is too large");
+				}
+				c = read();
+			}
+			if (digits == 0) {
+				throw error("Expected a token but found " + describe(c));
+			}
+			if (numTokens == tokens.length) {
+				tokens = Arrays.copyOf(tokens, numTokens * 2);
+			}
+			tokens[numTokens++] = token;
+
+			while (c == ' ') {
+				c = read();
+			}
+			if (!quoted || c != ',') {
+				break;
+			}
+			c = read();
+		}
+
+		if (quoted) {
+			if (c != '"') {
+				throw error("Expected '\"' after the token but found " + describe(c));
+			}
+		} else {
+			unread();
+		}
+		return numTokens;
+	}
+
+	private String readStringValue(int c) throws IOException {
+		if (c != '"') {
+			if (c == 'n') {
+				skipLiteral(c);
+				return null;
+			}
+			throw error("Expected a string but found " + describe(c));
+		}
+		sb.setLength(0);
+		readString(true);
+		return sb.toString();
+	}
+
+	/**
+	 * Read a string, the opening quote has already been read
+	 * @param keep append the characters to the string builder if true, else just skip them
+	 */
+	private void readString(boolean keep) throws IOException {
+
+		while (true) {
+			int c = read();
+			if (c == '"') {
+				return;
+			}
+			if (c == -1) {
+				throw error("Unterminated string");
+			}
+			if (c == '\\') {
+				c = read();
+				switch (c) {
+				case '"':
+				case '\\':
+				case '/':
+					break;
+				case 'b':
+					c = '\b';
+					break;
+				case 'f':
+					c = '\f';
+					break;
+				case 'n':
+					c = '\n';
+					break;
+				case 'r':
+					c = '\r';
+					break;
+				case 't':
+					c = '\t';
+					break;
+				case 'u':
+					int code = 0;
+					for (int i=0; i<4; i++) {
+						int digit = Character.digit(read(), 16);
+						if (digit < 0) {
+							throw error("Invalid unicode escape");
+						}
+						code = (code << 4) + digit;
+					}
+					c = code;
+					break;
+				default:
+					throw error("Invalid escape " + describe(c));
+				}
+			}
+			if (keep) {
+				sb.append((char) c);
+			}
+		}
+	}
+
+	/**
+	 * Skip a value of any type, c is its first character
+	 */
+	private void skipValue(int c) throws IOException {
+
+		switch (c) {
+		case '"':
+			readString(false);
+			return;
+		case '{':
+		case '[':
+			skipContainer();
+			return;
+		case 't':
+		case 'f':
+		case 'n':
+			skipLiteral(c);
+			return;
+		default:
+			if (c == '-' || (c >= '0' && c <= '9')) {
+				skipNumber();
+				return;
+			}
+			throw error("Unexpected " + describe(c));
+		}
+	}
+
+	/**
+	 * Skip a nested object or array, the opening bracket has already been read
+	 */
+	private void skipContainer() throws IOException {
+
+		int depth = 1;
+		while (depth > 0) {
+			int c = read();
+			switch (c) {
+			case '{':
+			case '[':
+				depth++;
+				break;
+			case '}':
+			case ']':
+				depth--;
+				break;
+			case '"':
+				readString(false);
+				break;
+			case -1:
+				throw error("Unexpected end of payload");
+			default:
+				break;
+			}
+		}
+	}
+
+	private void skipLiteral(int c) throws IOException {
+		while (c >= 'a' && c <= 'z') {
+			c = read();
+		}
+		unread();
+	}
+
+	private void skipNumber() throws IOException {
+		int c = read();
+		while ((c >= '0' && c <= '9') || c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-') {
+			c = read();
+		}
+		unread();
+	}
+
+	private int nextNonWhitespace() throws IOException {
+		int c = read();
+		while (c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+			c = read();
+		}
+		return c;
+	}
+
+	private int read() throws IOException {
+		if (pos >= limit) {
+			if (!fill()) {
+				// so that unread() after the end of the payload is harmless
+				pos++;
+				return -1;
+			}
+		}
+		return buffer[pos++];
+	}
+
+	/**
+	 * Push back the last character, this is only called right after {@link #read()}
+	 */
+	private void unread() {
+		pos--;
+	}
+
+	private boolean fill() throws IOException {
+		offset += limit;
+		pos = 0;
+		limit = 0;
+		int n = reader.read(buffer, 0, buffer.length);
+		if (n <= 0) {
+			return false;
+		}
+		limit = n;
+		return true;
+	}
+
+	private String describe(int c) {
+		return (c == -1) ? "end of payload" : "'" + (char) c + "'";
+	}
+
+	private IOException error(String message) {
+		return new IOException(message + " at position " + (offset + pos));
+	}
+}
@@ -16,37 +16,55 @@
 package com.netflix.dyno.connectionpool.impl.lb;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.netflix.dyno.connectionpool.BaseOperation;
+import com.netflix.dyno.connectionpool.ConcurrencyLimitConfig;
 import com.netflix.dyno.connectionpool.Connection;
 import com.netflix.dyno.connectionpool.ConnectionPoolConfiguration;
 import com.netflix.dyno.connectionpool.ConnectionPoolConfiguration.LoadBalancingStrategy;
 import com.netflix.dyno.connectionpool.ConnectionPoolMonitor;
 import com.netflix.dyno.connectionpool.Host;
 import com.netflix.dyno.connectionpool.HostConnectionPool;
+import com.netflix.dyno.connectionpool.HostConnectionStats;
+import com.netflix.dyno.connectionpool.ReadOperation;
+import com.netflix.dyno.connectionpool.ReplicaReadConfig;
+import com.netflix.dyno.connectionpool.RequestPhase;
+import com.netflix.dyno.connectionpool.RequestPhaseMonitor;
+import com.netflix.dyno.connectionpool.ThrottleConfig;
 import com.netflix.dyno.connectionpool.TokenMapSupplier;
 import com.netflix.dyno.connectionpool.TokenPoolTopology;
 import com.netflix.dyno.connectionpool.exception.DynoConnectException;
 import com.netflix.dyno.connectionpool.exception.DynoException;
+import com.netflix.dyno.connectionpool.exception.FatalConnectionException;
 import com.netflix.dyno.connectionpool.exception.NoAvailableHostsException;
 import com.netflix.dyno.connectionpool.exception.PoolExhaustedException;
 import com.netflix.dyno.connectionpool.exception.PoolOfflineException;
+import com.netflix.dyno.connectionpool.exception.PoolTimeoutException;
+import com.netflix.dyno.connectionpool.exception.ThrottledException;
+import com.netflix.dyno.connectionpool.exception.TimeoutException;
+import com.netflix.dyno.connectionpool.impl.HostConnectionPoolImpl;
 import com.netflix.dyno.connectionpool.impl.HostSelectionStrategy;
 import com.netflix.dyno.connectionpool.impl.HostSelectionStrategy.HostSelectionStrategyFactory;
-import com.netflix.dyno.connectionpool.impl.utils.CollectionUtils;
-import com.netflix.dyno.connectionpool.impl.utils.CollectionUtils.Predicate;
-import com.netflix.dyno.connectionpool.impl.utils.CollectionUtils.Transform;
+import com.netflix.dyno.connectionpool.impl.health.LatencyOutlierDetector;
+import com.netflix.dyno.connectionpool.impl.utils.AdaptiveConcurrencyLimiter;
+import com.netflix.dyno.connectionpool.impl.utils.TokenBucketRateLimiter;
+import com.netflix.dyno.connectionpool.impl.utils.LatencyRecorder.Snapshot;
 
 /**
  * Class that implements the {@link HostSelectionStrategy} interface. 
@@ -57,6 +75,29 @@ import com.netflix.dyno.connectionpool.impl.utils.CollectionUtils.Transform;
  * falls back to the remote HostSelectionStrategy. Also it uses pure round robin for distributing load on the fall back HostSelectionStrategy
  * impls for even distribution of load on the remote DCs in the event of an outage in the local dc. 
  * Note that this class does not prefer any one remote HostSelectionStrategy over the other.  
+ * 
+ * When a {@link LatencyOutlierDetector} is supplied, hosts that it has ejected for being much slower than their rack peers 
+ * are treated like offline hosts, i.e requests for their tokens go to the remote racks. An ejected host is still used 
+ * as a last resort when none of the remote racks can serve the request. 
+ * 
+ * Adding and removing hosts only rebuilds the selectors of the racks the hosts are in, hence a topology change costs 
+ * in proportion to the racks it touches rather than the whole cluster. The selectors are an immutable snapshot which 
+ * is replaced with a single volatile write, hence a request never sees a topology change half applied. 
+ * 
+ * A host can own multiple tokens (vnodes), in which case its pool serves all the token ranges of the host. 
+ * 
+ * When a {@link ReplicaReadConfig} is supplied, reads don't wait for the local host to fail. Once the local host has most 
+ * of its connections in flight, a {@link ReadOperation} goes to the least loaded healthy replica in the remote racks. 
+ * Writes and other operations always go to the local rack first. 
+ * 
+ * When {@link ConnectionPoolConfiguration#failFastWhenExhausted()} is set, an exhausted local pool is not waited on 
+ * while the remote pool for the same token has an idle connection. 
+ * 
+ * When a {@link ConcurrencyLimitConfig} is supplied, each host has an {@link AdaptiveConcurrencyLimiter}. Connections borrowed 
+ * via {@link #getAdmittedConnection(BaseOperation, int, TimeUnit)} count against the limit of their host until they are released 
+ * with the latency of the operation. A request over the limit of the local host goes to a remote rack like a request to an 
+ * offline host, and fails with a {@link ThrottledException} when the remote host is over its limit too, i.e it never waits 
+ * on the host pool of an overloaded host. Hosts over the rate of the {@link ThrottleConfig} are skipped in the same way. 
  *  
  * @author poberai
  *
@@ -69,47 +110,93 @@ public class HostSelectionWithFallback<CL> {
 
 	// tracks the local zone
 	private final String localRack;
-	// The selector for the local zone
-	private final HostSelectionStrategy<CL> localSelector;
-	// Track selectors for each remote DC
-	private final ConcurrentHashMap<String, HostSelectionStrategy<CL>> remoteDCSelectors = new ConcurrentHashMap<String, HostSelectionStrategy<CL>>();
-
-	private final ConcurrentHashMap<Host, HostToken> hostTokens = new ConcurrentHashMap<Host, HostToken>();
+	// The selectors for the local and remote zones. A topology change builds new selectors for the racks it touches and 
+	// swaps in a new table, the published selectors are never modified.
+	private volatile RoutingTable<CL> routingTable;
+	// the pools and tokens of all the hosts, only modified while holding the lock on this
+	private final ConcurrentHashMap<Host, HostConnectionPool<CL>> hostPools = new ConcurrentHashMap<Host, HostConnectionPool<CL>>();
+	private final ConcurrentHashMap<Host, List<HostToken>> hostTokens = new ConcurrentHashMap<Host, List<HostToken>>();
+	// Used for RoundRobin over remote zones when local zone host is down
+	private final AtomicInteger remoteRackIndex = new AtomicInteger(0);
 
 	private final TokenMapSupplier tokenSupplier; 
 	private final ConnectionPoolConfiguration cpConfig;
 	private final ConnectionPoolMonitor cpMonitor; 
-
-	// list of names of remote zones. Used for RoundRobin over remote zones when local zone host is down
-	private final CircularList<String> remoteDCNames = new CircularList<String>(new ArrayList<String>());
+	// the monitor itself when it tracks the request phases, else a no op
+	private final RequestPhaseMonitor phaseMonitor;
 
 	private final HostSelectionStrategyFactory<CL> selectorFactory;
 
+	// null when latency based ejection is not configured
+	private final LatencyOutlierDetector outlierDetector;
+	
+	// null when hot key tracking is not configured
+	private final HotKeyTracker hotKeyTracker;
+	
+	// null when reads only go to the remote racks on failure
+	private final ReplicaReadConfig replicaReadConfig;
+	// number of reads that were routed to a remote replica since the local host was saturated
+	private final AtomicLong replicaReads = new AtomicLong(0L);
+	// number of connections borrowed from a remote rack since the local pool was exhausted, see ConnectionPoolConfiguration#failFastWhenExhausted
+	private final AtomicLong exhaustedFailovers = new AtomicLong(0L);
+	
+	// null when the requests to a host are not throttled
+	private final ThrottleConfig throttleConfig;
+	private final ConcurrentHashMap<Host, TokenBucketRateLimiter> rateLimiters = new ConcurrentHashMap<Host, TokenBucketRateLimiter>();
+	
+	// null when the requests in flight to a host are not limited
+	private final ConcurrencyLimitConfig concurrencyLimitConfig;
+	private final ConcurrentHashMap<Host, AdaptiveConcurrencyLimiter> concurrencyLimiters = new ConcurrentHashMap<Host, AdaptiveConcurrencyLimiter>();
+	// number of borrows that were turned down since the host was over its rate or at its concurrency limit
+	private final AtomicLong admissionRejects = new AtomicLong(0L);
+
 	public HostSelectionWithFallback(ConnectionPoolConfiguration config, ConnectionPoolMonitor monitor) {
+		this(config, monitor, null);
+	}
+
+	public HostSelectionWithFallback(ConnectionPoolConfiguration config, ConnectionPoolMonitor monitor, LatencyOutlierDetector detector) {
 
 		cpMonitor = monitor;
+		phaseMonitor = (monitor instanceof RequestPhaseMonitor) ? (RequestPhaseMonitor) monitor : RequestPhaseMonitor.NONE;
+		outlierDetector = detector;
 		cpConfig = config;
 		localRack = cpConfig.getLocalDC();
 		tokenSupplier = cpConfig.getTokenSupplier();
+		hotKeyTracker = (cpConfig.getHotKeyTrackerConfig() != null) ? new HotKeyTracker(cpConfig.getHotKeyTrackerConfig()) : null;
+		replicaReadConfig = cpConfig.getReplicaReadConfig();
+		throttleConfig = (cpConfig.getThrottleConfig() != null && cpConfig.getThrottleConfig().getHostRps() > 0) ? cpConfig.getThrottleConfig() : null;
+		concurrencyLimitConfig = cpConfig.getConcurrencyLimitConfig();
 
 		selectorFactory = new DefaultSelectionFactory(cpConfig);
-		localSelector = selectorFactory.vendPoolSelectionStrategy();
+		routingTable = buildRoutingTable(new HashMap<HostToken, HostConnectionPool<CL>>());
 	}
 
 	public Connection<CL> getConnection(BaseOperation<CL, ?> op, int duration, TimeUnit unit) throws NoAvailableHostsException, PoolExhaustedException {
-		return getConnection(op, null, duration, unit);
+		return getConnection(op, null, duration, unit, false);
+	}
+
+	/**
+	 * Same as {@link #getConnection(BaseOperation, int, TimeUnit)}, but a host is only borrowed from when it is under its rate 
+	 * and concurrency limits, if configured. The connection counts against the concurrency limit of its host, hence the caller 
+	 * must call one of the releaseAdmission methods once the operation is done.
+	 */
+	public Connection<CL> getAdmittedConnection(BaseOperation<CL, ?> op, int duration, TimeUnit unit) throws NoAvailableHostsException, PoolExhaustedException {
+		return getConnection(op, null, duration, unit, throttleConfig != null || concurrencyLimitConfig != null);
 	}
 
-	private Connection<CL> getConnection(BaseOperation<CL, ?> op, Long token, int duration, TimeUnit unit) throws NoAvailableHostsException, PoolExhaustedException {
+	private Connection<CL> getConnection(BaseOperation<CL, ?> op, Long token, int duration, TimeUnit unit, boolean admit) throws NoAvailableHostsException, PoolExhaustedException {
 
 		HostConnectionPool<CL> hostPool = null; 
 		DynoConnectException lastEx = null;
 		
 		boolean useFallback = false;
+		long routeStartTime = System.nanoTime();
+		
+		RoutingTable<CL> table = routingTable;
 		
 		try {
-			hostPool = (op != null) ? localSelector.getPoolForOperation(op) : localSelector.getPoolForToken(token);
-			useFallback = !isConnectionPoolActive(hostPool);
+			hostPool = (op != null) ? table.localSelector.getPoolForOperation(op) : table.localSelector.getPoolForToken(token);
+			useFallback = !isConnectionPoolActive(hostPool) || (isEjected(hostPool) && table.remoteRacks.length > 0);
 			
 		} catch (NoAvailableHostsException e) {
 			lastEx = e;
@@ -117,20 +204,35 @@ public class HostSelectionWithFallback<CL> {
 			useFallback = true;
 		}
 		
+		if (!useFallback && isReplicaRead(op, table) && isSaturated(hostPool, replicaReadConfig.getLocalSaturationRatio())) {
+			// don't wait for a connection to the local host if a replica in another rack has spare connections
+			HostConnectionPool<CL> replicaPool = getLeastLoadedReplica(table, op);
+			if (replicaPool != null) {
+				replicaReads.incrementAndGet();
+				hostPool = replicaPool;
+			}
+		}
+		
 		if (!useFallback) {
+			phaseMonitor.recordPhaseLatency(RequestPhase.ROUTE, System.nanoTime()-routeStartTime);
 			try { 
-				return hostPool.borrowConnection(duration, unit);
+				if (cpConfig.failFastWhenExhausted() && table.remoteRacks.length > 0) {
+					return borrowFailFast(table, op, token, hostPool, duration, unit, admit);
+				}
+				return borrow(hostPool, duration, unit, admit);
 			} catch (DynoConnectException e) {
 				lastEx = e;
 				cpMonitor.incOperationFailure(null, e);
 				useFallback = true;
 			}
+			// re-routing to the fallback DCs
+			routeStartTime = System.nanoTime();
 		}
 		
 		if (useFallback && cpConfig.getMaxFailoverCount() > 0) {
 			cpMonitor.incFailover(null, null);
 			// Check if we have any remotes to fallback to
-			int numRemotes = remoteDCNames.getEntireList().size();
+			int numRemotes = table.remoteRacks.length;
 			if (numRemotes == 0) {
 				if (lastEx != null) {
 					throw lastEx; // give up
@@ -138,7 +240,7 @@ public class HostSelectionWithFallback<CL> {
 					throw new PoolOfflineException(hostPool.getHost(), "host pool is offline and no DCs available for fallback");
 				}
 			} else {
-				hostPool = getFallbackHostPool(op, token);
+				hostPool = getFallbackHostPool(table, op, token, isConnectionPoolActive(hostPool) ? hostPool : null);
 			}
 		}
 		
@@ -146,12 +248,174 @@ public class HostSelectionWithFallback<CL> {
 			throw new NoAvailableHostsException("Found no hosts when using fallback DC");
 		}
 		
-		return hostPool.borrowConnection(duration, unit);
+		phaseMonitor.recordPhaseLatency(RequestPhase.ROUTE, System.nanoTime()-routeStartTime);
+		return borrow(hostPool, duration, unit, admit);
 	}
 
-	private HostConnectionPool<CL> getFallbackHostPool(BaseOperation<CL, ?> op, Long token) {
+	/**
+	 * Don't tie up the caller waiting on an exhausted local pool when a remote rack can serve the request right away. 
+	 * Try the local pool without waiting, then the remote pool for the same token without waiting and only then 
+	 * wait on the local pool for the given duration.
+	 */
+	private Connection<CL> borrowFailFast(RoutingTable<CL> table, BaseOperation<CL, ?> op, Long token, 
+			HostConnectionPool<CL> hostPool, int duration, TimeUnit unit, boolean admit) {
+		
+		try {
+			return borrow(hostPool, 0, unit, admit);
+		} catch (PoolTimeoutException e) {
+			// local pool is exhausted
+		}
+
+		HostConnectionPool<CL> remotePool = null;
+		try {
+			remotePool = getFallbackHostPool(table, op, token, null);
+		} catch (NoAvailableHostsException e) {
+			// no remote pool to go to, wait on the local pool
+		}
+		
+		if (remotePool != null) {
+			try {
+				Connection<CL> connection = borrow(remotePool, 0, unit, admit);
+				exhaustedFailovers.incrementAndGet();
+				cpMonitor.incFailover(hostPool.getHost(), null);
+				return connection;
+			} catch (DynoConnectException e) {
+				// remote pool is exhausted or unavailable too
+			}
+		}
+		
+		return borrow(hostPool, duration, unit, admit);
+	}
+	
+	/**
+	 * @return the number of connections borrowed from a remote rack since the local pool was exhausted
+	 */
+	public long getExhaustedFailoverCount() {
+		return exhaustedFailovers.get();
+	}
+	
+	/**
+	 * Borrow from the host pool. When admit is set, check the rate of the host and take a permit from its concurrency 
+	 * limiter first, so that a throttled request never holds on to a connection. Both permits are given back when no 
+	 * connection is borrowed, hence a request only counts against the hosts it actually goes to.
+	 * @throws ThrottledException when the host is over its rate or at its concurrency limit
+	 */
+	private Connection<CL> borrow(HostConnectionPool<CL> hostPool, int duration, TimeUnit unit, boolean admit) {
+		
+		if (!admit) {
+			return hostPool.borrowConnection(duration, unit);
+		}
+		
+		Host host = hostPool.getHost();
+		
+		TokenBucketRateLimiter rateLimiter = null;
+		if (throttleConfig != null) {
+			rateLimiter = getRateLimiter(host);
+			if (!rateLimiter.tryAcquire()) {
+				admissionRejects.incrementAndGet();
+				throw new ThrottledException("Host " + host + " is over " + rateLimiter.getRate() + " requests per sec").setHost(host);
+			}
+		}
+		
+		AdaptiveConcurrencyLimiter limiter = null;
+		if (concurrencyLimitConfig != null) {
+			limiter = getConcurrencyLimiter(host);
+			if (!limiter.tryAcquire()) {
+				if (rateLimiter != null) {
+					rateLimiter.release(1);
+				}
+				admissionRejects.incrementAndGet();
+				throw new ThrottledException("Host " + host + " is at its concurrency limit of " + limiter.getLimit()).setHost(host);
+			}
+		}
 		
-		int numRemotes = remoteDCNames.getEntireList().size();
+		try {
+			return hostPool.borrowConnection(duration, unit);
+		} catch (RuntimeException e) {
+			if (rateLimiter != null) {
+				rateLimiter.release(1);
+			}
+			if (limiter != null) {
+				// waiting the whole duration for a connection means that the host is not keeping up
+				if (e instanceof PoolTimeoutException && duration > 0) {
+					limiter.releaseDropped();
+				} else {
+					limiter.releaseIgnored();
+				}
+			}
+			throw e;
+		}
+	}
+	
+	private TokenBucketRateLimiter getRateLimiter(Host host) {
+		TokenBucketRateLimiter limiter = rateLimiters.get(host);
+		if (limiter == null) {
+			rateLimiters.putIfAbsent(host, new TokenBucketRateLimiter(throttleConfig.getHostRps(), throttleConfig.getHostBurst()));
+			limiter = rateLimiters.get(host);
+		}
+		return limiter;
+	}
+	
+	private AdaptiveConcurrencyLimiter getConcurrencyLimiter(Host host) {
+		AdaptiveConcurrencyLimiter limiter = concurrencyLimiters.get(host);
+		if (limiter == null) {
+			concurrencyLimiters.putIfAbsent(host, new AdaptiveConcurrencyLimiter(concurrencyLimitConfig));
+			limiter = concurrencyLimiters.get(host);
+		}
+		return limiter;
+	}
+	
+	/**
+	 * Release the permit of a connection from {@link #getAdmittedConnection(BaseOperation, int, TimeUnit)} after its operation succeeded
+	 * @param host
+	 * @param latencyNanos the latency of the operation on the host
+	 */
+	public void releaseAdmission(Host host, long latencyNanos) {
+		AdaptiveConcurrencyLimiter limiter = concurrencyLimiters.get(host);
+		if (limiter != null) {
+			limiter.release(latencyNanos);
+		}
+	}
+	
+	/**
+	 * Release the permit of a connection from {@link #getAdmittedConnection(BaseOperation, int, TimeUnit)} after its operation failed. 
+	 * Timeouts and connection failures count as a sign of overload, other errors are ignored.
+	 * @param host
+	 * @param e the failure or null if unknown
+	 */
+	public void releaseAdmission(Host host, DynoException e) {
+		AdaptiveConcurrencyLimiter limiter = concurrencyLimiters.get(host);
+		if (limiter == null) {
+			return;
+		}
+		if (e instanceof TimeoutException || e instanceof FatalConnectionException) {
+			limiter.releaseDropped();
+		} else {
+			limiter.releaseIgnored();
+		}
+	}
+	
+	/**
+	 * @param host
+	 * @return the current concurrency limit of the host or -1 if it is not limited
+	 */
+	public int getConcurrencyLimit(Host host) {
+		if (concurrencyLimitConfig == null) {
+			return -1;
+		}
+		return getConcurrencyLimiter(host).getLimit();
+	}
+	
+	/**
+	 * @return the number of borrows turned down since the host was over its rate or at its concurrency limit
+	 */
+	public long getAdmissionRejectCount() {
+		return admissionRejects.get();
+	}
+	
+	private HostConnectionPool<CL> getFallbackHostPool(RoutingTable<CL> table, BaseOperation<CL, ?> op, Long token, HostConnectionPool<CL> lastResortPool) {
+		
+		int numRemotes = table.remoteRacks.length;
 		if (numRemotes == 0) {
 			throw new NoAvailableHostsException("Could not find any remote DCs for fallback");
 		}
@@ -163,8 +427,8 @@ public class HostSelectionWithFallback<CL> {
 		while ((numTries > 0)) {
 
 			numTries--;
-			String remoteDC = remoteDCNames.getNextElement();
-			HostSelectionStrategy<CL> remoteDCSelector = remoteDCSelectors.get(remoteDC);
+			int index = (remoteRackIndex.getAndIncrement() & Integer.MAX_VALUE) % numRemotes;
+			HostSelectionStrategy<CL> remoteDCSelector = table.remoteSelectors.get(index);
 
 			try {
 				
@@ -172,7 +436,12 @@ public class HostSelectionWithFallback<CL> {
 						(op != null) ? remoteDCSelector.getPoolForOperation(op) : remoteDCSelector.getPoolForToken(token);
 				
 				if (isConnectionPoolActive(fallbackHostPool)) {
-					return fallbackHostPool;
+					if (!isEjected(fallbackHostPool)) {
+						return fallbackHostPool;
+					}
+					if (lastResortPool == null) {
+						lastResortPool = fallbackHostPool;
+					}
 				}
 
 			} catch (NoAvailableHostsException e) {
@@ -181,6 +450,11 @@ public class HostSelectionWithFallback<CL> {
 			}
 		}
 		
+		if (lastResortPool != null) {
+			// every candidate is slow, but slow is better than nothing
+			return lastResortPool;
+		}
+		
 		if (lastEx != null) {
 			throw lastEx;
 		} else {
@@ -188,21 +462,81 @@ public class HostSelectionWithFallback<CL> {
 		}
 	}
 
-	public Collection<Connection<CL>> getConnectionsToRing(int duration, TimeUnit unit) throws NoAvailableHostsException, PoolExhaustedException {
+	private boolean isReplicaRead(BaseOperation<CL, ?> op, RoutingTable<CL> table) {
+		return replicaReadConfig != null && op instanceof ReadOperation && table.remoteRacks.length > 0;
+	}
+	
+	/**
+	 * @return true if the connections in flight to the host have reached the given fraction of the max connections per host
+	 */
+	private boolean isSaturated(HostConnectionPool<CL> hostPool, double ratio) {
+		return getInFlight(hostPool) >= ratio * cpConfig.getMaxConnsPerHost();
+	}
+	
+	/**
+	 * @return the connections in flight to the host, read off the pool itself so that routing does not look up the monitor
+	 */
+	private long getInFlight(HostConnectionPool<CL> hostPool) {
+		if (hostPool instanceof HostConnectionPoolImpl) {
+			return ((HostConnectionPoolImpl<CL>) hostPool).getConnectionsInFlight();
+		}
+		return 0L;
+	}
+	
+	/**
+	 * The owner of the key in each remote rack is a replica. Pick the healthy one with the fewest connections in flight, 
+	 * starting at a different rack each time so that ties are spread across the racks. 
+	 * @return the replica pool or null if none of the replicas has spare connections
+	 */
+	private HostConnectionPool<CL> getLeastLoadedReplica(RoutingTable<CL> table, BaseOperation<CL, ?> op) {
 		
-		final Collection<HostToken> localZoneTokens = CollectionUtils.filter(hostTokens.values(), new Predicate<HostToken>() {
-			@Override
-			public boolean apply(HostToken x) {
-				return localRack != null ? localRack.equalsIgnoreCase(x.getHost().getRack()) : true; 
+		int numRemotes = table.remoteRacks.length;
+		int start = remoteRackIndex.getAndIncrement() & Integer.MAX_VALUE;
+		
+		HostConnectionPool<CL> bestPool = null;
+		long bestInFlight = Long.MAX_VALUE;
+		
+		for (int i=0; i<numRemotes; i++) {
+			
+			HostSelectionStrategy<CL> remoteSelector = table.remoteSelectors.get((start + i) % numRemotes);
+			HostConnectionPool<CL> replicaPool;
+			try {
+				replicaPool = remoteSelector.getPoolForOperation(op);
+			} catch (NoAvailableHostsException e) {
+				continue;
+			}
+			
+			if (!isConnectionPoolActive(replicaPool) || isEjected(replicaPool) || 
+					isSaturated(replicaPool, replicaReadConfig.getMaxRemoteLoadRatio())) {
+				continue;
 			}
-		});
+			
+			long inFlight = getInFlight(replicaPool);
+			if (inFlight < bestInFlight) {
+				bestPool = replicaPool;
+				bestInFlight = inFlight;
+			}
+		}
+		return bestPool;
+	}
+	
+	/**
+	 * @return the number of reads that went to a remote replica since the local host was saturated
+	 */
+	public long getReplicaReadCount() {
+		return replicaReads.get();
+	}
+
+	public Collection<Connection<CL>> getConnectionsToRing(int duration, TimeUnit unit) throws NoAvailableHostsException, PoolExhaustedException {
 		
-		final Collection<Long> tokens = CollectionUtils.transform(localZoneTokens, new Transform<HostToken, Long>() {
-			@Override
-			public Long get(HostToken x) {
-				return x.getToken();
+		// a single token per host is enough, since a host serves all of its tokens
+		final Collection<Long> tokens = new ArrayList<Long>();
+		Set<Host> hosts = new HashSet<Host>();
+		for (HostToken x : routingTable.localPools.keySet()) {
+			if (hosts.add(x.getHost())) {
+				tokens.add(x.getToken());
 			}
-		});
+		}
 		
 		DynoConnectException lastEx = null;
 		
@@ -210,7 +544,7 @@ public class HostSelectionWithFallback<CL> {
 				
 		for (Long token : tokens) {
 			try { 
-				connections.add(getConnection(null, token, duration, unit));
+				connections.add(getConnection(null, token, duration, unit, false));
 			} catch (DynoConnectException e) {
 				Logger.warn("Failed to get connection when getting all connections from ring", e.getMessage());
 				lastEx = e;
@@ -235,18 +569,21 @@ public class HostSelectionWithFallback<CL> {
 	}
 
 
-	private HostSelectionStrategy<CL> findSelector(Host host) {
-		String dc = host.getRack();
-		if (localRack == null) {
-			return localSelector;
-		}
-
-		if (localRack.equals(dc)) {
-			return localSelector;
-		}
+	/**
+	 * @param start
+	 * @param end
+	 * @return the local rack pools that own any of the key hashes from start to end, see {@link HostSelectionStrategy#getPoolsForTokens(Long, Long)}
+	 */
+	public List<HostConnectionPool<CL>> getPoolsForTokens(Long start, Long end) {
+		return routingTable.localSelector.getPoolsForTokens(start, end);
+	}
 
-		HostSelectionStrategy<CL> remoteSelector = remoteDCSelectors.get(dc);
-		return remoteSelector;
+	/**
+	 * @param numRanges
+	 * @return the local rack ring split into sub ranges, see {@link HostSelectionStrategy#getTokenRangePools(int)}
+	 */
+	public Map<TokenRange, HostConnectionPool<CL>> getTokenRangePools(int numRanges) {
+		return routingTable.localSelector.getTokenRangePools(numRanges);
 	}
 
 	private boolean isConnectionPoolActive(HostConnectionPool<CL> hPool) {
@@ -262,87 +599,321 @@ public class HostSelectionWithFallback<CL> {
 		}
 	}
 
-	private Map<HostToken, HostConnectionPool<CL>> getHostPoolsForDC(final Map<HostToken, HostConnectionPool<CL>> map, final String dc) {
+	private boolean isEjected(HostConnectionPool<CL> hPool) {
+		if (outlierDetector == null || hPool == null) {
+			return false;
+		}
+		return outlierDetector.isEjected(hPool.getHost());
+	}
 
-		Map<HostToken, HostConnectionPool<CL>> dcPools = 
-				CollectionUtils.filterKeys(map, new Predicate<HostToken>() {
+	private boolean isLocalRack(HostToken hToken) {
+		return localRack == null || localRack.equals(hToken.getHost().getRack());
+	}
 
-					@Override
-					public boolean apply(HostToken x) {
-						if (localRack == null) {
-							return true;
-						}
-						return dc.equals(x.getHost().getRack());
-					}
-				});
-		return dcPools;
+	private boolean isRemoteRack(HostToken hToken) {
+		String rack = hToken.getHost().getRack();
+		return localRack != null && !localRack.isEmpty() && rack != null && !rack.isEmpty() && !localRack.equals(rack);
 	}
 	
-	public void initWithHosts(Map<Host, HostConnectionPool<CL>> hPools) {
+	public synchronized void initWithHosts(Map<Host, HostConnectionPool<CL>> hPools) {
 
 		// Get the list of tokens for these hosts
 		tokenSupplier.initWithHosts(hPools.keySet());
 		List<HostToken> allHostTokens = tokenSupplier.getTokens();
 
-		Map<HostToken, HostConnectionPool<CL>> tokenPoolMap = new HashMap<HostToken, HostConnectionPool<CL>>();
-		
-		// Update inner state with the host tokens.
+		hostPools.clear();
+		hostTokens.clear();
+		hostPools.putAll(hPools);
 		
+		Map<HostToken, HostConnectionPool<CL>> tokenPools = new HashMap<HostToken, HostConnectionPool<CL>>();
 		for (HostToken hToken : allHostTokens) {
-			hostTokens.put(hToken.getHost(), hToken);
-			tokenPoolMap.put(hToken, hPools.get(hToken.getHost()));
+			List<HostToken> hTokens = hostTokens.get(hToken.getHost());
+			if (hTokens == null) {
+				hTokens = new ArrayList<HostToken>();
+				hostTokens.put(hToken.getHost(), hTokens);
+			}
+			hTokens.add(hToken);
+			
+			HostConnectionPool<CL> hostPool = hPools.get(hToken.getHost());
+			if (hostPool != null) {
+				tokenPools.put(hToken, hostPool);
+			}
 		}
 		
-		Set<String> remoteDCs = new HashSet<String>();
+		routingTable = buildRoutingTable(tokenPools);
+	}
 
-		for (Host host : hPools.keySet()) {
-			String dc = host.getRack();
-			if (localRack != null && !localRack.isEmpty() && dc != null && !dc.isEmpty() && !localRack.equals(dc)) {
-				remoteDCs.add(dc);
-			}
+
+	public synchronized void addHost(Host host, HostConnectionPool<CL> hostPool) {
+		
+		List<HostToken> hTokens = tokenSupplier.getTokensForHost(host);
+		if (hTokens.isEmpty()) {
+			throw new DynoConnectException("Could not find host token for host: " + host);
+		}
+		
+		Map<HostToken, HostConnectionPool<CL>> added = new HashMap<HostToken, HostConnectionPool<CL>>();
+		for (HostToken hToken : hTokens) {
+			added.put(hToken, hostPool);
 		}
+		
+		hostPools.put(host, hostPool);
+		List<HostToken> prevTokens = hostTokens.put(hTokens.get(0).getHost(), hTokens);
 
-		Map<HostToken, HostConnectionPool<CL>> localPools = getHostPoolsForDC(tokenPoolMap, localRack);
-		localSelector.initWithHosts(localPools);
+		updateSelectors(added, (prevTokens != null) ? prevTokens : Collections.<HostToken>emptyList());
+	}
 
-		for (String dc : remoteDCs) {
+	public synchronized void removeHost(Host host, HostConnectionPool<CL> hostPool) {
 
-			Map<HostToken, HostConnectionPool<CL>> dcPools = getHostPoolsForDC(tokenPoolMap, dc);
+		if (!hostTokens.containsKey(host) && !hostPools.containsKey(host)) {
+			return;
+		}
+		
+		hostPools.remove(host);
+		List<HostToken> hTokens = hostTokens.remove(host);
+		rateLimiters.remove(host);
+		concurrencyLimiters.remove(host);
 
-			HostSelectionStrategy<CL> remoteSelector = selectorFactory.vendPoolSelectionStrategy();
-			remoteSelector.initWithHosts(dcPools);
+		if (hTokens != null) {
+			updateSelectors(Collections.<HostToken, HostConnectionPool<CL>>emptyMap(), hTokens);
+		}
+	}
 
-			remoteDCSelectors.put(dc, remoteSelector);
+	/**
+	 * Apply a batch of topology changes, i.e only the hosts that changed since the last refresh.
+	 * Tokens are only looked up for the hosts being added, and each rack's selector only gets the tokens that changed in it. 
+	 *
+	 * @param hostsUp
+	 * @param hostsDown
+	 * @return the hosts that could not be added since their token was not found
+	 */
+	public synchronized Collection<Host> updateHosts(Map<Host, HostConnectionPool<CL>> hostsUp, Map<Host, HostConnectionPool<CL>> hostsDown) {
+
+		Map<HostToken, HostConnectionPool<CL>> added = new HashMap<HostToken, HostConnectionPool<CL>>();
+		List<HostToken> removed = new ArrayList<HostToken>();
+
+		for (Host host : hostsDown.keySet()) {
+			hostPools.remove(host);
+			List<HostToken> hTokens = hostTokens.remove(host);
+			if (hTokens != null) {
+				removed.addAll(hTokens);
+			}
+			rateLimiters.remove(host);
+			concurrencyLimiters.remove(host);
 		}
 
-		remoteDCNames.swapWithList(remoteDCSelectors.keySet());
-	}
+		List<Host> failedHosts = new ArrayList<Host>();
 
+		for (Host host : hostsUp.keySet()) {
 
-	public void addHost(Host host, HostConnectionPool<CL> hostPool) {
+			List<HostToken> hTokens = tokenSupplier.getTokensForHost(host);
+			if (hTokens.isEmpty()) {
+				Logger.warn("Could not find host token for host: " + host);
+				failedHosts.add(host);
+				continue;
+			}
+			HostConnectionPool<CL> hostPool = hostsUp.get(host);
+			for (HostToken hToken : hTokens) {
+				added.put(hToken, hostPool);
+			}
+			hostPools.put(host, hostPool);
+			List<HostToken> prevTokens = hostTokens.put(hTokens.get(0).getHost(), hTokens);
+			if (prevTokens != null) {
+				removed.addAll(prevTokens);
+			}
+		}
+
+		updateSelectors(added, removed);
+		return failedHosts;
+	}
+	
+	/**
+	 * Apply the token changes to the racks they belong to and publish the result as a single new table. The selector of 
+	 * each changed rack is rebuilt from a copy of its token pools, while the other racks keep their selectors. A published 
+	 * selector is never modified, hence readers see the topology either before or after the whole change. 
+	 * 
+	 * @param added
+	 * @param removed tokens that are also in added simply move to their new pool
+	 */
+	private void updateSelectors(Map<HostToken, HostConnectionPool<CL>> added, Collection<HostToken> removed) {
 		
-		HostToken hostToken = tokenSupplier.getTokenForHost(host);
-		if (hostToken == null) {
-			throw new DynoConnectException("Could not find host token for host: " + host);
+		RoutingTable<CL> table = routingTable;
+		
+		// copies of the token pools of the changed racks, the local rack is under localRack
+		Map<String, Map<HostToken, HostConnectionPool<CL>>> changedPools = new HashMap<String, Map<HostToken, HostConnectionPool<CL>>>();
+		
+		for (HostToken hToken : removed) {
+			Map<HostToken, HostConnectionPool<CL>> rackPools = copyRackPools(table, changedPools, hToken);
+			if (rackPools != null) {
+				rackPools.remove(hToken);
+			}
+		}
+		for (HostToken hToken : added.keySet()) {
+			Map<HostToken, HostConnectionPool<CL>> rackPools = copyRackPools(table, changedPools, hToken);
+			if (rackPools != null) {
+				rackPools.put(hToken, added.get(hToken));
+			}
 		}
 		
-		hostTokens.put(hostToken.getHost(), hostToken);
+		if (changedPools.isEmpty()) {
+			return;
+		}
 		
-		HostSelectionStrategy<CL> selector = findSelector(host);
-		if (selector != null) {
-			selector.addHostPool(hostToken, hostPool);
+		HostSelectionStrategy<CL> localSelector = table.localSelector;
+		Map<HostToken, HostConnectionPool<CL>> localPools = table.localPools;
+		if (changedPools.containsKey(localRack)) {
+			localPools = changedPools.remove(localRack);
+			localSelector = newSelector(localPools, table.localSelector);
 		}
+		
+		Map<String, HostSelectionStrategy<CL>> remoteSelectors = table.getRemoteSelectors();
+		Map<String, Map<HostToken, HostConnectionPool<CL>>> remotePools = table.getRemotePools();
+		
+		for (String rack : changedPools.keySet()) {
+			Map<HostToken, HostConnectionPool<CL>> rackPools = changedPools.get(rack);
+			if (rackPools.isEmpty()) {
+				remoteSelectors.remove(rack);
+				remotePools.remove(rack);
+			} else {
+				remoteSelectors.put(rack, newSelector(rackPools, remoteSelectors.get(rack)));
+				remotePools.put(rack, rackPools);
+			}
+		}
+		
+		routingTable = new RoutingTable<CL>(localSelector, localPools, remoteSelectors, remotePools);
+	}
+	
+	/**
+	 * @param table
+	 * @param changedPools
+	 * @param hToken
+	 * @return the copy of the token pools of the token's rack, made on the first change to the rack. null if the token 
+	 *         is in neither the local nor a remote rack
+	 */
+	private Map<HostToken, HostConnectionPool<CL>> copyRackPools(RoutingTable<CL> table, 
+			Map<String, Map<HostToken, HostConnectionPool<CL>>> changedPools, HostToken hToken) {
+		
+		String rack;
+		Map<HostToken, HostConnectionPool<CL>> rackPools;
+		if (isLocalRack(hToken)) {
+			rack = localRack;
+			rackPools = table.localPools;
+		} else if (isRemoteRack(hToken)) {
+			rack = hToken.getHost().getRack();
+			rackPools = table.getRemotePools(rack);
+		} else {
+			return null;
+		}
+		
+		Map<HostToken, HostConnectionPool<CL>> copy = changedPools.get(rack);
+		if (copy == null) {
+			copy = (rackPools != null) ? new HashMap<HostToken, HostConnectionPool<CL>>(rackPools) : new HashMap<HostToken, HostConnectionPool<CL>>();
+			changedPools.put(rack, copy);
+		}
+		return copy;
+	}
+	
+	/**
+	 * @param tokenPools
+	 * @param prevSelector the selector being replaced, or null for a new rack
+	 * @return a new selector over the token pools
+	 */
+	private HostSelectionStrategy<CL> newSelector(Map<HostToken, HostConnectionPool<CL>> tokenPools, HostSelectionStrategy<CL> prevSelector) {
+		
+		HostSelectionStrategy<CL> selector = selectorFactory.vendPoolSelectionStrategy();
+		selector.initWithHosts(tokenPools);
+		if (selector instanceof TokenAwareSelection && prevSelector instanceof TokenAwareSelection) {
+			// else the request rates of the tokens that stay in the rack would start over
+			((TokenAwareSelection<CL>) selector).keepRequestRates((TokenAwareSelection<CL>) prevSelector);
+		}
+		return selector;
 	}
 
-	public void removeHost(Host host, HostConnectionPool<CL> hostPool) {
+	/**
+	 * Build the routing table from scratch, with a new selector for each rack. 
+	 * 
+	 * @param tokenPools
+	 * @return RoutingTable
+	 */
+	private RoutingTable<CL> buildRoutingTable(Map<HostToken, HostConnectionPool<CL>> tokenPools) {
 
-		HostToken hostToken = hostTokens.remove(host);
-		if (hostToken != null) {
-			HostSelectionStrategy<CL> selector = findSelector(host);
-			if (selector != null) {
-				selector.removeHostPool(hostToken);
+		Map<HostToken, HostConnectionPool<CL>> localPools = new HashMap<HostToken, HostConnectionPool<CL>>();
+		Map<String, Map<HostToken, HostConnectionPool<CL>>> remotePools = new HashMap<String, Map<HostToken, HostConnectionPool<CL>>>();
+		
+		for (HostToken hToken : tokenPools.keySet()) {
+			if (isLocalRack(hToken)) {
+				localPools.put(hToken, tokenPools.get(hToken));
+			} else if (isRemoteRack(hToken)) {
+				String rack = hToken.getHost().getRack();
+				Map<HostToken, HostConnectionPool<CL>> rackPools = remotePools.get(rack);
+				if (rackPools == null) {
+					rackPools = new HashMap<HostToken, HostConnectionPool<CL>>();
+					remotePools.put(rack, rackPools);
+				}
+				rackPools.put(hToken, tokenPools.get(hToken));
 			}
 		}
+		
+		HostSelectionStrategy<CL> localSelector = newSelector(localPools, null);
+
+		Map<String, HostSelectionStrategy<CL>> remoteSelectors = new HashMap<String, HostSelectionStrategy<CL>>();
+		for (String rack : remotePools.keySet()) {
+			remoteSelectors.put(rack, newSelector(remotePools.get(rack), null));
+		}
+
+		return new RoutingTable<CL>(localSelector, localPools, remoteSelectors, remotePools);
+	}
+
+	/**
+	 * The selectors for the local and remote racks, along with the token pools each selector was built from. Neither the 
+	 * selectors nor the token pools are modified once the table is published, a topology change builds a new table and 
+	 * swaps it in. 
+	 */
+	private static class RoutingTable<CL> {
+
+		private final HostSelectionStrategy<CL> localSelector;
+		private final Map<HostToken, HostConnectionPool<CL>> localPools;
+		// the remote racks in sorted order, their selectors and token pools at the same index
+		private final String[] remoteRacks;
+		private final List<HostSelectionStrategy<CL>> remoteSelectors;
+		private final List<Map<HostToken, HostConnectionPool<CL>>> remotePools;
+
+		private RoutingTable(HostSelectionStrategy<CL> localSelector, Map<HostToken, HostConnectionPool<CL>> localPools, 
+				Map<String, HostSelectionStrategy<CL>> remoteSelectors, Map<String, Map<HostToken, HostConnectionPool<CL>>> remotePools) {
+			
+			Set<String> racks = new TreeSet<String>(remoteSelectors.keySet());
+			this.localSelector = localSelector;
+			this.localPools = Collections.unmodifiableMap(localPools);
+			this.remoteRacks = racks.toArray(new String[racks.size()]);
+			List<HostSelectionStrategy<CL>> selectors = new ArrayList<HostSelectionStrategy<CL>>(remoteRacks.length);
+			List<Map<HostToken, HostConnectionPool<CL>>> pools = new ArrayList<Map<HostToken, HostConnectionPool<CL>>>(remoteRacks.length);
+			for (String rack : remoteRacks) {
+				selectors.add(remoteSelectors.get(rack));
+				pools.add(Collections.unmodifiableMap(remotePools.get(rack)));
+			}
+			this.remoteSelectors = selectors;
+			this.remotePools = pools;
+		}
+
+		private Map<String, HostSelectionStrategy<CL>> getRemoteSelectors() {
+			Map<String, HostSelectionStrategy<CL>> remotes = new HashMap<String, HostSelectionStrategy<CL>>();
+			for (int i=0; i<remoteRacks.length; i++) {
+				remotes.put(remoteRacks[i], remoteSelectors.get(i));
+			}
+			return remotes;
+		}
+
+		private Map<HostToken, HostConnectionPool<CL>> getRemotePools(String rack) {
+			int index = Arrays.binarySearch(remoteRacks, rack);
+			return (index >= 0) ? remotePools.get(index) : null;
+		}
+
+		private Map<String, Map<HostToken, HostConnectionPool<CL>>> getRemotePools() {
+			Map<String, Map<HostToken, HostConnectionPool<CL>>> remotes = new HashMap<String, Map<HostToken, HostConnectionPool<CL>>>();
+			for (int i=0; i<remoteRacks.length; i++) {
+				remotes.put(remoteRacks[i], remotePools.get(i));
+			}
+			return remotes;
+		}
 	}
 
 	private class DefaultSelectionFactory implements HostSelectionStrategyFactory<CL> {
@@ -358,35 +929,65 @@ public class HostSelectionWithFallback<CL> {
 			case RoundRobin:
 				return new RoundRobinSelection<CL>();
 			case TokenAware:
-				return new TokenAwareSelection<CL>();
+				return new TokenAwareSelection<CL>(hotKeyTracker);
 			default :
 				throw new RuntimeException("LoadBalancing strategy not supported! " + cpConfig.getLoadBalancingStrategy().name());
 			}
 		}
 	}
 
+	/**
+	 * @return HotKeyTracker or null if hot key tracking is not enabled
+	 */
+	public HotKeyTracker getHotKeyTracker() {
+		return hotKeyTracker;
+	}
+
 	public TokenPoolTopology getTokenPoolTopology() {
 		
+		RoutingTable<CL> table = routingTable;
+		
 		TokenPoolTopology topology = new TokenPoolTopology();
-		addTokens(topology, localRack, localSelector);
-		for (String remoteRack : remoteDCSelectors.keySet()) {
-			addTokens(topology, remoteRack, remoteDCSelectors.get(remoteRack));
+		addTokens(topology, localRack, table.localSelector, table.localPools);
+		for (int i=0; i<table.remoteRacks.length; i++) {
+			addTokens(topology, table.remoteRacks[i], table.remoteSelectors.get(i), table.remotePools.get(i));
 		}
 		return topology;
 	}
 	
-	private void addTokens(TokenPoolTopology topology, String rack, HostSelectionStrategy<CL> selectionStrategy) {
+	private void addTokens(TokenPoolTopology topology, String rack, HostSelectionStrategy<CL> selectionStrategy, 
+			Map<HostToken, HostConnectionPool<CL>> tokenPools) {
 		
-		Collection<HostConnectionPool<CL>> pools = selectionStrategy.getOrderedHostPools();
-		for (HostConnectionPool<CL> pool : pools) { 
+		// a host with multiple tokens has its stats looked up once
+		Map<HostConnectionPool<CL>, List<HostToken>> poolTokens = new HashMap<HostConnectionPool<CL>, List<HostToken>>();
+		for (HostToken hToken : tokenPools.keySet()) {
+			HostConnectionPool<CL> pool = tokenPools.get(hToken);
 			if (pool == null) {
 				continue;
 			}
-			HostToken hToken = hostTokens.get(pool.getHost());
-			if (hToken == null) {
-				continue;
+			List<HostToken> hTokens = poolTokens.get(pool);
+			if (hTokens == null) {
+				hTokens = new ArrayList<HostToken>();
+				poolTokens.put(pool, hTokens);
+			}
+			hTokens.add(hToken);
+		}
+		
+		for (HostConnectionPool<CL> pool : poolTokens.keySet()) { 
+			
+			HostConnectionStats hStats = cpMonitor.getHostStats().get(pool.getHost());
+			long inFlight = 0L;
+			Snapshot latencies = Snapshot.EMPTY;
+			if (hStats != null) {
+				inFlight = Math.max(0L, hStats.getConnectionsBorrowed() - hStats.getConnectionsReturned());
+				latencies = hStats.getOperationLatencies();
+			}
+			
+			for (HostToken hToken : poolTokens.get(pool)) {
+				double requestRate = (selectionStrategy instanceof TokenAwareSelection) ? 
+						((TokenAwareSelection<CL>) selectionStrategy).getRequestRate(hToken.getToken()) : 0.0;
+				topology.addToken(rack, hToken.getToken(), pool, requestRate, inFlight, latencies);
 			}
-			topology.addToken(rack, hToken.getToken(), pool);
 		}
 	}
 }
@@ -0,0 +1,263 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.dyno.connectionpool.impl.lb;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.netflix.dyno.connectionpool.HotKeyTrackerConfig;
+import com.netflix.dyno.connectionpool.impl.utils.Sampler;
+
+/**
+ * Tracks the hottest keys seen by {@link TokenAwareSelection}, along with how the load is spread across the tokens.
+ * 
+ * The key counts are estimated with a Count-Min sketch, i.e a few rows of counters where each key maps to one counter 
+ * per row, and the estimate is the smallest of these counters. The sketch never under counts and uses a fixed amount 
+ * of memory no matter how many distinct keys there are. The keys with the highest estimates are kept in a small array
+ * of candidates. All updates are atomic increments or CAS operations, i.e there is no locking. 
+ * 
+ * Only a sample of the keys is tracked (see {@link HotKeyTrackerConfig#getSamplingRatio()}) and the counts are reset at 
+ * the end of every window. The reported hot keys and token loads are for the last completed window.
+ * 
+ * @author poberai
+ *
+ */
+public class HotKeyTracker {
+
+	private static final int DEPTH = 4;
+	
+	private final int samplingRatio;
+	private final long windowMillis;
+	private final int mask;
+	
+	private final AtomicLongArray sketch;
+	private final AtomicReferenceArray<HotKey> candidates;
+	private final ConcurrentHashMap<Long, AtomicLong> tokenLoad = new ConcurrentHashMap<Long, AtomicLong>();
+	
+	private final AtomicLong windowStart = new AtomicLong(System.currentTimeMillis());
+	private volatile List<HotKey> lastTopKeys = Collections.emptyList();
+	private volatile Map<Long, Long> lastTokenLoad = Collections.emptyMap();
+	
+	public HotKeyTracker(HotKeyTrackerConfig config) {
+		
+		this.samplingRatio = config.getSamplingRatio();
+		this.windowMillis = TimeUnit.SECONDS.toMillis(config.getWindowSeconds());
+		
+		int width = 1;
+		while (width < config.getSketchWidth()) {
+			width <<= 1;
+		}
+		this.mask = width - 1;
+		this.sketch = new AtomicLongArray(DEPTH * width);
+		this.candidates = new AtomicReferenceArray<HotKey>(config.getTopKeyCount());
+	}
+	
+	/**
+	 * Track a sample of the keys
+	 * @param key
+	 * @param token the token that the key maps to
+	 */
+	public void track(String key, Long token) {
+		if (key != null && Sampler.sample(samplingRatio)) {
+			record(key, token, System.currentTimeMillis());
+		}
+	}
+	
+	void record(String key, Long token, long now) {
+		
+		checkWindow(now);
+		
+		long h = Sampler.mix(key.hashCode());
+		int h1 = (int) h;
+		int h2 = (int) (h >>> 32);
+		
+		long estimate = Long.MAX_VALUE;
+		for (int i=0; i<DEPTH; i++) {
+			int index = (i * (mask + 1)) + ((h1 + i * h2) & mask);
+			estimate = Math.min(estimate, sketch.incrementAndGet(index));
+		}
+		
+		if (token != null) {
+			AtomicLong load = tokenLoad.get(token);
+			if (load == null) {
+				AtomicLong prev = tokenLoad.putIfAbsent(token, load = new AtomicLong());
+				if (prev != null) {
+					load = prev;
+				}
+			}
+			load.incrementAndGet();
+		}
+		
+		offer(key, token, estimate);
+	}
+	
+	private void offer(String key, Long token, long estimate) {
+		
+		int minIndex = -1;
+		HotKey minKey = null;
+		
+		for (int i=0; i<candidates.length(); i++) {
+			HotKey candidate = candidates.get(i);
+			if (candidate == null) {
+				if (minIndex < 0 || minKey != null) {
+					minIndex = i;
+					minKey = null;
+				}
+				continue;
+			}
+			if (candidate.key.equals(key)) {
+				if (estimate > candidate.count) {
+					candidates.compareAndSet(i, candidate, new HotKey(key, token, estimate));
+				}
+				return;
+			}
+			if (minIndex < 0 || (minKey != null && candidate.count < minKey.count)) {
+				minIndex = i;
+				minKey = candidate;
+			}
+		}
+		
+		if (minIndex >= 0 && (minKey == null || estimate > minKey.count)) {
+			// losing the race here just means that another hot key took the slot
+			candidates.compareAndSet(minIndex, minKey, new HotKey(key, token, estimate));
+		}
+	}
+	
+	private void checkWindow(long now) {
+		
+		long start = windowStart.get();
+		if ((now - start) < windowMillis || !windowStart.compareAndSet(start, now)) {
+			return;
+		}
+		
+		lastTopKeys = getCandidates();
+		
+		Map<Long, Long> load = new HashMap<Long, Long>();
+		for (Map.Entry<Long, AtomicLong> entry : tokenLoad.entrySet()) {
+			load.put(entry.getKey(), entry.getValue().get());
+		}
+		lastTokenLoad = load;
+		
+		// updates that race with the reset are simply lost, which is fine for estimates
+		tokenLoad.clear();
+		for (int i=0; i<sketch.length(); i++) {
+			sketch.set(i, 0L);
+		}
+		for (int i=0; i<candidates.length(); i++) {
+			candidates.set(i, null);
+		}
+	}
+	
+	private List<HotKey> getCandidates() {
+		
+		// a key may briefly occupy 2 slots when it races with itself, keep the higher count
+		Map<String, HotKey> keys = new HashMap<String, HotKey>();
+		for (int i=0; i<candidates.length(); i++) {
+			HotKey candidate = candidates.get(i);
+			if (candidate != null) {
+				HotKey prev = keys.get(candidate.key);
+				if (prev == null || prev.count < candidate.count) {
+					keys.put(candidate.key, candidate);
+				}
+			}
+		}
+		
+		List<HotKey> list = new ArrayList<HotKey>(keys.values());
+		Collections.sort(list, new Comparator<HotKey>() {
+			@Override
+			public int compare(HotKey o1, HotKey o2) {
+				return Long.valueOf(o2.count).compareTo(o1.count);
+			}
+		});
+		return list;
+	}
+	
+	/**
+	 * @return the hottest keys in the last completed window, hottest first
+	 */
+	public List<HotKey> getTopKeys() {
+		checkWindow(System.currentTimeMillis());
+		return lastTopKeys;
+	}
+	
+	/**
+	 * @return the number of sampled keys that mapped to each token in the last completed window
+	 */
+	public Map<Long, Long> getTokenLoad() {
+		checkWindow(System.currentTimeMillis());
+		return lastTokenLoad;
+	}
+	
+	/**
+	 * @return the load on the busiest token relative to the average load of all the tokens that received traffic,
+	 *         i.e 1.0 when the load is perfectly even. 0 when there was no traffic.
+	 */
+	public double getTokenLoadSkew() {
+		
+		Map<Long, Long> load = getTokenLoad();
+		if (load.isEmpty()) {
+			return 0.0;
+		}
+		long max = 0L;
+		long sum = 0L;
+		for (Long count : load.values()) {
+			max = Math.max(max, count);
+			sum += count;
+		}
+		return sum > 0 ? (max * load.size()) / (double) sum : 0.0;
+	}
+	
+	/**
+	 * Estimated count for a key within a window. Note that the count is for the sampled keys only.
+	 */
+	public static class HotKey {
+		
+		private final String key;
+		private final Long token;
+		private final long count;
+		
+		private HotKey(String key, Long token, long count) {
+			this.key = key;
+			this.token = token;
+			this.count = count;
+		}
+
+		public String getKey() {
+			return key;
+		}
+
+		public Long getToken() {
+			return token;
+		}
+
+		public long getCount() {
+			return count;
+		}
+		
+		public String toString() {
+			return "HotKey [key=" + key + ", token=" + token + ", count=" + count + "]";
+		}
+	}
+}
@@ -4,12 +4,15 @@ import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
 
 import org.apache.http.HttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.impl.client.DefaultHttpClient;
 import org.apache.http.impl.client.DefaultHttpRequestRetryHandler;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
 import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -18,6 +21,14 @@ import com.netflix.dyno.connectionpool.impl.utils.CollectionUtils;
 import com.netflix.dyno.connectionpool.impl.utils.CollectionUtils.Predicate;
 import com.netflix.dyno.connectionpool.impl.utils.IOUtilities;
 
+/**
+ * Impl of {@link AbstractTokenMapSupplier} that gets the topology from the cluster_describe endpoint of the dynomite servers. 
+ * All the requests share a single http client with a pool of keep-alive connections, since the topology is fetched 
+ * from many servers in parallel. The responses are parsed as they are read, see {@link ClusterDescribeParser}. 
+ * 
+ * @author poberai
+ *
+ */
 public class HttpEndpointBasedTokenMapSupplier extends AbstractTokenMapSupplier {
 
 	private static final Logger Logger = LoggerFactory.getLogger(HttpEndpointBasedTokenMapSupplier.class);
@@ -25,6 +36,9 @@ public class HttpEndpointBasedTokenMapSupplier extends AbstractTokenMapSupplier
 	private static final String DefaultServerUrl = "http://{hostname}:8080/REST/v1/admin/cluster_describe";
 	private final String serverUrl;
 	private static final Integer NumRetries = 2;
+	private static final Integer MaxConnections = 32;
+	
+	private final DefaultHttpClient client;
 
 	public HttpEndpointBasedTokenMapSupplier() {
 		this(DefaultServerUrl);
@@ -32,18 +46,66 @@ public class HttpEndpointBasedTokenMapSupplier extends AbstractTokenMapSupplier
 
 	public HttpEndpointBasedTokenMapSupplier(String url) {
 		serverUrl = url;
+		
+		PoolingClientConnectionManager connManager = new PoolingClientConnectionManager();
+		connManager.setMaxTotal(MaxConnections);
+		connManager.setDefaultMaxPerRoute(2);
+		
+		client = new DefaultHttpClient(connManager);
+		client.getParams().setParameter(HttpConnectionParams.CONNECTION_TIMEOUT, 2000);
+		client.getParams().setParameter(HttpConnectionParams.SO_TIMEOUT, 5000);
+		client.setHttpRequestRetryHandler(new DefaultHttpRequestRetryHandler(NumRetries, true));
 	}
 
 	@Override
 	public String getTopologyJsonPayload() {
+		return callWithRetries(new Callable<String>() {
+
+			@Override
+			public String call() throws Exception {
+				return getResponseViaHttp(getRandomHost());
+			}
+		});
+	}
+
+	@Override
+	public String getTopologyJsonPayload(String hostname) {
+		try { 
+			return getResponseViaHttp(hostname);
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	protected List<HostToken> getTopologyTokens() throws Exception {
+		return callWithRetries(new Callable<List<HostToken>>() {
+
+			@Override
+			public List<HostToken> call() throws Exception {
+				return getTokensViaHttp(getRandomHost());
+			}
+		});
+	}
+
+	@Override
+	protected List<HostToken> getTopologyTokens(String hostname) throws Exception {
+		List<HostToken> hostTokens = getTokensViaHttp(hostname);
+		if (hostTokens == null) {
+			throw new RuntimeException("Could not get token topology from " + hostname);
+		}
+		return hostTokens;
+	}
+
+	private <T> T callWithRetries(Callable<T> callable) {
 		
 		int count = NumRetries;
 		Exception lastEx = null;
 		
-		String response = null;
+		T response = null;
 		do {
 			try {
-				response = getResponseViaHttp(getRandomHost());
+				response = callable.call();
 				if (response != null) {
 					return response;
 				}
@@ -54,23 +116,58 @@ public class HttpEndpointBasedTokenMapSupplier extends AbstractTokenMapSupplier
 			}
 		} while ((count > 0) && (response == null));
 		
-		if (lastEx == null) {
+		if (lastEx != null) {
 			throw new RuntimeException(lastEx);
 		} else {
 			throw new RuntimeException("Could not contact dynomite for token map");
 		}
 	}
 
-	@Override
-	public String getTopologyJsonPayload(String hostname) {
-		try { 
-			return getResponseViaHttp(hostname);
-		} catch (Exception e) {
-			throw new RuntimeException(e);
+	private String getResponseViaHttp(String hostname) throws Exception {
+		
+		HttpResponse response = execute(hostname);
+		if (response == null) {
+			return null;
+		}
+			
+		InputStream in = null;
+		try {
+			in = response.getEntity().getContent();
+			return IOUtilities.toString(in);
+		} finally {
+			if (in != null) {
+				// closing the content stream releases the connection back to the pool
+				in.close();
+			}
+		}
+	}
+	
+	/**
+	 * Parse the tokens as the response is being read, rather than reading the whole response into a string first
+	 */
+	private List<HostToken> getTokensViaHttp(String hostname) throws Exception {
+		
+		HttpResponse response = execute(hostname);
+		if (response == null) {
+			return null;
+		}
+			
+		InputStream in = null;
+		try {
+			in = response.getEntity().getContent();
+			return parseTokenListFromJson(in);
+		} finally {
+			if (in != null) {
+				// closing the content stream releases the connection back to the pool
+				in.close();
+			}
 		}
 	}
 
-	private String getResponseViaHttp(String hostname) throws Exception {
+	/**
+	 * @return the response, or null if the status code is not 200
+	 */
+	private HttpResponse execute(String hostname) throws Exception {
 		
 		String url = serverUrl;
 		url = url.replace("{hostname}", hostname);
@@ -79,31 +176,31 @@ public class HttpEndpointBasedTokenMapSupplier extends AbstractTokenMapSupplier
 			Logger.debug("Making http call to url: " + url);
 		}
 		
-		DefaultHttpClient client = new DefaultHttpClient();
-		client.getParams().setParameter(HttpConnectionParams.CONNECTION_TIMEOUT, 2000);
-		client.getParams().setParameter(HttpConnectionParams.SO_TIMEOUT, 5000);
-		
-		DefaultHttpRequestRetryHandler retryhandler = new DefaultHttpRequestRetryHandler(NumRetries, true);
-		client.setHttpRequestRetryHandler(retryhandler);
-		
 		HttpGet get = new HttpGet(url);
 		
-		HttpResponse response = client.execute(get);
+		HttpResponse response = null;
+		try {
+			response = client.execute(get);
+		} catch (Exception e) {
+			get.abort();
+			throw e;
+		}
+		
 		int statusCode = response.getStatusLine().getStatusCode();
 		if (!(statusCode == 200)) {
 			Logger.error("Got non 200 status code from " + url);
+			// release the connection back to the pool
+			EntityUtils.consume(response.getEntity());
 			return null;
 		}
-			
-		InputStream in = null;
-		try {
-			in = response.getEntity().getContent();
-			return IOUtilities.toString(in);
-		} finally {
-			if (in != null) {
-				in.close();
-			}
-		}
+		return response;
+	}
+	
+	/**
+	 * Close all the pooled connections
+	 */
+	public void shutdown() {
+		client.getConnectionManager().shutdown();
 	}
 	
 	private String getRandomHost() {
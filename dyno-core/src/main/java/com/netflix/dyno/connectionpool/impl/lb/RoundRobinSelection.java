@@ -18,17 +18,21 @@ package com.netflix.dyno.connectionpool.impl.lb;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
-import sun.reflect.generics.reflectiveObjects.NotImplementedException;
-
 import com.netflix.dyno.connectionpool.BaseOperation;
 import com.netflix.dyno.connectionpool.Host;
 import com.netflix.dyno.connectionpool.HostConnectionPool;
 import com.netflix.dyno.connectionpool.exception.NoAvailableHostsException;
 import com.netflix.dyno.connectionpool.impl.HostSelectionStrategy;
+import com.netflix.dyno.connectionpool.impl.hash.BinarySearchTokenMapper;
+import com.netflix.dyno.connectionpool.impl.hash.Murmur1HashPartitioner;
 
 /**
  * Simple impl of {@link HostSelectionStrategy} that uses ROUND ROBIN. It employs the {@link CircularList} data structure
@@ -92,7 +96,37 @@ public class RoundRobinSelection<CL> implements HostSelectionStrategy<CL> {
 
 	@Override
 	public List<HostConnectionPool<CL>> getPoolsForTokens(Long start, Long end) {
-		throw new NotImplementedException();
+		
+		Set<HostConnectionPool<CL>> pools = new LinkedHashSet<HostConnectionPool<CL>>();
+		for (HostToken hToken : getTokenRing().getTokenOwners(start, end)) {
+			HostConnectionPool<CL> hostPool = tokenPools.get(hToken.getToken());
+			if (hostPool != null) {
+				pools.add(hostPool);
+			}
+		}
+		return new ArrayList<HostConnectionPool<CL>>(pools);
+	}
+
+	@Override
+	public Map<TokenRange, HostConnectionPool<CL>> getTokenRangePools(int numRanges) {
+		
+		Map<TokenRange, HostConnectionPool<CL>> rangePools = new LinkedHashMap<TokenRange, HostConnectionPool<CL>>();
+		for (TokenRange range : getTokenRing().splitRing(numRanges)) {
+			HostConnectionPool<CL> hostPool = tokenPools.get(range.getOwner().getToken());
+			if (hostPool != null) {
+				rangePools.put(range, hostPool);
+			}
+		}
+		return rangePools;
+	}
+	
+	/**
+	 * Round robin does not need the ring for routing, hence it is only built for the range queries, which are rare
+	 */
+	private BinarySearchTokenMapper getTokenRing() {
+		BinarySearchTokenMapper tokenMapper = new BinarySearchTokenMapper(new Murmur1HashPartitioner());
+		tokenMapper.initSearchMecahnism(circularList.getEntireList());
+		return tokenMapper;
 	}
 
 	private HostConnectionPool<CL> getNextConnectionPool() throws NoAvailableHostsException {
@@ -140,6 +174,33 @@ public class RoundRobinSelection<CL> implements HostSelectionStrategy<CL> {
 		return prevPool != null;
 	}
 	
+	@Override
+	public void updateHostPools(Map<HostToken, HostConnectionPool<CL>> hostPoolsAdded, Collection<HostToken> hostTokensRemoved) {
+
+		Set<HostToken> removed = new HashSet<HostToken>(hostTokensRemoved);
+		Set<Long> addedTokens = new HashSet<Long>();
+		
+		for (HostToken host : hostPoolsAdded.keySet()) {
+			tokenPools.put(host.getToken(), hostPoolsAdded.get(host));
+			addedTokens.add(host.getToken());
+		}
+		
+		List<HostToken> newHostList = new ArrayList<HostToken>();
+		for (HostToken host : circularList.getEntireList()) {
+			if (!removed.contains(host) && !hostPoolsAdded.containsKey(host)) {
+				newHostList.add(host);
+			}
+		}
+		newHostList.addAll(hostPoolsAdded.keySet());
+		circularList.swapWithList(newHostList);
+		
+		for (HostToken host : removed) {
+			if (!addedTokens.contains(host.getToken())) {
+				tokenPools.remove(host.getToken());
+			}
+		}
+	}
+	
 	public String toString() {
 		return "RoundRobinSelector: list: " + circularList.toString();
 	}
@@ -17,8 +17,12 @@ package com.netflix.dyno.connectionpool.impl.lb;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 import com.netflix.dyno.connectionpool.BaseOperation;
@@ -28,27 +32,53 @@ import com.netflix.dyno.connectionpool.exception.NoAvailableHostsException;
 import com.netflix.dyno.connectionpool.impl.HostSelectionStrategy;
 import com.netflix.dyno.connectionpool.impl.hash.BinarySearchTokenMapper;
 import com.netflix.dyno.connectionpool.impl.hash.Murmur1HashPartitioner;
+import com.netflix.dyno.connectionpool.impl.health.RingBufferRateTracker;
 import com.netflix.dyno.connectionpool.impl.utils.CollectionUtils;
 import com.netflix.dyno.connectionpool.impl.utils.CollectionUtils.Transform;
+import com.netflix.dyno.connectionpool.impl.utils.Sampler;
 
 /**
  * Simple class that implements {@link HostSelectionStrategy} using the TOKEN AWARE algorithm. 
  * Note that this component needs to be aware of the dynomite ring topology to be able to 
  * successfully map to the corrent token owner for any key of an {@link Operation}
  * 
+ * A host can own multiple tokens (vnodes), each of them maps to the pool for the host. 
+ * 
+ * The number of requests routed to each token is tracked over a short rolling window, see {@link #getRequestRate(Long)}
+ * 
  * @author poberai
  *
  * @param <CL>
  */
 public class TokenAwareSelection<CL> implements HostSelectionStrategy<CL> {
 
+	// the current second is still in progress, hence the rate is averaged over the seconds before it
+	private static final int RATE_WINDOW_SECONDS = 6;
+	// every request would otherwise bump the same per token slot, so only 1 in N requests is counted (as N)
+	private static final int RATE_SAMPLING_RATIO = 16;
+
 	private final BinarySearchTokenMapper tokenMapper;
 
 	private final ConcurrentHashMap<Long, HostConnectionPool<CL>> tokenPools = new ConcurrentHashMap<Long, HostConnectionPool<CL>>();
+	private final ConcurrentHashMap<Long, RingBufferRateTracker> tokenRequests = new ConcurrentHashMap<Long, RingBufferRateTracker>();
+	private final int rateSamplingRatio;
+	
+	// null when hot key tracking is disabled
+	private final HotKeyTracker hotKeyTracker;
 	
 	public TokenAwareSelection() {
+		this(null);
+	}
+	
+	public TokenAwareSelection(HotKeyTracker hotKeyTracker) {
+		this(hotKeyTracker, RATE_SAMPLING_RATIO);
+	}
+	
+	TokenAwareSelection(HotKeyTracker hotKeyTracker, int rateSamplingRatio) {
 		
 		this.tokenMapper = new BinarySearchTokenMapper(new Murmur1HashPartitioner());
+		this.hotKeyTracker = hotKeyTracker;
+		this.rateSamplingRatio = rateSamplingRatio;
 	}
 
 	@Override
@@ -62,6 +92,9 @@ public class TokenAwareSelection<CL> implements HostSelectionStrategy<CL> {
 			}
 			
 		}));
+		for (HostToken hostToken : hPools.keySet()) {
+			tokenRequests.putIfAbsent(hostToken.getToken(), new RingBufferRateTracker(RATE_WINDOW_SECONDS));
+		}
 
 		this.tokenMapper.initSearchMecahnism(hPools.keySet());
 	}
@@ -76,6 +109,15 @@ public class TokenAwareSelection<CL> implements HostSelectionStrategy<CL> {
 		HostConnectionPool<CL> hostPool = null;
 		if (hToken != null) {
 			hostPool = tokenPools.get(hToken.getToken());
+			if (Sampler.sample(rateSamplingRatio)) {
+				RingBufferRateTracker requests = tokenRequests.get(hToken.getToken());
+				if (requests != null) {
+					requests.trackRate(rateSamplingRatio);
+				}
+			}
+			if (hotKeyTracker != null) {
+				hotKeyTracker.track(key, hToken.getToken());
+			}
 		}
 		
 		if (hostPool == null) {
@@ -92,7 +134,8 @@ public class TokenAwareSelection<CL> implements HostSelectionStrategy<CL> {
 	
 	@Override
 	public List<HostConnectionPool<CL>> getOrderedHostPools() {
-		return new ArrayList<HostConnectionPool<CL>>(tokenPools.values());
+		// a host with multiple tokens has the same pool for each of them
+		return new ArrayList<HostConnectionPool<CL>>(new LinkedHashSet<HostConnectionPool<CL>>(tokenPools.values()));
 	}
 	
 	@Override
@@ -100,8 +143,30 @@ public class TokenAwareSelection<CL> implements HostSelectionStrategy<CL> {
 		return tokenPools.get(token);
 	}
 	
+	@Override
 	public List<HostConnectionPool<CL>> getPoolsForTokens(Long start, Long end) {
-		throw new RuntimeException("Not Implemented");
+		
+		Set<HostConnectionPool<CL>> pools = new LinkedHashSet<HostConnectionPool<CL>>();
+		for (HostToken hToken : tokenMapper.getTokenOwners(start, end)) {
+			HostConnectionPool<CL> hostPool = tokenPools.get(hToken.getToken());
+			if (hostPool != null) {
+				pools.add(hostPool);
+			}
+		}
+		return new ArrayList<HostConnectionPool<CL>>(pools);
+	}
+	
+	@Override
+	public Map<TokenRange, HostConnectionPool<CL>> getTokenRangePools(int numRanges) {
+		
+		Map<TokenRange, HostConnectionPool<CL>> rangePools = new LinkedHashMap<TokenRange, HostConnectionPool<CL>>();
+		for (TokenRange range : tokenMapper.splitRing(numRanges)) {
+			HostConnectionPool<CL> hostPool = tokenPools.get(range.getOwner().getToken());
+			if (hostPool != null) {
+				rangePools.put(range, hostPool);
+			}
+		}
+		return rangePools;
 	}
 
 	@Override
@@ -109,6 +174,7 @@ public class TokenAwareSelection<CL> implements HostSelectionStrategy<CL> {
 		
 		HostConnectionPool<CL> prevPool = tokenPools.put(hostToken.getToken(), hostPool);
 		if (prevPool == null) {
+			tokenRequests.putIfAbsent(hostToken.getToken(), new RingBufferRateTracker(RATE_WINDOW_SECONDS));
 			tokenMapper.addHostToken(hostToken);
 			return true;
 		}  else {
@@ -121,13 +187,78 @@ public class TokenAwareSelection<CL> implements HostSelectionStrategy<CL> {
 
 		HostConnectionPool<CL> prev = tokenPools.get(hostToken.getToken());
 		if (prev != null) {
+			// take the token off the ring first, so that its keys move to the next owner instead of failing
+			tokenMapper.remoteHostToken(hostToken);
 			tokenPools.remove(hostToken.getToken());
+			tokenRequests.remove(hostToken.getToken());
 			return true;
 		} else {
 			return false;
 		}
 	}
 
+	@Override
+	public void updateHostPools(Map<HostToken, HostConnectionPool<CL>> hostPoolsAdded, Collection<HostToken> hostTokensRemoved) {
+		
+		// the pools for new tokens must be present before the tokens are on the ring, and the removed tokens 
+		// must be off the ring before their pools go away
+		Set<Long> addedTokens = new HashSet<Long>();
+		for (HostToken hostToken : hostPoolsAdded.keySet()) {
+			addedTokens.add(hostToken.getToken());
+		}
+		List<HostToken> removed = new ArrayList<HostToken>();
+		for (HostToken hostToken : hostTokensRemoved) {
+			if (tokenPools.containsKey(hostToken.getToken()) && !addedTokens.contains(hostToken.getToken())) {
+				removed.add(hostToken);
+			}
+		}
+		for (HostToken hostToken : hostPoolsAdded.keySet()) {
+			tokenPools.put(hostToken.getToken(), hostPoolsAdded.get(hostToken));
+			tokenRequests.putIfAbsent(hostToken.getToken(), new RingBufferRateTracker(RATE_WINDOW_SECONDS));
+		}
+		
+		tokenMapper.updateHostTokens(hostPoolsAdded.keySet(), removed);
+		
+		for (HostToken hostToken : removed) {
+			tokenPools.remove(hostToken.getToken());
+			tokenRequests.remove(hostToken.getToken());
+		}
+	}
+
+	/**
+	 * @param token
+	 * @return the average number of requests per second routed to the token over the last few seconds. Note that the 
+	 *         requests are sampled, hence this is an estimate which is only accurate at higher rates.
+	 */
+	public double getRequestRate(Long token) {
+		
+		RingBufferRateTracker requests = tokenRequests.get(token);
+		if (requests == null) {
+			return 0.0;
+		}
+		long sum = 0L;
+		for (int i=1; i<RATE_WINDOW_SECONDS; i++) {
+			sum += requests.getCountAgo(i);
+		}
+		return sum / (double) (RATE_WINDOW_SECONDS - 1);
+	}
+
+	/**
+	 * Carry over the request rates of the tokens that are also in the selector this one replaces.
+	 * Must be called before this selector is used.
+	 *
+	 * @param prevSelection
+	 */
+	void keepRequestRates(TokenAwareSelection<CL> prevSelection) {
+
+		for (Long token : tokenRequests.keySet()) {
+			RingBufferRateTracker requests = prevSelection.tokenRequests.get(token);
+			if (requests != null) {
+				tokenRequests.put(token, requests);
+			}
+		}
+	}
+
 	public Long getKeyHash(String key) {
 		Long keyHash = tokenMapper.hash(key);
 		return keyHash;
@@ -15,11 +15,11 @@
  ******************************************************************************/
 package com.netflix.dyno.connectionpool.impl.lb;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Random;
 import java.util.Set;
@@ -28,19 +28,13 @@ import org.apache.http.HttpResponse;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.impl.client.DefaultHttpClient;
-import org.json.simple.JSONArray;
-import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
-import org.json.simple.parser.ParseException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.netflix.dyno.connectionpool.Host;
-import com.netflix.dyno.connectionpool.Host.Status;
 import com.netflix.dyno.connectionpool.TokenMapSupplier;
 import com.netflix.dyno.connectionpool.impl.utils.CollectionUtils;
 import com.netflix.dyno.connectionpool.impl.utils.CollectionUtils.Predicate;
-import com.netflix.dyno.connectionpool.impl.utils.IOUtilities;
 
 /**
  * An Example of the JSON payload that we get from a dynomite server
@@ -55,6 +49,8 @@ import com.netflix.dyno.connectionpool.impl.utils.IOUtilities;
  *   {"token":"1669478519","hostname":"ec2-54-80-65-203.compute-1.amazonaws.com" ,"dc":"florida-v000","ip":"54.80.65.203", "zone":"us-east-1e", "location":"us-east-1"}
  * ]
  * 
+ * The payload is parsed as the response is read, see {@link ClusterDescribeParser}. 
+ * 
  * @author poberai
  *
  */
@@ -97,7 +93,7 @@ public class TokenMapSupplierImpl implements TokenMapSupplier {
 		
 		for (Host host : hosts) {
 			try {
-				List<HostToken> hostTokens = parseTokenListFromJson(getResponseViaHttp(host.getHostName()));
+				List<HostToken> hostTokens = getTokensViaHttp(host.getHostName());
 				for (HostToken hToken : hostTokens) {
 					allTokens.add(hToken);
 				}
@@ -110,28 +106,33 @@ public class TokenMapSupplierImpl implements TokenMapSupplier {
 	
 	@Override
 	public HostToken getTokenForHost(final Host host) {
+		List<HostToken> hostTokens = getTokensForHost(host);
+		return hostTokens.isEmpty() ? null : hostTokens.get(0);
+	}
+	
+	@Override
+	public List<HostToken> getTokensForHost(final Host host) {
 		this.hosts.add(host);
-		String jsonPayload = getHttpResponseWithRetries();
-		List<HostToken> hostTokens = parseTokenListFromJson(jsonPayload);
+		List<HostToken> hostTokens = getTokensWithRetries();
 		
-		return CollectionUtils.find(hostTokens, new Predicate<HostToken>() {
+		return new ArrayList<HostToken>(CollectionUtils.filter(hostTokens, new Predicate<HostToken>() {
 
 			@Override
 			public boolean apply(HostToken x) {
 				return x.getHost().getHostName().equals(host.getHostName());
 			}
-		});
+		}));
 	}
 	
-	private String getHttpResponseWithRetries() {
+	private List<HostToken> getTokensWithRetries() {
 
 		int count = NumRetries;
 		Exception lastEx = null;
 		
-		String response = null;
+		List<HostToken> response = null;
 		do {
 			try {
-				response = getResponseViaHttp(getRandomHost());
+				response = getTokensViaHttp(getRandomHost());
 				if (response != null) {
 					return response;
 				}
@@ -142,14 +143,14 @@ public class TokenMapSupplierImpl implements TokenMapSupplier {
 			}
 		} while ((count > 0) && (response == null));
 		
-		if (lastEx == null) {
+		if (lastEx != null) {
 			throw new RuntimeException(lastEx);
 		} else {
 			throw new RuntimeException("Could not contact dynomite for token map");
 		}
 	}
 		
-	private String getResponseViaHttp(String hostname) throws Exception {
+	private List<HostToken> getTokensViaHttp(String hostname) throws Exception {
 		
 		String url = ServerUrl;
 		url = url.replace("{hostname}", hostname);
@@ -171,7 +172,7 @@ public class TokenMapSupplierImpl implements TokenMapSupplier {
 		InputStream in = null;
 		try {
 			in = response.getEntity().getContent();
-			return IOUtilities.toString(in);
+			return ClusterDescribeParser.parse(in, port);
 		} finally {
 			if (in != null) {
 				in.close();
@@ -203,36 +204,11 @@ public class TokenMapSupplierImpl implements TokenMapSupplier {
 
 	// package level visibility for unit tests
 	List<HostToken> parseTokenListFromJson(String json) {
-		
-		List<HostToken> hostTokens = new ArrayList<HostToken>();
-		
-		JSONParser parser = new JSONParser();
 		try {
-			JSONArray arr = (JSONArray) parser.parse(json);
-			
-			Iterator<?> iter = arr.iterator();
-			while (iter.hasNext()) {
-				
-				Object item = iter.next();
-				if (!(item instanceof JSONObject)) {
-					continue;
-				}
-				JSONObject jItem = (JSONObject)item;
-				
-				Long token = Long.parseLong((String)jItem.get("token"));
-				String hostname = (String)jItem.get("hostname");
-				String zone = (String)jItem.get("zone");
-				
-				Host host = new Host(hostname, port, Status.Up).setRack(zone);
-				HostToken hostToken = new HostToken(token, host);
-				hostTokens.add(hostToken);
-			}
-			
-		} catch (ParseException e) {
+			return ClusterDescribeParser.parse(json, port);
+		} catch (IOException e) {
 			Logger.error("Failed to parse json response: " + json, e);
 			throw new RuntimeException(e);
 		}
-
-		return hostTokens;
 	}
 }
@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.dyno.connectionpool.impl.lb;
+
+/**
+ * A contiguous range of key hashes on the dynomite ring along with the {@link HostToken} that owns it. 
+ * Both ends are inclusive. The ring wraps around, hence a range whose start is greater than its end covers the hashes 
+ * from the start to the top of the ring followed by the hashes from the bottom of the ring to the end. 
+ * 
+ * @author poberai
+ *
+ */
+public class TokenRange {
+
+	private final long start;
+	private final long end;
+	private final HostToken owner;
+
+	public TokenRange(long start, long end, HostToken owner) {
+		this.start = start;
+		this.end = end;
+		this.owner = owner;
+	}
+
+	public long getStart() {
+		return start;
+	}
+
+	public long getEnd() {
+		return end;
+	}
+
+	public HostToken getOwner() {
+		return owner;
+	}
+
+	public boolean isWrapping() {
+		return start > end;
+	}
+
+	/**
+	 * @param keyHash
+	 * @return true if the hash is within this range
+	 */
+	public boolean contains(long keyHash) {
+		if (isWrapping()) {
+			return keyHash >= start || keyHash <= end;
+		} else {
+			return keyHash >= start && keyHash <= end;
+		}
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + (int) (start ^ (start >>> 32));
+		result = prime * result + (int) (end ^ (end >>> 32));
+		result = prime * result + ((owner == null) ? 0 : owner.hashCode());
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+
+		if (this == obj) return true;
+		if (obj == null) return false;
+		if (getClass() != obj.getClass()) return false;
+
+		TokenRange other = (TokenRange) obj;
+		boolean equals = true;
+		equals &= (start == other.start);
+		equals &= (end == other.end);
+		equals &= (owner != null) ? (owner.equals(other.owner)) : (other.owner == null);
+		return equals;
+	}
+
+	@Override
+	public String toString() {
+		return "TokenRange [start=" + start + ", end=" + end + ", owner=" + owner + "]";
+	}
+}
@@ -0,0 +1,182 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.dyno.connectionpool.impl.utils;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.netflix.dyno.connectionpool.ConcurrencyLimitConfig;
+
+/**
+ * Limits the number of requests in flight to a host, and adapts the limit to the latency of the host (AIMD). 
+ * 
+ * Each request that completes is a latency sample. The samples are smoothed and compared with the lowest latency seen, 
+ * which is what the host does when it is not queueing up requests. 
+ * <ul>
+ * <li> While the smoothed latency stays within the tolerance and the limit is in use, the limit grows by 1/limit per sample, 
+ *      i.e by one for every limit's worth of requests. 
+ * <li> When the smoothed latency goes over the tolerance or a request is dropped (e.g timed out), the limit is multiplied 
+ *      by the backoff ratio. This happens at most once per limit's worth of samples, since the requests that were already 
+ *      in flight still report the latency from before the cut. 
+ * </ul>
+ * The lowest latency is measured again every window, i.e the baseline becomes the lowest sample of the window that just 
+ * ended, hence a host that gets slower for good is re-baselined instead of being held at the min limit forever. 
+ * 
+ * {@link #tryAcquire()} is lock free. Each release takes the limiter's monitor to update the limit, which costs a few 
+ * arithmetic operations while holding it. The monitor is only contended by the requests to a single host, so at worst the 
+ * releases for one host are serialized, which is small next to the network round trip of the requests themselves. 
+ * 
+ * @author poberai
+ *
+ */
+public class AdaptiveConcurrencyLimiter {
+
+	// weight of a new sample in the smoothed latency
+	private static final double Smoothing = 0.1;
+	
+	private final int minLimit;
+	private final int maxLimit;
+	private final double backoffRatio;
+	private final double latencyTolerance;
+	private final int minLatencyWindow;
+	
+	private final AtomicInteger inFlight = new AtomicInteger(0);
+	// the whole part of estimatedLimit, read on every acquire
+	private volatile int limit;
+	
+	// guarded by this
+	private double estimatedLimit;
+	private double smoothedLatency = 0;
+	// the baseline, i.e the lowest sample of the last window or any lower sample since
+	private long minLatency = Long.MAX_VALUE;
+	private long windowMinLatency = Long.MAX_VALUE;
+	private int windowSamples = 0;
+	private int samplesSinceBackoff;
+	
+	public AdaptiveConcurrencyLimiter(ConcurrencyLimitConfig config) {
+		
+		if (config.getMinLimit() <= 0 || config.getMaxLimit() < config.getMinLimit()) {
+			throw new IllegalArgumentException("Invalid limits, min: " + config.getMinLimit() + ", max: " + config.getMaxLimit());
+		}
+		if (config.getBackoffRatio() <= 0 || config.getBackoffRatio() >= 1) {
+			throw new IllegalArgumentException("Backoff ratio must be between 0 and 1, got " + config.getBackoffRatio());
+		}
+		
+		this.minLimit = config.getMinLimit();
+		this.maxLimit = config.getMaxLimit();
+		this.backoffRatio = config.getBackoffRatio();
+		this.latencyTolerance = config.getLatencyTolerance();
+		this.minLatencyWindow = config.getMinLatencyWindow();
+		
+		this.estimatedLimit = Math.min(maxLimit, Math.max(minLimit, config.getInitialLimit()));
+		this.limit = (int) estimatedLimit;
+		// the first backoff is not held back
+		this.samplesSinceBackoff = maxLimit;
+	}
+	
+	/**
+	 * @return the current limit
+	 */
+	public int getLimit() {
+		return limit;
+	}
+	
+	/**
+	 * @return the number of requests that acquired a permit and were not released yet
+	 */
+	public int getInFlight() {
+		return inFlight.get();
+	}
+	
+	/**
+	 * Take a permit for a request to the host, without waiting
+	 * @return true if the request is under the limit, false if it must not be sent to the host
+	 */
+	public boolean tryAcquire() {
+		while (true) {
+			int current = inFlight.get();
+			if (current >= limit) {
+				return false;
+			}
+			if (inFlight.compareAndSet(current, current+1)) {
+				return true;
+			}
+		}
+	}
+	
+	/**
+	 * Release the permit of a request that completed, and adapt the limit to its latency
+	 * @param latencyNanos
+	 */
+	public void release(long latencyNanos) {
+		int current = inFlight.getAndDecrement();
+		onSample(latencyNanos, current);
+	}
+	
+	/**
+	 * Release the permit of a request that was dropped, e.g timed out, which is a sign of overload regardless of the latency
+	 */
+	public synchronized void releaseDropped() {
+		inFlight.decrementAndGet();
+		countSample();
+		backoff();
+	}
+	
+	/**
+	 * Release the permit of a request that tells nothing about the load on the host, e.g it failed on a bad request
+	 */
+	public void releaseIgnored() {
+		inFlight.decrementAndGet();
+	}
+	
+	private synchronized void onSample(long latencyNanos, int inFlightAtRelease) {
+		
+		smoothedLatency = (smoothedLatency == 0) ? latencyNanos : (1-Smoothing) * smoothedLatency + Smoothing * latencyNanos;
+		minLatency = Math.min(minLatency, latencyNanos);
+		windowMinLatency = Math.min(windowMinLatency, latencyNanos);
+		countSample();
+		
+		if (++windowSamples >= minLatencyWindow) {
+			// start over from the lowest latency of this window, the host may have gotten slower or faster for good
+			minLatency = windowMinLatency;
+			windowMinLatency = Long.MAX_VALUE;
+			windowSamples = 0;
+		}
+		
+		if (smoothedLatency > latencyTolerance * minLatency) {
+			backoff();
+		} else if (inFlightAtRelease * 2 >= estimatedLimit) {
+			// only grow a limit that is actually in use
+			estimatedLimit = Math.min(maxLimit, estimatedLimit + 1.0/estimatedLimit);
+			limit = (int) estimatedLimit;
+		}
+	}
+	
+	private void countSample() {
+		// no need to count past the max limit
+		if (samplesSinceBackoff < maxLimit) {
+			samplesSinceBackoff++;
+		}
+	}
+	
+	private void backoff() {
+		if (samplesSinceBackoff < limit) {
+			return;
+		}
+		estimatedLimit = Math.max(minLimit, estimatedLimit * backoffRatio);
+		limit = (int) estimatedLimit;
+		samplesSinceBackoff = 0;
+	}
+}
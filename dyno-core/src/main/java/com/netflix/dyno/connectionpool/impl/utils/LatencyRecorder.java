@@ -0,0 +1,284 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.dyno.connectionpool.impl.utils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * High dynamic range latency histogram that records values over fixed intervals.
+ *
+ * Unlike {@link EstimatedHistogram}, which has 90 coarse buckets, needs a binary search for each value and gives up
+ * computing percentiles once a value overflows, this class uses log linear buckets in the same style as HdrHistogram.
+ * Values below 128 each get their own bucket. Above that, every power of 2 range is split into 64 equal sub buckets,
+ * so each recorded value is off by at most 1/64th (~1.6%). The bucket index is computed directly from the value
+ * with a couple of bit operations, and recording is a single atomic increment, i.e there is no allocation or locking.
+ * Values larger than the highest trackable value are recorded in the last bucket instead of overflowing.
+ *
+ * Reads work off a {@link Snapshot} of the counts. Snapshots can be merged, e.g to combine the latencies of multiple hosts.
+ * {@link #getIntervalSnapshot()} returns the snapshot for the last completed interval, so that metrics such as the p99
+ * reflect recent latencies and not the latencies since the JVM started.
+ *
+ * A recorder that is written by many threads at once, e.g a pool wide one, can be striped the same way as a
+ * {@link StripedCounter}. Each stripe is a full set of buckets, which the threads are spread over by their id, and
+ * the snapshots add the stripes up.
+ *
+ * Note that values are unit agnostic, but {@link #recordLatency(long, TimeUnit)} records in micros.
+ *
+ * @author poberai
+ *
+ */
+public class LatencyRecorder {
+
+	private static final int SUB_BUCKET_BITS = 7;
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+	private static final int SUB_BUCKET_HALF_BITS = SUB_BUCKET_BITS - 1;
+
+	// 1 hour in micros
+	public static final long DEFAULT_HIGHEST_TRACKABLE_VALUE = 60L * 60 * 1000 * 1000;
+	public static final long DEFAULT_INTERVAL_MILLIS = 60 * 1000;
+
+	private final long highestTrackableValue;
+	private final AtomicLongArray counts;
+	private final int bucketCount;
+	private final int stripeMask;
+
+	private final long intervalMillis;
+	private final AtomicLong intervalStart = new AtomicLong(System.currentTimeMillis());
+	private volatile Snapshot lastInterval;
+
+	public LatencyRecorder() {
+		this(DEFAULT_HIGHEST_TRACKABLE_VALUE, DEFAULT_INTERVAL_MILLIS);
+	}
+
+	public LatencyRecorder(long intervalMillis) {
+		this(DEFAULT_HIGHEST_TRACKABLE_VALUE, intervalMillis);
+	}
+
+	public LatencyRecorder(long highestTrackableValue, long intervalMillis) {
+		this(highestTrackableValue, intervalMillis, 1);
+	}
+
+	/**
+	 * @param highestTrackableValue
+	 * @param intervalMillis
+	 * @param stripes the number of bucket sets to spread concurrent writers over. Rounded up to the next power of 2.
+	 */
+	public LatencyRecorder(long highestTrackableValue, long intervalMillis, int stripes) {
+		if (highestTrackableValue < SUB_BUCKET_COUNT) {
+			throw new IllegalArgumentException("Highest trackable value must be at least " + SUB_BUCKET_COUNT);
+		}
+		int n = 1;
+		while (n < stripes) {
+			n <<= 1;
+		}
+		this.highestTrackableValue = highestTrackableValue;
+		this.intervalMillis = intervalMillis;
+		this.bucketCount = indexFor(highestTrackableValue) + 1;
+		this.stripeMask = n - 1;
+		this.counts = new AtomicLongArray(bucketCount * n);
+		this.lastInterval = new Snapshot(new long[bucketCount]);
+	}
+
+	/**
+	 * Record a single value
+	 * @param value
+	 */
+	public void record(long value) {
+		if (value < 0) {
+			value = 0;
+		} else if (value > highestTrackableValue) {
+			value = highestTrackableValue;
+		}
+		int stripe = (stripeMask == 0) ? 0 : (StripedCounter.threadHash() & stripeMask);
+		counts.incrementAndGet(stripe * bucketCount + indexFor(value));
+	}
+
+	/**
+	 * Record the latency in micros
+	 * @param duration
+	 * @param unit
+	 */
+	public void recordLatency(long duration, TimeUnit unit) {
+		record(unit.toMicros(duration));
+	}
+
+	/**
+	 * @param reset zero out the counts afterwards if true, i.e start a new interval
+	 * @return a snapshot of the current counts
+	 */
+	public Snapshot getSnapshot(boolean reset) {
+
+		long[] data = new long[bucketCount];
+		for (int i=0; i<counts.length(); i++) {
+			data[i % bucketCount] += reset ? counts.getAndSet(i, 0L) : counts.get(i);
+		}
+		return new Snapshot(data);
+	}
+
+	/**
+	 * Returns the snapshot for the last completed interval. If the current interval has elapsed, then it is
+	 * completed first and a new interval is started. Hence an interval may run longer than configured when no one
+	 * reads the snapshots, but multiple readers within the same interval all see the same snapshot.
+	 *
+	 * Note that this resets the counts, hence don't mix this with {@link #getSnapshot(boolean)} with reset.
+	 * @return Snapshot
+	 */
+	public Snapshot getIntervalSnapshot() {
+
+		long now = System.currentTimeMillis();
+		long start = intervalStart.get();
+
+		if ((now - start) >= intervalMillis && intervalStart.compareAndSet(start, now)) {
+			lastInterval = getSnapshot(true);
+		}
+		return lastInterval;
+	}
+
+	static int indexFor(long value) {
+		if (value < SUB_BUCKET_COUNT) {
+			return (int) value;
+		}
+		int shift = (63 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_HALF_BITS;
+		return (shift << SUB_BUCKET_HALF_BITS) + (int) (value >>> shift);
+	}
+
+	static long lowestValueFor(int index) {
+		if (index < SUB_BUCKET_COUNT) {
+			return index;
+		}
+		int shift = (index >> SUB_BUCKET_HALF_BITS) - 1;
+		long subBucket = index - (shift << SUB_BUCKET_HALF_BITS);
+		return subBucket << shift;
+	}
+
+	static long highestValueFor(int index) {
+		return lowestValueFor(index + 1) - 1;
+	}
+
+	/**
+	 * Immutable copy of the counts in a {@link LatencyRecorder}
+	 */
+	public static class Snapshot {
+
+		/**
+		 * Snapshot with no recorded values
+		 */
+		public static final Snapshot EMPTY = new Snapshot(new long[0]);
+
+		private final long[] counts;
+		private final long totalCount;
+
+		private Snapshot(long[] data) {
+			counts = data;
+			long sum = 0L;
+			for (long c : data) {
+				sum += c;
+			}
+			totalCount = sum;
+		}
+
+		/**
+		 * @return the number of recorded values
+		 */
+		public long getCount() {
+			return totalCount;
+		}
+
+		/**
+		 * @param percentile between 0 and 1.0
+		 * @return the (highest equivalent) value at the given percentile, or 0 if there are no values
+		 */
+		public long getPercentile(double percentile) {
+
+			if (totalCount == 0) {
+				return 0;
+			}
+
+			long pcount = Math.max(1L, (long) Math.ceil(totalCount * percentile));
+			long elements = 0;
+			for (int i = 0; i < counts.length; i++) {
+				elements += counts[i];
+				if (elements >= pcount) {
+					return highestValueFor(i);
+				}
+			}
+			return highestValueFor(counts.length - 1);
+		}
+
+		/**
+		 * @return the mean of the recorded values, using the middle of each bucket
+		 */
+		public long getMean() {
+
+			if (totalCount == 0) {
+				return 0;
+			}
+
+			double sum = 0;
+			for (int i = 0; i < counts.length; i++) {
+				if (counts[i] > 0) {
+					sum += counts[i] * ((lowestValueFor(i) + highestValueFor(i)) / 2.0);
+				}
+			}
+			return Math.round(sum / totalCount);
+		}
+
+		public long getMin() {
+			for (int i = 0; i < counts.length; i++) {
+				if (counts[i] > 0) {
+					return lowestValueFor(i);
+				}
+			}
+			return 0;
+		}
+
+		public long getMax() {
+			for (int i = counts.length - 1; i >= 0; i--) {
+				if (counts[i] > 0) {
+					return highestValueFor(i);
+				}
+			}
+			return 0;
+		}
+
+		/**
+		 * @param other
+		 * @return a new snapshot with the counts from both snapshots
+		 */
+		public Snapshot merge(Snapshot other) {
+
+			long[] data = new long[Math.max(counts.length, other.counts.length)];
+			for (int i = 0; i < counts.length; i++) {
+				data[i] += counts[i];
+			}
+			for (int i = 0; i < other.counts.length; i++) {
+				data[i] += other.counts[i];
+			}
+			return new Snapshot(data);
+		}
+
+		public String toString() {
+			return "count: " + totalCount +
+					", mean: " + getMean() +
+					", p50: " + getPercentile(0.5) +
+					", p99: " + getPercentile(0.99) +
+					", p999: " + getPercentile(0.999) +
+					", max: " + getMax();
+		}
+	}
+}
@@ -1,84 +1,43 @@
 package com.netflix.dyno.connectionpool.impl.utils;
 
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.atomic.AtomicReference;
-
+/**
+ * Simple rate limiter that hands out a permit per call to {@link #acquire()}.
+ *
+ * This used to work off whole second buckets. It now just wraps a {@link TokenBucketRateLimiter} with no burst, hence
+ * the permits are spread evenly over each second.
+ *
+ * @deprecated use {@link TokenBucketRateLimiter}, which also supports non blocking and timed acquires and bursts
+ */
+@Deprecated
 public class RateLimitUtil {
 
-	private final AtomicReference<InnerState> ref = new AtomicReference<InnerState>(null);
-	
+	private final int rps;
+	private final TokenBucketRateLimiter limiter;
+
 	private RateLimitUtil(int rps) {
-		this.ref.set(new InnerState(rps));
+		this.rps = rps;
+		this.limiter = new TokenBucketRateLimiter(rps, 1);
 	}
-	
+
 	public static RateLimitUtil create(int n) {
 		return new RateLimitUtil(n);
 	}
-	
+
 	public int getRps() {
-		return ref.get().getRps();
+		return rps;
 	}
-	
+
+	/**
+	 * Wait for the next permit
+	 * @return true once the permit is acquired, false if the thread was interrupted while waiting
+	 */
 	public boolean acquire() {
-		
-		if (ref.get().checkSameSecond()) {
-			long timeToSleepMs = ref.get().increment();
-			if (timeToSleepMs != -1) {
-				try {
-					Thread.sleep(timeToSleepMs);
-					return false;
-				} catch (InterruptedException e) {
-					// do nothing here
-					return false;
-				}
-			} else {
-				return true;
-			}
-			
-		} else {
-			
-			InnerState oldState = ref.get();
-			InnerState newState = new InnerState(oldState.limit);
-			
-			ref.compareAndSet(oldState, newState);
+		try {
+			limiter.acquire(1);
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
 			return false;
 		}
 	}
-	
-	
-	private class InnerState {
-		
-		private final AtomicInteger counter = new AtomicInteger();
-		private final AtomicLong second = new AtomicLong(0L);
-		private final AtomicLong origTime = new AtomicLong(0L);
-
-		private final int limit; 
-		
-		private InnerState(int limit) {
-			this.limit = limit;
-			counter.set(0);
-			origTime.set(System.currentTimeMillis());
-			second.set(origTime.get()/1000);
-		}
-		
-		private boolean checkSameSecond() {
-			long time = System.currentTimeMillis();
-			return second.get() == time/1000;
-		}
-		
-		private long increment() {
-			
-			if (counter.get() < limit) {
-				counter.incrementAndGet();
-				return -1;
-			} else {
-				return System.currentTimeMillis() - origTime.get();
-			}
-		}
-		
-		private int getRps() {
-			return limit;
-		}
-	}
 }
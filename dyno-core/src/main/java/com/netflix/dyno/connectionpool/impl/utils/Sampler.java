@@ -0,0 +1,52 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.dyno.connectionpool.impl.utils;
+
+/**
+ * Cheap random sampling for hot code paths. Unlike a shared counter or {@link java.util.Random}, there is no state 
+ * shared between threads, hence no contention. 
+ * 
+ * @author poberai
+ *
+ */
+public class Sampler {
+
+	/**
+	 * @param ratio
+	 * @return true for roughly 1 out of every ratio calls, false if ratio <= 0
+	 */
+	public static boolean sample(int ratio) {
+		if (ratio <= 0) {
+			return false;
+		}
+		// the low bits of nanoTime vary enough between calls to serve as a random number, once they are mixed
+		return (mix(System.nanoTime()) % ratio) == 0;
+	}
+
+	/**
+	 * @param value
+	 * @return a well spread, non negative hash of the value
+	 */
+	public static long mix(long value) {
+		long h = value;
+		h ^= (h >>> 33);
+		h *= 0xff51afd7ed558ccdL;
+		h ^= (h >>> 33);
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= (h >>> 33);
+		return h & Long.MAX_VALUE;
+	}
+}
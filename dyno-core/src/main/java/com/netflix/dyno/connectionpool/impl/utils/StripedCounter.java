@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.dyno.connectionpool.impl.utils;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counter that spreads its updates over multiple cells, so that threads incrementing it concurrently
+ * don't all contend on the same cache line. Reading the counter sums up all the cells.
+ *
+ * This is similar in spirit to LongAdder, but works on Java 6. The cells are kept in a single {@link AtomicLongArray}
+ * and padded apart so that each one sits on it's own cache line. Each thread always updates the same cell, chosen
+ * from the thread id.
+ *
+ * Use this for counters that are written on every operation and only read occasionally, e.g when stats are published.
+ *
+ * @author poberai
+ *
+ */
+public class StripedCounter {
+
+	// 8 longs == 64 bytes, i.e one cache line per cell
+	private static final int PADDING = 8;
+
+	private static final int DEFAULT_STRIPES = defaultStripes();
+
+	private final AtomicLongArray cells;
+	private final int mask;
+
+	public StripedCounter() {
+		this(DEFAULT_STRIPES);
+	}
+
+	/**
+	 * @param stripes the number of cells. Rounded up to the next power of 2.
+	 */
+	public StripedCounter(int stripes) {
+		int n = 1;
+		while (n < stripes) {
+			n <<= 1;
+		}
+		mask = n - 1;
+		cells = new AtomicLongArray(n * PADDING);
+	}
+
+	public void increment() {
+		add(1L);
+	}
+
+	public void decrement() {
+		add(-1L);
+	}
+
+	public void add(long delta) {
+		cells.getAndAdd(cellIndex(), delta);
+	}
+
+	/**
+	 * Note that the sum is not an atomic snapshot, concurrent updates while summing may or may not be reflected.
+	 * @return long
+	 */
+	public long get() {
+		long sum = 0L;
+		for (int i=0; i<cells.length(); i+=PADDING) {
+			sum += cells.get(i);
+		}
+		return sum;
+	}
+
+	private int cellIndex() {
+		return (threadHash() & mask) * PADDING;
+	}
+
+	/**
+	 * @return a hash of the current thread's id, spread since the ids are mostly sequential
+	 */
+	static int threadHash() {
+		long id = Thread.currentThread().getId();
+		int h = (int) (id ^ (id >>> 32));
+		h ^= (h >>> 16);
+		h *= 0x85ebca6b;
+		h ^= (h >>> 13);
+		h *= 0xc2b2ae35;
+		h ^= (h >>> 16);
+		return h;
+	}
+
+	public String toString() {
+		return String.valueOf(get());
+	}
+
+	private static int defaultStripes() {
+		// no point in having more cells than cpus, but cap the memory used by each counter
+		return Math.min(Runtime.getRuntime().availableProcessors(), 64);
+	}
+}
@@ -0,0 +1,151 @@
+/*******************************************************************************
+ * Copyright 2011 Netflix
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package com.netflix.dyno.connectionpool.impl.utils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Smooth token bucket rate limiter.
+ *
+ * Permits are handed out at a steady rate of one every 1/rate seconds, and up to burst permits can be saved up while the
+ * limiter is idle. The bucket is tracked as the time at which it will be full again (the "theoretical arrival time" of
+ * GCRA), hence the whole state is a single {@link AtomicLong}. There is no lock, no refill thread and no allocation per
+ * call, and {@link #tryAcquire(int)} never sleeps.
+ *
+ * A new limiter starts with a full bucket.
+ *
+ * @author poberai
+ *
+ */
+public class TokenBucketRateLimiter {
+
+	private final double permitsPerSecond;
+	private final int burst;
+	private final long nanosPerPermit;
+	private final long burstNanos;
+
+	// the time at which all the permits handed out so far have been paid for
+	private final AtomicLong fullAt;
+
+	/**
+	 * @param permitsPerSecond
+	 * @param burst max number of permits that can be acquired at once when the limiter has been idle
+	 */
+	public TokenBucketRateLimiter(double permitsPerSecond, int burst) {
+		if (permitsPerSecond <= 0) {
+			throw new IllegalArgumentException("Rate must be > 0");
+		}
+		if (burst <= 0) {
+			throw new IllegalArgumentException("Burst must be > 0");
+		}
+		this.permitsPerSecond = permitsPerSecond;
+		this.burst = burst;
+		this.nanosPerPermit = Math.max(1L, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+		this.burstNanos = burst * nanosPerPermit;
+		this.fullAt = new AtomicLong(System.nanoTime());
+	}
+
+	public double getRate() {
+		return permitsPerSecond;
+	}
+
+	public int getBurst() {
+		return burst;
+	}
+
+	public boolean tryAcquire() {
+		return tryAcquire(1);
+	}
+
+	/**
+	 * Acquire the permits only if they are available right now
+	 * @param permits
+	 * @return true if the permits were acquired
+	 */
+	public boolean tryAcquire(int permits) {
+		return reserve(permits, 0L) >= 0;
+	}
+
+	/**
+	 * Acquire the permits if they become available within the timeout, sleeping till then
+	 * @param permits
+	 * @param timeout
+	 * @param unit
+	 * @return true if the permits were acquired, false right away if they would not be available in time
+	 * @throws InterruptedException
+	 */
+	public boolean tryAcquire(int permits, long timeout, TimeUnit unit) throws InterruptedException {
+
+		long wait = reserve(permits, unit.toNanos(timeout));
+		if (wait < 0) {
+			return false;
+		}
+		if (wait > 0) {
+			TimeUnit.NANOSECONDS.sleep(wait);
+		}
+		return true;
+	}
+
+	/**
+	 * Acquire the permits, sleeping for as long as needed
+	 * @param permits
+	 * @throws InterruptedException
+	 */
+	public void acquire(int permits) throws InterruptedException {
+		tryAcquire(permits, Long.MAX_VALUE / 2, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Give back permits that were acquired but not used, e.g since the request they were for was not sent. 
+	 * The limiter still never holds more than burst permits.
+	 * @param permits
+	 */
+	public void release(int permits) {
+
+		if (permits <= 0) {
+			throw new IllegalArgumentException("Permits must be > 0");
+		}
+		fullAt.addAndGet(-permits * nanosPerPermit);
+	}
+
+	/**
+	 * @return nanos to wait for the reserved permits, or -1 if that is longer than the max wait and nothing was reserved
+	 */
+	private long reserve(int permits, long maxWaitNanos) {
+
+		if (permits <= 0) {
+			throw new IllegalArgumentException("Permits must be > 0");
+		}
+		long cost = permits * nanosPerPermit;
+
+		while (true) {
+			long now = System.nanoTime();
+			long current = fullAt.get();
+
+			// a bucket that was full before now is just full, i.e an idle bucket saves up no more than burst permits
+			long next = Math.max(current, now) + cost;
+			long wait = next - now - burstNanos;
+
+			if (wait > maxWaitNanos) {
+				return -1L;
+			}
+			if (fullAt.compareAndSet(current, next)) {
+				return Math.max(0L, wait);
+			}
+		}
+	}
+}
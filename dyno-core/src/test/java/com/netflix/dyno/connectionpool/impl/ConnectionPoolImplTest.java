@@ -2,6 +2,7 @@ package com.netflix.dyno.connectionpool.impl;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -9,6 +10,7 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
@@ -16,12 +18,15 @@ import java.util.concurrent.atomic.AtomicReference;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.Mockito;
 
 import com.netflix.dyno.connectionpool.AsyncOperation;
+import com.netflix.dyno.connectionpool.BaseOperation;
 import com.netflix.dyno.connectionpool.Connection;
 import com.netflix.dyno.connectionpool.ConnectionContext;
 import com.netflix.dyno.connectionpool.ConnectionFactory;
 import com.netflix.dyno.connectionpool.ConnectionObservor;
+import com.netflix.dyno.connectionpool.ConnectionPoolMonitor;
 import com.netflix.dyno.connectionpool.ConnectionPoolConfiguration.LoadBalancingStrategy;
 import com.netflix.dyno.connectionpool.Host;
 import com.netflix.dyno.connectionpool.Host.Status;
@@ -40,6 +45,7 @@ import com.netflix.dyno.connectionpool.exception.FatalConnectionException;
 import com.netflix.dyno.connectionpool.exception.NoAvailableHostsException;
 import com.netflix.dyno.connectionpool.exception.PoolTimeoutException;
 import com.netflix.dyno.connectionpool.exception.ThrottledException;
+import com.netflix.dyno.connectionpool.exception.TimeoutException;
 import com.netflix.dyno.connectionpool.impl.ConnectionPoolConfigurationImpl.ErrorRateMonitorConfigImpl;
 import com.netflix.dyno.connectionpool.impl.lb.HostToken;
 
@@ -247,6 +253,12 @@ public class ConnectionPoolImplTest {
 				return tokenMap.get(host);
 			}
 
+			@Override
+			public List<HostToken> getTokensForHost(Host host) {
+				HostToken hostToken = getTokenForHost(host);
+				return (hostToken != null) ? Collections.singletonList(hostToken) : Collections.<HostToken>emptyList();
+			}
+
 			@Override
 			public void initWithHosts(Collection<Host> hosts) {
 				
@@ -362,6 +374,194 @@ public class ConnectionPoolImplTest {
 		}
 	}
 	
+	@Test
+	public void testMonitorWithoutRequestPhases() throws Exception {
+
+		// a monitor written against ConnectionPoolMonitor alone, i.e without the request phases
+		ConnectionPoolMonitor monitor = Mockito.mock(ConnectionPoolMonitor.class);
+		
+		final ConnectionPoolImpl<TestClient> pool = new ConnectionPoolImpl<TestClient>(connFactory, cpConfig, monitor);
+		hostSupplierHosts.add(host1);
+		
+		pool.start();
+		
+		try {
+			executeTestClientOperation(pool);
+			Assert.assertEquals(1, client.ops.get());
+			Mockito.verify(monitor).incOperationSuccess(Mockito.eq(host1), Mockito.anyLong());
+		} finally {
+			pool.shutdown();
+		}
+	}
+	
+	@Test
+	public void testPoolThrottled() throws Exception {
+
+		cpConfig.withThrottleConfig(new ConnectionPoolConfigurationImpl.ThrottleConfigImpl(1, 3, 0, 1));
+		
+		final ConnectionPoolImpl<TestClient> pool = new ConnectionPoolImpl<TestClient>(connFactory, cpConfig, cpMonitor);
+		hostSupplierHosts.add(host1);
+		hostSupplierHosts.add(host2);
+		
+		pool.start();
+		
+		try {
+			for (int i=0; i<3; i++) {
+				executeTestClientOperation(pool);
+			}
+			try {
+				executeTestClientOperation(pool);
+				Assert.fail("TEST FAILED");
+			} catch (ThrottledException e) {
+				Assert.assertEquals(3, client.ops.get());
+				Assert.assertEquals(1, cpMonitor.getOperationFailureCount());
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+	
+	@Test
+	public void testHostThrottled() throws Exception {
+
+		cpConfig.withThrottleConfig(new ConnectionPoolConfigurationImpl.ThrottleConfigImpl(0, 1, 1, 2));
+		
+		final AtomicReference<RetryPolicy> retry = new AtomicReference<RetryPolicy>();
+		cpConfig.setRetryPolicyFactory(new RetryPolicyFactory() {
+			@Override
+			public RetryPolicy getRetryPolicy() {
+				retry.set(new RetryNTimes(2, false));
+				return retry.get();
+			}
+		});
+		
+		final ConnectionPoolImpl<TestClient> pool = new ConnectionPoolImpl<TestClient>(connFactory, cpConfig, cpMonitor);
+		hostSupplierHosts.add(host1);
+		
+		pool.start();
+		
+		try {
+			executeTestClientOperation(pool);
+			executeTestClientOperation(pool);
+			try {
+				executeTestClientOperation(pool);
+				Assert.fail("TEST FAILED");
+			} catch (ThrottledException e) {
+				// neither retried against the same host nor counted against it, and no connection was borrowed
+				Assert.assertEquals(2, client.ops.get());
+				Assert.assertEquals(1, retry.get().getAttemptCount());
+				Assert.assertEquals(0, cpMonitor.getHostStats().get(host1).getOperationErrorCount());
+				Assert.assertEquals(2, cpMonitor.getHostStats().get(host1).getConnectionsBorrowed());
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+	
+	@Test
+	public void testConcurrencyLimitWithRetries() throws Exception {
+
+		cpConfig.withConcurrencyLimitConfig(new ConnectionPoolConfigurationImpl.ConcurrencyLimitConfigImpl(1, 1, 1, 0.9, 2.0, 1000));
+		
+		final RetryNTimes retry = new RetryNTimes(2, false);
+		cpConfig.setRetryPolicyFactory(new RetryPolicyFactory() {
+			@Override
+			public RetryPolicy getRetryPolicy() {
+				return retry;
+			}
+		});
+		
+		final ConnectionPoolImpl<TestClient> pool = new ConnectionPoolImpl<TestClient>(connFactory, cpConfig, cpMonitor);
+		hostSupplierHosts.add(host1);
+		
+		pool.start();
+		
+		// take the only slot of the host
+		Connection<TestClient> connection = pool.getTokenSelection().getAdmittedConnection(new BaseOperation<TestClient, Integer>() {
+
+			@Override
+			public String getName() {
+				return "TestOperation";
+			}
+
+			@Override
+			public String getKey() {
+				return "TestOperation";
+			}
+		}, 100, TimeUnit.MILLISECONDS);
+		
+		try {
+			try {
+				executeTestClientOperation(pool);
+				Assert.fail("TEST FAILED");
+			} catch (ThrottledException e) {
+				// fails on the rejection rather than the missing connection, and is not retried against the same host
+				Assert.assertEquals(1, retry.getAttemptCount());
+				Assert.assertEquals(0, client.ops.get());
+			}
+			
+			connection.getParentConnectionPool().returnConnection(connection);
+			pool.getTokenSelection().releaseAdmission(host1, TimeUnit.MILLISECONDS.toNanos(1));
+			
+			// the slot is free again
+			executeTestClientOperation(pool);
+			Assert.assertEquals(1, client.ops.get());
+		} finally {
+			pool.shutdown();
+		}
+	}
+	
+	@Test
+	public void testTimeoutsCountTowardsLatencyOutliers() throws Exception {
+
+		cpConfig.withLatencyOutlierConfig(new ConnectionPoolConfigurationImpl.LatencyOutlierConfigImpl(10, 300, 2000, 50, 30, 50));
+		
+		// host3 never succeeds, it always times out after a while. The while is well clear of the p99 of the other hosts, 
+		// which can take a few millis on a busy machine
+		ConnectionFactory<TestClient> slowHostConnectionFactory = new ConnectionFactory<TestClient>() {
+
+			@Override
+			public Connection<TestClient> createConnection(final HostConnectionPool<TestClient> pool, ConnectionObservor cObservor) throws DynoConnectException, ThrottledException {
+				if (!pool.getHost().getHostName().equals("host3")) {
+					return new TestConnection(pool);
+				}
+				return new TestConnection(pool) {
+					@Override
+					public <R> OperationResult<R> execute(Operation<TestClient, R> op) throws DynoException {
+						try {
+							Thread.sleep(25);
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+						throw new TimeoutException("timed out");
+					}
+				};
+			}
+		};
+		
+		final ConnectionPoolImpl<TestClient> pool = new ConnectionPoolImpl<TestClient>(slowHostConnectionFactory, cpConfig, cpMonitor);
+		hostSupplierHosts.add(host1);
+		hostSupplierHosts.add(host2);
+		hostSupplierHosts.add(host3);
+		
+		pool.start();
+		
+		try {
+			for (int i=0; i<200; i++) {
+				try {
+					executeTestClientOperation(pool);
+				} catch (TimeoutException e) {
+					// expected for host3
+				}
+			}
+			
+			Collection<Host> ejected = pool.getCPHealthTracker().getLatencyOutlierDetector().checkForOutliers();
+			Assert.assertEquals(Collections.singletonList(host3), new ArrayList<Host>(ejected));
+		} finally {
+			pool.shutdown();
+		}
+	}
+	
 	@Test
 	public void testPoolExhausted() throws Exception {
 
@@ -4,6 +4,7 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -24,7 +25,7 @@ public class FutureOperationalResultImplTest {
 
 		LastOperationMonitor opMonitor = new LastOperationMonitor();
 		FutureOperationalResultImpl<Integer> futureResult = 
-				new FutureOperationalResultImpl<Integer>("test", futureTask, System.currentTimeMillis(), opMonitor);
+				new FutureOperationalResultImpl<Integer>("test", futureTask, System.nanoTime(), opMonitor);
 
 		ExecutorService threadPool = Executors.newSingleThreadExecutor();
 
@@ -40,7 +41,7 @@ public class FutureOperationalResultImplTest {
 
 		OperationResult<Integer> opResult = futureResult.get();
 		int integerResult = opResult.getResult();
-		long latency = opResult.getLatency();
+		long latency = opResult.getLatency(TimeUnit.MILLISECONDS);
 
 		Assert.assertEquals(11, integerResult);
 		Assert.assertTrue(latency >= 400);
@@ -231,6 +231,32 @@ public class HostConnectionPoolImplTest {
 		Assert.assertTrue(result.failureCount.get() > 0);
 	}
 
+	@Test
+	public void testConnectionsInFlight() throws Exception {
+
+		ConnectionPoolConfigurationImpl poolConfig = new ConnectionPoolConfigurationImpl("TestClient");
+		poolConfig.setMaxConnsPerHost(3);
+
+		// not the shared pool, which the workers of the other tests may still be using
+		HostConnectionPoolImpl<TestClient> hostPool = new HostConnectionPoolImpl<TestClient>(TestHost, connFactory, poolConfig, cpMonitor);
+		hostPool.primeConnections();
+		try {
+			Assert.assertEquals(0, hostPool.getConnectionsInFlight());
+
+			Connection<TestClient> c1 = hostPool.borrowConnection(10, TimeUnit.MILLISECONDS);
+			Connection<TestClient> c2 = hostPool.borrowConnection(10, TimeUnit.MILLISECONDS);
+			Assert.assertEquals(2, hostPool.getConnectionsInFlight());
+
+			hostPool.returnConnection(c1);
+			Assert.assertEquals(1, hostPool.getConnectionsInFlight());
+
+			hostPool.closeConnection(c2);
+			Assert.assertEquals(0, hostPool.getConnectionsInFlight());
+		} finally {
+			hostPool.shutdown();
+		}
+	}
+
 	private class BasicWorker implements Callable<Void> {
 
 		private final BasicResult result;
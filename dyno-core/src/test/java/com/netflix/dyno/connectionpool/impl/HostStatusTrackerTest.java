@@ -114,6 +114,49 @@ public class HostStatusTrackerTest {
 		verifySet(tracker.getInactiveHosts(), "E", "J", "H", "D", "F", "B",  "K", "X", "Y", "A", "C");
 	}
 
+	@Test
+	public void testHostDiffs() throws Exception {
+
+		HostStatusTracker tracker = new HostStatusTracker();
+		Assert.assertEquals(0, tracker.getVersion());
+
+		// First time update
+		tracker = tracker.computeNewHostStatus(getHostSet("A", "B", "C"), getHostSet("D"));
+
+		Assert.assertEquals(1, tracker.getVersion());
+		verifySet(tracker.getHostsAdded(), "A", "B", "C");
+		verifySet(tracker.getHostsRemoved(), "");
+
+		// Round 2. Nothing changes, hence the same tracker is returned
+		HostStatusTracker next = tracker.computeNewHostStatus(getHostSet("C", "B", "A"), getHostSet("D"));
+		Assert.assertSame(tracker, next);
+
+		// Round 3. 'A' goes down, 'D' comes back up and new server 'E' shows up
+		tracker = tracker.computeNewHostStatus(getHostSet("B", "C", "D", "E"), getHostSet("A"));
+
+		Assert.assertEquals(2, tracker.getVersion());
+		verifySet(tracker.getHostsAdded(), "D", "E");
+		verifySet(tracker.getHostsRemoved(), "A");
+		verifySet(tracker.getActiveHosts(), "B", "C", "D", "E");
+		verifySet(tracker.getInactiveHosts(), "A");
+
+		// Round 4. 'B' goes MISSING
+		tracker = tracker.computeNewHostStatus(getHostSet("C", "D", "E"), getHostSet());
+
+		Assert.assertEquals(3, tracker.getVersion());
+		verifySet(tracker.getHostsAdded(), "");
+		verifySet(tracker.getHostsRemoved(), "B");
+		verifySet(tracker.getInactiveHosts(), "A", "B");
+
+		// Round 5. New inactive server 'F' shows up, the active set is the same
+		tracker = tracker.computeNewHostStatus(getHostSet("C", "D", "E"), getHostSet("F"));
+
+		Assert.assertEquals(4, tracker.getVersion());
+		verifySet(tracker.getHostsAdded(), "");
+		verifySet(tracker.getHostsRemoved(), "");
+		verifySet(tracker.getInactiveHosts(), "A", "B", "F");
+	}
+
 	private Set<Host> getHostSet(String ...names) { 
 
 		Set<Host> set = new HashSet<Host>();
@@ -0,0 +1,117 @@
+package com.netflix.dyno.connectionpool.impl;
+
+import java.io.StringWriter;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.netflix.dyno.connectionpool.ConnectionPoolMonitor;
+import com.netflix.dyno.connectionpool.Host;
+import com.netflix.dyno.connectionpool.OperationStatsMonitor;
+import com.netflix.dyno.connectionpool.impl.utils.LatencyRecorder.Snapshot;
+
+public class MonitorStatsWriterTest {
+
+	private final OperationStatsMonitor opMonitor = new OperationStatsMonitor() {
+
+		@Override
+		public void recordLatency(String opName, long duration, TimeUnit unit) {
+		}
+
+		@Override
+		public void recordSuccess(String opName) {
+		}
+
+		@Override
+		public void recordFailure(String opName, String reason) {
+		}
+
+		@Override
+		public Collection<String> getOperationNames() {
+			return Collections.singletonList("GET");
+		}
+
+		@Override
+		public long getSuccessCount(String opName) {
+			return 7;
+		}
+
+		@Override
+		public long getFailureCount(String opName) {
+			return 1;
+		}
+
+		@Override
+		public Snapshot getLatencies(String opName) {
+			return Snapshot.EMPTY;
+		}
+	};
+
+	private ConnectionPoolMonitor getMonitor() {
+
+		CountingConnectionPoolMonitor cpMonitor = new CountingConnectionPoolMonitor();
+		Host host1 = new Host("host1", 1111);
+		Host host2 = new Host("host\"2", 2222);
+
+		cpMonitor.incConnectionBorrowed(host1, 0);
+		cpMonitor.incOperationSuccess(host1, 0);
+		cpMonitor.incOperationSuccess(host2, 0);
+		cpMonitor.incOperationFailure(host2, null);
+		return cpMonitor;
+	}
+
+	@Test
+	public void testJson() throws Exception {
+
+		StringWriter writer = new StringWriter();
+		new MonitorStatsWriter(writer).writeJson("test", getMonitor(), opMonitor);
+
+		JSONObject json = (JSONObject) new JSONParser().parse(writer.toString());
+		Assert.assertEquals("test", json.get("name"));
+
+		JSONObject stats = (JSONObject) json.get("stats");
+		Assert.assertEquals(2L, stats.get("OperationSuccess"));
+		Assert.assertEquals(1L, stats.get("OperationFailure"));
+		Assert.assertEquals(1L, stats.get("ConnectionBorrowed"));
+
+		JSONObject phases = (JSONObject) json.get("phases");
+		Assert.assertEquals(4, phases.size());
+		Assert.assertEquals(0L, ((JSONObject) phases.get("ROUTE")).get("count"));
+
+		JSONObject hosts = (JSONObject) json.get("hosts");
+		Assert.assertEquals(1L, ((JSONObject) hosts.get("host1:1111")).get("OperationSuccess"));
+		Assert.assertEquals(1L, ((JSONObject) hosts.get("host\"2:2222")).get("OperationError"));
+
+		JSONObject ops = (JSONObject) json.get("operations");
+		Assert.assertEquals(7L, ((JSONObject) ops.get("GET")).get("Success"));
+	}
+
+	@Test
+	public void testPrometheus() throws Exception {
+
+		Map<String, ConnectionPoolMonitor> cpMonitors = new HashMap<String, ConnectionPoolMonitor>();
+		cpMonitors.put("test", getMonitor());
+		Map<String, OperationStatsMonitor> opMonitors = new HashMap<String, OperationStatsMonitor>();
+		opMonitors.put("test", opMonitor);
+
+		StringWriter writer = new StringWriter();
+		new MonitorStatsWriter(writer).writePrometheus(cpMonitors, opMonitors);
+		String output = writer.toString();
+
+		Assert.assertTrue(output.contains("# TYPE dyno_operation_success_total counter\ndyno_operation_success_total{pool=\"test\"} 2\n"));
+		Assert.assertTrue(output.contains("dyno_host_operation_success_total{pool=\"test\",host=\"host1:1111\"} 1\n"));
+		Assert.assertTrue(output.contains("dyno_host_operation_error_total{pool=\"test\",host=\"host\\\"2:2222\"} 1\n"));
+		Assert.assertTrue(output.contains("dyno_phase_latency_micros{pool=\"test\",phase=\"EXECUTE\",quantile=\"0.99\"} 0\n"));
+		Assert.assertTrue(output.contains("dyno_op_success_total{pool=\"test\",op=\"GET\"} 7\n"));
+
+		// every metric is declared exactly once
+		Assert.assertEquals(1, output.split("# TYPE dyno_host_latency_micros ").length - 1);
+	}
+}
@@ -23,10 +23,25 @@ public class OperationResultImplTest {
 		.setNode(host);
 
 		Assert.assertEquals(2, opResult.getAttemptsCount());
-		Assert.assertEquals(10, opResult.getLatency());
+		Assert.assertEquals(10000000, opResult.getLatency());
 		Assert.assertEquals(10, opResult.getLatency(TimeUnit.MILLISECONDS));
 		Assert.assertEquals(host, opResult.getNode());
 		Assert.assertEquals("f1", opResult.getMetadata().get("foo"));
 		Assert.assertEquals("b1", opResult.getMetadata().get("bar"));
 	}
+
+	@Test
+	public void testSubMillisLatency() throws Exception {
+
+		OperationResultImpl<Integer> opResult = new OperationResultImpl<Integer>("test", 11, null);
+
+		opResult.setLatency(200, TimeUnit.MICROSECONDS);
+		Assert.assertEquals(200000, opResult.getLatency());
+		Assert.assertEquals(200, opResult.getLatency(TimeUnit.MICROSECONDS));
+		Assert.assertEquals(0, opResult.getLatency(TimeUnit.MILLISECONDS));
+
+		// legacy setter is in millis
+		opResult.latency(3);
+		Assert.assertEquals(3000, opResult.getLatency(TimeUnit.MICROSECONDS));
+	}
 }
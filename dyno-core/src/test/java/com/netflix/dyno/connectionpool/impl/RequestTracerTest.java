@@ -0,0 +1,82 @@
+package com.netflix.dyno.connectionpool.impl;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.netflix.dyno.connectionpool.BaseOperation;
+import com.netflix.dyno.connectionpool.Host;
+import com.netflix.dyno.connectionpool.exception.PoolTimeoutException;
+import com.netflix.dyno.connectionpool.impl.ConnectionPoolConfigurationImpl.RequestTracerConfigImpl;
+import com.netflix.dyno.connectionpool.impl.RequestTracer.Trace;
+
+public class RequestTracerTest {
+
+	private final Host host = new Host("host1", 1111);
+
+	private BaseOperation<Integer, Integer> getOp(final String key) {
+		return new BaseOperation<Integer, Integer>() {
+
+			@Override
+			public String getName() {
+				return "GET";
+			}
+
+			@Override
+			public String getKey() {
+				return key;
+			}
+		};
+	}
+
+	@Test
+	public void testSlowOps() throws Exception {
+
+		// sampling disabled
+		RequestTracer tracer = new RequestTracer(new RequestTracerConfigImpl(0, 1000, 4));
+
+		tracer.trace(getOp("fast"), host, 1, 1000, 100000, 200000, null);
+		Assert.assertEquals(0, tracer.getSlowTraces().size());
+
+		for (int i=0; i<10; i++) {
+			tracer.trace(getOp("slow" + i), host, 2, 1000, TimeUnit.MILLISECONDS.toNanos(5), TimeUnit.MILLISECONDS.toNanos(6), null);
+		}
+		tracer.trace(getOp("failed"), null, 3, 0, 0, TimeUnit.MILLISECONDS.toNanos(2), new PoolTimeoutException("test"));
+
+		// the buffer only keeps the newest traces
+		List<Trace> traces = tracer.getSlowTraces();
+		Assert.assertEquals(4, traces.size());
+		Assert.assertEquals("failed".hashCode(), traces.get(0).getKeyHash());
+		Assert.assertEquals("PoolTimeoutException", traces.get(0).getError());
+		Assert.assertEquals(3, traces.get(0).getAttempts());
+		Assert.assertEquals("slow9".hashCode(), traces.get(1).getKeyHash());
+		Assert.assertEquals("slow7".hashCode(), traces.get(3).getKeyHash());
+		Assert.assertEquals(host, traces.get(1).getHost());
+		Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(5), traces.get(1).getExecuteNanos());
+
+		Assert.assertEquals(0, tracer.getSampledTraces().size());
+	}
+
+	@Test
+	public void testSampling() throws Exception {
+
+		// trace every op, slow op log disabled
+		RequestTracer tracer = new RequestTracer(new RequestTracerConfigImpl(1, 0, 16));
+		for (int i=0; i<5; i++) {
+			tracer.trace(getOp(null), host, 1, 0, 0, TimeUnit.SECONDS.toNanos(1), null);
+		}
+		Assert.assertEquals(5, tracer.getSampledTraces().size());
+		Assert.assertEquals(0, tracer.getSlowTraces().size());
+		Assert.assertEquals(0, tracer.getSampledTraces().get(0).getKeyHash());
+
+		// roughly 1 in 10 ops
+		tracer = new RequestTracer(new RequestTracerConfigImpl(10, 0, 10000));
+		for (int i=0; i<10000; i++) {
+			tracer.trace(getOp("key"), host, 1, 0, 0, 0, null);
+		}
+		int sampled = tracer.getSampledTraces().size();
+		Assert.assertTrue("sampled: " + sampled, sampled > 500 && sampled < 2000);
+	}
+}
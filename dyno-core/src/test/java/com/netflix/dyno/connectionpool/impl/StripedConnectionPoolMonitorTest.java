@@ -0,0 +1,182 @@
+package com.netflix.dyno.connectionpool.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.netflix.dyno.connectionpool.Host;
+import com.netflix.dyno.connectionpool.RequestPhase;
+import com.netflix.dyno.connectionpool.exception.NoAvailableHostsException;
+import com.netflix.dyno.connectionpool.exception.PoolExhaustedException;
+import com.netflix.dyno.connectionpool.exception.PoolTimeoutException;
+import com.netflix.dyno.connectionpool.impl.utils.LatencyRecorder.Snapshot;
+
+public class StripedConnectionPoolMonitorTest {
+
+	@Test
+	public void testProcess() throws Exception {
+
+		StripedConnectionPoolMonitor counter = new StripedConnectionPoolMonitor();
+
+		Host host1 = new Host("host1", 1111);
+		Host host2 = new Host("host2", 2222);
+
+		// Host 1
+		counter.incConnectionCreated(host1);
+		counter.incConnectionClosed(host1, null);
+		counter.incConnectionCreateFailed(host1, null);
+		counter.incConnectionBorrowed(host1, 0);
+		counter.incConnectionReturned(host1);
+
+		counter.incOperationSuccess(host1, 0);
+		counter.incOperationFailure(host1, null);
+
+		// Host 2
+		counter.incConnectionBorrowed(host2, 0);
+		counter.incConnectionReturned(host2);
+
+		counter.incOperationSuccess(host2, 0);
+		counter.incOperationFailure(host2, null);
+
+		counter.incOperationFailure(host2, new PoolTimeoutException(""));
+		counter.incOperationFailure(host2, new PoolExhaustedException(""));
+		counter.incOperationFailure(host2, new NoAvailableHostsException(""));
+
+		// VERIFY COUNTS
+		Assert.assertEquals(1, counter.getConnectionCreatedCount());
+		Assert.assertEquals(1, counter.getConnectionClosedCount());
+		Assert.assertEquals(1, counter.getConnectionCreateFailedCount());
+		Assert.assertEquals(2, counter.getConnectionBorrowedCount());
+		Assert.assertEquals(2, counter.getConnectionReturnedCount());
+
+		Assert.assertEquals(2, counter.getOperationSuccessCount());
+		Assert.assertEquals(5, counter.getOperationFailureCount());
+		Assert.assertEquals(2, counter.getPoolExhaustedTimeoutCount());
+		Assert.assertEquals(1, counter.getNoHostCount());
+
+		Assert.assertEquals(2, counter.getHostCount());
+
+		Assert.assertEquals(1, counter.getHostStats().get(host1).getConnectionsBorrowed());
+		Assert.assertEquals(1, counter.getHostStats().get(host1).getConnectionsReturned());
+		Assert.assertEquals(1, counter.getHostStats().get(host1).getConnectionsCreated());
+		Assert.assertEquals(1, counter.getHostStats().get(host1).getConnectionsCreateFailed());
+		Assert.assertEquals(1, counter.getHostStats().get(host1).getOperationSuccessCount());
+		Assert.assertEquals(1, counter.getHostStats().get(host1).getOperationErrorCount());
+
+		Assert.assertEquals(1, counter.getHostStats().get(host2).getConnectionsBorrowed());
+		Assert.assertEquals(1, counter.getHostStats().get(host2).getConnectionsReturned());
+		Assert.assertEquals(0, counter.getHostStats().get(host2).getConnectionsCreated());
+		Assert.assertEquals(0, counter.getHostStats().get(host2).getConnectionsCreateFailed());
+		Assert.assertEquals(1, counter.getHostStats().get(host2).getOperationSuccessCount());
+		Assert.assertEquals(4, counter.getHostStats().get(host2).getOperationErrorCount());
+	}
+
+	@Test
+	public void testSharedHosts() throws Exception {
+
+		StripedConnectionPoolMonitor monitor1 = new StripedConnectionPoolMonitor();
+		StripedConnectionPoolMonitor monitor2 = new StripedConnectionPoolMonitor();
+
+		Host host1 = new Host("host1", 1111);
+		Host host2 = new Host("host2", 2222);
+
+		monitor1.hostAdded(host1, null);
+		monitor1.hostAdded(host2, null);
+
+		// the same host instances are tracked by both monitors
+		monitor2.incOperationSuccess(host2, 0);
+		monitor1.incOperationSuccess(host2, 0);
+		monitor1.incOperationSuccess(host2, 0);
+		Assert.assertEquals(0, monitor1.getHostStats().get(host1).getOperationSuccessCount());
+		Assert.assertEquals(2, monitor1.getHostStats().get(host2).getOperationSuccessCount());
+		Assert.assertEquals(1, monitor2.getHostStats().get(host2).getOperationSuccessCount());
+		Assert.assertEquals(1, monitor2.getHostCount());
+
+		// an equal host instance shares the stats
+		monitor1.incOperationSuccess(new Host("host1", 1111), 0);
+		Assert.assertEquals(1, monitor1.getHostStats().get(host1).getOperationSuccessCount());
+		Assert.assertEquals(2, monitor1.getHostCount());
+	}
+
+	@Test
+	public void testPhaseLatencies() throws Exception {
+
+		StripedConnectionPoolMonitor monitor = new StripedConnectionPoolMonitor();
+		Host host = new Host("host1", 1111);
+
+		monitor.recordPhaseLatency(RequestPhase.ROUTE, TimeUnit.MICROSECONDS.toNanos(5));
+		monitor.incConnectionBorrowed(host, TimeUnit.MICROSECONDS.toNanos(50));
+		monitor.recordPhaseLatency(RequestPhase.EXECUTE, TimeUnit.MICROSECONDS.toNanos(200));
+		monitor.recordPhaseLatency(RequestPhase.EXECUTE, TimeUnit.MICROSECONDS.toNanos(200));
+
+		Snapshot route = monitor.getPhaseLatencyRecorder(RequestPhase.ROUTE).getSnapshot(false);
+		Snapshot borrow = monitor.getPhaseLatencyRecorder(RequestPhase.BORROW).getSnapshot(false);
+		Snapshot execute = monitor.getPhaseLatencyRecorder(RequestPhase.EXECUTE).getSnapshot(false);
+		Snapshot ret = monitor.getPhaseLatencyRecorder(RequestPhase.RETURN).getSnapshot(false);
+
+		Assert.assertEquals(1, route.getCount());
+		Assert.assertEquals(5, route.getMax());
+		Assert.assertEquals(1, borrow.getCount());
+		Assert.assertEquals(50, borrow.getMax());
+		Assert.assertEquals(2, execute.getCount());
+		Assert.assertEquals(200, execute.getMin());
+		Assert.assertEquals(0, ret.getCount());
+	}
+
+	@Test
+	public void testConcurrentUpdates() throws Exception {
+
+		final StripedConnectionPoolMonitor monitor = new StripedConnectionPoolMonitor();
+
+		final List<Host> hosts = new ArrayList<Host>();
+		for (int i=0; i<4; i++) {
+			hosts.add(new Host("host" + i, 1111));
+		}
+
+		int numThreads = 8;
+		final int numOps = 10000;
+		ExecutorService threadPool = Executors.newFixedThreadPool(numThreads);
+		final CyclicBarrier barrier = new CyclicBarrier(numThreads);
+
+		List<Future<Void>> futures = new ArrayList<Future<Void>>();
+		for (int i=0; i<numThreads; i++) {
+			futures.add(threadPool.submit(new Callable<Void>() {
+
+				@Override
+				public Void call() throws Exception {
+					barrier.await();
+					for (int j=0; j<numOps; j++) {
+						Host host = hosts.get(j % hosts.size());
+						monitor.incConnectionBorrowed(host, 0);
+						monitor.incOperationSuccess(host, 0);
+						monitor.incConnectionReturned(host);
+					}
+					return null;
+				}
+			}));
+		}
+
+		for (Future<Void> f : futures) {
+			f.get();
+		}
+		threadPool.shutdownNow();
+
+		Assert.assertEquals(numThreads*numOps, monitor.getConnectionBorrowedCount());
+		Assert.assertEquals(numThreads*numOps, monitor.getConnectionReturnedCount());
+		Assert.assertEquals(numThreads*numOps, monitor.getOperationSuccessCount());
+		Assert.assertEquals(0, monitor.getNumBusyConnections());
+		Assert.assertEquals(hosts.size(), monitor.getHostCount());
+
+		for (Host host : hosts) {
+			Assert.assertEquals(numThreads*numOps/hosts.size(), monitor.getHostStats().get(host).getOperationSuccessCount());
+		}
+	}
+}
@@ -1,7 +1,8 @@
 package com.netflix.dyno.connectionpool.impl.hash;
 
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -11,6 +12,7 @@ import org.junit.Test;
 import com.netflix.dyno.connectionpool.Host;
 import com.netflix.dyno.connectionpool.Host.Status;
 import com.netflix.dyno.connectionpool.impl.lb.HostToken;
+import com.netflix.dyno.connectionpool.impl.lb.TokenRange;
 
 public class BinarySearchTokenMapperTest {
 
@@ -84,6 +86,111 @@ public class BinarySearchTokenMapperTest {
 		Assert.assertTrue("Failures: " + failures, failures == 0);
 	}
 
+	@Test
+	public void testVNodes() throws Exception {
+
+		final BinarySearchTokenMapper tokenMapper = new BinarySearchTokenMapper(new Murmur1HashPartitioner());
+
+		// 2 hosts with 1000 tokens each, interleaved on the ring
+		Host h1 = new Host("h1", -1, Status.Up);
+		Host h2 = new Host("h2", -1, Status.Up);
+		List<HostToken> tokens = new ArrayList<HostToken>();
+		for (long i=1; i<=2000; i++) {
+			tokens.add(new HostToken(i * 1000L, (i % 2 == 0) ? h2 : h1));
+		}
+		tokenMapper.initSearchMecahnism(tokens);
+		Assert.assertEquals(2000, tokenMapper.size());
+
+		Long failures = 0L;
+		failures += runTest(0L, 1000L, "h1", tokenMapper);
+		failures += runTest(1000L, 2000L, "h2", tokenMapper);
+		failures += runTest(4000L, 5000L, "h1", tokenMapper);
+		failures += runTest(1999000L, 2000000L, "h2", tokenMapper);
+		// past the last token wraps around to the first one
+		failures += runTest(2000000L, 2001000L, "h1", tokenMapper);
+		Assert.assertTrue("Failures: " + failures, failures == 0);
+
+		// all the tokens of h1 go away
+		tokenMapper.removeHost(h1);
+		Assert.assertEquals(1000, tokenMapper.size());
+
+		failures += runTest(0L, 2001000L, "h2", tokenMapper);
+		Assert.assertTrue("Failures: " + failures, failures == 0);
+	}
+
+	@Test
+	public void testGetTokenOwners() throws Exception {
+
+		final BinarySearchTokenMapper tokenMapper = new BinarySearchTokenMapper(new Murmur1HashPartitioner());
+		tokenMapper.initSearchMecahnism(getTestTokens());
+
+		verifyOwners(tokenMapper.getTokenOwners(0L, 100L), "h1");
+		verifyOwners(tokenMapper.getTokenOwners(309687905L, 309687906L), "h1", "h2");
+		verifyOwners(tokenMapper.getTokenOwners(309687906L, 1383429731L), "h2");
+		verifyOwners(tokenMapper.getTokenOwners(3530913378L, 4000000000L), "h1");
+		verifyOwners(tokenMapper.getTokenOwners(0L, BinarySearchTokenMapper.MAX_TOKEN), "h1", "h2", "h3", "h4");
+
+		// start > end wraps around the top of the ring
+		verifyOwners(tokenMapper.getTokenOwners(3000000000L, 100L), "h4", "h1");
+		verifyOwners(tokenMapper.getTokenOwners(2000000000L, 1000000000L), "h3", "h4", "h1", "h2");
+	}
+
+	@Test
+	public void testSplitRing() throws Exception {
+
+		final BinarySearchTokenMapper tokenMapper = new BinarySearchTokenMapper(new Murmur1HashPartitioner());
+		tokenMapper.initSearchMecahnism(getTestTokens());
+
+		// one range per token, the first one wraps around
+		List<TokenRange> ranges = tokenMapper.splitRing(1);
+		Assert.assertEquals(4, ranges.size());
+		Assert.assertEquals(new TokenRange(3530913378L, 309687905L, tokenMapper.getToken(0L)), ranges.get(0));
+		Assert.assertEquals(new TokenRange(309687906L, 1383429731L, tokenMapper.getToken(1383429731L)), ranges.get(1));
+		verifyRanges(tokenMapper, ranges);
+
+		for (int numRanges : new int[] {4, 5, 16, 100, 1001}) {
+			ranges = tokenMapper.splitRing(numRanges);
+			Assert.assertEquals(numRanges, ranges.size());
+			verifyRanges(tokenMapper, ranges);
+		}
+
+		// a single token owns the whole ring
+		BinarySearchTokenMapper singleTokenMapper = new BinarySearchTokenMapper(new Murmur1HashPartitioner());
+		singleTokenMapper.initSearchMecahnism(getTestTokens().subList(0, 1));
+		ranges = singleTokenMapper.splitRing(8);
+		Assert.assertEquals(8, ranges.size());
+		verifyRanges(singleTokenMapper, ranges);
+	}
+
+	/**
+	 * The ranges must cover the whole ring without gaps or overlaps, and each of them must be owned by a single token
+	 */
+	private void verifyRanges(BinarySearchTokenMapper tokenMapper, List<TokenRange> ranges) {
+
+		long ringSize = BinarySearchTokenMapper.MAX_TOKEN + 1;
+		long total = 0L;
+		TokenRange prev = ranges.get(ranges.size() - 1);
+
+		for (TokenRange range : ranges) {
+			Assert.assertEquals(((prev.getEnd() + 1) % ringSize), range.getStart());
+			Assert.assertEquals(range.getOwner(), tokenMapper.getToken(range.getStart()));
+			Assert.assertEquals(range.getOwner(), tokenMapper.getToken(range.getEnd()));
+			Assert.assertEquals(Collections.singletonList(range.getOwner()), tokenMapper.getTokenOwners(range.getStart(), range.getEnd()));
+			total += (range.getEnd() - range.getStart() + ringSize) % ringSize + 1;
+			prev = range;
+		}
+		Assert.assertEquals(ringSize, total);
+	}
+
+	private void verifyOwners(List<HostToken> owners, String ... hostnames) {
+
+		List<String> result = new ArrayList<String>();
+		for (HostToken hToken : owners) {
+			result.add(hToken.getHost().getHostName());
+		}
+		Assert.assertEquals(Arrays.asList(hostnames), result);
+	}
+
 	private long runTest(Long start, Long end, final String expectedToken, final BinarySearchTokenMapper tokenMapper) {
 
 		final AtomicLong failures = new AtomicLong(0L);
@@ -101,7 +208,7 @@ public class BinarySearchTokenMapperTest {
 		return failures.get();
 	}
 
-	private Collection<HostToken> getTestTokens() {
+	private List<HostToken> getTestTokens() {
 
 		/**
 			cqlsh:dyno_bootstrap> select "availabilityZone","hostname","token" from tokens where "appId" = 'dynomite_redis_puneet';
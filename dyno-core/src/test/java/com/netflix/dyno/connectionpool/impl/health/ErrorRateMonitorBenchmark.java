@@ -0,0 +1,76 @@
+package com.netflix.dyno.connectionpool.impl.health;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.netflix.dyno.connectionpool.impl.health.ErrorRateMonitor.SimpleErrorCheckPolicy;
+
+/**
+ * JMH benchmark for {@link ErrorRateMonitor#trackErrorRate(int)} under an error storm, i.e many threads tracking
+ * errors as fast as they can while the checks keep firing every second.
+ *
+ * Run with -prof gc to see the allocation rate on the check path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class ErrorRateMonitorBenchmark {
+
+	private ErrorRateMonitor errorMonitor;
+	private RingBufferRateTracker rateTracker;
+
+	@Setup
+	public void setup() {
+
+		// check every second and never suppress checks, with thresholds that are never crossed
+		// so that every check evaluates all policies over the entire window
+		errorMonitor = new ErrorRateMonitor(20, 1, 0);
+		errorMonitor.addPolicy(new SimpleErrorCheckPolicy(Integer.MAX_VALUE, 10, 80));
+		errorMonitor.addPolicy(new SimpleErrorCheckPolicy(Integer.MAX_VALUE, 5, 80));
+
+		rateTracker = new RingBufferRateTracker(20);
+	}
+
+	@Benchmark
+	@Threads(8)
+	public boolean trackErrorRate() {
+		return errorMonitor.trackErrorRate(1);
+	}
+
+	@Benchmark
+	@Threads(8)
+	public void trackRate() {
+		rateTracker.trackRate(1);
+	}
+
+	@Benchmark
+	@Threads(1)
+	public boolean trackErrorRateUncontended() {
+		return errorMonitor.trackErrorRate(1);
+	}
+
+	public static void main(String[] args) throws Exception {
+
+		Options options = new OptionsBuilder()
+				.include(ErrorRateMonitorBenchmark.class.getSimpleName())
+				.build();
+		new Runner(options).run();
+	}
+}
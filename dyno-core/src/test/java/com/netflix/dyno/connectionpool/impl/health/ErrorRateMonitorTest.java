@@ -17,38 +17,26 @@ import org.junit.Test;
 import com.netflix.dyno.connectionpool.impl.health.ErrorRateMonitor.SimpleErrorCheckPolicy;
 import com.netflix.dyno.connectionpool.impl.health.RateTracker.Bucket;
 import com.netflix.dyno.connectionpool.impl.utils.CollectionUtils;
-import com.netflix.dyno.connectionpool.impl.utils.RateLimitUtil;
+import com.netflix.dyno.connectionpool.impl.utils.TokenBucketRateLimiter;
 
 public class ErrorRateMonitorTest {
 
 	@Test 
 	public void testSimpleErrorCheckPolicy() throws Exception {
 
-		List<Bucket> buckets = getBuckets(116, 120, 121, 120, 130, 125, 130, 120, 120, 120);
+		int[] window = {116, 120, 121, 120, 130, 125, 130, 120, 120, 120};
 
 		SimpleErrorCheckPolicy policy = new SimpleErrorCheckPolicy(120, 10, 80);
-		Assert.assertTrue(policy.checkErrorRate(buckets));
+		Assert.assertTrue(policy.checkErrorRate(window));
 
 		policy = new SimpleErrorCheckPolicy(121, 10, 80);
-		Assert.assertFalse(policy.checkErrorRate(buckets));
+		Assert.assertFalse(policy.checkErrorRate(window));
 
 		policy = new SimpleErrorCheckPolicy(130, 10, 20);
-		Assert.assertTrue(policy.checkErrorRate(buckets));
+		Assert.assertTrue(policy.checkErrorRate(window));
 
 	}
 
-	private List<Bucket> getBuckets(Integer ... values) {
-		List<Bucket> buckets = new ArrayList<Bucket>();
-
-		for (Integer i : values) {
-			Bucket b = new Bucket();
-			b.track(i);
-			buckets.add(b);
-		}
-
-		return buckets;
-	}
-
 	@Test
 	public void testNoErrorCheckTriggers() throws Exception {
 
@@ -93,7 +81,7 @@ public class ErrorRateMonitorTest {
 		int numThreads = 5; 
 		ExecutorService threadPool = Executors.newFixedThreadPool(numThreads);
 
-		final AtomicReference<RateLimitUtil> limiter = new AtomicReference<RateLimitUtil>(RateLimitUtil.create(rates.get(0)));
+		final AtomicReference<TokenBucketRateLimiter> limiter = new AtomicReference<TokenBucketRateLimiter>(new TokenBucketRateLimiter(rates.get(0), 1));
 		final AtomicBoolean stop = new AtomicBoolean(false);
 
 		final CyclicBarrier barrier = new CyclicBarrier(numThreads+1);
@@ -110,11 +98,14 @@ public class ErrorRateMonitorTest {
 
 					barrier.await();
 					while (!stop.get() && !Thread.currentThread().isInterrupted()) {
-						if (limiter.get().acquire()) {
-							boolean success = errorMonitor.trackErrorRate(1);
-							if (!success) {
-								errorCount.incrementAndGet();
-							}
+						try {
+							limiter.get().acquire(1);
+						} catch (InterruptedException e) {
+							break;
+						}
+						boolean success = errorMonitor.trackErrorRate(1);
+						if (!success) {
+							errorCount.incrementAndGet();
 						}
 					}
 					latch.countDown();
@@ -133,7 +124,7 @@ public class ErrorRateMonitorTest {
 			Thread.sleep(sleepPerIteration*1000);
 			if (round < rates.size()) {
 				System.out.println("Changing rate to " + rates.get(round));
-				limiter.set(RateLimitUtil.create(rates.get(round)));
+				limiter.set(new TokenBucketRateLimiter(rates.get(round), 1));
 			}
 			round++;
 		} while (round <= numIterations);
@@ -0,0 +1,142 @@
+package com.netflix.dyno.connectionpool.impl.health;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.netflix.dyno.connectionpool.Host;
+import com.netflix.dyno.connectionpool.Host.Status;
+import com.netflix.dyno.connectionpool.impl.ConnectionPoolConfigurationImpl.LatencyOutlierConfigImpl;
+
+public class LatencyOutlierDetectorTest {
+
+	private final Host h1 = new Host("h1", Status.Up).setRack("r1");
+	private final Host h2 = new Host("h2", Status.Up).setRack("r1");
+	private final Host h3 = new Host("h3", Status.Up).setRack("r1");
+	private final Host h4 = new Host("h4", Status.Up).setRack("r1");
+	private final Host h5 = new Host("h5", Status.Up).setRack("r2");
+
+	@Test
+	public void testSlowHostIsEjected() throws Exception {
+
+		LatencyOutlierDetector detector = new LatencyOutlierDetector(new LatencyOutlierConfigImpl(10, 300, 2000, 100, 30, 50));
+
+		track(detector, h1, 200, 1);
+		track(detector, h2, 200, 1);
+		track(detector, h3, 200, 1);
+		track(detector, h4, 200, 20);
+
+		Collection<Host> ejected = detector.checkForOutliers();
+		Assert.assertEquals(1, ejected.size());
+		Assert.assertTrue(ejected.contains(h4));
+
+		Assert.assertTrue(detector.isEjected(h4));
+		Assert.assertFalse(detector.isEjected(h1));
+		Assert.assertFalse(detector.isEjected(h2));
+		Assert.assertFalse(detector.isEjected(h3));
+
+		detector.removeHost(h4);
+		Assert.assertFalse(detector.isEjected(h4));
+	}
+
+	@Test
+	public void testFastHostsAreNotEjected() throws Exception {
+
+		// h4 is 4x slower than it's peers, but still below the latency floor
+		LatencyOutlierDetector detector = new LatencyOutlierDetector(new LatencyOutlierConfigImpl(10, 300, 50000, 100, 30, 50));
+
+		track(detector, h1, 200, 1);
+		track(detector, h2, 200, 1);
+		track(detector, h3, 200, 1);
+		track(detector, h4, 200, 4);
+
+		Assert.assertTrue(detector.checkForOutliers().isEmpty());
+		Assert.assertFalse(detector.isEjected(h4));
+	}
+
+	@Test
+	public void testHostsAreOnlyComparedWithinRack() throws Exception {
+
+		LatencyOutlierDetector detector = new LatencyOutlierDetector(new LatencyOutlierConfigImpl(10, 300, 2000, 100, 30, 50));
+
+		track(detector, h1, 200, 1);
+		track(detector, h2, 200, 1);
+		// h5 is the only host in it's rack, hence has no peers
+		track(detector, h5, 200, 20);
+
+		Assert.assertTrue(detector.checkForOutliers().isEmpty());
+		Assert.assertFalse(detector.isEjected(h5));
+	}
+
+	@Test
+	public void testMinSamples() throws Exception {
+
+		LatencyOutlierDetector detector = new LatencyOutlierDetector(new LatencyOutlierConfigImpl(10, 300, 2000, 100, 30, 50));
+
+		track(detector, h1, 200, 1);
+		track(detector, h2, 200, 1);
+		track(detector, h3, 50, 20);
+
+		Assert.assertTrue(detector.checkForOutliers().isEmpty());
+	}
+
+	@Test
+	public void testEjectionCap() throws Exception {
+
+		// only 10% of 4 hosts, i.e at most 1 host can be ejected at any time
+		LatencyOutlierDetector detector = new LatencyOutlierDetector(new LatencyOutlierConfigImpl(10, 300, 2000, 100, 30, 10));
+
+		track(detector, h1, 200, 1);
+		track(detector, h2, 200, 1);
+		track(detector, h3, 200, 20);
+		track(detector, h4, 200, 40);
+
+		Collection<Host> ejected = detector.checkForOutliers();
+		Assert.assertEquals(1, ejected.size());
+		Assert.assertTrue(ejected.contains(h4));
+		Assert.assertEquals(1, detector.getEjectedHosts().size());
+	}
+
+	@Test
+	public void testEjectionCapOnlyCountsLiveHosts() throws Exception {
+
+		// 25% of the 4 hosts that are up, the hosts that are down don't raise the cap
+		LatencyOutlierDetector detector = new LatencyOutlierDetector(new LatencyOutlierConfigImpl(10, 300, 2000, 100, 30, 25));
+
+		for (int i=0; i<4; i++) {
+			Host down = new Host("down" + i, Status.Down).setRack("r2");
+			track(detector, down, 200, 1);
+		}
+		track(detector, h1, 200, 1);
+		track(detector, h2, 200, 1);
+		track(detector, h3, 200, 20);
+		track(detector, h4, 200, 40);
+
+		Collection<Host> ejected = detector.checkForOutliers();
+		Assert.assertEquals(1, ejected.size());
+		Assert.assertTrue(ejected.contains(h4));
+	}
+
+	@Test
+	public void testEjectionExpires() throws Exception {
+
+		LatencyOutlierDetector detector = new LatencyOutlierDetector(new LatencyOutlierConfigImpl(10, 300, 2000, 100, 0, 50));
+
+		track(detector, h1, 200, 1);
+		track(detector, h2, 200, 1);
+		track(detector, h3, 200, 20);
+
+		Assert.assertEquals(1, detector.checkForOutliers().size());
+		Thread.sleep(10);
+		Assert.assertFalse(detector.isEjected(h3));
+		Assert.assertTrue(detector.getEjectedHosts().isEmpty());
+	}
+
+	private void track(LatencyOutlierDetector detector, Host host, int count, int latencyMillis) {
+		for (int i=0; i<count; i++) {
+			detector.trackLatency(host, latencyMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+}
@@ -14,7 +14,7 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import com.netflix.dyno.connectionpool.impl.health.RateTracker.Bucket;
-import com.netflix.dyno.connectionpool.impl.utils.RateLimitUtil;
+import com.netflix.dyno.connectionpool.impl.utils.TokenBucketRateLimiter;
 
 public class RateTrackerTest {
 		
@@ -26,7 +26,7 @@ public class RateTrackerTest {
 		int numThreads = 5; 
 		ExecutorService threadPool = Executors.newFixedThreadPool(numThreads);
 
-		final AtomicReference<RateLimitUtil> limiter = new AtomicReference<RateLimitUtil>(RateLimitUtil.create(100));
+		final AtomicReference<TokenBucketRateLimiter> limiter = new AtomicReference<TokenBucketRateLimiter>(new TokenBucketRateLimiter(100, 1));
 
 		final AtomicBoolean stop = new AtomicBoolean(false);
 
@@ -45,10 +45,13 @@ public class RateTrackerTest {
 
 					barrier.await();
 					while (!stop.get() && !Thread.currentThread().isInterrupted()) {
-						if (limiter.get().acquire()){
-							tracker.trackRate(1);
-							totalOps.incrementAndGet();
+						try {
+							limiter.get().acquire(1);
+						} catch (InterruptedException e) {
+							break;
 						}
+						tracker.trackRate(1);
+						totalOps.incrementAndGet();
 					}
 					latch.countDown();
 					return null;
@@ -60,19 +63,19 @@ public class RateTrackerTest {
 
 		Thread.sleep(4000);
 		System.out.println("Changing rate to 120");
-		limiter.set(RateLimitUtil.create(120));
+		limiter.set(new TokenBucketRateLimiter(120, 1));
 
 		Thread.sleep(4000);
 		System.out.println("Changing rate to 80");
-		limiter.set(RateLimitUtil.create(80));
+		limiter.set(new TokenBucketRateLimiter(80, 1));
 
 		Thread.sleep(4000);
 		System.out.println("Changing rate to 200");
-		limiter.set(RateLimitUtil.create(200));
+		limiter.set(new TokenBucketRateLimiter(200, 1));
 
 		Thread.sleep(4000);
 		System.out.println("Changing rate to 100");
-		limiter.set(RateLimitUtil.create(100));
+		limiter.set(new TokenBucketRateLimiter(100, 1));
 
 		stop.set(true);
 		threadPool.shutdownNow();
@@ -0,0 +1,105 @@
+package com.netflix.dyno.connectionpool.impl.health;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.netflix.dyno.connectionpool.impl.health.ErrorRateMonitor.SimpleErrorCheckPolicy;
+
+public class RingBufferRateTrackerTest {
+
+	@Test
+	public void testRollingWindow() throws Exception {
+
+		RingBufferRateTracker tracker = new RingBufferRateTracker(5);
+
+		long start = 1000;
+		for (int i=0; i<5; i++) {
+			tracker.trackRate(10 + i, start + i);
+			tracker.trackRate(1, start + i);
+		}
+
+		for (int i=0; i<5; i++) {
+			Assert.assertEquals(11 + i, tracker.getCount(start + i));
+		}
+
+		// moving on to the next second overwrites the oldest slot
+		tracker.trackRate(7, start + 5);
+		Assert.assertEquals(7, tracker.getCount(start + 5));
+		Assert.assertEquals(0, tracker.getCount(start));
+		Assert.assertEquals(12, tracker.getCount(start + 1));
+
+		// a late write for a second that has already rolled out of the window is dropped
+		tracker.trackRate(100, start);
+		Assert.assertEquals(7, tracker.getCount(start + 5));
+		Assert.assertEquals(0, tracker.getCount(start));
+
+		// seconds that were never written to read as 0
+		Assert.assertEquals(0, tracker.getCount(start + 7));
+	}
+
+	@Test
+	public void testConcurrentTracking() throws Exception {
+
+		final RingBufferRateTracker tracker = new RingBufferRateTracker(10);
+		final long second = 5000;
+
+		int numThreads = 8;
+		final int numOps = 10000;
+		ExecutorService threadPool = Executors.newFixedThreadPool(numThreads);
+		final CyclicBarrier barrier = new CyclicBarrier(numThreads);
+
+		List<Future<Void>> futures = new ArrayList<Future<Void>>();
+		for (int i=0; i<numThreads; i++) {
+			futures.add(threadPool.submit(new Callable<Void>() {
+
+				@Override
+				public Void call() throws Exception {
+					barrier.await();
+					for (int j=0; j<numOps; j++) {
+						tracker.trackRate(1, second);
+					}
+					return null;
+				}
+			}));
+		}
+
+		for (Future<Void> f : futures) {
+			f.get();
+		}
+		threadPool.shutdownNow();
+
+		Assert.assertEquals(numThreads*numOps, tracker.getCount(second));
+	}
+
+	@Test
+	public void testSnapshot() throws Exception {
+
+		RingBufferRateTracker tracker = new RingBufferRateTracker(10);
+
+		long now = RingBufferRateTracker.currentSecond();
+		int[] values = {116, 120, 121, 120, 130, 125, 130, 120, 120, 120};
+		for (int i=0; i<values.length; i++) {
+			tracker.trackRate(values[i], now - i);
+		}
+
+		int[] window = new int[tracker.getWindowSize()];
+		tracker.snapshot(window);
+
+		// guard against the clock ticking over while setting up the window
+		if (RingBufferRateTracker.currentSecond() != now) {
+			return;
+		}
+
+		Assert.assertTrue(new SimpleErrorCheckPolicy(120, 10, 80).checkErrorRate(window));
+		Assert.assertFalse(new SimpleErrorCheckPolicy(121, 10, 80).checkErrorRate(window));
+		Assert.assertTrue(new SimpleErrorCheckPolicy(130, 10, 20).checkErrorRate(window));
+	}
+}
@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -77,4 +78,88 @@ public class AbstractTokenMapSupplierTest {
 		Assert.assertTrue(hTokens.get(7).getToken().equals(3450843231L));
 		Assert.assertTrue(hTokens.get(7).getHost().getHostName().equals("ec2-54-81-138-73.compute-1.amazonaws.com"));
 	}
+
+	@Test
+	public void testParallelFetchAndCache() throws Exception {
+
+		final List<Host> hostList = new ArrayList<Host>();
+
+		hostList.add(new Host("ec2-54-237-143-4.compute-1.amazonaws.com", 11211, Status.Up));
+		hostList.add(new Host("ec2-50-17-65-2.compute-1.amazonaws.com", 11211, Status.Up));
+		hostList.add(new Host("ec2-54-83-87-174.compute-1.amazonaws.com", 11211, Status.Up));
+		hostList.add(new Host("ec2-54-81-138-73.compute-1.amazonaws.com", 11211, Status.Up));
+
+		final AtomicInteger numFetches = new AtomicInteger(0);
+
+		TokenMapSupplier slowTokenMapSupplier = new AbstractTokenMapSupplier() {
+
+			@Override
+			public String getTopologyJsonPayload() {
+				return json;
+			}
+
+			@Override
+			public String getTopologyJsonPayload(String hostname) {
+				numFetches.incrementAndGet();
+				// only the first host is quick to respond
+				if (!hostname.equals(hostList.get(0).getHostName())) {
+					try {
+						Thread.sleep(5000);
+					} catch (InterruptedException e) {
+						throw new RuntimeException(e);
+					}
+				}
+				return json;
+			}
+		};
+
+		slowTokenMapSupplier.initWithHosts(hostList);
+
+		// the response from the first host covers all the hosts, hence we don't need to wait for the others
+		long start = System.currentTimeMillis();
+		List<HostToken> hTokens = slowTokenMapSupplier.getTokens();
+		Assert.assertTrue(System.currentTimeMillis() - start < 2000);
+		Assert.assertEquals(8, hTokens.size());
+
+		// served from the cache
+		int fetches = numFetches.get();
+		Assert.assertEquals(8, slowTokenMapSupplier.getTokens().size());
+		Assert.assertEquals(fetches, numFetches.get());
+	}
+
+	@Test
+	public void testGetTokenForHost() throws Exception {
+
+		final AtomicInteger numFetches = new AtomicInteger(0);
+
+		TokenMapSupplier countingTokenMapSupplier = new AbstractTokenMapSupplier() {
+
+			@Override
+			public String getTopologyJsonPayload() {
+				numFetches.incrementAndGet();
+				return json;
+			}
+
+			@Override
+			public String getTopologyJsonPayload(String hostname) {
+				numFetches.incrementAndGet();
+				return json;
+			}
+		};
+
+		String[] hostnames = {"ec2-54-237-143-4.compute-1.amazonaws.com", "ec2-50-17-65-2.compute-1.amazonaws.com",
+				"ec2-54-83-87-174.compute-1.amazonaws.com", "ec2-54-81-138-73.compute-1.amazonaws.com"};
+
+		// all the hosts are served from a single fetch of the topology
+		for (String hostname : hostnames) {
+			HostToken hToken = countingTokenMapSupplier.getTokenForHost(new Host(hostname, 11211, Status.Up));
+			Assert.assertEquals(hostname, hToken.getHost().getHostName());
+		}
+		Assert.assertEquals(1, numFetches.get());
+		Assert.assertEquals(3450843231L, countingTokenMapSupplier.getTokenForHost(new Host(hostnames[3], 11211, Status.Up)).getToken().longValue());
+
+		// an unknown host does not cause another fetch right away
+		Assert.assertNull(countingTokenMapSupplier.getTokenForHost(new Host("unknown", 11211, Status.Up)));
+		Assert.assertEquals(1, numFetches.get());
+	}
 }
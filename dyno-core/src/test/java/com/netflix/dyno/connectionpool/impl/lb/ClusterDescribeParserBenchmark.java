@@ -0,0 +1,110 @@
+package com.netflix.dyno.connectionpool.impl.lb;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.netflix.dyno.connectionpool.Host;
+import com.netflix.dyno.connectionpool.Host.Status;
+import com.netflix.dyno.connectionpool.impl.utils.IOUtilities;
+
+/**
+ * JMH benchmark for parsing a synthetic cluster_describe payload with 10k tokens, i.e a large cluster with vnodes. 
+ * Compares {@link ClusterDescribeParser} reading from the stream with reading the whole response into a string 
+ * and parsing it with json-simple, which is what the token suppliers used to do.
+ *
+ * Run with -prof gc to see the allocation rate of each.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class ClusterDescribeParserBenchmark {
+
+	private static final int NumTokens = 10000;
+	// -1 skips resolving the host names in Host, so that only the parsing is measured
+	private static final int Port = -1;
+
+	private byte[] payload;
+
+	@Setup
+	public void setup() throws Exception {
+
+		StringBuilder sb = new StringBuilder("[");
+		for (int i=0; i<NumTokens; i++) {
+			if (i > 0) {
+				sb.append(",\n");
+			}
+			int node = i % 100;
+			sb.append("{\"token\":\"").append((i * 429496L) & 0xffffffffL).append("\",")
+			  .append("\"hostname\":\"ec2-54-237-").append(node).append("-4.compute-1.amazonaws.com\",")
+			  .append("\"dc\":\"us-east-1\",")
+			  .append("\"ip\":\"54.237.").append(node).append(".4\",")
+			  .append("\"zone\":\"us-east-1").append((char) ('c' + node % 3)).append("\",")
+			  .append("\"location\":\"us-east-1\"}");
+		}
+		sb.append("]");
+		payload = sb.toString().getBytes("UTF-8");
+	}
+
+	@Benchmark
+	public List<HostToken> streamingParser() throws Exception {
+		return ClusterDescribeParser.parse(new ByteArrayInputStream(payload), Port);
+	}
+
+	@Benchmark
+	public List<HostToken> jsonSimpleParser() throws Exception {
+
+		InputStream in = new ByteArrayInputStream(payload);
+		String json = IOUtilities.toString(in);
+
+		List<HostToken> hostTokens = new ArrayList<HostToken>();
+		JSONArray arr = (JSONArray) new JSONParser().parse(json);
+
+		Iterator<?> iter = arr.iterator();
+		while (iter.hasNext()) {
+			Object item = iter.next();
+			if (!(item instanceof JSONObject)) {
+				continue;
+			}
+			JSONObject jItem = (JSONObject)item;
+
+			Long token = Long.parseLong((String)jItem.get("token"));
+			String hostname = (String)jItem.get("hostname");
+			String zone = (String)jItem.get("zone");
+
+			Host host = new Host(hostname, Port, Status.Up).setRack(zone);
+			hostTokens.add(new HostToken(token, host));
+		}
+		return hostTokens;
+	}
+
+	public static void main(String[] args) throws Exception {
+		Options opt = new OptionsBuilder()
+				.include(ClusterDescribeParserBenchmark.class.getSimpleName())
+				.build();
+		new Runner(opt).run();
+	}
+}
@@ -0,0 +1,98 @@
+package com.netflix.dyno.connectionpool.impl.lb;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ClusterDescribeParserTest {
+
+	@Test
+	public void testParse() throws Exception {
+
+		String json = "[ {\"token\":\"3051939411\", \"hostname\":\"host1\", \"dc\":\"florida\", \"zone\":\"us-east-1d\"},\n" + 
+				"  {\"token\":188627880, \"hostname\":\"host2\", \"zone\":\"us-east-1c\", \"ports\":[8101, {\"peer\":8102}], \"up\":true, \"weight\":-1.5e3},\n" + 
+				"  {\"hostname\":\"host\\u0033\\t\\\"x\\\"\", \"zone\":null, \"token\":\"42\"} ]";
+
+		List<HostToken> hTokens = ClusterDescribeParser.parse(json, 8102);
+		Assert.assertEquals(3, hTokens.size());
+
+		verifyToken(hTokens.get(0), 3051939411L, "host1", "us-east-1d");
+		verifyToken(hTokens.get(1), 188627880L, "host2", "us-east-1c");
+		verifyToken(hTokens.get(2), 42L, "host3\t\"x\"", null);
+		Assert.assertEquals(8102, hTokens.get(0).getHost().getPort());
+	}
+
+	@Test
+	public void testLenientParse() throws Exception {
+
+		// stray values between the entries and junk after the array are skipped, same as json-simple does
+		String json = "[{\"token\":\"1\",\"hostname\":\"host1\",\"zone\":\"z1\"}\"," + 
+				"\"{\"token\":\"2\",\"hostname\":\"host2\",\"zone\":\"z1\"},\"\"[1, 2],{\"zone\":\"z1\"}]\"";
+
+		List<HostToken> hTokens = ClusterDescribeParser.parse(json, 8102);
+		Assert.assertEquals(2, hTokens.size());
+		verifyToken(hTokens.get(0), 1L, "host1", "z1");
+		verifyToken(hTokens.get(1), 2L, "host2", "z1");
+	}
+
+	@Test
+	public void testParseVNodes() throws Exception {
+
+		// either a comma separated list of tokens, or an entry per token
+		String json = "[{\"token\":\"10, 20,30\",\"hostname\":\"host1\",\"zone\":\"z1\"}," + 
+				"{\"token\":\"15\",\"hostname\":\"host2\",\"zone\":\"z1\"}," + 
+				"{\"token\":\"25\",\"hostname\":\"host2\",\"zone\":\"z1\"}]";
+
+		List<HostToken> hTokens = ClusterDescribeParser.parse(json, -1);
+		Assert.assertEquals(5, hTokens.size());
+		verifyToken(hTokens.get(0), 10L, "host1", "z1");
+		verifyToken(hTokens.get(1), 20L, "host1", "z1");
+		verifyToken(hTokens.get(2), 30L, "host1", "z1");
+		verifyToken(hTokens.get(3), 15L, "host2", "z1");
+		verifyToken(hTokens.get(4), 25L, "host2", "z1");
+		Assert.assertSame(hTokens.get(0).getHost(), hTokens.get(2).getHost());
+	}
+
+	@Test
+	public void testParseStream() throws Exception {
+
+		// larger than the read buffer, so that values span buffer boundaries
+		StringBuilder sb = new StringBuilder("[");
+		for (int i=0; i<1000; i++) {
+			if (i > 0) {
+				sb.append(",");
+			}
+			sb.append("{\"token\":\"").append(i * 4000000L).append("\",\"hostname\":\"host-").append(i).append("\",\"zone\":\"zone-").append(i % 3).append("\"}");
+		}
+		sb.append("]");
+
+		// port -1 skips resolving the host names
+		List<HostToken> hTokens = ClusterDescribeParser.parse(new ByteArrayInputStream(sb.toString().getBytes("UTF-8")), -1);
+		Assert.assertEquals(1000, hTokens.size());
+		for (int i=0; i<1000; i++) {
+			verifyToken(hTokens.get(i), i * 4000000L, "host-" + i, "zone-" + (i % 3));
+		}
+	}
+
+	@Test
+	public void testBadPayload() throws Exception {
+
+		String[] payloads = { "", "{}", "[{\"token\":\"1\",\"hostname\":\"host1\"", "[{\"token\":\"abc\",\"hostname\":\"host1\"}]", "[{\"hostname\":\"host1}]", "[{\"token\":\"1,\",\"hostname\":\"host1\"}]" };
+		for (String json : payloads) {
+			try {
+				ClusterDescribeParser.parse(json, 8102);
+				Assert.fail("Expected failure for " + json);
+			} catch (IOException e) {
+			}
+		}
+	}
+
+	private void verifyToken(HostToken hToken, long token, String hostname, String zone) {
+		Assert.assertEquals(token, hToken.getToken().longValue());
+		Assert.assertEquals(hostname, hToken.getHost().getHostName());
+		Assert.assertEquals(zone, hToken.getHost().getRack());
+	}
+}
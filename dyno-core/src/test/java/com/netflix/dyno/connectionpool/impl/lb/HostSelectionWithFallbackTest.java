@@ -1,12 +1,14 @@
 package com.netflix.dyno.connectionpool.impl.lb;
 
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -14,6 +16,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Assert;
 import org.junit.Before;
@@ -28,15 +31,21 @@ import com.netflix.dyno.connectionpool.ConnectionPoolMonitor;
 import com.netflix.dyno.connectionpool.Host;
 import com.netflix.dyno.connectionpool.Host.Status;
 import com.netflix.dyno.connectionpool.HostConnectionPool;
+import com.netflix.dyno.connectionpool.ReadOperation;
 import com.netflix.dyno.connectionpool.TokenMapSupplier;
+import com.netflix.dyno.connectionpool.exception.PoolTimeoutException;
+import com.netflix.dyno.connectionpool.exception.ThrottledException;
+import com.netflix.dyno.connectionpool.exception.TimeoutException;
 import com.netflix.dyno.connectionpool.impl.ConnectionPoolConfigurationImpl;
 import com.netflix.dyno.connectionpool.impl.CountingConnectionPoolMonitor;
+import com.netflix.dyno.connectionpool.impl.HostConnectionPoolImpl;
 import com.netflix.dyno.connectionpool.impl.utils.CollectionUtils;
 import com.netflix.dyno.connectionpool.impl.utils.CollectionUtils.Transform;
 
 public class HostSelectionWithFallbackTest {
 
 	private Map<Host, AtomicBoolean> poolStatus = new HashMap<Host, AtomicBoolean>();
+	private Map<Host, AtomicInteger> poolInFlight = new HashMap<Host, AtomicInteger>();
 
 	private BaseOperation<Integer, Integer> testOperation = new BaseOperation<Integer, Integer>() {
 
@@ -51,6 +60,21 @@ public class HostSelectionWithFallbackTest {
 		}
 	};
 
+	private class TestReadOperation implements BaseOperation<Integer, Integer>, ReadOperation {
+
+		@Override
+		public String getName() {
+			return "testRead";
+		}
+
+		@Override
+		public String getKey() {
+			return "11";
+		}
+	}
+
+	private BaseOperation<Integer, Integer> readOperation = new TestReadOperation();
+
 	private final ConnectionPoolConfigurationImpl cpConfig = new ConnectionPoolConfigurationImpl("test");
 	private final ConnectionPoolMonitor cpMonitor = new CountingConnectionPoolMonitor();
 
@@ -186,6 +210,365 @@ public class HostSelectionWithFallbackTest {
 		verifyExactly(hostnames, "h1", "h2");
 	}
 
+	@Test
+	public void testUpdateHosts() throws Exception {
+
+		HostSelectionWithFallback<Integer> selection = new HostSelectionWithFallback<Integer>(cpConfig, cpMonitor);
+
+		Map<Host, HostConnectionPool<Integer>> pools = new HashMap<Host, HostConnectionPool<Integer>>();
+
+		for (Host host : hosts) {
+			poolStatus.put(host, new AtomicBoolean(true));
+			pools.put(host, getMockHostConnectionPool(host, poolStatus.get(host)));
+		}
+
+		// start without the hosts for rack remoteDC2
+		Map<Host, HostConnectionPool<Integer>> initialPools = new HashMap<Host, HostConnectionPool<Integer>>(pools);
+		initialPools.remove(h5);
+		initialPools.remove(h6);
+		selection.initWithHosts(initialPools);
+
+		// Now mark h1 and h2 both as "DOWN"
+		poolStatus.get(h1).set(false);
+		poolStatus.get(h2).set(false);
+
+		verifyExactly(runConnectionsTest(selection), "h3", "h4");
+
+		// rack remoteDC2 shows up
+		Map<Host, HostConnectionPool<Integer>> hostsUp = new HashMap<Host, HostConnectionPool<Integer>>();
+		hostsUp.put(h5, pools.get(h5));
+		hostsUp.put(h6, pools.get(h6));
+
+		Collection<Host> failedHosts = selection.updateHosts(hostsUp, new HashMap<Host, HostConnectionPool<Integer>>());
+		Assert.assertTrue(failedHosts.isEmpty());
+		verifyExactly(runConnectionsTest(selection), "h3", "h4", "h5", "h6");
+
+		// rack remoteDC1 goes away
+		Map<Host, HostConnectionPool<Integer>> hostsDown = new HashMap<Host, HostConnectionPool<Integer>>();
+		hostsDown.put(h3, pools.get(h3));
+		hostsDown.put(h4, pools.get(h4));
+
+		failedHosts = selection.updateHosts(new HashMap<Host, HostConnectionPool<Integer>>(), hostsDown);
+		Assert.assertTrue(failedHosts.isEmpty());
+		verifyExactly(runConnectionsTest(selection), "h5", "h6");
+
+		// h2 is removed from the local rack, and h1 comes back up
+		selection.removeHost(h2, pools.get(h2));
+		poolStatus.get(h1).set(true);
+		poolStatus.get(h2).set(true);
+
+		verifyExactly(runConnectionsTest(selection), "h1");
+	}
+
+	@Test
+	public void testUpdateHostsWithinRack() throws Exception {
+
+		HostSelectionWithFallback<Integer> selection = new HostSelectionWithFallback<Integer>(cpConfig, cpMonitor);
+
+		Map<Host, HostConnectionPool<Integer>> pools = new HashMap<Host, HostConnectionPool<Integer>>();
+
+		for (Host host : hosts) {
+			poolStatus.put(host, new AtomicBoolean(true));
+			pools.put(host, getMockHostConnectionPool(host, poolStatus.get(host)));
+		}
+		selection.initWithHosts(pools);
+
+		poolStatus.get(h1).set(false);
+		poolStatus.get(h2).set(false);
+
+		// h3 leaves rack remoteDC1, which still has h4
+		Map<Host, HostConnectionPool<Integer>> hostsDown = new HashMap<Host, HostConnectionPool<Integer>>();
+		hostsDown.put(h3, pools.get(h3));
+
+		selection.updateHosts(new HashMap<Host, HostConnectionPool<Integer>>(), hostsDown);
+		verifyExactly(runConnectionsTest(selection), "h4", "h5", "h6");
+		Assert.assertEquals(3, selection.getTokenPoolTopology().getAllTokens().size());
+
+		// and comes back
+		selection.addHost(h3, pools.get(h3));
+		verifyExactly(runConnectionsTest(selection), "h3", "h4", "h5", "h6");
+	}
+
+	@Test
+	public void testUpdateHostsIsAtomic() throws Exception {
+
+		final HostSelectionWithFallback<Integer> selection = new HostSelectionWithFallback<Integer>(cpConfig, cpMonitor);
+
+		Map<Host, HostConnectionPool<Integer>> pools = new HashMap<Host, HostConnectionPool<Integer>>();
+
+		for (Host host : hosts) {
+			poolStatus.put(host, new AtomicBoolean(true));
+			pools.put(host, getMockHostConnectionPool(host, poolStatus.get(host)));
+		}
+		selection.initWithHosts(pools);
+
+		// the second token moves in and out of all the racks in a single update
+		Map<Host, HostConnectionPool<Integer>> secondTokenHosts = new HashMap<Host, HostConnectionPool<Integer>>();
+		secondTokenHosts.put(h2, pools.get(h2));
+		secondTokenHosts.put(h4, pools.get(h4));
+		secondTokenHosts.put(h6, pools.get(h6));
+		Map<Host, HostConnectionPool<Integer>> none = new HashMap<Host, HostConnectionPool<Integer>>();
+
+		final AtomicBoolean stop = new AtomicBoolean(false);
+		final AtomicInteger mixedReads = new AtomicInteger(0);
+		final AtomicInteger reads = new AtomicInteger(0);
+
+		Thread reader = new Thread() {
+			@Override
+			public void run() {
+				while (!stop.get()) {
+					Set<Integer> tokensPerRack = new HashSet<Integer>();
+					for (List<?> tokens : selection.getTokenPoolTopology().getAllTokens().values()) {
+						tokensPerRack.add(tokens.size());
+					}
+					if (tokensPerRack.size() != 1) {
+						mixedReads.incrementAndGet();
+					}
+					reads.incrementAndGet();
+				}
+			}
+		};
+		reader.start();
+
+		try {
+			for (int i=0; i<2000; i++) {
+				selection.updateHosts(none, secondTokenHosts);
+				selection.updateHosts(secondTokenHosts, none);
+			}
+		} finally {
+			stop.set(true);
+			reader.join();
+		}
+
+		Assert.assertTrue(reads.get() > 0);
+		Assert.assertEquals(0, mixedReads.get());
+		Assert.assertEquals(3, selection.getTokenPoolTopology().getAllTokens().size());
+	}
+
+	@Test
+	public void testReplicaReadWhenLocalHostSaturated() throws Exception {
+
+		cpConfig.setMaxConnsPerHost(2);
+		cpConfig.withReplicaReadConfig(new ConnectionPoolConfigurationImpl.ReplicaReadConfigImpl(1.0, 1.0));
+
+		HostSelectionWithFallback<Integer> selection = new HostSelectionWithFallback<Integer>(cpConfig, cpMonitor);
+
+		Map<Host, HostConnectionPool<Integer>> pools = new HashMap<Host, HostConnectionPool<Integer>>();
+		for (Host host : hosts) {
+			poolStatus.put(host, new AtomicBoolean(true));
+			pools.put(host, getMockHostConnectionPool(host, poolStatus.get(host)));
+		}
+		selection.initWithHosts(pools);
+
+		// local hosts have spare connections, hence reads stay local
+		verifyExactly(runConnectionsTest(selection, readOperation), "h1", "h2");
+		Assert.assertEquals(0, selection.getReplicaReadCount());
+
+		// saturate both local hosts
+		borrowConnections(h1, 2);
+		borrowConnections(h2, 2);
+
+		verifySubset(runConnectionsTest(selection, readOperation), "h3", "h4", "h5", "h6");
+		Assert.assertEquals(10, selection.getReplicaReadCount());
+
+		// writes are never sent to a replica
+		verifyExactly(runConnectionsTest(selection, testOperation), "h1", "h2");
+
+		// replicas that are saturated as well are skipped
+		borrowConnections(h3, 2);
+		borrowConnections(h4, 2);
+
+		verifySubset(runConnectionsTest(selection, readOperation), "h5", "h6");
+
+		borrowConnections(h5, 2);
+		borrowConnections(h6, 2);
+
+		verifyExactly(runConnectionsTest(selection, readOperation), "h1", "h2");
+		Assert.assertEquals(20, selection.getReplicaReadCount());
+	}
+
+	@Test
+	public void testFailFastWhenLocalPoolExhausted() throws Exception {
+
+		cpConfig.setFailFastWhenExhausted(true);
+
+		HostSelectionWithFallback<Integer> selection = new HostSelectionWithFallback<Integer>(cpConfig, cpMonitor);
+
+		Map<Host, HostConnectionPool<Integer>> pools = new HashMap<Host, HostConnectionPool<Integer>>();
+		for (Host host : hosts) {
+			poolStatus.put(host, new AtomicBoolean(true));
+			pools.put(host, getMockHostConnectionPool(host, poolStatus.get(host)));
+		}
+		selection.initWithHosts(pools);
+
+		verifyExactly(runConnectionsTest(selection), "h1", "h2");
+		Assert.assertEquals(0, selection.getExhaustedFailoverCount());
+
+		// local pools have no idle connections, hence go to the remote racks without waiting
+		markExhausted(pools.get(h1));
+		markExhausted(pools.get(h2));
+
+		verifySubset(runConnectionsTest(selection), "h3", "h4", "h5", "h6");
+		Assert.assertEquals(10, selection.getExhaustedFailoverCount());
+
+		// remote pools are exhausted too, hence wait on the local pool
+		markExhausted(pools.get(h3));
+		markExhausted(pools.get(h4));
+		markExhausted(pools.get(h5));
+		markExhausted(pools.get(h6));
+
+		verifyExactly(runConnectionsTest(selection), "h1", "h2");
+		Assert.assertEquals(10, selection.getExhaustedFailoverCount());
+	}
+
+	@Test
+	public void testRateLimitPerHost() throws Exception {
+
+		// one request per host, no refill within the test
+		cpConfig.withThrottleConfig(new ConnectionPoolConfigurationImpl.ThrottleConfigImpl(0, 1, 0.001, 1));
+
+		HostSelectionWithFallback<Integer> selection = new HostSelectionWithFallback<Integer>(cpConfig, cpMonitor);
+
+		Map<Host, HostConnectionPool<Integer>> pools = new HashMap<Host, HostConnectionPool<Integer>>();
+		for (Host host : hosts) {
+			poolStatus.put(host, new AtomicBoolean(true));
+			pools.put(host, getMockHostConnectionPool(host, poolStatus.get(host)));
+		}
+		selection.initWithHosts(pools);
+		
+		Set<String> hostnames = new HashSet<String>();
+		try {
+			for (int i=0; i<20; i++) {
+				hostnames.add(selection.getAdmittedConnection(testOperation, 1, TimeUnit.MILLISECONDS).getHost().getHostName());
+			}
+			Assert.fail("TEST FAILED");
+		} catch (ThrottledException e) {
+			// all the hosts it could go to are over their rate
+		}
+		
+		// the local hosts first, then the remote racks instead of the throttled local hosts
+		Assert.assertTrue(hostnames.toString(), hostnames.contains("h1") && hostnames.contains("h2"));
+		Assert.assertTrue(hostnames.toString(), hostnames.size() > 2);
+		Assert.assertTrue(selection.getAdmissionRejectCount() > 0);
+		
+		// plain borrows are not throttled
+		verifyExactly(runConnectionsTest(selection), "h1", "h2");
+	}
+
+	@Test
+	public void testFailFastTakesOnePermit() throws Exception {
+
+		cpConfig.setFailFastWhenExhausted(true);
+		// one request per host, no refill within the test
+		cpConfig.withThrottleConfig(new ConnectionPoolConfigurationImpl.ThrottleConfigImpl(0, 1, 0.001, 1));
+
+		HostSelectionWithFallback<Integer> selection = new HostSelectionWithFallback<Integer>(cpConfig, cpMonitor);
+
+		// a single local and remote host, both with no idle connections
+		Map<Host, HostConnectionPool<Integer>> pools = new HashMap<Host, HostConnectionPool<Integer>>();
+		for (Host host : Arrays.asList(h1, h3)) {
+			poolStatus.put(host, new AtomicBoolean(true));
+			pools.put(host, getMockHostConnectionPool(host, poolStatus.get(host)));
+			markExhausted(pools.get(host));
+		}
+		selection.initWithHosts(pools);
+
+		// tries h1 and h3 without waiting, then waits on h1, which only takes h1's permit
+		Assert.assertEquals("h1", selection.getAdmittedConnection(testOperation, 1, TimeUnit.MILLISECONDS).getHost().getHostName());
+		Assert.assertEquals(0, selection.getAdmissionRejectCount());
+
+		// h3's permit was given back
+		poolStatus.get(h1).set(false);
+		Assert.assertEquals("h3", selection.getAdmittedConnection(testOperation, 1, TimeUnit.MILLISECONDS).getHost().getHostName());
+
+		try {
+			selection.getAdmittedConnection(testOperation, 1, TimeUnit.MILLISECONDS);
+			Assert.fail("TEST FAILED");
+		} catch (ThrottledException e) {
+			// both permits are used up
+		}
+		Assert.assertEquals(1, selection.getAdmissionRejectCount());
+	}
+
+	@Test
+	public void testConcurrencyLimitPerHost() throws Exception {
+
+		cpConfig.withConcurrencyLimitConfig(new ConnectionPoolConfigurationImpl.ConcurrencyLimitConfigImpl(2, 1, 10, 0.5, 2.0, 1000));
+
+		HostSelectionWithFallback<Integer> selection = new HostSelectionWithFallback<Integer>(cpConfig, cpMonitor);
+
+		Map<Host, HostConnectionPool<Integer>> pools = new HashMap<Host, HostConnectionPool<Integer>>();
+		for (Host host : hosts) {
+			poolStatus.put(host, new AtomicBoolean(true));
+			pools.put(host, getMockHostConnectionPool(host, poolStatus.get(host)));
+		}
+		selection.initWithHosts(pools);
+		
+		// plain borrows don't count against the limits
+		verifyExactly(runConnectionsTest(selection), "h1", "h2");
+		
+		// hold on to the admitted connections, the local hosts fill up first and then the remote ones
+		Map<String, Integer> inFlight = new HashMap<String, Integer>();
+		int admitted = 0;
+		try {
+			while (admitted < 20) {
+				Connection<Integer> conn = selection.getAdmittedConnection(testOperation, 1, TimeUnit.MILLISECONDS);
+				String hostname = conn.getHost().getHostName();
+				inFlight.put(hostname, inFlight.containsKey(hostname) ? inFlight.get(hostname) + 1 : 1);
+				admitted++;
+			}
+			Assert.fail("TEST FAILED");
+		} catch (ThrottledException e) {
+			// all the hosts it could go to are at their limit
+		}
+		
+		Assert.assertEquals(2, inFlight.get("h1").intValue());
+		Assert.assertEquals(2, inFlight.get("h2").intValue());
+		Assert.assertTrue(inFlight.toString(), inFlight.size() > 2);
+		for (Integer count : inFlight.values()) {
+			Assert.assertTrue(inFlight.toString(), count <= 2);
+		}
+		Assert.assertTrue(selection.getAdmissionRejectCount() > 0);
+		
+		// fast requests free up their slots
+		selection.releaseAdmission(h1, TimeUnit.MILLISECONDS.toNanos(1));
+		selection.releaseAdmission(h2, TimeUnit.MILLISECONDS.toNanos(1));
+		Assert.assertEquals(2, selection.getConcurrencyLimit(h1));
+		verifySubset(Collections.singletonList(selection.getAdmittedConnection(testOperation, 1, TimeUnit.MILLISECONDS).getHost().getHostName()), "h1", "h2");
+		
+		// timeouts shrink the limit
+		selection.releaseAdmission(h2, new TimeoutException("timed out"));
+		Assert.assertEquals(1, selection.getConcurrencyLimit(h2));
+	}
+
+	private void markExhausted(HostConnectionPool<Integer> pool) {
+		when(pool.borrowConnection(eq(0), any(TimeUnit.class))).thenThrow(new PoolTimeoutException("exhausted"));
+	}
+
+	private void borrowConnections(Host host, int count) {
+		poolInFlight.get(host).addAndGet(count);
+	}
+
+	private Collection<String> runConnectionsTest(HostSelectionWithFallback<Integer> selection, BaseOperation<Integer, Integer> op) {
+
+		Set<String> hostnames = new HashSet<String>();
+		for (int i=0; i<10; i++) {
+			Connection<Integer> conn = selection.getConnection(op, 1, TimeUnit.MILLISECONDS);
+			hostnames.add(conn.getHost().getHostName());
+		}
+		return hostnames;
+	}
+
+	private Collection<String> runConnectionsTest(HostSelectionWithFallback<Integer> selection) {
+
+		Set<String> hostnames = new HashSet<String>();
+		for (int i=0; i<10; i++) {
+			Connection<Integer> conn = selection.getConnection(testOperation, 1, TimeUnit.MILLISECONDS);
+			hostnames.add(conn.getHost().getHostName());
+		}
+		return hostnames;
+	}
+
 	@Test
 	public void testGetConnectionsFromRingNormal() throws Exception {
 
@@ -364,6 +747,15 @@ public class HostSelectionWithFallbackTest {
 		}
 	}
 
+	private void verifySubset(Collection<String> resultCollection, String ... hostnames) {
+
+		Set<String> expected = new HashSet<String>(Arrays.asList(hostnames));
+		Assert.assertFalse(resultCollection.isEmpty());
+		for (String h : resultCollection) {
+			Assert.assertTrue("Result: " + resultCollection + ", not expected: " + h, expected.contains(h));
+		}
+	}
+
 	private void verifyAtLeastOnePresent(Collection<String> resultCollection, String ... hostnames) {
 
 		Set<String> result = new HashSet<String>(resultCollection);
@@ -383,7 +775,10 @@ public class HostSelectionWithFallbackTest {
 		Connection<Integer> mockConnection = mock(Connection.class); 
 		when(mockConnection.getHost()).thenReturn(host);
 
-		HostConnectionPool<Integer> mockPool = mock(HostConnectionPool.class); 
+		final AtomicInteger inFlight = new AtomicInteger(0);
+		poolInFlight.put(host, inFlight);
+
+		HostConnectionPoolImpl<Integer> mockPool = mock(HostConnectionPoolImpl.class); 
 		when(mockPool.isActive()).thenAnswer(new Answer<Boolean>() {
 
 			@Override
@@ -391,6 +786,14 @@ public class HostSelectionWithFallbackTest {
 				return status.get();
 			}
 
+		});
+		when(mockPool.getConnectionsInFlight()).thenAnswer(new Answer<Integer>() {
+
+			@Override
+			public Integer answer(InvocationOnMock invocation) throws Throwable {
+				return inFlight.get();
+			}
+
 		});
 		when(mockPool.borrowConnection(any(Integer.class), any(TimeUnit.class))).thenReturn(mockConnection);
 		when(mockPool.getHost()).thenReturn(host);
@@ -433,6 +836,12 @@ public class HostSelectionWithFallbackTest {
 				return tokenMap.get(host);
 			}
 
+			@Override
+			public List<HostToken> getTokensForHost(Host host) {
+				HostToken hostToken = tokenMap.get(host);
+				return (hostToken != null) ? Collections.singletonList(hostToken) : Collections.<HostToken>emptyList();
+			}
+
 			@Override
 			public void initWithHosts(Collection<Host> hosts) {
 
@@ -0,0 +1,74 @@
+package com.netflix.dyno.connectionpool.impl.lb;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.netflix.dyno.connectionpool.impl.ConnectionPoolConfigurationImpl.HotKeyTrackerConfigImpl;
+import com.netflix.dyno.connectionpool.impl.lb.HotKeyTracker.HotKey;
+
+public class HotKeyTrackerTest {
+
+	@Test
+	public void testTopKeys() throws Exception {
+
+		HotKeyTracker tracker = new HotKeyTracker(new HotKeyTrackerConfigImpl(1, 3, 1024, 1));
+		long now = System.currentTimeMillis();
+
+		// lots of cold keys, with a few hot ones in between
+		for (int i=0; i<10000; i++) {
+			tracker.record("cold" + i, 1L, now);
+			if (i % 10 == 0) {
+				tracker.record("hot1", 2L, now);
+			}
+			if (i % 20 == 0) {
+				tracker.record("hot2", 3L, now);
+			}
+			if (i % 40 == 0) {
+				tracker.record("hot3", 3L, now);
+			}
+		}
+
+		// complete the window
+		tracker.record("next", 1L, now + 1000);
+
+		List<HotKey> topKeys = tracker.getTopKeys();
+		Assert.assertEquals(3, topKeys.size());
+		Assert.assertEquals("hot1", topKeys.get(0).getKey());
+		Assert.assertEquals("hot2", topKeys.get(1).getKey());
+		Assert.assertEquals("hot3", topKeys.get(2).getKey());
+		Assert.assertEquals(2L, topKeys.get(0).getToken().longValue());
+
+		// the sketch never under counts
+		Assert.assertTrue(topKeys.get(0).getCount() >= 1000);
+		Assert.assertTrue(topKeys.get(1).getCount() >= 500);
+
+		Assert.assertEquals(10000L, tracker.getTokenLoad().get(1L).longValue());
+		Assert.assertEquals(1000L, tracker.getTokenLoad().get(2L).longValue());
+		Assert.assertEquals(750L, tracker.getTokenLoad().get(3L).longValue());
+		Assert.assertEquals((10000.0 * 3) / 11750, tracker.getTokenLoadSkew(), 0.001);
+	}
+
+	@Test
+	public void testWindowReset() throws Exception {
+
+		HotKeyTracker tracker = new HotKeyTracker(new HotKeyTrackerConfigImpl(1, 3, 1024, 60));
+		long now = System.currentTimeMillis();
+
+		for (int i=0; i<100; i++) {
+			tracker.record("key1", 1L, now);
+		}
+		Assert.assertTrue(tracker.getTopKeys().isEmpty());
+		Assert.assertEquals(0.0, tracker.getTokenLoadSkew(), 0.001);
+
+		tracker.record("key2", 2L, now + 60000);
+		Assert.assertEquals("key1", tracker.getTopKeys().get(0).getKey());
+		Assert.assertEquals(100L, tracker.getTopKeys().get(0).getCount());
+
+		// the new window starts from scratch
+		tracker.record("key2", 2L, now + 120000);
+		Assert.assertEquals("key2", tracker.getTopKeys().get(0).getKey());
+		Assert.assertEquals(1L, tracker.getTopKeys().get(0).getCount());
+	}
+}
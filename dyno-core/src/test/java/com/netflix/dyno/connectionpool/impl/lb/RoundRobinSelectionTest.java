@@ -3,8 +3,10 @@ package com.netflix.dyno.connectionpool.impl.lb;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 
@@ -91,6 +93,32 @@ public class RoundRobinSelectionTest {
 		verifyTest(result, hostCount("h1", 400), hostCount("h2", 200), hostCount("h3", 400), hostCount("h4", 300));
 	}
 
+	@Test
+	public void testTokenRanges() throws Exception {
+
+		Map<HostToken, HostConnectionPool<Integer>> pools = new HashMap<HostToken, HostConnectionPool<Integer>>();
+		pools.put(h1, getMockHostConnectionPool(h1));
+		pools.put(h2, getMockHostConnectionPool(h2));
+		pools.put(h3, getMockHostConnectionPool(h3));
+		pools.put(h4, getMockHostConnectionPool(h4));
+
+		RoundRobinSelection<Integer> rrSelection = new RoundRobinSelection<Integer>();
+		rrSelection.initWithHosts(pools);
+
+		List<HostConnectionPool<Integer>> rangePools = rrSelection.getPoolsForTokens(1000000000L, 2500000000L);
+		Assert.assertEquals(Arrays.asList(pools.get(h2), pools.get(h3), pools.get(h4)), rangePools);
+		
+		// wraps around the top of the ring
+		rangePools = rrSelection.getPoolsForTokens(3600000000L, 1000L);
+		Assert.assertEquals(Arrays.asList(pools.get(h1)), rangePools);
+
+		Map<TokenRange, HostConnectionPool<Integer>> ranges = rrSelection.getTokenRangePools(8);
+		Assert.assertEquals(8, ranges.size());
+		for (TokenRange range : ranges.keySet()) {
+			Assert.assertSame(pools.get(range.getOwner()), ranges.get(range));
+		}
+	}
+
 	private void runTest(int iterations, Map<String, Integer> result, RoundRobinSelection<Integer> rrSelection) {
 
 		for (int i=1; i<=iterations; i++) {
@@ -3,8 +3,12 @@ package com.netflix.dyno.connectionpool.impl.lb;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 
@@ -70,6 +74,208 @@ public class TokenAwareSelectionTest {
 		verifyTokenDistribution(result);
 	}
 
+	@Test
+	public void testRequestRates() throws Exception {
+
+		Map<HostToken, HostConnectionPool<Integer>> pools = new HashMap<HostToken, HostConnectionPool<Integer>>();
+		pools.put(h1, getMockHostConnectionPool(h1));
+		pools.put(h2, getMockHostConnectionPool(h2));
+
+		// count every request, so that the rates are exact
+		TokenAwareSelection<Integer> tokenAwareSelector = new TokenAwareSelection<Integer>(null, 1);
+		tokenAwareSelector.initWithHosts(pools);
+
+		// wait for the start of a new second, so that all the requests land in the same second
+		long second = System.currentTimeMillis() / 1000;
+		while (System.currentTimeMillis() / 1000 == second) {
+			Thread.sleep(10);
+		}
+
+		int h1Count = 0;
+		for (long i=0; i<1000; i++) {
+			if (tokenAwareSelector.getPoolForOperation(getTestOperation(i)).getHost().getHostName().equals("h1")) {
+				h1Count++;
+			}
+		}
+
+		// the current second is not part of the rate yet
+		Assert.assertEquals(0.0, tokenAwareSelector.getRequestRate(h1.getToken()), 0.001);
+
+		Thread.sleep(1000);
+		Assert.assertEquals(h1Count/5.0, tokenAwareSelector.getRequestRate(h1.getToken()), 0.001);
+		Assert.assertEquals((1000-h1Count)/5.0, tokenAwareSelector.getRequestRate(h2.getToken()), 0.001);
+		Assert.assertEquals(0.0, tokenAwareSelector.getRequestRate(h3.getToken()), 0.001);
+	}
+
+	@Test
+	public void testKeepRequestRates() throws Exception {
+
+		Map<HostToken, HostConnectionPool<Integer>> pools = new HashMap<HostToken, HostConnectionPool<Integer>>();
+		pools.put(h1, getMockHostConnectionPool(h1));
+		pools.put(h2, getMockHostConnectionPool(h2));
+
+		TokenAwareSelection<Integer> prevSelector = new TokenAwareSelection<Integer>(null, 1);
+		prevSelector.initWithHosts(pools);
+		for (long i=0; i<1000; i++) {
+			prevSelector.getPoolForOperation(getTestOperation(i));
+		}
+
+		// h2 is replaced by h3
+		pools.remove(h2);
+		pools.put(h3, getMockHostConnectionPool(h3));
+		TokenAwareSelection<Integer> tokenAwareSelector = new TokenAwareSelection<Integer>(null, 1);
+		tokenAwareSelector.initWithHosts(pools);
+		tokenAwareSelector.keepRequestRates(prevSelector);
+
+		Thread.sleep(1000);
+		Assert.assertTrue(prevSelector.getRequestRate(h1.getToken()) > 0.0);
+		Assert.assertEquals(prevSelector.getRequestRate(h1.getToken()), tokenAwareSelector.getRequestRate(h1.getToken()), 0.001);
+		Assert.assertEquals(0.0, tokenAwareSelector.getRequestRate(h2.getToken()), 0.001);
+		Assert.assertEquals(0.0, tokenAwareSelector.getRequestRate(h3.getToken()), 0.001);
+	}
+
+	@Test
+	public void testRemoveHostPool() throws Exception {
+
+		Map<HostToken, HostConnectionPool<Integer>> pools = new HashMap<HostToken, HostConnectionPool<Integer>>();
+		pools.put(h1, getMockHostConnectionPool(h1));
+		pools.put(h2, getMockHostConnectionPool(h2));
+		pools.put(h3, getMockHostConnectionPool(h3));
+		pools.put(h4, getMockHostConnectionPool(h4));
+
+		TokenAwareSelection<Integer> tokenAwareSelector = new TokenAwareSelection<Integer>();
+		tokenAwareSelector.initWithHosts(pools);
+
+		Assert.assertTrue(tokenAwareSelector.removeHostPool(h2));
+		Assert.assertFalse(tokenAwareSelector.removeHostPool(h2));
+
+		// the keys for h2 must go to the next owner on the ring, i.e h3
+		verifyOwners(tokenAwareSelector, h1, h3, h4);
+	}
+
+	@Test
+	public void testUpdateHostPools() throws Exception {
+
+		Map<HostToken, HostConnectionPool<Integer>> pools = new HashMap<HostToken, HostConnectionPool<Integer>>();
+		pools.put(h1, getMockHostConnectionPool(h1));
+		pools.put(h2, getMockHostConnectionPool(h2));
+
+		TokenAwareSelection<Integer> tokenAwareSelector = new TokenAwareSelection<Integer>();
+		tokenAwareSelector.initWithHosts(pools);
+
+		Map<HostToken, HostConnectionPool<Integer>> added = new HashMap<HostToken, HostConnectionPool<Integer>>();
+		added.put(h3, getMockHostConnectionPool(h3));
+		added.put(h4, getMockHostConnectionPool(h4));
+
+		tokenAwareSelector.updateHostPools(added, Arrays.asList(h1));
+		verifyOwners(tokenAwareSelector, h2, h3, h4);
+		Assert.assertNull(tokenAwareSelector.getPoolForToken(h1.getToken()));
+
+		tokenAwareSelector.updateHostPools(Collections.singletonMap(h1, getMockHostConnectionPool(h1)), new ArrayList<HostToken>());
+		verifyOwners(tokenAwareSelector, h1, h2, h3, h4);
+
+		// h1 is replaced by a new host that owns the same token
+		HostToken h5 = new HostToken(h1.getToken(), new Host("h5", -1, Status.Up));
+		tokenAwareSelector.updateHostPools(Collections.singletonMap(h5, getMockHostConnectionPool(h5)), Arrays.asList(h1));
+		verifyOwners(tokenAwareSelector, h5, h2, h3, h4);
+	}
+
+	@Test
+	public void testTokenRanges() throws Exception {
+
+		Map<HostToken, HostConnectionPool<Integer>> pools = new HashMap<HostToken, HostConnectionPool<Integer>>();
+		pools.put(h1, getMockHostConnectionPool(h1));
+		pools.put(h2, getMockHostConnectionPool(h2));
+		pools.put(h3, getMockHostConnectionPool(h3));
+		pools.put(h4, getMockHostConnectionPool(h4));
+
+		TokenAwareSelection<Integer> tokenAwareSelector = new TokenAwareSelection<Integer>();
+		tokenAwareSelector.initWithHosts(pools);
+
+		List<HostConnectionPool<Integer>> rangePools = tokenAwareSelector.getPoolsForTokens(1000000000L, 2500000000L);
+		Assert.assertEquals(Arrays.asList(pools.get(h2), pools.get(h3), pools.get(h4)), rangePools);
+		
+		// wraps around the top of the ring
+		rangePools = tokenAwareSelector.getPoolsForTokens(3600000000L, 1000L);
+		Assert.assertEquals(Arrays.asList(pools.get(h1)), rangePools);
+
+		Map<TokenRange, HostConnectionPool<Integer>> ranges = tokenAwareSelector.getTokenRangePools(8);
+		Assert.assertEquals(8, ranges.size());
+		for (TokenRange range : ranges.keySet()) {
+			Assert.assertSame(pools.get(range.getOwner()), ranges.get(range));
+		}
+	}
+
+	@Test
+	public void testVNodes() throws Exception {
+
+		// h1 and h2 own 2 tokens each, interleaved on the ring
+		HostToken h1b = new HostToken(1920000000L, h1.getHost());
+		HostToken h2b = new HostToken(4000000000L, h2.getHost());
+
+		HostConnectionPool<Integer> pool1 = getMockHostConnectionPool(h1);
+		HostConnectionPool<Integer> pool2 = getMockHostConnectionPool(h2);
+
+		Map<HostToken, HostConnectionPool<Integer>> pools = new HashMap<HostToken, HostConnectionPool<Integer>>();
+		pools.put(h1, pool1);
+		pools.put(h1b, pool1);
+		pools.put(h2, pool2);
+		pools.put(h2b, pool2);
+		pools.put(h3, getMockHostConnectionPool(h3));
+
+		TokenAwareSelection<Integer> tokenAwareSelector = new TokenAwareSelection<Integer>();
+		tokenAwareSelector.initWithHosts(pools);
+
+		verifyOwners(tokenAwareSelector, h1, h2, h1b, h3, h2b);
+		Assert.assertEquals(3, tokenAwareSelector.getOrderedHostPools().size());
+
+		// all the ranges of h1 move to the next owners
+		tokenAwareSelector.updateHostPools(new HashMap<HostToken, HostConnectionPool<Integer>>(), Arrays.asList(h1, h1b));
+		verifyOwners(tokenAwareSelector, h2, h3, h2b);
+		Assert.assertEquals(2, tokenAwareSelector.getOrderedHostPools().size());
+	}
+
+	private void verifyOwners(TokenAwareSelection<Integer> tokenAwareSelector, HostToken ... ring) {
+
+		for (long i=0; i<10000; i++) {
+
+			BaseOperation<Integer, Long> op = getTestOperation(i);
+			Long keyHash = m1Hash.hash(op.getKey());
+
+			// the first token that is >= the key hash owns the key, else the key wraps around to the first token
+			HostToken expected = ring[0];
+			for (HostToken hostToken : ring) {
+				if (keyHash <= hostToken.getToken()) {
+					expected = hostToken;
+					break;
+				}
+			}
+			Assert.assertEquals(expected.getHost().getHostName(), tokenAwareSelector.getPoolForOperation(op).getHost().getHostName());
+		}
+	}
+
+	@Test
+	public void testSampledRequestRates() throws Exception {
+
+		Map<HostToken, HostConnectionPool<Integer>> pools = new HashMap<HostToken, HostConnectionPool<Integer>>();
+		pools.put(h1, getMockHostConnectionPool(h1));
+
+		TokenAwareSelection<Integer> tokenAwareSelector = new TokenAwareSelection<Integer>();
+		tokenAwareSelector.initWithHosts(pools);
+
+		long second = System.currentTimeMillis() / 1000;
+		while (System.currentTimeMillis() / 1000 == second) {
+			Thread.sleep(10);
+		}
+		for (long i=0; i<50000; i++) {
+			tokenAwareSelector.getPoolForOperation(getTestOperation(i));
+		}
+		Thread.sleep(1000);
+
+		// only 1 in 16 requests is counted, hence the rate is an estimate
+		Assert.assertEquals(10000.0, tokenAwareSelector.getRequestRate(h1.getToken()), 1500.0);
+	}
+
 	private BaseOperation<Integer, Long> getTestOperation(final Long n) {
 
 		return new BaseOperation<Integer, Long>() {
@@ -0,0 +1,151 @@
+package com.netflix.dyno.connectionpool.impl.utils;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.netflix.dyno.connectionpool.impl.ConnectionPoolConfigurationImpl.ConcurrencyLimitConfigImpl;
+
+public class AdaptiveConcurrencyLimiterTest {
+
+	private static final long Fast = TimeUnit.MILLISECONDS.toNanos(1);
+	private static final long Slow = TimeUnit.MILLISECONDS.toNanos(10);
+
+	@Test
+	public void testLimit() throws Exception {
+
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(new ConcurrencyLimitConfigImpl(3, 1, 10, 0.5, 2.0, 1000));
+		Assert.assertEquals(3, limiter.getLimit());
+
+		for (int i=0; i<3; i++) {
+			Assert.assertTrue(limiter.tryAcquire());
+		}
+		Assert.assertFalse(limiter.tryAcquire());
+		Assert.assertEquals(3, limiter.getInFlight());
+
+		limiter.releaseIgnored();
+		Assert.assertEquals(2, limiter.getInFlight());
+		Assert.assertTrue(limiter.tryAcquire());
+		Assert.assertFalse(limiter.tryAcquire());
+	}
+
+	@Test
+	public void testIncreaseWhenFast() throws Exception {
+
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(new ConcurrencyLimitConfigImpl(2, 1, 10, 0.5, 2.0, 1000));
+
+		// keep the limit in use
+		for (int i=0; i<200; i++) {
+			while (limiter.tryAcquire()) {
+			}
+			limiter.release(Fast);
+		}
+		Assert.assertEquals(10, limiter.getLimit());
+	}
+
+	@Test
+	public void testNoIncreaseWhenIdle() throws Exception {
+
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(new ConcurrencyLimitConfigImpl(4, 1, 10, 0.5, 2.0, 1000));
+
+		// one request at a time does not need a higher limit
+		for (int i=0; i<200; i++) {
+			Assert.assertTrue(limiter.tryAcquire());
+			limiter.release(Fast);
+		}
+		Assert.assertEquals(4, limiter.getLimit());
+	}
+
+	@Test
+	public void testBackoffWhenSlow() throws Exception {
+
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(new ConcurrencyLimitConfigImpl(8, 2, 10, 0.5, 2.0, 1000));
+
+		for (int i=0; i<10; i++) {
+			Assert.assertTrue(limiter.tryAcquire());
+			limiter.release(Fast);
+		}
+		Assert.assertEquals(8, limiter.getLimit());
+
+		// the smoothed latency needs a few slow samples to cross the tolerance
+		for (int i=0; i<20 && limiter.getLimit() == 8; i++) {
+			Assert.assertTrue(limiter.tryAcquire());
+			limiter.release(Slow);
+		}
+		Assert.assertEquals(4, limiter.getLimit());
+
+		// at most one backoff per limit's worth of samples
+		for (int i=0; i<3; i++) {
+			Assert.assertTrue(limiter.tryAcquire());
+			limiter.release(Slow);
+		}
+		Assert.assertEquals(4, limiter.getLimit());
+
+		// never below the min limit
+		for (int i=0; i<100; i++) {
+			Assert.assertTrue(limiter.tryAcquire());
+			limiter.release(Slow);
+		}
+		Assert.assertEquals(2, limiter.getLimit());
+	}
+
+	@Test
+	public void testBackoffWhenDropped() throws Exception {
+
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(new ConcurrencyLimitConfigImpl(8, 1, 10, 0.5, 2.0, 1000));
+
+		for (int i=0; i<8; i++) {
+			Assert.assertTrue(limiter.tryAcquire());
+		}
+		limiter.releaseDropped();
+		Assert.assertEquals(4, limiter.getLimit());
+
+		// the other requests sent before the backoff don't cut it again
+		for (int i=0; i<3; i++) {
+			limiter.releaseDropped();
+		}
+		Assert.assertEquals(4, limiter.getLimit());
+		Assert.assertEquals(4, limiter.getInFlight());
+		Assert.assertFalse(limiter.tryAcquire());
+	}
+
+	@Test
+	public void testAdaptToSlowerHost() throws Exception {
+
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(new ConcurrencyLimitConfigImpl(4, 1, 10, 0.5, 2.0, 100));
+
+		for (int i=0; i<10; i++) {
+			Assert.assertTrue(limiter.tryAcquire());
+			limiter.release(Fast);
+		}
+
+		// the host is slower for good, once the min latency is measured again the limit grows back
+		for (int i=0; i<500; i++) {
+			while (limiter.tryAcquire()) {
+			}
+			limiter.release(Slow);
+		}
+		Assert.assertEquals(10, limiter.getLimit());
+	}
+
+	@Test
+	public void testBaselineIsWindowMin() throws Exception {
+
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(new ConcurrencyLimitConfigImpl(8, 1, 10, 0.5, 2.0, 20));
+
+		// the window ends on a slow sample, which raises the smoothed latency but not the lowest one
+		for (int i=0; i<19; i++) {
+			Assert.assertTrue(limiter.tryAcquire());
+			limiter.release(Fast);
+		}
+		Assert.assertTrue(limiter.tryAcquire());
+		limiter.release(Slow);
+		Assert.assertEquals(8, limiter.getLimit());
+
+		// still measured against the fast samples of the window
+		Assert.assertTrue(limiter.tryAcquire());
+		limiter.release(TimeUnit.MILLISECONDS.toNanos(4));
+		Assert.assertEquals(4, limiter.getLimit());
+	}
+}
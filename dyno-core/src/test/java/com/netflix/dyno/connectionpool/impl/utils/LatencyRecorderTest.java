@@ -0,0 +1,150 @@
+package com.netflix.dyno.connectionpool.impl.utils;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.netflix.dyno.connectionpool.impl.utils.LatencyRecorder.Snapshot;
+
+public class LatencyRecorderTest {
+
+	@Test
+	public void testBucketIndexes() throws Exception {
+
+		// every value must map to a bucket whose range contains it, and buckets must be contiguous
+		int lastIndex = -1;
+		for (long value = 0; value < 100000; value++) {
+			int index = LatencyRecorder.indexFor(value);
+			Assert.assertTrue(LatencyRecorder.lowestValueFor(index) <= value);
+			Assert.assertTrue(LatencyRecorder.highestValueFor(index) >= value);
+			Assert.assertTrue(index == lastIndex || index == lastIndex + 1);
+			lastIndex = index;
+		}
+
+		// relative error is bounded for large values
+		for (long value = 1000; value < Long.MAX_VALUE/4; value *= 3) {
+			int index = LatencyRecorder.indexFor(value);
+			long error = LatencyRecorder.highestValueFor(index) - LatencyRecorder.lowestValueFor(index);
+			Assert.assertTrue(error * 64 <= value);
+		}
+	}
+
+	@Test
+	public void testPercentiles() throws Exception {
+
+		LatencyRecorder recorder = new LatencyRecorder();
+		for (int i=1; i<=10000; i++) {
+			recorder.record(i);
+		}
+
+		Snapshot snapshot = recorder.getSnapshot(false);
+		Assert.assertEquals(10000, snapshot.getCount());
+		assertWithin(5000, snapshot.getPercentile(0.5));
+		assertWithin(9900, snapshot.getPercentile(0.99));
+		assertWithin(9990, snapshot.getPercentile(0.999));
+		assertWithin(5000, snapshot.getMean());
+		Assert.assertEquals(1, snapshot.getMin());
+		assertWithin(10000, snapshot.getMax());
+
+		// values are not lost without a reset
+		Assert.assertEquals(10000, recorder.getSnapshot(true).getCount());
+		Assert.assertEquals(0, recorder.getSnapshot(false).getCount());
+		Assert.assertEquals(0, recorder.getSnapshot(false).getPercentile(0.99));
+	}
+
+	@Test
+	public void testOverflow() throws Exception {
+
+		LatencyRecorder recorder = new LatencyRecorder(10000, 1000);
+		recorder.record(100);
+		recorder.record(Long.MAX_VALUE);
+		recorder.recordLatency(1, TimeUnit.HOURS);
+		recorder.record(-1);
+
+		// values over the max are clamped, instead of making the percentiles unusable
+		Snapshot snapshot = recorder.getSnapshot(false);
+		Assert.assertEquals(4, snapshot.getCount());
+		assertWithin(10000, snapshot.getPercentile(0.99));
+		assertWithin(10000, snapshot.getMax());
+		Assert.assertEquals(0, snapshot.getMin());
+	}
+
+	@Test
+	public void testMerge() throws Exception {
+
+		LatencyRecorder recorder1 = new LatencyRecorder();
+		LatencyRecorder recorder2 = new LatencyRecorder(10000, 1000);
+
+		for (int i=0; i<99; i++) {
+			recorder1.record(100);
+		}
+		recorder2.record(5000);
+
+		Snapshot merged = recorder1.getSnapshot(false).merge(recorder2.getSnapshot(false));
+		Assert.assertEquals(100, merged.getCount());
+		assertWithin(100, merged.getPercentile(0.5));
+		assertWithin(5000, merged.getPercentile(1.0));
+	}
+
+	@Test
+	public void testIntervals() throws Exception {
+
+		LatencyRecorder recorder = new LatencyRecorder(50);
+
+		recorder.recordLatency(2, TimeUnit.MILLISECONDS);
+		// the first interval is not complete yet
+		Assert.assertEquals(0, recorder.getIntervalSnapshot().getCount());
+
+		Thread.sleep(60);
+		Snapshot interval = recorder.getIntervalSnapshot();
+		Assert.assertEquals(1, interval.getCount());
+		assertWithin(2000, interval.getPercentile(0.99));
+
+		// all reads within the same interval see the same snapshot
+		recorder.recordLatency(20, TimeUnit.MILLISECONDS);
+		Assert.assertSame(interval, recorder.getIntervalSnapshot());
+
+		Thread.sleep(60);
+		interval = recorder.getIntervalSnapshot();
+		Assert.assertEquals(1, interval.getCount());
+		assertWithin(20000, interval.getPercentile(0.99));
+	}
+
+	@Test
+	public void testStripes() throws Exception {
+
+		final LatencyRecorder recorder = new LatencyRecorder(LatencyRecorder.DEFAULT_HIGHEST_TRACKABLE_VALUE, 60000, 4);
+
+		Thread[] threads = new Thread[8];
+		for (int i=0; i<threads.length; i++) {
+			final long value = 100 * (i + 1);
+			threads[i] = new Thread(new Runnable() {
+
+				@Override
+				public void run() {
+					for (int j=0; j<1000; j++) {
+						recorder.record(value);
+					}
+				}
+			});
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		// the stripes add up to the same histogram as a single set of buckets
+		Snapshot snapshot = recorder.getSnapshot(true);
+		Assert.assertEquals(8000, snapshot.getCount());
+		assertWithin(100, snapshot.getMin());
+		assertWithin(800, snapshot.getMax());
+		assertWithin(400, snapshot.getPercentile(0.5));
+
+		Assert.assertEquals(0, recorder.getSnapshot(false).getCount());
+	}
+
+	private void assertWithin(long expected, long result) {
+		Assert.assertTrue("Expected: " + expected + ", result: " + result, Math.abs(expected - result) * 50 <= expected);
+	}
+}
@@ -1,69 +1,42 @@
 package com.netflix.dyno.connectionpool.impl.utils;
 
-import java.util.concurrent.Callable;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.CyclicBarrier;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Assert;
 import org.junit.Test;
 
+@SuppressWarnings("deprecation")
 public class RateLimitUtilTest {
 
 	@Test
 	public void testRate() throws Exception {
 
-		int nThreads = 5;
-		int expectedRps = 100;
+		RateLimitUtil rateLimiter = RateLimitUtil.create(100);
+		Assert.assertEquals(100, rateLimiter.getRps());
 
-		final RateLimitUtil rateLimiter = RateLimitUtil.create(expectedRps);
-		final AtomicBoolean stop = new AtomicBoolean(false);
-		final AtomicLong counter = new AtomicLong(0L);
-		final CountDownLatch latch = new CountDownLatch(nThreads);
-
-		ExecutorService thPool = Executors.newFixedThreadPool(nThreads);
-
-		final CyclicBarrier barrier = new CyclicBarrier(nThreads+1);
-
-		final AtomicLong end = new AtomicLong(0L);
-
-		for (int i=0; i<nThreads; i++) {
-
-			thPool.submit(new Callable<Void>() {
-
-				@Override
-				public Void call() throws Exception {
-					barrier.await();
-					while (!stop.get()) {
-						if(rateLimiter.acquire()) {
-							counter.incrementAndGet();
-						}
-					}
-					latch.countDown();
-					return null;
-				}
-			});
+		// no burst, hence the first permit is free and the next 20 are 10ms apart
+		long start = System.nanoTime();
+		for (int i=0; i<21; i++) {
+			Assert.assertTrue(rateLimiter.acquire());
 		}
+		long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
 
-		long start = System.currentTimeMillis();
-		barrier.await();
-		Thread.sleep(10000);
-		stop.set(true);
-		latch.await();
-		end.set(System.currentTimeMillis());
-		thPool.shutdownNow();
+		Assert.assertTrue("duration: " + duration, duration >= 190);
+		Assert.assertTrue("duration: " + duration, duration < 1000);
+	}
 
-		long duration = end.get() - start;
-		long totalCount = counter.get();
-		double resultRps = ((double)(totalCount)/((double)duration/1000.0));
-		System.out.println("Total Count : " + totalCount + ", duration:  " + duration + ", result rps: " + resultRps); 
+	@Test
+	public void testInterrupted() throws Exception {
 
-		double percentageDiff = Math.abs(expectedRps-resultRps)*100/resultRps;
-		System.out.println("Percentage diff: " + percentageDiff);
+		RateLimitUtil rateLimiter = RateLimitUtil.create(1);
+		Assert.assertTrue(rateLimiter.acquire());
 
-		Assert.assertTrue(percentageDiff < 12.0);
+		Thread.currentThread().interrupt();
+		try {
+			Assert.assertFalse(rateLimiter.acquire());
+			Assert.assertTrue(Thread.currentThread().isInterrupted());
+		} finally {
+			Thread.interrupted();
+		}
 	}
 }
@@ -0,0 +1,147 @@
+package com.netflix.dyno.connectionpool.impl.utils;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TokenBucketRateLimiterTest {
+
+	@Test
+	public void testBurst() throws Exception {
+
+		TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1, 5);
+
+		// starts with a full bucket
+		for (int i=0; i<5; i++) {
+			Assert.assertTrue(limiter.tryAcquire());
+		}
+		Assert.assertFalse(limiter.tryAcquire());
+		Assert.assertFalse(limiter.tryAcquire(2));
+	}
+
+	@Test
+	public void testRefill() throws Exception {
+
+		TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(100, 10);
+		Assert.assertTrue(limiter.tryAcquire(10));
+		Assert.assertFalse(limiter.tryAcquire());
+
+		Thread.sleep(50);
+		Assert.assertTrue(limiter.tryAcquire(4));
+
+		// an idle bucket does not save up more than the burst
+		Thread.sleep(500);
+		Assert.assertTrue(limiter.tryAcquire(10));
+		Assert.assertFalse(limiter.tryAcquire());
+	}
+
+	@Test
+	public void testRelease() throws Exception {
+
+		TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1, 5);
+		Assert.assertTrue(limiter.tryAcquire(5));
+		Assert.assertFalse(limiter.tryAcquire());
+
+		limiter.release(2);
+		Assert.assertTrue(limiter.tryAcquire(2));
+		Assert.assertFalse(limiter.tryAcquire());
+
+		// giving back more than was taken does not grow the bucket past the burst
+		limiter.release(10);
+		Assert.assertTrue(limiter.tryAcquire(5));
+		Assert.assertFalse(limiter.tryAcquire());
+	}
+
+	@Test
+	public void testTimedAcquire() throws Exception {
+
+		TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(10, 1);
+		Assert.assertTrue(limiter.tryAcquire());
+
+		// next permit is 100ms out
+		Assert.assertFalse(limiter.tryAcquire(1, 10, TimeUnit.MILLISECONDS));
+
+		long start = System.nanoTime();
+		Assert.assertTrue(limiter.tryAcquire(1, 500, TimeUnit.MILLISECONDS));
+		long waitMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		Assert.assertTrue("waited: " + waitMillis, waitMillis >= 50 && waitMillis < 500);
+	}
+
+	@Test
+	public void testRate() throws Exception {
+
+		TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(200, 1);
+
+		long start = System.nanoTime();
+		for (int i=0; i<200; i++) {
+			limiter.acquire(1);
+		}
+		long durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		Assert.assertTrue("duration: " + durationMillis, durationMillis >= 900 && durationMillis < 1500);
+	}
+
+	@Test
+	public void testRateAcrossThreads() throws Exception {
+
+		int nThreads = 5;
+		int expectedRps = 100;
+
+		final TokenBucketRateLimiter rateLimiter = new TokenBucketRateLimiter(expectedRps, 1);
+		final AtomicBoolean stop = new AtomicBoolean(false);
+		final AtomicLong counter = new AtomicLong(0L);
+		final CountDownLatch latch = new CountDownLatch(nThreads);
+
+		ExecutorService thPool = Executors.newFixedThreadPool(nThreads);
+
+		final CyclicBarrier barrier = new CyclicBarrier(nThreads+1);
+
+		final AtomicLong end = new AtomicLong(0L);
+
+		for (int i=0; i<nThreads; i++) {
+
+			thPool.submit(new Callable<Void>() {
+
+				@Override
+				public Void call() throws Exception {
+					barrier.await();
+					while (!stop.get()) {
+						try {
+							rateLimiter.acquire(1);
+						} catch (InterruptedException e) {
+							break;
+						}
+						counter.incrementAndGet();
+					}
+					latch.countDown();
+					return null;
+				}
+			});
+		}
+
+		long start = System.currentTimeMillis();
+		barrier.await();
+		Thread.sleep(10000);
+		stop.set(true);
+		latch.await();
+		end.set(System.currentTimeMillis());
+		thPool.shutdownNow();
+
+		long duration = end.get() - start;
+		long totalCount = counter.get();
+		double resultRps = ((double)(totalCount)/((double)duration/1000.0));
+		System.out.println("Total Count : " + totalCount + ", duration:  " + duration + ", result rps: " + resultRps); 
+
+		double percentageDiff = Math.abs(expectedRps-resultRps)*100/resultRps;
+		System.out.println("Percentage diff: " + percentageDiff);
+
+		Assert.assertTrue(percentageDiff < 12.0);
+	}
+}
@@ -82,6 +82,11 @@ public class DynoJedisDemo {
 			public HostToken getTokenForHost(Host host) {
 				return localHostToken;
 			}
+
+			@Override
+			public List<HostToken> getTokensForHost(Host host) {
+				return Collections.singletonList(localHostToken);
+			}
 		};
 
 		init(localHostSupplier, port, tokenSupplier);
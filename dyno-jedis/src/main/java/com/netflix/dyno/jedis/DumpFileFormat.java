@@ -0,0 +1,246 @@
+package com.netflix.dyno.jedis;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Binary format of the files written by {@link DynoDumpExporter} and read by {@link DynoDumpLoader}.
+ *
+ * A file starts with a magic number and a version, followed by length prefixed records
+ * <pre>
+ *   int keyLength | key (UTF-8) | long ttlMillis | int valueLength | value (DUMP payload)
+ * </pre>
+ * A ttl of 0 means that the key does not expire.
+ *
+ * Both the writer and the reader go through a {@link FileChannel} with a large buffer, hence a record costs no system calls
+ * unless the buffer is full (or empty).
+ *
+ * @author poberai
+ *
+ */
+class DumpFileFormat {
+
+	static final int MAGIC = 0x44594e4f;
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 8;
+
+	static final String FileSuffix = ".dump";
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private DumpFileFormat() {
+	}
+
+	static class Record {
+
+		private final String key;
+		private final long ttlMillis;
+		private final byte[] value;
+
+		Record(String key, long ttlMillis, byte[] value) {
+			this.key = key;
+			this.ttlMillis = ttlMillis;
+			this.value = value;
+		}
+
+		String getKey() {
+			return key;
+		}
+
+		long getTtlMillis() {
+			return ttlMillis;
+		}
+
+		byte[] getValue() {
+			return value;
+		}
+	}
+
+	static class Writer implements Closeable {
+
+		private final FileChannel channel;
+		private final ByteBuffer buffer;
+		private long records = 0L;
+
+		Writer(File file, int bufferSize) throws IOException {
+			channel = new FileOutputStream(file).getChannel();
+			buffer = ByteBuffer.allocateDirect(bufferSize);
+			buffer.putInt(MAGIC);
+			buffer.putInt(VERSION);
+		}
+
+		void write(String key, long ttlMillis, byte[] value) throws IOException {
+
+			byte[] keyBytes = key.getBytes(UTF8);
+			int length = 4 + keyBytes.length + 8 + 4 + value.length;
+
+			if (buffer.remaining() < length) {
+				flush();
+			}
+
+			ByteBuffer target = (buffer.remaining() < length) ? ByteBuffer.allocate(length) : buffer;
+			target.putInt(keyBytes.length).put(keyBytes).putLong(ttlMillis).putInt(value.length).put(value);
+
+			if (target != buffer) {
+				// record is larger than the buffer
+				target.flip();
+				writeFully(target);
+			}
+			records++;
+		}
+
+		long getRecordCount() {
+			return records;
+		}
+
+		void flush() throws IOException {
+			buffer.flip();
+			writeFully(buffer);
+			buffer.clear();
+		}
+
+		private void writeFully(ByteBuffer buf) throws IOException {
+			while (buf.hasRemaining()) {
+				channel.write(buf);
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (!channel.isOpen()) {
+				return;
+			}
+			try {
+				flush();
+				channel.force(false);
+			} finally {
+				channel.close();
+			}
+		}
+	}
+
+	static class Reader implements Closeable {
+
+		private final File file;
+		private final FileChannel channel;
+		private ByteBuffer buffer;
+
+		Reader(File file, int bufferSize) throws IOException {
+
+			this.file = file;
+			channel = new FileInputStream(file).getChannel();
+			buffer = ByteBuffer.allocateDirect(bufferSize);
+			buffer.limit(0);
+
+			if (!ensure(HEADER_SIZE)) {
+				close();
+				throw new IOException("Missing header in " + file);
+			}
+			int magic = buffer.getInt();
+			int version = buffer.getInt();
+			if (magic != MAGIC || version != VERSION) {
+				close();
+				throw new IOException("Not a dump file: " + file + ", magic: " + magic + ", version: " + version);
+			}
+		}
+
+		/**
+		 * @return the file offset of the next record
+		 * @throws IOException
+		 */
+		long position() throws IOException {
+			return channel.position() - buffer.remaining();
+		}
+
+		/**
+		 * Continue reading from the given file offset, which must be the start of a record, see {@link #position()}
+		 * @param position
+		 * @throws IOException
+		 */
+		void seek(long position) throws IOException {
+			if (position < HEADER_SIZE) {
+				throw new IOException("Invalid position " + position + " in " + file);
+			}
+			channel.position(position);
+			buffer.clear();
+			buffer.limit(0);
+		}
+
+		/**
+		 * @return the next record or null at the end of the file
+		 * @throws IOException
+		 */
+		Record next() throws IOException {
+
+			if (!ensure(4)) {
+				if (buffer.hasRemaining()) {
+					throw truncated();
+				}
+				return null;
+			}
+
+			int keyLength = buffer.getInt();
+			if (!ensure(keyLength + 8 + 4)) {
+				throw truncated();
+			}
+			byte[] key = new byte[keyLength];
+			buffer.get(key);
+			long ttlMillis = buffer.getLong();
+
+			int valueLength = buffer.getInt();
+			if (!ensure(valueLength)) {
+				throw truncated();
+			}
+			byte[] value = new byte[valueLength];
+			buffer.get(value);
+
+			return new Record(new String(key, UTF8), ttlMillis, value);
+		}
+
+		private IOException truncated() throws IOException {
+			return new IOException("Truncated record at position " + position() + " in " + file);
+		}
+
+		/**
+		 * Make sure that the buffer has at least the given number of bytes, reading more from the file if needed
+		 * @return false if the file ends first
+		 */
+		private boolean ensure(int length) throws IOException {
+
+			if (length < 0) {
+				throw new IOException("Corrupt record at position " + position() + " in " + file);
+			}
+
+			while (buffer.remaining() < length) {
+
+				if (length > buffer.capacity()) {
+					// record is larger than the buffer
+					ByteBuffer larger = ByteBuffer.allocateDirect(length);
+					larger.put(buffer);
+					larger.flip();
+					buffer = larger;
+				}
+
+				buffer.compact();
+				int read = channel.read(buffer);
+				buffer.flip();
+
+				if (read < 0) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+	}
+}
@@ -0,0 +1,471 @@
+package com.netflix.dyno.jedis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisDataException;
+
+import com.netflix.dyno.connectionpool.ConnectionContext;
+import com.netflix.dyno.connectionpool.Host;
+import com.netflix.dyno.connectionpool.HostConnectionPool;
+import com.netflix.dyno.connectionpool.Operation;
+import com.netflix.dyno.connectionpool.exception.BadRequestException;
+import com.netflix.dyno.connectionpool.exception.DynoException;
+import com.netflix.dyno.connectionpool.exception.NoAvailableHostsException;
+import com.netflix.dyno.connectionpool.impl.ConnectionPoolImpl;
+import com.netflix.dyno.connectionpool.impl.hash.Murmur1HashPartitioner;
+import com.netflix.dyno.connectionpool.impl.lb.TokenRange;
+
+/**
+ * Loads large numbers of key/value pairs with SET.
+ *
+ * Keys are hashed the same way as token aware routing and buffered per token range of the local ring. Once a buffer
+ * has {@link #withBatchSize(int)} keys it is written as a single pipeline over a connection to the owner of the range.
+ * At most {@link #withMaxInFlightPerHost(int)} pipelines are in flight to any one host, and the thread that is feeding
+ * the loader blocks when a host has no permits left, i.e a slow host slows down the reader instead of piling up batches
+ * in memory.
+ *
+ * A batch that fails is retried as a whole (SET is idempotent) with a linear backoff. A batch that still fails after
+ * {@link #withMaxRetries(int)} retries is counted as failed and handed to the {@link BulkLoadListener}, and the load carries on.
+ * Keys that the server turns down (e.g OOM) are data errors rather than connection failures, hence they are not retried, 
+ * they are counted as failed and handed to the listener with a {@link BadRequestException} each.
+ *
+ * Progress and throughput are logged and reported to the listener every {@link #withProgressInterval(long, TimeUnit)}.
+ *
+ * Usage
+ * <pre>
+ *   Progress progress = client.bulkLoader()
+ *                             .withBatchSize(500)
+ *                             .withMaxInFlightPerHost(4)
+ *                             .load(entries);
+ * </pre>
+ *
+ * Note that a loader is meant to be used for one load at a time.
+ *
+ * @author poberai
+ *
+ */
+public class DynoBulkLoader {
+
+	private static final Logger Logger = LoggerFactory.getLogger(DynoBulkLoader.class);
+
+	private static final String DynoBulkLoad = "DynoBulkLoad";
+
+	private final ConnectionPoolImpl<Jedis> connPool;
+	private final Murmur1HashPartitioner partitioner = new Murmur1HashPartitioner();
+
+	private int batchSize = 500;
+	private int maxInFlightPerHost = 2;
+	private int maxRetries = 3;
+	private long retryBackoffMillis = 100;
+	private long progressIntervalMillis = 10000;
+	private BulkLoadListener listener = null;
+
+	DynoBulkLoader(ConnectionPoolImpl<Jedis> cPool) {
+		this.connPool = cPool;
+	}
+
+	public DynoBulkLoader withBatchSize(int size) {
+		if (size <= 0) {
+			throw new IllegalArgumentException("Batch size must be > 0");
+		}
+		this.batchSize = size;
+		return this;
+	}
+
+	public DynoBulkLoader withMaxInFlightPerHost(int max) {
+		if (max <= 0) {
+			throw new IllegalArgumentException("Max in flight batches per host must be > 0");
+		}
+		this.maxInFlightPerHost = max;
+		return this;
+	}
+
+	public DynoBulkLoader withMaxRetries(int retries) {
+		this.maxRetries = retries;
+		return this;
+	}
+
+	public DynoBulkLoader withRetryBackoff(long duration, TimeUnit unit) {
+		this.retryBackoffMillis = unit.toMillis(duration);
+		return this;
+	}
+
+	public DynoBulkLoader withProgressInterval(long duration, TimeUnit unit) {
+		this.progressIntervalMillis = unit.toMillis(duration);
+		return this;
+	}
+
+	public DynoBulkLoader withListener(BulkLoadListener bulkLoadListener) {
+		this.listener = bulkLoadListener;
+		return this;
+	}
+
+	public Progress load(Map<String, String> entries) throws InterruptedException {
+		return load(entries.entrySet().iterator());
+	}
+
+	public Progress load(Iterable<? extends Entry<String, String>> entries) throws InterruptedException {
+		return load(entries.iterator());
+	}
+
+	/**
+	 * Load all the entries and wait for the writes to complete.
+	 * @param entries
+	 * @return the final progress, check {@link Progress#getKeysFailed()} for batches that could not be written
+	 * @throws InterruptedException
+	 */
+	public Progress load(Iterator<? extends Entry<String, String>> entries) throws InterruptedException {
+
+		RingPartition partition = new RingPartition(connPool.getTokenRangePools(1));
+
+		Map<Host, Semaphore> permits = new HashMap<Host, Semaphore>();
+		for (int i=0; i<partition.size(); i++) {
+			Host host = partition.getHost(i);
+			if (!permits.containsKey(host)) {
+				permits.put(host, new Semaphore(maxInFlightPerHost));
+			}
+		}
+
+		Progress progress = new Progress();
+		ExecutorService threadPool = Executors.newFixedThreadPool(permits.size() * maxInFlightPerHost);
+
+		try {
+			Batch[] buffers = new Batch[partition.size()];
+
+			while (entries.hasNext()) {
+
+				Entry<String, String> entry = entries.next();
+				int index = partition.getRangeIndex(partitioner.hash(entry.getKey()));
+
+				Batch batch = buffers[index];
+				if (batch == null) {
+					batch = new Batch(batchSize);
+					buffers[index] = batch;
+				}
+				batch.add(entry.getKey(), entry.getValue());
+				progress.keysRead.incrementAndGet();
+
+				if (batch.size() >= batchSize) {
+					submit(threadPool, permits.get(partition.getHost(index)), batch, progress);
+					buffers[index] = null;
+				}
+			}
+
+			// flush the partially filled batches
+			for (int i=0; i<buffers.length; i++) {
+				if (buffers[i] != null) {
+					submit(threadPool, permits.get(partition.getHost(i)), buffers[i], progress);
+				}
+			}
+
+			// all the batches are done once all the permits are back
+			for (Semaphore semaphore : permits.values()) {
+				semaphore.acquire(maxInFlightPerHost);
+				semaphore.release(maxInFlightPerHost);
+			}
+
+		} finally {
+			threadPool.shutdownNow();
+		}
+
+		Logger.info("Bulk load complete: " + progress);
+		if (listener != null) {
+			listener.onProgress(progress);
+		}
+		return progress;
+	}
+
+	private void submit(ExecutorService threadPool, final Semaphore semaphore, final Batch batch, final Progress progress) throws InterruptedException {
+
+		// back pressure, wait till the host has a free slot
+		semaphore.acquire();
+		try {
+			threadPool.submit(new Runnable() {
+
+				@Override
+				public void run() {
+					try {
+						write(batch, progress);
+					} finally {
+						semaphore.release();
+					}
+				}
+			});
+		} catch (RuntimeException e) {
+			semaphore.release();
+			throw e;
+		}
+	}
+
+	private void write(Batch batch, Progress progress) {
+
+		DynoException lastEx = null;
+		Map<String, DynoException> rejected = null;
+
+		for (int attempt = 0; attempt <= maxRetries; attempt++) {
+
+			if (attempt > 0) {
+				progress.batchRetries.incrementAndGet();
+				try {
+					Thread.sleep(retryBackoffMillis * attempt);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+			}
+
+			try {
+				rejected = connPool.executeWithFailover(new BatchOperation(batch)).getResult();
+				break;
+			} catch (DynoException e) {
+				lastEx = e;
+			}
+		}
+
+		if (rejected != null) {
+			progress.keysLoaded.addAndGet(batch.size() - rejected.size());
+			progress.keysFailed.addAndGet(rejected.size());
+			progress.batchesLoaded.incrementAndGet();
+			if (!rejected.isEmpty()) {
+				Entry<String, DynoException> first = rejected.entrySet().iterator().next();
+				Logger.warn(rejected.size() + " keys of a batch were rejected, first: " + first.getKey() + " " + first.getValue().getMessage());
+				if (listener != null) {
+					listener.onKeysRejected(rejected);
+				}
+			}
+		} else {
+			progress.keysFailed.addAndGet(batch.size());
+			Logger.warn("Failed to load batch of " + batch.size() + " keys after " + maxRetries + " retries", lastEx);
+			if (listener != null) {
+				listener.onBatchFailure(batch.keys, lastEx);
+			}
+		}
+
+		reportProgress(progress);
+	}
+
+	private void reportProgress(Progress progress) {
+
+		long now = System.currentTimeMillis();
+		long last = progress.lastReport.get();
+
+		if ((now - last) >= progressIntervalMillis && progress.lastReport.compareAndSet(last, now)) {
+			Logger.info("Bulk load progress: " + progress);
+			if (listener != null) {
+				listener.onProgress(progress);
+			}
+		}
+	}
+
+	/**
+	 * Writes all the keys in the batch as a single pipeline. All the keys belong to the same token range, hence
+	 * routing on the first key gets us a connection to the owner of the whole batch.
+	 * 
+	 * The result is the keys that the server rejected, the batch only fails as a whole on connection errors.
+	 */
+	static class BatchOperation implements Operation<Jedis, Map<String, DynoException>> {
+
+		private final Batch batch;
+
+		BatchOperation(Batch b) {
+			this.batch = b;
+		}
+
+		@Override
+		public String getName() {
+			return DynoBulkLoad;
+		}
+
+		@Override
+		public String getKey() {
+			return batch.keys.get(0);
+		}
+
+		@Override
+		public Map<String, DynoException> execute(Jedis client, ConnectionContext state) throws DynoException {
+
+			Pipeline pipeline = client.pipelined();
+			List<Response<String>> replies = new ArrayList<Response<String>>(batch.size());
+			for (int i=0; i<batch.size(); i++) {
+				replies.add(pipeline.set(batch.keys.get(i), batch.values.get(i)));
+			}
+			pipeline.sync();
+
+			Map<String, DynoException> rejected = new LinkedHashMap<String, DynoException>();
+			for (int i=0; i<batch.size(); i++) {
+				try {
+					replies.get(i).get();
+				} catch (JedisDataException e) {
+					rejected.put(batch.keys.get(i), new BadRequestException(e.getMessage(), e));
+				}
+			}
+			return rejected;
+		}
+	}
+
+	static class Batch {
+
+		private final List<String> keys;
+		private final List<String> values;
+
+		Batch(int capacity) {
+			keys = new ArrayList<String>(capacity);
+			values = new ArrayList<String>(capacity);
+		}
+
+		void add(String key, String value) {
+			keys.add(key);
+			values.add(value);
+		}
+
+		int size() {
+			return keys.size();
+		}
+	}
+
+	/**
+	 * Sorted view of the local ring, used to find the token range that a key hash falls into.
+	 * Same lookup as {@link com.netflix.dyno.connectionpool.impl.hash.BinarySearchTokenMapper}
+	 */
+	static class RingPartition {
+
+		private final long[] ends;
+		private final Host[] hosts;
+
+		RingPartition(Map<TokenRange, HostConnectionPool<Jedis>> rangePools) {
+
+			if (rangePools.isEmpty()) {
+				throw new NoAvailableHostsException("Found no token ranges to partition the keys by");
+			}
+
+			List<TokenRange> ranges = new ArrayList<TokenRange>(rangePools.keySet());
+			ends = new long[ranges.size()];
+			hosts = new Host[ranges.size()];
+
+			for (int i=0; i<ranges.size(); i++) {
+				ends[i] = ranges.get(i).getEnd();
+			}
+			Arrays.sort(ends);
+			for (TokenRange range : ranges) {
+				hosts[Arrays.binarySearch(ends, range.getEnd())] = rangePools.get(range).getHost();
+			}
+		}
+
+		int size() {
+			return ends.length;
+		}
+
+		Host getHost(int index) {
+			return hosts[index];
+		}
+
+		int getRangeIndex(long keyHash) {
+			int index = Arrays.binarySearch(ends, keyHash);
+			if (index < 0) {
+				index = -index - 1;
+			}
+			// past the last token, hence wraps around to the first range
+			return (index == ends.length) ? 0 : index;
+		}
+	}
+
+	/**
+	 * Counters for a bulk load, updated as the batches complete
+	 */
+	public static class Progress {
+
+		private final long startTime = System.nanoTime();
+		private final AtomicLong lastReport = new AtomicLong(System.currentTimeMillis());
+
+		private final AtomicLong keysRead = new AtomicLong(0L);
+		private final AtomicLong keysLoaded = new AtomicLong(0L);
+		private final AtomicLong keysFailed = new AtomicLong(0L);
+		private final AtomicLong batchesLoaded = new AtomicLong(0L);
+		private final AtomicLong batchRetries = new AtomicLong(0L);
+
+		/**
+		 * @return number of keys taken off the input so far
+		 */
+		public long getKeysRead() {
+			return keysRead.get();
+		}
+
+		public long getKeysLoaded() {
+			return keysLoaded.get();
+		}
+
+		public long getKeysFailed() {
+			return keysFailed.get();
+		}
+
+		public long getBatchesLoaded() {
+			return batchesLoaded.get();
+		}
+
+		public long getBatchRetries() {
+			return batchRetries.get();
+		}
+
+		public long getElapsedMillis() {
+			return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+		}
+
+		/**
+		 * @return the number of keys loaded per second since the load started
+		 */
+		public double getKeysPerSecond() {
+			long elapsed = getElapsedMillis();
+			return (elapsed > 0) ? (keysLoaded.get() * 1000.0 / elapsed) : 0.0;
+		}
+
+		public String toString() {
+			return "keysRead: " + getKeysRead() +
+					", keysLoaded: " + getKeysLoaded() +
+					", keysFailed: " + getKeysFailed() +
+					", batches: " + getBatchesLoaded() +
+					", retries: " + getBatchRetries() +
+					", elapsedMillis: " + getElapsedMillis() +
+					", keysPerSecond: " + String.format("%.1f", getKeysPerSecond());
+		}
+	}
+
+	/**
+	 * Callback for tracking a bulk load. Note that it is called from the threads writing the batches.
+	 */
+	public interface BulkLoadListener {
+
+		public void onProgress(Progress progress);
+
+		/**
+		 * Called for a batch that could not be written after all the retries
+		 * @param keys
+		 * @param e the last failure
+		 */
+		public void onBatchFailure(Collection<String> keys, DynoException e);
+
+		/**
+		 * Called for the keys of a batch that the server turned down, e.g OOM. These are not retried.
+		 * @param rejected the keys along with the error for each
+		 */
+		public void onKeysRejected(Map<String, DynoException> rejected);
+	}
+}
@@ -0,0 +1,323 @@
+package com.netflix.dyno.jedis;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+
+import com.netflix.dyno.connectionpool.Connection;
+import com.netflix.dyno.connectionpool.ConnectionContext;
+import com.netflix.dyno.connectionpool.HostConnectionPool;
+import com.netflix.dyno.connectionpool.Operation;
+import com.netflix.dyno.connectionpool.exception.DynoException;
+import com.netflix.dyno.connectionpool.exception.NoAvailableHostsException;
+import com.netflix.dyno.connectionpool.impl.ConnectionPoolImpl;
+import com.netflix.dyno.connectionpool.impl.hash.Murmur1HashPartitioner;
+import com.netflix.dyno.connectionpool.impl.lb.TokenRange;
+
+/**
+ * Exports the keyspace of the local ring to local files, one file per token range, see {@link DumpFileFormat}.
+ *
+ * Every node of the local ring is exported in parallel over a connection to that node. The keys of a node are listed
+ * with KEYS (the jedis version in use has no SCAN) and then read back in pipelined chunks of DUMP and PTTL.
+ * Each key goes to the file of the token range that it hashes to, hence a node that owns multiple tokens gets multiple
+ * files, and {@link DynoDumpLoader} can checkpoint its progress per file.
+ *
+ * A file is written as a temp file first and only renamed to its final name once the whole range is exported, hence a
+ * failed export never leaves partial files that look complete.
+ *
+ * Note that KEYS returns all the matching keys of a node in one reply, use {@link #withPattern(String)} to export
+ * very large nodes in parts.
+ *
+ * @author poberai
+ *
+ */
+public class DynoDumpExporter {
+
+	private static final Logger Logger = LoggerFactory.getLogger(DynoDumpExporter.class);
+
+	private static final String DynoExportKeys = "DynoExportKeys";
+	private static final String DynoExportDump = "DynoExportDump";
+
+	private final ConnectionPoolImpl<Jedis> connPool;
+	private final Murmur1HashPartitioner partitioner = new Murmur1HashPartitioner();
+
+	private String pattern = "*";
+	private int batchSize = 500;
+	private int maxThreads = 8;
+	private int bufferSize = 4 * 1024 * 1024;
+
+	DynoDumpExporter(ConnectionPoolImpl<Jedis> cPool) {
+		this.connPool = cPool;
+	}
+
+	public DynoDumpExporter withPattern(String keyPattern) {
+		this.pattern = keyPattern;
+		return this;
+	}
+
+	public DynoDumpExporter withBatchSize(int size) {
+		if (size <= 0) {
+			throw new IllegalArgumentException("Batch size must be > 0");
+		}
+		this.batchSize = size;
+		return this;
+	}
+
+	public DynoDumpExporter withMaxThreads(int threads) {
+		if (threads <= 0) {
+			throw new IllegalArgumentException("Max threads must be > 0");
+		}
+		this.maxThreads = threads;
+		return this;
+	}
+
+	public DynoDumpExporter withBufferSize(int size) {
+		this.bufferSize = size;
+		return this;
+	}
+
+	/**
+	 * Export all the keys that match the pattern into the given directory
+	 * @param dir
+	 * @return the number of records written
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public long export(final File dir) throws IOException, InterruptedException {
+
+		if (!dir.isDirectory() && !dir.mkdirs()) {
+			throw new IOException("Could not create dir " + dir);
+		}
+
+		Map<HostConnectionPool<Jedis>, List<TokenRange>> hostRanges = new LinkedHashMap<HostConnectionPool<Jedis>, List<TokenRange>>();
+		for (Map.Entry<TokenRange, HostConnectionPool<Jedis>> entry : connPool.getTokenRangePools(1).entrySet()) {
+			List<TokenRange> ranges = hostRanges.get(entry.getValue());
+			if (ranges == null) {
+				ranges = new ArrayList<TokenRange>();
+				hostRanges.put(entry.getValue(), ranges);
+			}
+			ranges.add(entry.getKey());
+		}
+
+		if (hostRanges.isEmpty()) {
+			throw new NoAvailableHostsException("Found no token ranges to export");
+		}
+
+		ExecutorService threadPool = Executors.newFixedThreadPool(Math.min(maxThreads, hostRanges.size()));
+		try {
+			List<Future<Long>> futures = new ArrayList<Future<Long>>();
+			for (final Map.Entry<HostConnectionPool<Jedis>, List<TokenRange>> entry : hostRanges.entrySet()) {
+
+				futures.add(threadPool.submit(new Callable<Long>() {
+
+					@Override
+					public Long call() throws Exception {
+						return exportHost(entry.getKey(), entry.getValue(), dir);
+					}
+				}));
+			}
+
+			long records = 0L;
+			for (Future<Long> future : futures) {
+				try {
+					records += future.get();
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof IOException) {
+						throw (IOException) e.getCause();
+					}
+					throw new DynoException("Export failed", e.getCause());
+				}
+			}
+			Logger.info("Exported " + records + " records from " + hostRanges.size() + " hosts to " + dir);
+			return records;
+
+		} finally {
+			threadPool.shutdownNow();
+		}
+	}
+
+	static String getFileName(TokenRange range) {
+		return "range_" + range.getStart() + "_" + range.getEnd() + DumpFileFormat.FileSuffix;
+	}
+
+	private long exportHost(HostConnectionPool<Jedis> hostPool, List<TokenRange> ranges, File dir) throws IOException {
+
+		Connection<Jedis> connection = hostPool.borrowConnection(connPool.getConfiguration().getMaxTimeoutWhenExhausted(), TimeUnit.MILLISECONDS);
+
+		List<DumpFileFormat.Writer> writers = new ArrayList<DumpFileFormat.Writer>();
+		try {
+			for (TokenRange range : ranges) {
+				writers.add(new DumpFileFormat.Writer(getTempFile(dir, range), bufferSize));
+			}
+
+			Set<String> keys = connection.execute(new KeysOperation(pattern)).getResult();
+
+			long skipped = 0L;
+			Iterator<String> iter = keys.iterator();
+			List<String> chunk = new ArrayList<String>(batchSize);
+
+			while (iter.hasNext()) {
+
+				chunk.clear();
+				while (iter.hasNext() && chunk.size() < batchSize) {
+					chunk.add(iter.next());
+				}
+
+				List<DumpedValue> dumps = connection.execute(new DumpOperation(chunk)).getResult();
+
+				for (int i=0; i<chunk.size(); i++) {
+
+					String key = chunk.get(i);
+					byte[] value = dumps.get(i).value;
+					Long pttl = dumps.get(i).pttl;
+
+					int index = getRangeIndex(ranges, key);
+					// key was deleted since it was listed, or the ring changed under us
+					if (value == null || pttl == null || pttl == -2 || index < 0) {
+						skipped++;
+						continue;
+					}
+					writers.get(index).write(key, (pttl > 0) ? pttl : 0L, value);
+				}
+			}
+
+			for (DumpFileFormat.Writer writer : writers) {
+				writer.close();
+			}
+
+			long records = 0L;
+			for (int i=0; i<ranges.size(); i++) {
+				File file = new File(dir, getFileName(ranges.get(i)));
+				if (file.exists() && !file.delete()) {
+					throw new IOException("Could not replace " + file);
+				}
+				if (!getTempFile(dir, ranges.get(i)).renameTo(file)) {
+					throw new IOException("Could not rename to " + file);
+				}
+				records += writers.get(i).getRecordCount();
+			}
+
+			Logger.info("Exported " + records + " records from host " + hostPool.getHost() + ", skipped " + skipped);
+			return records;
+
+		} finally {
+			for (DumpFileFormat.Writer writer : writers) {
+				try {
+					writer.close();
+				} catch (IOException e) {
+					// already closed or failed, the temp file is left behind
+				}
+			}
+			hostPool.returnConnection(connection);
+		}
+	}
+
+	private File getTempFile(File dir, TokenRange range) {
+		return new File(dir, getFileName(range) + ".tmp");
+	}
+
+	private int getRangeIndex(List<TokenRange> ranges, String key) {
+		long keyHash = partitioner.hash(key);
+		for (int i=0; i<ranges.size(); i++) {
+			if (ranges.get(i).contains(keyHash)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private class KeysOperation implements Operation<Jedis, Set<String>> {
+
+		private final String keyPattern;
+
+		private KeysOperation(String keyPattern) {
+			this.keyPattern = keyPattern;
+		}
+
+		@Override
+		public String getName() {
+			return DynoExportKeys;
+		}
+
+		@Override
+		public String getKey() {
+			return keyPattern;
+		}
+
+		@Override
+		public Set<String> execute(Jedis client, ConnectionContext state) throws DynoException {
+			return client.keys(keyPattern);
+		}
+	}
+
+	/**
+	 * Pipelined DUMP and PTTL for a chunk of keys
+	 */
+	private class DumpOperation implements Operation<Jedis, List<DumpedValue>> {
+
+		private final List<String> keys;
+
+		private DumpOperation(List<String> keys) {
+			this.keys = keys;
+		}
+
+		@Override
+		public String getName() {
+			return DynoExportDump;
+		}
+
+		@Override
+		public String getKey() {
+			return keys.get(0);
+		}
+
+		@Override
+		public List<DumpedValue> execute(Jedis client, ConnectionContext state) throws DynoException {
+
+			Pipeline pipeline = client.pipelined();
+
+			List<Response<byte[]>> values = new ArrayList<Response<byte[]>>(keys.size());
+			List<Response<Long>> ttls = new ArrayList<Response<Long>>(keys.size());
+			for (String key : keys) {
+				values.add(pipeline.dump(key));
+				ttls.add(pipeline.pttl(key));
+			}
+			pipeline.sync();
+
+			List<DumpedValue> result = new ArrayList<DumpedValue>(keys.size());
+			for (int i=0; i<keys.size(); i++) {
+				result.add(new DumpedValue(values.get(i).get(), ttls.get(i).get()));
+			}
+			return result;
+		}
+	}
+
+	private static class DumpedValue {
+
+		private final byte[] value;
+		private final Long pttl;
+
+		private DumpedValue(byte[] value, Long pttl) {
+			this.value = value;
+			this.pttl = pttl;
+		}
+	}
+}
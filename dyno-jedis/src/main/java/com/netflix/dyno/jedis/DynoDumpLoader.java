@@ -0,0 +1,338 @@
+package com.netflix.dyno.jedis;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisDataException;
+
+import com.netflix.dyno.connectionpool.ConnectionContext;
+import com.netflix.dyno.connectionpool.Operation;
+import com.netflix.dyno.connectionpool.exception.BadRequestException;
+import com.netflix.dyno.connectionpool.exception.DynoException;
+import com.netflix.dyno.connectionpool.impl.ConnectionPoolImpl;
+import com.netflix.dyno.connectionpool.impl.utils.TokenBucketRateLimiter;
+import com.netflix.dyno.jedis.DumpFileFormat.Record;
+
+/**
+ * Loads the files written by {@link DynoDumpExporter} back with RESTORE.
+ *
+ * The files are loaded in parallel, and the records of a file are restored in pipelined batches. Since all the keys in a
+ * file belong to the same token range, a batch is routed on its first key. Each key is deleted before it is restored,
+ * hence the load overwrites the current values and a batch can safely be applied again.
+ *
+ * After each batch the offset of the next record is saved in a checkpoint file next to the dump file, and a load that
+ * is restarted resumes every range from its checkpoint. A range that was fully loaded is skipped. Delete the checkpoint
+ * files to load from scratch.
+ *
+ * Records that the server turns down (e.g a bad payload or OOM) are data errors rather than connection failures, hence they 
+ * are not retried, they are skipped and handed to the {@link RestoreListener}. 
+ * 
+ * Use {@link #withMaxRecordsPerSecond(int)} to throttle the load across all the threads.
+ *
+ * @author poberai
+ *
+ */
+public class DynoDumpLoader {
+
+	private static final Logger Logger = LoggerFactory.getLogger(DynoDumpLoader.class);
+
+	private static final String DynoRestore = "DynoRestore";
+	private static final String CheckpointSuffix = ".checkpoint";
+
+	private final ConnectionPoolImpl<Jedis> connPool;
+
+	private int batchSize = 200;
+	private int maxThreads = 8;
+	private int bufferSize = 4 * 1024 * 1024;
+	private int maxRecordsPerSecond = 0;
+	private RestoreListener listener = null;
+
+	DynoDumpLoader(ConnectionPoolImpl<Jedis> cPool) {
+		this.connPool = cPool;
+	}
+
+	public DynoDumpLoader withBatchSize(int size) {
+		if (size <= 0) {
+			throw new IllegalArgumentException("Batch size must be > 0");
+		}
+		this.batchSize = size;
+		return this;
+	}
+
+	public DynoDumpLoader withMaxThreads(int threads) {
+		if (threads <= 0) {
+			throw new IllegalArgumentException("Max threads must be > 0");
+		}
+		this.maxThreads = threads;
+		return this;
+	}
+
+	public DynoDumpLoader withBufferSize(int size) {
+		this.bufferSize = size;
+		return this;
+	}
+
+	/**
+	 * @param max records restored per second across all the files, 0 for no limit
+	 * @return this
+	 */
+	public DynoDumpLoader withMaxRecordsPerSecond(int max) {
+		this.maxRecordsPerSecond = max;
+		return this;
+	}
+
+	public DynoDumpLoader withListener(RestoreListener restoreListener) {
+		this.listener = restoreListener;
+		return this;
+	}
+
+	/**
+	 * Restore all the dump files in the given directory
+	 * @param dir
+	 * @return the number of records restored by this call, i.e excluding the ones before the checkpoints and the rejected ones
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public long load(File dir) throws IOException, InterruptedException {
+
+		File[] files = dir.listFiles(new FileFilter() {
+
+			@Override
+			public boolean accept(File file) {
+				return file.isFile() && file.getName().endsWith(DumpFileFormat.FileSuffix);
+			}
+		});
+
+		if (files == null) {
+			throw new IOException("Could not list dir " + dir);
+		}
+		if (files.length == 0) {
+			return 0L;
+		}
+		Arrays.sort(files);
+
+		final TokenBucketRateLimiter throttle = (maxRecordsPerSecond > 0) ? new TokenBucketRateLimiter(maxRecordsPerSecond, batchSize) : null;
+		final AtomicLong rejected = new AtomicLong(0L);
+
+		ExecutorService threadPool = Executors.newFixedThreadPool(Math.min(maxThreads, files.length));
+		try {
+			List<Future<Long>> futures = new ArrayList<Future<Long>>();
+			for (final File file : files) {
+
+				futures.add(threadPool.submit(new Callable<Long>() {
+
+					@Override
+					public Long call() throws Exception {
+						return loadFile(file, throttle, rejected);
+					}
+				}));
+			}
+
+			long records = 0L;
+			for (Future<Long> future : futures) {
+				try {
+					records += future.get();
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof IOException) {
+						throw (IOException) e.getCause();
+					}
+					throw new DynoException("Load failed", e.getCause());
+				}
+			}
+			Logger.info("Restored " + records + " records from " + files.length + " files in " + dir + ", rejected " + rejected.get());
+			return records;
+
+		} finally {
+			threadPool.shutdownNow();
+		}
+	}
+
+	private long loadFile(File file, TokenBucketRateLimiter throttle, AtomicLong rejected) throws IOException, InterruptedException {
+
+		File checkpoint = new File(file.getPath() + CheckpointSuffix);
+
+		DumpFileFormat.Reader reader = new DumpFileFormat.Reader(file, bufferSize);
+		try {
+			long offset = readCheckpoint(checkpoint);
+			if (offset > 0) {
+				Logger.info("Resuming " + file + " from offset " + offset);
+				reader.seek(offset);
+			}
+
+			long records = 0L;
+			List<Record> batch = new ArrayList<Record>(batchSize);
+			Record record;
+
+			while ((record = reader.next()) != null) {
+				batch.add(record);
+				if (batch.size() >= batchSize) {
+					records += restore(batch, throttle, rejected);
+					writeCheckpoint(checkpoint, reader.position());
+				}
+			}
+			if (!batch.isEmpty()) {
+				records += restore(batch, throttle, rejected);
+			}
+			writeCheckpoint(checkpoint, reader.position());
+
+			return records;
+
+		} finally {
+			reader.close();
+		}
+	}
+
+	private int restore(List<Record> batch, TokenBucketRateLimiter throttle, AtomicLong rejected) throws InterruptedException {
+
+		if (throttle != null) {
+			throttle.acquire(batch.size());
+		}
+		Map<String, DynoException> failures = connPool.executeWithFailover(new RestoreOperation(new ArrayList<Record>(batch))).getResult();
+
+		if (!failures.isEmpty()) {
+			rejected.addAndGet(failures.size());
+			Map.Entry<String, DynoException> first = failures.entrySet().iterator().next();
+			Logger.warn(failures.size() + " records of a batch were rejected, first: " + first.getKey() + " " + first.getValue().getMessage());
+			if (listener != null) {
+				listener.onRecordsRejected(failures);
+			}
+		}
+
+		int restored = batch.size() - failures.size();
+		batch.clear();
+		return restored;
+	}
+
+	/**
+	 * @return the offset to resume from or 0 if there is no checkpoint
+	 */
+	static long readCheckpoint(File checkpoint) throws IOException {
+
+		if (!checkpoint.exists()) {
+			return 0L;
+		}
+		BufferedReader in = new BufferedReader(new FileReader(checkpoint));
+		try {
+			String line = in.readLine();
+			return (line != null) ? Long.parseLong(line.trim()) : 0L;
+		} catch (NumberFormatException e) {
+			throw new IOException("Corrupt checkpoint " + checkpoint, e);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Write to a temp file and rename it, so that a crash never leaves a partially written checkpoint behind
+	 */
+	static void writeCheckpoint(File checkpoint, long offset) throws IOException {
+
+		File temp = new File(checkpoint.getPath() + ".tmp");
+		Writer out = new FileWriter(temp);
+		try {
+			out.write(Long.toString(offset));
+		} finally {
+			out.close();
+		}
+
+		if (!temp.renameTo(checkpoint)) {
+			if (!checkpoint.delete() || !temp.renameTo(checkpoint)) {
+				throw new IOException("Could not write checkpoint " + checkpoint);
+			}
+		}
+	}
+
+	/**
+	 * Pipelined DEL and RESTORE for a batch of records from the same token range. 
+	 * 
+	 * RESTORE takes an int ttl, hence a ttl longer than that (~24 days) is restored without one and then set with PEXPIREAT. 
+	 * The result is the keys that the server rejected, the batch only fails as a whole on connection errors.
+	 */
+	static class RestoreOperation implements Operation<Jedis, Map<String, DynoException>> {
+
+		private final List<Record> records;
+
+		RestoreOperation(List<Record> records) {
+			this.records = records;
+		}
+
+		@Override
+		public String getName() {
+			return DynoRestore;
+		}
+
+		@Override
+		public String getKey() {
+			return records.get(0).getKey();
+		}
+
+		@Override
+		public Map<String, DynoException> execute(Jedis client, ConnectionContext state) throws DynoException {
+
+			Pipeline pipeline = client.pipelined();
+			long now = System.currentTimeMillis();
+
+			List<Response<String>> restores = new ArrayList<Response<String>>(records.size());
+			List<Response<Long>> expires = new ArrayList<Response<Long>>(records.size());
+
+			for (Record record : records) {
+				long ttl = record.getTtlMillis();
+				pipeline.del(record.getKey());
+				if (ttl <= Integer.MAX_VALUE) {
+					restores.add(pipeline.restore(record.getKey(), (int) ttl, record.getValue()));
+					expires.add(null);
+				} else {
+					restores.add(pipeline.restore(record.getKey(), 0, record.getValue()));
+					expires.add(pipeline.pexpireAt(record.getKey(), now + ttl));
+				}
+			}
+			pipeline.sync();
+
+			Map<String, DynoException> rejected = new LinkedHashMap<String, DynoException>();
+			for (int i=0; i<records.size(); i++) {
+				try {
+					restores.get(i).get();
+					if (expires.get(i) != null) {
+						expires.get(i).get();
+					}
+				} catch (JedisDataException e) {
+					rejected.put(records.get(i).getKey(), new BadRequestException(e.getMessage(), e));
+				}
+			}
+			return rejected;
+		}
+	}
+
+	/**
+	 * Callback for the records that the server turned down. Note that it is called from the threads loading the files.
+	 */
+	public interface RestoreListener {
+
+		/**
+		 * @param rejected the keys along with the error for each
+		 */
+		public void onRecordsRejected(Map<String, DynoException> rejected);
+	}
+}
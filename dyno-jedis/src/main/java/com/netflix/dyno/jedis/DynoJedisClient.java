@@ -26,10 +26,12 @@ import com.netflix.dyno.connectionpool.ConnectionPool;
 import com.netflix.dyno.connectionpool.HostSupplier;
 import com.netflix.dyno.connectionpool.Operation;
 import com.netflix.dyno.connectionpool.OperationResult;
+import com.netflix.dyno.connectionpool.ReadOperation;
 import com.netflix.dyno.connectionpool.exception.DynoConnectException;
 import com.netflix.dyno.connectionpool.exception.DynoException;
 import com.netflix.dyno.connectionpool.impl.ConnectionPoolConfigurationImpl;
 import com.netflix.dyno.connectionpool.impl.ConnectionPoolImpl;
+import com.netflix.dyno.connectionpool.impl.MonitorConsole;
 import com.netflix.dyno.connectionpool.impl.lb.HttpEndpointBasedTokenMapSupplier;
 import com.netflix.dyno.contrib.ArchaiusConnectionPoolConfiguration;
 import com.netflix.dyno.contrib.DynoCPMonitor;
@@ -72,6 +74,16 @@ public class DynoJedisClient implements JedisCommands, MultiKeyCommands {
 		}
 	}
 	
+	/**
+	 * An operation that only reads data, hence it can be served by a replica in another rack, see {@link ReadOperation}
+	 */
+	private abstract class BaseKeyReadOperation<T> extends BaseKeyOperation<T> implements ReadOperation {
+		
+		private BaseKeyReadOperation(final String k, final OpName o) {
+			super(k, o);
+		}
+	}
+	
 	@Override
 	public Long append(final String key, final String value)  {
 		return d_append(key, value).getResult();
@@ -146,7 +158,7 @@ public class DynoJedisClient implements JedisCommands, MultiKeyCommands {
 	
 	public OperationResult<byte[]> d_dump(final String key)  {
 		
-		return connPool.executeWithFailover(new BaseKeyOperation<byte[]>(key, OpName.DUMP) {
+		return connPool.executeWithFailover(new BaseKeyReadOperation<byte[]>(key, OpName.DUMP) {
 
 			@Override
 			public byte[] execute(Jedis client, ConnectionContext state)  {
@@ -163,7 +175,7 @@ public class DynoJedisClient implements JedisCommands, MultiKeyCommands {
 	
 	public OperationResult<Boolean> d_exists(final String key)  {
 		
-		return connPool.executeWithFailover(new BaseKeyOperation<Boolean>(key, OpName.EXISTS) {
+		return connPool.executeWithFailover(new BaseKeyReadOperation<Boolean>(key, OpName.EXISTS) {
 
 			@Override
 			public Boolean execute(Jedis client, ConnectionContext state)  {
@@ -214,7 +226,7 @@ public class DynoJedisClient implements JedisCommands, MultiKeyCommands {
 
 	public OperationResult<String> d_get(final String key)  {
 		
-		return connPool.executeWithFailover(new BaseKeyOperation<String>(key, OpName.GET) {
+		return connPool.executeWithFailover(new BaseKeyReadOperation<String>(key, OpName.GET) {
 			
 			@Override
 			public String execute(Jedis client, ConnectionContext state)  {
@@ -231,7 +243,7 @@ public class DynoJedisClient implements JedisCommands, MultiKeyCommands {
 
 	public OperationResult<Boolean> d_getbit(final String key, final Long offset)  {
 
-		return connPool.executeWithFailover(new BaseKeyOperation<Boolean>(key, OpName.GETBIT) {
+		return connPool.executeWithFailover(new BaseKeyReadOperation<Boolean>(key, OpName.GETBIT) {
 
 			@Override
 			public Boolean execute(Jedis client, ConnectionContext state)  {
@@ -248,7 +260,7 @@ public class DynoJedisClient implements JedisCommands, MultiKeyCommands {
 
 	public OperationResult<String> d_getrange(final String key, final Long startOffset, final Long endOffset)  {
 
-		return connPool.executeWithFailover(new BaseKeyOperation<String>(key, OpName.GETRANGE) {
+		return connPool.executeWithFailover(new BaseKeyReadOperation<String>(key, OpName.GETRANGE) {
 
 			@Override
 			public String execute(Jedis client, ConnectionContext state)  {
@@ -299,7 +311,7 @@ public class DynoJedisClient implements JedisCommands, MultiKeyCommands {
 
 	public OperationResult<Boolean> d_hexists(final String key, final String field)  {
 		
-		return connPool.executeWithFailover(new BaseKeyOperation<Boolean>(key, OpName.HEXISTS) {
+		return connPool.executeWithFailover(new BaseKeyReadOperation<Boolean>(key, OpName.HEXISTS) {
 
 			@Override
 			public Boolean execute(Jedis client, ConnectionContext state)  {
@@ -316,7 +328,7 @@ public class DynoJedisClient implements JedisCommands, MultiKeyCommands {
 	
 	public OperationResult<String> d_hget(final String key, final String field)  {
 		
-		return connPool.executeWithFailover(new BaseKeyOperation<String>(key, OpName.HGET) {
+		return connPool.executeWithFailover(new BaseKeyReadOperation<String>(key, OpName.HGET) {
 
 			@Override
 			public String execute(Jedis client, ConnectionContext state)  {
@@ -333,7 +345,7 @@ public class DynoJedisClient implements JedisCommands, MultiKeyCommands {
 	
 	public OperationResult<Map<String, String>> d_hgetAll(final String key)  {
 		
-		return connPool.executeWithFailover(new BaseKeyOperation<Map<String, String>>(key, OpName.HGETALL) {
+		return connPool.executeWithFailover(new BaseKeyReadOperation<Map<String, String>>(key, OpName.HGETALL) {
 
 			@Override
 			public Map<String, String> execute(Jedis client, ConnectionContext state)  {
@@ -384,7 +396,7 @@ public class DynoJedisClient implements JedisCommands, MultiKeyCommands {
 	
 	public OperationResult<Set<String>> d_hkeys(final String key)  {
 		
-		return connPool.executeWithFailover(new BaseKeyOperation<Set<String>>(key, OpName.HKEYS) {
+		return connPool.executeWithFailover(new BaseKeyReadOperation<Set<String>>(key, OpName.HKEYS) {
 
 			@Override
 			public Set<String> execute(Jedis client, ConnectionContext state)  {
@@ -401,7 +413,7 @@ public class DynoJedisClient implements JedisCommands, MultiKeyCommands {
 	
 	public OperationResult<Long> d_hlen(final String key)  {
 		
-		return connPool.executeWithFailover(new BaseKeyOperation<Long>(key, OpName.HLEN) {
+		return connPool.executeWithFailover(new BaseKeyReadOperation<Long>(key, OpName.HLEN) {
 
 			@Override
 			public Long execute(Jedis client, ConnectionContext state)  {
@@ -418,7 +430,7 @@ public class DynoJedisClient implements JedisCommands, MultiKeyCommands {
 	
 	public OperationResult<List<String>> d_hmget(final String key, final String ... fields)  {
 		
-		return connPool.executeWithFailover(new BaseKeyOperation<List<String>>(key, OpName.HMGET) {
+		return connPool.executeWithFailover(new BaseKeyReadOperation<List<String>>(key, OpName.HMGET) {
 
 			@Override
 			public List<String> execute(Jedis client, ConnectionContext state)  {
@@ -469,7 +481,7 @@ public class DynoJedisClient implements JedisCommands, MultiKeyCommands {
 	
 	public OperationResult<List<String>> d_hvals(final String key)  {
 		
-		return connPool.executeWithFailover(new BaseKeyOperation<List<String>>(key, OpName.HVALS) {
+		return connPool.executeWithFailover(new BaseKeyReadOperation<List<String>>(key, OpName.HVALS) {
 
 			@Override
 			public List<String> execute(Jedis client, ConnectionContext state)  {
@@ -536,7 +548,7 @@ public class DynoJedisClient implements JedisCommands, MultiKeyCommands {
 
 	public OperationResult<String> d_lindex(final String key, final Long index)  {
 		
-		return connPool.executeWithFailover(new BaseKeyOperation<String>(key, OpName.LINDEX) {
+		return connPool.executeWithFailover(new BaseKeyReadOperation<String>(key, OpName.LINDEX) {
 
 			@Override
 			public String execute(Jedis client, ConnectionContext state)  {
@@ -570,7 +582,7 @@ public class DynoJedisClient implements JedisCommands, MultiKeyCommands {
 
 	public OperationResult<Long> d_llen(final String key)  {
 		
-		return connPool.executeWithFailover(new BaseKeyOperation<Long>(key, OpName.LLEN) {
+		return connPool.executeWithFailover(new BaseKeyReadOperation<Long>(key, OpName.LLEN) {
 
 			@Override
 			public Long execute(Jedis client, ConnectionContext state)  {
@@ -638,7 +650,7 @@ public class DynoJedisClient implements JedisCommands, MultiKeyCommands {
 
 	public OperationResult<List<String>> d_lrange(final String key, final Long start, final Long end)  {
 		
-		return connPool.executeWithFailover(new BaseKeyOperation<List<String>>(key, OpName.LRANGE) {
+		return connPool.executeWithFailover(new BaseKeyReadOperation<List<String>>(key, OpName.LRANGE) {
 
 			@Override
 			public List<String> execute(Jedis client, ConnectionContext state)  {
@@ -770,7 +782,7 @@ public class DynoJedisClient implements JedisCommands, MultiKeyCommands {
 
 	public OperationResult<Long> d_pttl(final String key)  {
 		
-		return connPool.executeWithFailover(new BaseKeyOperation<Long>(key, OpName.PTTL) {
+		return connPool.executeWithFailover(new BaseKeyReadOperation<Long>(key, OpName.PTTL) {
 
 			@Override
 			public Long execute(Jedis client, ConnectionContext state)  {
@@ -885,7 +897,7 @@ public class DynoJedisClient implements JedisCommands, MultiKeyCommands {
 
 	public OperationResult<Long> d_scard(final String key)  {
 		
-		return connPool.executeWithFailover(new BaseKeyOperation<Long>(key, OpName.SCARD) {
+		return connPool.executeWithFailover(new BaseKeyReadOperation<Long>(key, OpName.SCARD) {
 
 			@Override
 			public Long execute(Jedis client, ConnectionContext state)  {
@@ -901,7 +913,7 @@ public class DynoJedisClient implements JedisCommands, MultiKeyCommands {
 
 	public OperationResult<Set<String>> d_sdiff(final String ... keys)  {
 		
-		return connPool.executeWithFailover(new BaseKeyOperation<Set<String>>(keys[0], OpName.SDIFF) {
+		return connPool.executeWithFailover(new BaseKeyReadOperation<Set<String>>(keys[0], OpName.SDIFF) {
 
 			@Override
 			public Set<String> execute(Jedis client, ConnectionContext state)  {
@@ -1037,7 +1049,7 @@ public class DynoJedisClient implements JedisCommands, MultiKeyCommands {
 
 	public OperationResult<Boolean> d_sismember(final String key, final String member)  {
 		
-		return connPool.executeWithFailover(new BaseKeyOperation<Boolean>(key, OpName.SISMEMBER) {
+		return connPool.executeWithFailover(new BaseKeyReadOperation<Boolean>(key, OpName.SISMEMBER) {
 
 			@Override
 			public Boolean execute(Jedis client, ConnectionContext state)  {
@@ -1054,7 +1066,7 @@ public class DynoJedisClient implements JedisCommands, MultiKeyCommands {
 
 	public OperationResult<Set<String>> d_smembers(final String key)  {
 		
-		return connPool.executeWithFailover(new BaseKeyOperation<Set<String>>(key, OpName.SMEMBERS) {
+		return connPool.executeWithFailover(new BaseKeyReadOperation<Set<String>>(key, OpName.SMEMBERS) {
 
 			@Override
 			public Set<String> execute(Jedis client, ConnectionContext state)  {
@@ -1140,7 +1152,7 @@ public class DynoJedisClient implements JedisCommands, MultiKeyCommands {
 
 	public OperationResult<String> d_srandmember(final String key)  {
 		
-		return connPool.executeWithFailover(new BaseKeyOperation<String>(key, OpName.SRANDMEMBER) {
+		return connPool.executeWithFailover(new BaseKeyReadOperation<String>(key, OpName.SRANDMEMBER) {
 
 			@Override
 			public String execute(Jedis client, ConnectionContext state)  {
@@ -1174,7 +1186,7 @@ public class DynoJedisClient implements JedisCommands, MultiKeyCommands {
 
 	public OperationResult<Long> d_strlen(final String key)  {
 		
-		return connPool.executeWithFailover(new BaseKeyOperation<Long>(key, OpName.STRLEN) {
+		return connPool.executeWithFailover(new BaseKeyReadOperation<Long>(key, OpName.STRLEN) {
 
 			@Override
 			public Long execute(Jedis client, ConnectionContext state)  {
@@ -1192,7 +1204,7 @@ public class DynoJedisClient implements JedisCommands, MultiKeyCommands {
 
 	public OperationResult<String> d_substr(final String key, final Integer start, final Integer end)  {
 		
-		return connPool.executeWithFailover(new BaseKeyOperation<String>(key, OpName.SUBSTR) {
+		return connPool.executeWithFailover(new BaseKeyReadOperation<String>(key, OpName.SUBSTR) {
 
 			@Override
 			public String execute(Jedis client, ConnectionContext state)  {
@@ -1209,7 +1221,7 @@ public class DynoJedisClient implements JedisCommands, MultiKeyCommands {
 
 	public OperationResult<Long> d_ttl(final String key)  {
 		
-		return connPool.executeWithFailover(new BaseKeyOperation<Long>(key, OpName.TTL) {
+		return connPool.executeWithFailover(new BaseKeyReadOperation<Long>(key, OpName.TTL) {
 
 			@Override
 			public Long execute(Jedis client, ConnectionContext state)  {
@@ -1226,7 +1238,7 @@ public class DynoJedisClient implements JedisCommands, MultiKeyCommands {
 
 	public OperationResult<String> d_type(final String key)  {
 		
-		return connPool.executeWithFailover(new BaseKeyOperation<String>(key, OpName.TYPE) {
+		return connPool.executeWithFailover(new BaseKeyReadOperation<String>(key, OpName.TYPE) {
 
 			@Override
 			public String execute(Jedis client, ConnectionContext state)  {
@@ -1279,7 +1291,7 @@ public class DynoJedisClient implements JedisCommands, MultiKeyCommands {
 
 	public OperationResult<Long> d_zcard(final String key)  {
 
-		return connPool.executeWithFailover(new BaseKeyOperation<Long>(key, OpName.ZCARD) {
+		return connPool.executeWithFailover(new BaseKeyReadOperation<Long>(key, OpName.ZCARD) {
 
 			@Override
 			public Long execute(Jedis client, ConnectionContext state)  {
@@ -1296,7 +1308,7 @@ public class DynoJedisClient implements JedisCommands, MultiKeyCommands {
 
 	public OperationResult<Long> d_zcount(final String key, final Double min, final Double max)  {
 
-		return connPool.executeWithFailover(new BaseKeyOperation<Long>(key, OpName.ZCOUNT) {
+		return connPool.executeWithFailover(new BaseKeyReadOperation<Long>(key, OpName.ZCOUNT) {
 
 			@Override
 			public Long execute(Jedis client, ConnectionContext state)  {
@@ -1314,7 +1326,7 @@ public class DynoJedisClient implements JedisCommands, MultiKeyCommands {
 	
 	public OperationResult<Long> d_zcount(final String key, final String min, final String max)  {
 
-		return connPool.executeWithFailover(new BaseKeyOperation<Long>(key, OpName.ZCOUNT) {
+		return connPool.executeWithFailover(new BaseKeyReadOperation<Long>(key, OpName.ZCOUNT) {
 
 			@Override
 			public Long execute(Jedis client, ConnectionContext state)  {
@@ -1349,7 +1361,7 @@ public class DynoJedisClient implements JedisCommands, MultiKeyCommands {
 
 	public OperationResult<Set<String>> d_zrange(final String key, final Long start, final Long end)  {
 
-		return connPool.executeWithFailover(new BaseKeyOperation<Set<String>>(key, OpName.ZRANGE) {
+		return connPool.executeWithFailover(new BaseKeyReadOperation<Set<String>>(key, OpName.ZRANGE) {
 
 			@Override
 			public Set<String> execute(Jedis client, ConnectionContext state)  {
@@ -1366,7 +1378,7 @@ public class DynoJedisClient implements JedisCommands, MultiKeyCommands {
 
 	public OperationResult<Long> d_zrank(final String key, final String member)  {
 
-		return connPool.executeWithFailover(new BaseKeyOperation<Long>(key, OpName.ZRANK) {
+		return connPool.executeWithFailover(new BaseKeyReadOperation<Long>(key, OpName.ZRANK) {
 
 			@Override
 			public Long execute(Jedis client, ConnectionContext state)  {
@@ -1436,7 +1448,7 @@ public class DynoJedisClient implements JedisCommands, MultiKeyCommands {
 
 	public OperationResult<Set<String>> d_zrevrange(final String key, final Long start, final Long end)  {
 
-		return connPool.executeWithFailover(new BaseKeyOperation<Set<String>>(key, OpName.ZREVRANGE) {
+		return connPool.executeWithFailover(new BaseKeyReadOperation<Set<String>>(key, OpName.ZREVRANGE) {
 
 			@Override
 			public Set<String> execute(Jedis client, ConnectionContext state)  {
@@ -1453,7 +1465,7 @@ public class DynoJedisClient implements JedisCommands, MultiKeyCommands {
 
 	public OperationResult<Long> d_zrevrank(final String key, final String member)  {
 
-		return connPool.executeWithFailover(new BaseKeyOperation<Long>(key, OpName.ZREVRANK) {
+		return connPool.executeWithFailover(new BaseKeyReadOperation<Long>(key, OpName.ZREVRANK) {
 
 			@Override
 			public Long execute(Jedis client, ConnectionContext state)  {
@@ -1471,7 +1483,7 @@ public class DynoJedisClient implements JedisCommands, MultiKeyCommands {
 
 	public OperationResult<Set<Tuple>> d_zrangeWithScores(final String key, final Long start, final Long end)  {
 
-		return connPool.executeWithFailover(new BaseKeyOperation<Set<Tuple>>(key, OpName.ZRANGEWITHSCORES) {
+		return connPool.executeWithFailover(new BaseKeyReadOperation<Set<Tuple>>(key, OpName.ZRANGEWITHSCORES) {
 
 			@Override
 			public Set<Tuple> execute(Jedis client, ConnectionContext state)  {
@@ -1489,7 +1501,7 @@ public class DynoJedisClient implements JedisCommands, MultiKeyCommands {
 
 	public OperationResult<Set<Tuple>> d_zrevrangeWithScores(final String key, final Long start, final Long end)  {
 
-		return connPool.executeWithFailover(new BaseKeyOperation<Set<Tuple>>(key, OpName.ZREVRANGEWITHSCORES) {
+		return connPool.executeWithFailover(new BaseKeyReadOperation<Set<Tuple>>(key, OpName.ZREVRANGEWITHSCORES) {
 
 			@Override
 			public Set<Tuple> execute(Jedis client, ConnectionContext state)  {
@@ -1506,7 +1518,7 @@ public class DynoJedisClient implements JedisCommands, MultiKeyCommands {
 
 	public OperationResult<Double> d_zscore(final String key, final String member)  {
 
-		return connPool.executeWithFailover(new BaseKeyOperation<Double>(key, OpName.ZSCORE) {
+		return connPool.executeWithFailover(new BaseKeyReadOperation<Double>(key, OpName.ZSCORE) {
 
 			@Override
 			public Double execute(Jedis client, ConnectionContext state)  {
@@ -1523,7 +1535,7 @@ public class DynoJedisClient implements JedisCommands, MultiKeyCommands {
 
 	public OperationResult<Set<String>> d_zrangeByScore(final String key, final Double min, final Double max)  {
 
-		return connPool.executeWithFailover(new BaseKeyOperation<Set<String>>(key, OpName.ZRANGEBYSCORE) {
+		return connPool.executeWithFailover(new BaseKeyReadOperation<Set<String>>(key, OpName.ZRANGEBYSCORE) {
 
 			@Override
 			public Set<String> execute(Jedis client, ConnectionContext state)  {
@@ -1540,7 +1552,7 @@ public class DynoJedisClient implements JedisCommands, MultiKeyCommands {
 
 	public OperationResult<Set<String>> d_zrangeByScore(final String key, final String min, final String max)  {
 
-		return connPool.executeWithFailover(new BaseKeyOperation<Set<String>>(key, OpName.ZRANGEBYSCORE) {
+		return connPool.executeWithFailover(new BaseKeyReadOperation<Set<String>>(key, OpName.ZRANGEBYSCORE) {
 
 			@Override
 			public Set<String> execute(Jedis client, ConnectionContext state)  {
@@ -1557,7 +1569,7 @@ public class DynoJedisClient implements JedisCommands, MultiKeyCommands {
 
 	public OperationResult<Set<String>> d_zrangeByScore(final String key, final Double min, final Double max, final Integer offset, final Integer count)  {
 
-		return connPool.executeWithFailover(new BaseKeyOperation<Set<String>>(key, OpName.ZRANGEBYSCORE) {
+		return connPool.executeWithFailover(new BaseKeyReadOperation<Set<String>>(key, OpName.ZRANGEBYSCORE) {
 
 			@Override
 			public Set<String> execute(Jedis client, ConnectionContext state)  {
@@ -1574,7 +1586,7 @@ public class DynoJedisClient implements JedisCommands, MultiKeyCommands {
 
 	public OperationResult<Set<String>> d_zrevrangeByScore(final String key, final String max, final String min)  {
 
-		return connPool.executeWithFailover(new BaseKeyOperation<Set<String>>(key, OpName.ZREVRANGEBYSCORE) {
+		return connPool.executeWithFailover(new BaseKeyReadOperation<Set<String>>(key, OpName.ZREVRANGEBYSCORE) {
 
 			@Override
 			public Set<String> execute(Jedis client, ConnectionContext state)  {
@@ -1591,7 +1603,7 @@ public class DynoJedisClient implements JedisCommands, MultiKeyCommands {
 
 	public OperationResult<Set<String>> d_zrangeByScore(final String key, final String min, final String max, final Integer offset, final Integer count)  {
 
-		return connPool.executeWithFailover(new BaseKeyOperation<Set<String>>(key, OpName.ZRANGEBYSCORE) {
+		return connPool.executeWithFailover(new BaseKeyReadOperation<Set<String>>(key, OpName.ZRANGEBYSCORE) {
 
 			@Override
 			public Set<String> execute(Jedis client, ConnectionContext state)  {
@@ -1608,7 +1620,7 @@ public class DynoJedisClient implements JedisCommands, MultiKeyCommands {
 
 	public OperationResult<Set<String>> d_zrevrangeByScore(final String key, final Double max, final Double min, final Integer offset, final Integer count)  {
 
-		return connPool.executeWithFailover(new BaseKeyOperation<Set<String>>(key, OpName.ZREVRANGEBYSCORE) {
+		return connPool.executeWithFailover(new BaseKeyReadOperation<Set<String>>(key, OpName.ZREVRANGEBYSCORE) {
 
 			@Override
 			public Set<String> execute(Jedis client, ConnectionContext state)  {
@@ -1625,7 +1637,7 @@ public class DynoJedisClient implements JedisCommands, MultiKeyCommands {
 
 	public OperationResult<Set<String>> d_zrevrangeByScore(final String key, final Double max, final Double min)  {
 
-		return connPool.executeWithFailover(new BaseKeyOperation<Set<String>>(key, OpName.ZREVRANGEBYSCORE) {
+		return connPool.executeWithFailover(new BaseKeyReadOperation<Set<String>>(key, OpName.ZREVRANGEBYSCORE) {
 
 			@Override
 			public Set<String> execute(Jedis client, ConnectionContext state)  {
@@ -1643,7 +1655,7 @@ public class DynoJedisClient implements JedisCommands, MultiKeyCommands {
 
 	public OperationResult<Set<Tuple>> d_zrangeByScoreWithScores(final String key, final Double min, final Double max)  {
 
-		return connPool.executeWithFailover(new BaseKeyOperation<Set<Tuple>>(key, OpName.ZREVRANGEBYSCORE) {
+		return connPool.executeWithFailover(new BaseKeyReadOperation<Set<Tuple>>(key, OpName.ZREVRANGEBYSCORE) {
 
 			@Override
 			public Set<Tuple> execute(Jedis client, ConnectionContext state)  {
@@ -1660,7 +1672,7 @@ public class DynoJedisClient implements JedisCommands, MultiKeyCommands {
 
 	public OperationResult<Set<Tuple>> d_zrevrangeByScoreWithScores(final String key, final Double max, final Double min)  {
 
-		return connPool.executeWithFailover(new BaseKeyOperation<Set<Tuple>>(key, OpName.ZREVRANGEBYSCOREWITHSCORES) {
+		return connPool.executeWithFailover(new BaseKeyReadOperation<Set<Tuple>>(key, OpName.ZREVRANGEBYSCOREWITHSCORES) {
 
 			@Override
 			public Set<Tuple> execute(Jedis client, ConnectionContext state)  {
@@ -1677,7 +1689,7 @@ public class DynoJedisClient implements JedisCommands, MultiKeyCommands {
 
 	public OperationResult<Set<Tuple>> d_zrangeByScoreWithScores(final String key, final Double min, final Double max, final Integer offset, final Integer count)  {
 
-		return connPool.executeWithFailover(new BaseKeyOperation<Set<Tuple>>(key, OpName.ZRANGEBYSCOREWITHSCORES) {
+		return connPool.executeWithFailover(new BaseKeyReadOperation<Set<Tuple>>(key, OpName.ZRANGEBYSCOREWITHSCORES) {
 
 			@Override
 			public Set<Tuple> execute(Jedis client, ConnectionContext state)  {
@@ -1694,7 +1706,7 @@ public class DynoJedisClient implements JedisCommands, MultiKeyCommands {
 
 	public OperationResult<Set<String>> d_zrevrangeByScore(final String key, final String max, final String min, final Integer offset, final Integer count)  {
 
-		return connPool.executeWithFailover(new BaseKeyOperation<Set<String>>(key, OpName.ZREVRANGEBYSCORE) {
+		return connPool.executeWithFailover(new BaseKeyReadOperation<Set<String>>(key, OpName.ZREVRANGEBYSCORE) {
 
 			@Override
 			public Set<String> execute(Jedis client, ConnectionContext state)  {
@@ -1711,7 +1723,7 @@ public class DynoJedisClient implements JedisCommands, MultiKeyCommands {
 
 	public OperationResult<Set<Tuple>> d_zrangeByScoreWithScores(final String key, final String min, final String max) {
 
-		return connPool.executeWithFailover(new BaseKeyOperation<Set<Tuple>>(key, OpName.ZRANGEBYSCOREWITHSCORES) {
+		return connPool.executeWithFailover(new BaseKeyReadOperation<Set<Tuple>>(key, OpName.ZRANGEBYSCOREWITHSCORES) {
 
 			@Override
 			public Set<Tuple> execute(Jedis client, ConnectionContext state)  {
@@ -1728,7 +1740,7 @@ public class DynoJedisClient implements JedisCommands, MultiKeyCommands {
 
 	public OperationResult<Set<Tuple>> d_zrevrangeByScoreWithScores(final String key, final String max, final String min)  {
 
-		return connPool.executeWithFailover(new BaseKeyOperation<Set<Tuple>>(key, OpName.ZREVRANGEBYSCOREWITHSCORES) {
+		return connPool.executeWithFailover(new BaseKeyReadOperation<Set<Tuple>>(key, OpName.ZREVRANGEBYSCOREWITHSCORES) {
 
 			@Override
 			public Set<Tuple> execute(Jedis client, ConnectionContext state)  {
@@ -1745,7 +1757,7 @@ public class DynoJedisClient implements JedisCommands, MultiKeyCommands {
 
 	public OperationResult<Set<Tuple>> d_zrangeByScoreWithScores(final String key, final String min, final String max, final Integer offset, final Integer count)  {
 
-		return connPool.executeWithFailover(new BaseKeyOperation<Set<Tuple>>(key, OpName.ZRANGEBYSCOREWITHSCORES) {
+		return connPool.executeWithFailover(new BaseKeyReadOperation<Set<Tuple>>(key, OpName.ZRANGEBYSCOREWITHSCORES) {
 
 			@Override
 			public Set<Tuple> execute(Jedis client, ConnectionContext state)  {
@@ -1762,7 +1774,7 @@ public class DynoJedisClient implements JedisCommands, MultiKeyCommands {
 
 	public OperationResult<Set<Tuple>> d_zrevrangeByScoreWithScores(final String key, final Double max, final Double min, final Integer offset, final Integer count)  {
 
-		return connPool.executeWithFailover(new BaseKeyOperation<Set<Tuple>>(key, OpName.ZREVRANGEBYSCOREWITHSCORES) {
+		return connPool.executeWithFailover(new BaseKeyReadOperation<Set<Tuple>>(key, OpName.ZREVRANGEBYSCOREWITHSCORES) {
 
 			@Override
 			public Set<Tuple> execute(Jedis client, ConnectionContext state)  {
@@ -1779,7 +1791,7 @@ public class DynoJedisClient implements JedisCommands, MultiKeyCommands {
 
 	public OperationResult<Set<Tuple>> d_zrevrangeByScoreWithScores(final String key, final String max, final String min, final Integer offset, final Integer count)  {
 
-		return connPool.executeWithFailover(new BaseKeyOperation<Set<Tuple>>(key, OpName.ZREVRANGEBYSCOREWITHSCORES) {
+		return connPool.executeWithFailover(new BaseKeyReadOperation<Set<Tuple>>(key, OpName.ZREVRANGEBYSCOREWITHSCORES) {
 
 			@Override
 			public Set<Tuple> execute(Jedis client, ConnectionContext state)  {
@@ -1881,7 +1893,7 @@ public class DynoJedisClient implements JedisCommands, MultiKeyCommands {
 
 	public OperationResult<Long> d_bitcount(final String key) {
 
-		return connPool.executeWithFailover(new BaseKeyOperation<Long>(key, OpName.BITCOUNT) {
+		return connPool.executeWithFailover(new BaseKeyReadOperation<Long>(key, OpName.BITCOUNT) {
 
 			@Override
 			public Long execute(Jedis client, ConnectionContext state)  {
@@ -1898,7 +1910,7 @@ public class DynoJedisClient implements JedisCommands, MultiKeyCommands {
 
 	public OperationResult<Long> d_bitcount(final String key, final Long start, final Long end)  {
 
-		return connPool.executeWithFailover(new BaseKeyOperation<Long>(key, OpName.BITCOUNT) {
+		return connPool.executeWithFailover(new BaseKeyReadOperation<Long>(key, OpName.BITCOUNT) {
 
 			@Override
 			public Long execute(Jedis client, ConnectionContext state)  {
@@ -2081,6 +2093,27 @@ public class DynoJedisClient implements JedisCommands, MultiKeyCommands {
 		return new DynoJedisPipeline(getConnPool(), checkAndInitPipelineMonitor(), getConnPool().getMonitor());
 	}
 
+	/**
+	 * @return a loader for writing large numbers of keys in token partitioned pipelines, see {@link DynoBulkLoader}
+	 */
+	public DynoBulkLoader bulkLoader() {
+		return new DynoBulkLoader(getConnPool());
+	}
+
+	/**
+	 * @return an exporter that dumps the keyspace to local files per token range, see {@link DynoDumpExporter}
+	 */
+	public DynoDumpExporter dumpExporter() {
+		return new DynoDumpExporter(getConnPool());
+	}
+
+	/**
+	 * @return a loader that restores the files written by {@link #dumpExporter()}, see {@link DynoDumpLoader}
+	 */
+	public DynoDumpLoader dumpLoader() {
+		return new DynoDumpLoader(getConnPool());
+	}
+
 	private DynoJedisPipelineMonitor checkAndInitPipelineMonitor() {
 		
 		if (pipelineMonitor.get() != null) {
@@ -2177,6 +2210,7 @@ public class DynoJedisClient implements JedisCommands, MultiKeyCommands {
 			} catch (Exception e) {
 				throw new RuntimeException(e);
 			}
+			MonitorConsole.getInstance().addOperationMonitor(pool.getName(), opMonitor);
 			
 			final DynoJedisClient client = new DynoJedisClient(appName, pool, opMonitor);
 			return client;
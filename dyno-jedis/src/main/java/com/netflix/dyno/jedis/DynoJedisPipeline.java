@@ -22,6 +22,7 @@ import redis.clients.jedis.exceptions.JedisConnectionException;
 import com.netflix.dyno.connectionpool.BaseOperation;
 import com.netflix.dyno.connectionpool.Connection;
 import com.netflix.dyno.connectionpool.ConnectionPoolMonitor;
+import com.netflix.dyno.connectionpool.Host;
 import com.netflix.dyno.connectionpool.exception.DynoException;
 import com.netflix.dyno.connectionpool.exception.FatalConnectionException;
 import com.netflix.dyno.connectionpool.impl.ConnectionPoolImpl;
@@ -44,6 +45,9 @@ public class DynoJedisPipeline implements RedisPipeline, AutoCloseable {
 	private final AtomicReference<String> theKey = new AtomicReference<String>(null); 
 	// used for tracking errors
 	private final AtomicReference<DynoException> pipelineEx = new AtomicReference<DynoException>(null);
+	// when the first command was added to the pipeline, the latency of the pipeline covers the time from the first 
+	// command till the sync completes, i.e it includes the time the caller took to add the commands
+	private volatile long startTime;
 
 	private static final String DynoPipeline = "DynoPipeline";
 
@@ -82,7 +86,7 @@ public class DynoJedisPipeline implements RedisPipeline, AutoCloseable {
 
 			Jedis jedis = ((JedisConnection)connection).getClient();
 			jedisPipeline = jedis.pipelined();
-			cpMonitor.incOperationSuccess(connection.getHost(), 0);
+			startTime = System.nanoTime();
 		}
 	}
 
@@ -1226,16 +1230,34 @@ public class DynoJedisPipeline implements RedisPipeline, AutoCloseable {
 
 	}
 
+	/**
+	 * Send the commands and wait for their responses. The time from the first command till the responses are in is 
+	 * recorded as the latency of the pipeline on success. A failed sync is recorded as an operation failure. 
+	 */
 	public void sync() {
 		try {
 			jedisPipeline.sync();
 			opMonitor.recordPipelineSync();
+			cpMonitor.incOperationSuccess(connection.getHost(), System.nanoTime() - startTime);
+		} catch (JedisConnectionException ex) {
+			DynoException e = new FatalConnectionException(ex).setAttempt(1);
+			pipelineEx.set(e);
+			cpMonitor.incOperationFailure(getHost(), e);
+			throw ex;
+		} catch (RuntimeException ex) {
+			cpMonitor.incOperationFailure(getHost(), new DynoException(ex));
+			throw ex;
 		} finally {
 			discardPipeline();
 			releaseConnection();
 		}
 	}
 
+	private Host getHost() {
+		Connection<Jedis> conn = connection;
+		return (conn != null) ? conn.getHost() : null;
+	}
+
 	private void discardPipeline() {
 
 		try { 
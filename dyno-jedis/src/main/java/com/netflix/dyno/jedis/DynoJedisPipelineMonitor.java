@@ -3,9 +3,9 @@ package com.netflix.dyno.jedis;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
-import com.netflix.dyno.connectionpool.impl.utils.EstimatedHistogram;
-import com.netflix.dyno.contrib.EstimatedHistogramBasedCounter.EstimatedHistogramMean;
-import com.netflix.dyno.contrib.EstimatedHistogramBasedCounter.EstimatedHistogramPercentile;
+import com.netflix.dyno.connectionpool.impl.utils.LatencyRecorder;
+import com.netflix.dyno.contrib.LatencyRecorderBasedCounter.LatencyRecorderMean;
+import com.netflix.dyno.contrib.LatencyRecorderBasedCounter.LatencyRecorderPercentile;
 import com.netflix.servo.DefaultMonitorRegistry;
 import com.netflix.servo.monitor.BasicCounter;
 import com.netflix.servo.monitor.MonitorConfig;
@@ -80,25 +80,24 @@ public class DynoJedisPipelineMonitor {
 	
 	private class PipelineTimer {
 		
-		private final EstimatedHistogramMean latMean; 
-		private final EstimatedHistogramPercentile lat99;
-		private final EstimatedHistogramPercentile lat995;
-		private final EstimatedHistogramPercentile lat999;
+		private final LatencyRecorderMean latMean; 
+		private final LatencyRecorderPercentile lat99;
+		private final LatencyRecorderPercentile lat995;
+		private final LatencyRecorderPercentile lat999;
 		
-		private final EstimatedHistogram estHistogram; 
+		private final LatencyRecorder latencyRecorder; 
 		
 		private PipelineTimer(String appName) {
 
-			estHistogram = new EstimatedHistogram();
-			latMean = new EstimatedHistogramMean("Dyno__" + appName + "__PL__latMean", "PL", "dyno_pl_op", estHistogram);
-			lat99 = new EstimatedHistogramPercentile("Dyno__" + appName + "__PL__lat990", "PL", "dyno_pl_op", estHistogram, 0.99);
-			lat995 = new EstimatedHistogramPercentile("Dyno__" + appName + "__PL__lat995", "PL", "dyno_pl_op", estHistogram, 0.995);
-			lat999 = new EstimatedHistogramPercentile("Dyno__" + appName + "__PL__lat999", "PL", "dyno_pl_op", estHistogram, 0.999);
+			latencyRecorder = new LatencyRecorder();
+			latMean = new LatencyRecorderMean("Dyno__" + appName + "__PL__latMean", "PL", "dyno_pl_op", latencyRecorder);
+			lat99 = new LatencyRecorderPercentile("Dyno__" + appName + "__PL__lat990", "PL", "dyno_pl_op", latencyRecorder, 0.99);
+			lat995 = new LatencyRecorderPercentile("Dyno__" + appName + "__PL__lat995", "PL", "dyno_pl_op", latencyRecorder, 0.995);
+			lat999 = new LatencyRecorderPercentile("Dyno__" + appName + "__PL__lat999", "PL", "dyno_pl_op", latencyRecorder, 0.999);
 		}
 		
 		public void recordLatency(long duration, TimeUnit unit) {
-			long durationMicros = TimeUnit.MICROSECONDS.convert(duration, unit);
-			estHistogram.add(durationMicros);
+			latencyRecorder.recordLatency(duration, unit);
 		}
 	}
 
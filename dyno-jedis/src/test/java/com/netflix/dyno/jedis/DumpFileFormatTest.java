@@ -0,0 +1,154 @@
+package com.netflix.dyno.jedis;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.netflix.dyno.jedis.DumpFileFormat.Reader;
+import com.netflix.dyno.jedis.DumpFileFormat.Record;
+import com.netflix.dyno.jedis.DumpFileFormat.Writer;
+
+public class DumpFileFormatTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testRoundTrip() throws Exception {
+
+		File file = folder.newFile("test.dump");
+
+		// small buffers, so that records straddle buffer boundaries
+		Writer writer = new Writer(file, 64);
+		for (int i=0; i<100; i++) {
+			writer.write("key_" + i, i * 1000L, value(i, 10 + i));
+		}
+		Assert.assertEquals(100, writer.getRecordCount());
+		writer.close();
+
+		Reader reader = new Reader(file, 64);
+		try {
+			for (int i=0; i<100; i++) {
+				Record record = reader.next();
+				Assert.assertNotNull(record);
+				Assert.assertEquals("key_" + i, record.getKey());
+				Assert.assertEquals(i * 1000L, record.getTtlMillis());
+				Assert.assertTrue(Arrays.equals(value(i, 10 + i), record.getValue()));
+			}
+			Assert.assertNull(reader.next());
+			Assert.assertEquals(file.length(), reader.position());
+		} finally {
+			reader.close();
+		}
+	}
+
+	@Test
+	public void testRecordLargerThanBuffer() throws Exception {
+
+		File file = folder.newFile("large.dump");
+
+		Writer writer = new Writer(file, 32);
+		writer.write("small", 0L, value(1, 4));
+		writer.write("large", 0L, value(2, 1000));
+		writer.write("ünicode", 0L, value(3, 4));
+		writer.close();
+
+		Reader reader = new Reader(file, 32);
+		try {
+			Assert.assertEquals("small", reader.next().getKey());
+			Record large = reader.next();
+			Assert.assertEquals("large", large.getKey());
+			Assert.assertTrue(Arrays.equals(value(2, 1000), large.getValue()));
+			Assert.assertEquals("ünicode", reader.next().getKey());
+			Assert.assertNull(reader.next());
+		} finally {
+			reader.close();
+		}
+	}
+
+	@Test
+	public void testTruncatedTail() throws Exception {
+
+		File file = folder.newFile("truncated.dump");
+
+		Writer writer = new Writer(file, 1024);
+		writer.write("key_1", 0L, value(1, 20));
+		writer.write("key_2", 0L, value(2, 20));
+		writer.close();
+
+		// cut the last record short, as a crash in the middle of a write would
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		raf.setLength(file.length() - 5);
+		raf.close();
+
+		Reader reader = new Reader(file, 1024);
+		try {
+			Assert.assertEquals("key_1", reader.next().getKey());
+			try {
+				reader.next();
+				Assert.fail("Expected truncated record");
+			} catch (IOException e) {
+				Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("Truncated record"));
+			}
+		} finally {
+			reader.close();
+		}
+	}
+
+	@Test
+	public void testSeek() throws Exception {
+
+		File file = folder.newFile("seek.dump");
+
+		Writer writer = new Writer(file, 1024);
+		for (int i=0; i<10; i++) {
+			writer.write("key_" + i, 0L, value(i, 8));
+		}
+		writer.close();
+
+		long position;
+		Reader reader = new Reader(file, 1024);
+		try {
+			for (int i=0; i<4; i++) {
+				reader.next();
+			}
+			position = reader.position();
+		} finally {
+			reader.close();
+		}
+
+		reader = new Reader(file, 1024);
+		try {
+			reader.seek(position);
+			Assert.assertEquals("key_4", reader.next().getKey());
+		} finally {
+			reader.close();
+		}
+	}
+
+	@Test (expected=IOException.class)
+	public void testNotADumpFile() throws Exception {
+
+		File file = folder.newFile("bad.dump");
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		raf.writeInt(1);
+		raf.writeInt(1);
+		raf.close();
+
+		new Reader(file, 1024);
+	}
+
+	private static byte[] value(int seed, int length) {
+		byte[] value = new byte[length];
+		for (int i=0; i<length; i++) {
+			value[i] = (byte) (seed + i);
+		}
+		return value;
+	}
+}
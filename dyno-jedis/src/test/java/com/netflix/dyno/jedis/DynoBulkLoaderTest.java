@@ -0,0 +1,261 @@
+package com.netflix.dyno.jedis;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import redis.clients.jedis.BuilderFactory;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisDataException;
+
+import com.netflix.dyno.connectionpool.Host;
+import com.netflix.dyno.connectionpool.HostConnectionPool;
+import com.netflix.dyno.connectionpool.Host.Status;
+import com.netflix.dyno.connectionpool.Operation;
+import com.netflix.dyno.connectionpool.exception.BadRequestException;
+import com.netflix.dyno.connectionpool.exception.DynoException;
+import com.netflix.dyno.connectionpool.exception.PoolTimeoutException;
+import com.netflix.dyno.connectionpool.impl.ConnectionPoolImpl;
+import com.netflix.dyno.connectionpool.impl.OperationResultImpl;
+import com.netflix.dyno.connectionpool.impl.lb.HostToken;
+import com.netflix.dyno.connectionpool.impl.lb.TokenRange;
+import com.netflix.dyno.jedis.DynoBulkLoader.BulkLoadListener;
+import com.netflix.dyno.jedis.DynoBulkLoader.Progress;
+import com.netflix.dyno.jedis.DynoBulkLoader.RingPartition;
+
+public class DynoBulkLoaderTest {
+
+	private final Host h1 = new Host("h1", Status.Up);
+	private final Host h2 = new Host("h2", Status.Up);
+	private final Host h3 = new Host("h3", Status.Up);
+
+	private ConnectionPoolImpl<Jedis> pool;
+	private final Map<String, String> written = new ConcurrentHashMap<String, String>();
+	private final Set<String> badKeys = new HashSet<String>();
+
+	// number of failed attempts before each batch goes through, -1 for never
+	private int failAttempts = 0;
+	private final ConcurrentHashMap<String, AtomicInteger> attempts = new ConcurrentHashMap<String, AtomicInteger>();
+
+	@SuppressWarnings("unchecked")
+	@Before
+	public void beforeTest() {
+
+		pool = Mockito.mock(ConnectionPoolImpl.class);
+
+		// deliberately out of order, the partition sorts the ranges
+		Map<TokenRange, HostConnectionPool<Jedis>> ranges = new LinkedHashMap<TokenRange, HostConnectionPool<Jedis>>();
+		ranges.put(range(2000L, 3000L, h3), hostPool(h3));
+		ranges.put(range(0L, 1000L, h1), hostPool(h1));
+		ranges.put(range(1000L, 2000L, h2), hostPool(h2));
+		Mockito.when(pool.getTokenRangePools(1)).thenReturn(ranges);
+
+		final Jedis jedis = mockJedis();
+
+		Mockito.doAnswer(new Answer<Object>() {
+
+			@Override
+			public Object answer(InvocationOnMock invocation) throws Throwable {
+
+				Operation<Jedis, Object> op = (Operation<Jedis, Object>) invocation.getArguments()[0];
+
+				attempts.putIfAbsent(op.getKey(), new AtomicInteger(0));
+				int attempt = attempts.get(op.getKey()).getAndIncrement();
+				if (failAttempts < 0 || attempt < failAttempts) {
+					throw new PoolTimeoutException("Test");
+				}
+				return new OperationResultImpl<Object>(op.getName(), op.execute(jedis, null), null);
+			}
+
+		}).when(pool).executeWithFailover(Matchers.any(Operation.class));
+	}
+
+	@Test
+	public void testRingPartition() throws Exception {
+
+		RingPartition partition = new RingPartition(pool.getTokenRangePools(1));
+		Assert.assertEquals(3, partition.size());
+
+		Assert.assertEquals(h1, partition.getHost(0));
+		Assert.assertEquals(h2, partition.getHost(1));
+		Assert.assertEquals(h3, partition.getHost(2));
+
+		Assert.assertEquals(0, partition.getRangeIndex(0L));
+		Assert.assertEquals(0, partition.getRangeIndex(500L));
+		Assert.assertEquals(0, partition.getRangeIndex(1000L));
+		Assert.assertEquals(1, partition.getRangeIndex(1001L));
+		Assert.assertEquals(1, partition.getRangeIndex(2000L));
+		Assert.assertEquals(2, partition.getRangeIndex(2001L));
+		Assert.assertEquals(2, partition.getRangeIndex(3000L));
+		// past the last token wraps around to the first range
+		Assert.assertEquals(0, partition.getRangeIndex(3001L));
+		Assert.assertEquals(0, partition.getRangeIndex(Long.MAX_VALUE));
+	}
+
+	@Test
+	public void testLoad() throws Exception {
+
+		Progress progress = new DynoBulkLoader(pool).withBatchSize(10).load(entries(100));
+
+		Assert.assertEquals(100, progress.getKeysRead());
+		Assert.assertEquals(100, progress.getKeysLoaded());
+		Assert.assertEquals(0, progress.getKeysFailed());
+		Assert.assertEquals(0, progress.getBatchRetries());
+		Assert.assertEquals(entries(100), written);
+	}
+
+	@Test
+	public void testBatchRetries() throws Exception {
+
+		failAttempts = 2;
+
+		Progress progress = new DynoBulkLoader(pool)
+			.withBatchSize(1000)
+			.withMaxRetries(2)
+			.withRetryBackoff(1, TimeUnit.MILLISECONDS)
+			.load(entries(100));
+
+		Assert.assertEquals(100, progress.getKeysLoaded());
+		Assert.assertEquals(0, progress.getKeysFailed());
+		Assert.assertEquals(progress.getBatchesLoaded() * 2, progress.getBatchRetries());
+		Assert.assertEquals(entries(100), written);
+	}
+
+	@Test
+	public void testBatchFailure() throws Exception {
+
+		failAttempts = -1;
+		TestListener listener = new TestListener();
+
+		Progress progress = new DynoBulkLoader(pool)
+			.withBatchSize(1000)
+			.withMaxRetries(1)
+			.withRetryBackoff(1, TimeUnit.MILLISECONDS)
+			.withListener(listener)
+			.load(entries(100));
+
+		Assert.assertEquals(100, progress.getKeysRead());
+		Assert.assertEquals(0, progress.getKeysLoaded());
+		Assert.assertEquals(100, progress.getKeysFailed());
+		Assert.assertEquals(0, progress.getBatchesLoaded());
+		Assert.assertEquals(100, listener.failedKeys.size());
+		Assert.assertTrue(listener.failure instanceof PoolTimeoutException);
+		// every batch is tried once and retried once
+		for (AtomicInteger count : attempts.values()) {
+			Assert.assertEquals(2, count.get());
+		}
+		Assert.assertTrue(written.isEmpty());
+	}
+
+	@Test
+	public void testRejectedKeys() throws Exception {
+
+		badKeys.add("key_7");
+		badKeys.add("key_42");
+		TestListener listener = new TestListener();
+
+		Progress progress = new DynoBulkLoader(pool)
+			.withBatchSize(1000)
+			.withRetryBackoff(1, TimeUnit.MILLISECONDS)
+			.withListener(listener)
+			.load(entries(100));
+
+		Assert.assertEquals(98, progress.getKeysLoaded());
+		Assert.assertEquals(2, progress.getKeysFailed());
+		// data errors are not retried
+		Assert.assertEquals(0, progress.getBatchRetries());
+		Assert.assertTrue(listener.failedKeys.isEmpty());
+
+		Assert.assertEquals(badKeys, listener.rejected.keySet());
+		for (DynoException e : listener.rejected.values()) {
+			Assert.assertTrue(e instanceof BadRequestException);
+			Assert.assertTrue(e.getMessage(), e.getMessage().contains("OOM command not allowed"));
+		}
+		Assert.assertEquals(98, written.size());
+	}
+
+	private Jedis mockJedis() {
+
+		// Pipeline methods live in a package private base class which Mockito cannot stub
+		Pipeline pipeline = new Pipeline() {
+
+			@Override
+			public Response<String> set(String key, String value) {
+				Response<String> response = new Response<String>(BuilderFactory.STRING);
+				if (badKeys.contains(key)) {
+					response.set(new JedisDataException("OOM command not allowed"));
+				} else {
+					written.put(key, value);
+					response.set("OK".getBytes());
+				}
+				return response;
+			}
+
+			@Override
+			public void sync() {
+			}
+		};
+
+		Jedis jedis = Mockito.mock(Jedis.class);
+		Mockito.when(jedis.pipelined()).thenReturn(pipeline);
+		return jedis;
+	}
+
+	private static Map<String, String> entries(int count) {
+		Map<String, String> entries = new LinkedHashMap<String, String>();
+		for (int i=0; i<count; i++) {
+			entries.put("key_" + i, "value_" + i);
+		}
+		return entries;
+	}
+
+	private static TokenRange range(long start, long end, Host host) {
+		return new TokenRange(start, end, new HostToken(end, host));
+	}
+
+	@SuppressWarnings("unchecked")
+	private static HostConnectionPool<Jedis> hostPool(Host host) {
+		HostConnectionPool<Jedis> hostPool = Mockito.mock(HostConnectionPool.class);
+		Mockito.when(hostPool.getHost()).thenReturn(host);
+		return hostPool;
+	}
+
+	private static class TestListener implements BulkLoadListener {
+
+		private final List<String> failedKeys = new ArrayList<String>();
+		private final Map<String, DynoException> rejected = new ConcurrentHashMap<String, DynoException>();
+		private volatile DynoException failure;
+
+		@Override
+		public void onProgress(Progress progress) {
+		}
+
+		@Override
+		public synchronized void onBatchFailure(Collection<String> keys, DynoException e) {
+			failedKeys.addAll(keys);
+			failure = e;
+		}
+
+		@Override
+		public void onKeysRejected(Map<String, DynoException> rejected) {
+			this.rejected.putAll(rejected);
+		}
+	}
+}
@@ -0,0 +1,173 @@
+package com.netflix.dyno.jedis;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import redis.clients.jedis.BuilderFactory;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+
+import com.netflix.dyno.connectionpool.Connection;
+import com.netflix.dyno.connectionpool.Host;
+import com.netflix.dyno.connectionpool.Host.Status;
+import com.netflix.dyno.connectionpool.HostConnectionPool;
+import com.netflix.dyno.connectionpool.Operation;
+import com.netflix.dyno.connectionpool.impl.ConnectionPoolConfigurationImpl;
+import com.netflix.dyno.connectionpool.impl.ConnectionPoolImpl;
+import com.netflix.dyno.connectionpool.impl.OperationResultImpl;
+import com.netflix.dyno.connectionpool.impl.hash.Murmur1HashPartitioner;
+import com.netflix.dyno.connectionpool.impl.lb.HostToken;
+import com.netflix.dyno.connectionpool.impl.lb.TokenRange;
+import com.netflix.dyno.jedis.DumpFileFormat.Reader;
+import com.netflix.dyno.jedis.DumpFileFormat.Record;
+
+public class DynoDumpExporterTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final Host host = new Host("h1", Status.Up);
+
+	// the two halves of the ring, both owned by the one host
+	private final TokenRange lower = new TokenRange(0L, 2147483647L, new HostToken(2147483647L, host));
+	private final TokenRange upper = new TokenRange(2147483648L, 4294967295L, new HostToken(4294967295L, host));
+
+	private final Map<String, byte[]> values = new HashMap<String, byte[]>();
+	private final Map<String, Long> ttls = new HashMap<String, Long>();
+
+	private ConnectionPoolImpl<Jedis> pool;
+	private HostConnectionPool<Jedis> hostPool;
+	private Connection<Jedis> connection;
+
+	@SuppressWarnings("unchecked")
+	@Before
+	public void beforeTest() {
+
+		final Jedis jedis = mockJedis();
+
+		connection = Mockito.mock(Connection.class);
+		Mockito.doAnswer(new Answer<Object>() {
+
+			@Override
+			public Object answer(InvocationOnMock invocation) throws Throwable {
+				Operation<Jedis, Object> op = (Operation<Jedis, Object>) invocation.getArguments()[0];
+				return new OperationResultImpl<Object>(op.getName(), op.execute(jedis, null), null);
+			}
+
+		}).when(connection).execute(Matchers.any(Operation.class));
+
+		hostPool = Mockito.mock(HostConnectionPool.class);
+		Mockito.when(hostPool.getHost()).thenReturn(host);
+		Mockito.when(hostPool.borrowConnection(Matchers.anyInt(), Matchers.any(TimeUnit.class))).thenReturn(connection);
+
+		Map<TokenRange, HostConnectionPool<Jedis>> ranges = new LinkedHashMap<TokenRange, HostConnectionPool<Jedis>>();
+		ranges.put(lower, hostPool);
+		ranges.put(upper, hostPool);
+
+		pool = Mockito.mock(ConnectionPoolImpl.class);
+		Mockito.when(pool.getTokenRangePools(1)).thenReturn(ranges);
+		Mockito.when(pool.getConfiguration()).thenReturn(new ConnectionPoolConfigurationImpl("test"));
+	}
+
+	@Test
+	public void testExport() throws Exception {
+
+		for (int i=0; i<100; i++) {
+			values.put("key_" + i, ("value_" + i).getBytes());
+			// no expiry (-1) on the even keys
+			ttls.put("key_" + i, (i % 2 == 0) ? -1L : 1000L * i);
+		}
+		// deleted after it was listed
+		values.put("deleted", null);
+		ttls.put("deleted", -2L);
+
+		File dir = folder.newFolder("dump");
+		Assert.assertEquals(100, new DynoDumpExporter(pool).withBatchSize(7).export(dir));
+
+		Murmur1HashPartitioner partitioner = new Murmur1HashPartitioner();
+		Map<String, Record> records = new HashMap<String, Record>();
+
+		for (TokenRange range : Arrays.asList(lower, upper)) {
+
+			File file = new File(dir, DynoDumpExporter.getFileName(range));
+			Assert.assertTrue(file.exists());
+			Assert.assertFalse(new File(file.getPath() + ".tmp").exists());
+
+			Reader reader = new Reader(file, 1024);
+			try {
+				Record record;
+				while ((record = reader.next()) != null) {
+					Assert.assertTrue(record.getKey(), range.contains(partitioner.hash(record.getKey())));
+					records.put(record.getKey(), record);
+				}
+			} finally {
+				reader.close();
+			}
+		}
+
+		Assert.assertEquals(100, records.size());
+		Assert.assertFalse(records.containsKey("deleted"));
+		for (int i=0; i<100; i++) {
+			Record record = records.get("key_" + i);
+			Assert.assertTrue(Arrays.equals(("value_" + i).getBytes(), record.getValue()));
+			Assert.assertEquals((i % 2 == 0) ? 0L : 1000L * i, record.getTtlMillis());
+		}
+
+		// one connection for the host, given back at the end
+		Mockito.verify(hostPool, Mockito.times(1)).borrowConnection(Matchers.anyInt(), Matchers.any(TimeUnit.class));
+		Mockito.verify(hostPool, Mockito.times(1)).returnConnection(connection);
+	}
+
+	private Jedis mockJedis() {
+
+		// Pipeline methods live in a package private base class which Mockito cannot stub
+		Pipeline pipeline = new Pipeline() {
+
+			@Override
+			public Response<byte[]> dump(String key) {
+				Response<byte[]> response = new Response<byte[]>(BuilderFactory.BYTE_ARRAY);
+				response.set(values.get(key));
+				return response;
+			}
+
+			@Override
+			public Response<Long> pttl(String key) {
+				Response<Long> response = new Response<Long>(BuilderFactory.LONG);
+				response.set(ttls.get(key));
+				return response;
+			}
+
+			@Override
+			public void sync() {
+			}
+		};
+
+		Jedis jedis = Mockito.mock(Jedis.class);
+		Mockito.when(jedis.pipelined()).thenReturn(pipeline);
+		Mockito.when(jedis.keys(Matchers.anyString())).thenAnswer(new Answer<Set<String>>() {
+
+			@Override
+			public Set<String> answer(InvocationOnMock invocation) throws Throwable {
+				return new LinkedHashSet<String>(values.keySet());
+			}
+		});
+		return jedis;
+	}
+}
@@ -0,0 +1,233 @@
+package com.netflix.dyno.jedis;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import redis.clients.jedis.Builder;
+import redis.clients.jedis.BuilderFactory;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisDataException;
+
+import com.netflix.dyno.connectionpool.Operation;
+import com.netflix.dyno.connectionpool.exception.BadRequestException;
+import com.netflix.dyno.connectionpool.exception.DynoException;
+import com.netflix.dyno.connectionpool.impl.ConnectionPoolImpl;
+import com.netflix.dyno.connectionpool.impl.OperationResultImpl;
+import com.netflix.dyno.jedis.DumpFileFormat.Reader;
+import com.netflix.dyno.jedis.DumpFileFormat.Writer;
+import com.netflix.dyno.jedis.DynoDumpLoader.RestoreListener;
+
+public class DynoDumpLoaderTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private ConnectionPoolImpl<Jedis> pool;
+
+	// key -> ttl passed to RESTORE, and key -> PEXPIREAT time
+	private final Map<String, Integer> restored = new ConcurrentHashMap<String, Integer>();
+	private final Map<String, Long> expireAt = new ConcurrentHashMap<String, Long>();
+	private final List<String> restoreOrder = new ArrayList<String>();
+	private volatile String badKey = null;
+
+	@SuppressWarnings("unchecked")
+	@Before
+	public void beforeTest() {
+
+		pool = Mockito.mock(ConnectionPoolImpl.class);
+		final Jedis jedis = mockJedis();
+
+		Mockito.doAnswer(new Answer<Object>() {
+
+			@Override
+			public Object answer(InvocationOnMock invocation) throws Throwable {
+				Operation<Jedis, Object> op = (Operation<Jedis, Object>) invocation.getArguments()[0];
+				return new OperationResultImpl<Object>(op.getName(), op.execute(jedis, null), null);
+			}
+
+		}).when(pool).executeWithFailover(Matchers.any(Operation.class));
+	}
+
+	@Test
+	public void testCheckpoint() throws Exception {
+
+		File checkpoint = new File(folder.getRoot(), "test.checkpoint");
+		Assert.assertEquals(0L, DynoDumpLoader.readCheckpoint(checkpoint));
+
+		DynoDumpLoader.writeCheckpoint(checkpoint, 123L);
+		Assert.assertEquals(123L, DynoDumpLoader.readCheckpoint(checkpoint));
+
+		// replaces the previous one
+		DynoDumpLoader.writeCheckpoint(checkpoint, 4567L);
+		Assert.assertEquals(4567L, DynoDumpLoader.readCheckpoint(checkpoint));
+		Assert.assertFalse(new File(checkpoint.getPath() + ".tmp").exists());
+	}
+
+	@Test
+	public void testLoad() throws Exception {
+
+		File dir = folder.newFolder("dump");
+		File file = writeDump(new File(dir, "range_0_1000.dump"), 25);
+
+		Assert.assertEquals(25, new DynoDumpLoader(pool).withBatchSize(10).load(dir));
+		Assert.assertEquals(25, restored.size());
+
+		// the checkpoint is at the end of the file, hence a second load is a no op
+		Assert.assertEquals(file.length(), DynoDumpLoader.readCheckpoint(new File(file.getPath() + ".checkpoint")));
+		Assert.assertEquals(0, new DynoDumpLoader(pool).withBatchSize(10).load(dir));
+		Assert.assertEquals(25, restoreOrder.size());
+	}
+
+	@Test
+	public void testResumeFromCheckpoint() throws Exception {
+
+		File dir = folder.newFolder("dump");
+		File file = writeDump(new File(dir, "range_0_1000.dump"), 25);
+
+		// as if the previous load got through the first 12 records
+		Reader reader = new Reader(file, 1024);
+		for (int i=0; i<12; i++) {
+			reader.next();
+		}
+		DynoDumpLoader.writeCheckpoint(new File(file.getPath() + ".checkpoint"), reader.position());
+		reader.close();
+
+		Assert.assertEquals(13, new DynoDumpLoader(pool).withBatchSize(10).load(dir));
+		Assert.assertEquals("key_12", restoreOrder.get(0));
+		Assert.assertFalse(restored.containsKey("key_11"));
+		Assert.assertTrue(restored.containsKey("key_24"));
+	}
+
+	@Test
+	public void testTtl() throws Exception {
+
+		File dir = folder.newFolder("dump");
+		long longTtl = Integer.MAX_VALUE + 1000L;
+
+		Writer writer = new Writer(new File(dir, "range_0_1000.dump"), 1024);
+		writer.write("no_ttl", 0L, new byte[] {1});
+		writer.write("short_ttl", 5000L, new byte[] {2});
+		writer.write("long_ttl", longTtl, new byte[] {3});
+		writer.close();
+
+		long start = System.currentTimeMillis();
+		Assert.assertEquals(3, new DynoDumpLoader(pool).load(dir));
+		long end = System.currentTimeMillis();
+
+		Assert.assertEquals(0, restored.get("no_ttl").intValue());
+		Assert.assertEquals(5000, restored.get("short_ttl").intValue());
+
+		// restored without a ttl and then expired at the absolute time
+		Assert.assertEquals(0, restored.get("long_ttl").intValue());
+		long at = expireAt.get("long_ttl");
+		Assert.assertTrue(at >= start + longTtl && at <= end + longTtl);
+		Assert.assertEquals(1, expireAt.size());
+	}
+
+	@Test
+	public void testRejectedRecords() throws Exception {
+
+		File dir = folder.newFolder("dump");
+		writeDump(new File(dir, "range_0_1000.dump"), 25);
+		badKey = "key_17";
+
+		final Map<String, DynoException> rejected = new ConcurrentHashMap<String, DynoException>();
+
+		long records = new DynoDumpLoader(pool).withBatchSize(10).withListener(new RestoreListener() {
+
+			@Override
+			public void onRecordsRejected(Map<String, DynoException> r) {
+				rejected.putAll(r);
+			}
+		}).load(dir);
+
+		Assert.assertEquals(24, records);
+		Assert.assertEquals(1, rejected.size());
+		Assert.assertTrue(rejected.get("key_17") instanceof BadRequestException);
+		// the rest of the batch still went through and was not re-sent
+		Assert.assertEquals(25, restoreOrder.size());
+	}
+
+	@Test
+	public void testThrottle() throws Exception {
+
+		File dir = folder.newFolder("dump");
+		writeDump(new File(dir, "range_0_1000.dump"), 50);
+
+		long start = System.nanoTime();
+		Assert.assertEquals(50, new DynoDumpLoader(pool).withBatchSize(10).withMaxRecordsPerSecond(100).load(dir));
+		long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+		// the first batch goes out right away, the remaining 40 records take 400ms at 100/s
+		Assert.assertTrue("elapsed: " + elapsed, elapsed >= 350 && elapsed < 2000);
+	}
+
+	private File writeDump(File file, int count) throws Exception {
+		Writer writer = new Writer(file, 1024);
+		for (int i=0; i<count; i++) {
+			writer.write("key_" + i, 0L, ("value_" + i).getBytes());
+		}
+		writer.close();
+		return file;
+	}
+
+	private Jedis mockJedis() {
+
+		// Pipeline methods live in a package private base class which Mockito cannot stub
+		Pipeline pipeline = new Pipeline() {
+
+			@Override
+			public Response<Long> del(String key) {
+				return reply(BuilderFactory.LONG, 1L);
+			}
+
+			@Override
+			public Response<String> restore(String key, int ttl, byte[] serializedValue) {
+				synchronized (restoreOrder) {
+					restoreOrder.add(key);
+				}
+				if (key.equals(badKey)) {
+					return reply(BuilderFactory.STRING, new JedisDataException("ERR DUMP payload version or checksum are wrong"));
+				}
+				restored.put(key, ttl);
+				return reply(BuilderFactory.STRING, "OK".getBytes());
+			}
+
+			@Override
+			public Response<Long> pexpireAt(String key, long millisecondsTimestamp) {
+				expireAt.put(key, millisecondsTimestamp);
+				return reply(BuilderFactory.LONG, 1L);
+			}
+
+			@Override
+			public void sync() {
+			}
+		};
+
+		Jedis jedis = Mockito.mock(Jedis.class);
+		Mockito.when(jedis.pipelined()).thenReturn(pipeline);
+		return jedis;
+	}
+
+	private static <T> Response<T> reply(Builder<T> builder, Object data) {
+		Response<T> response = new Response<T>(builder);
+		response.set(data);
+		return response;
+	}
+}
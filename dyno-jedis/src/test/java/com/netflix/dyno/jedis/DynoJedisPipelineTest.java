@@ -0,0 +1,147 @@
+package com.netflix.dyno.jedis;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+
+import redis.clients.jedis.BuilderFactory;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+
+import com.netflix.dyno.connectionpool.BaseOperation;
+import com.netflix.dyno.connectionpool.ConnectionContext;
+import com.netflix.dyno.connectionpool.ConnectionPoolMonitor;
+import com.netflix.dyno.connectionpool.Host;
+import com.netflix.dyno.connectionpool.Host.Status;
+import com.netflix.dyno.connectionpool.HostConnectionPool;
+import com.netflix.dyno.connectionpool.exception.DynoException;
+import com.netflix.dyno.connectionpool.exception.FatalConnectionException;
+import com.netflix.dyno.connectionpool.impl.ConnectionPoolImpl;
+import com.netflix.dyno.connectionpool.impl.health.ConnectionPoolHealthTracker;
+import com.netflix.dyno.jedis.JedisConnectionFactory.JedisConnection;
+
+public class DynoJedisPipelineTest {
+
+	private final Host host = new Host("h1", Status.Up);
+
+	private ConnectionPoolImpl<Jedis> pool;
+	private ConnectionPoolHealthTracker<Jedis> healthTracker;
+	private Jedis jedis;
+	private ConnectionPoolMonitor cpMonitor;
+	private HostConnectionPool<Jedis> hostPool;
+	private JedisConnection connection;
+
+	@SuppressWarnings("unchecked")
+	@Before
+	public void beforeTest() {
+
+		// Pipeline methods live in a package private base class which Mockito cannot stub
+		Pipeline pipeline = new Pipeline() {
+
+			@Override
+			public Response<String> set(String key, String value) {
+				Response<String> response = new Response<String>(BuilderFactory.STRING);
+				response.set("OK".getBytes());
+				return response;
+			}
+
+			@Override
+			public void sync() {
+				try {
+					Thread.sleep(5);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		};
+
+		jedis = Mockito.mock(Jedis.class);
+		Mockito.when(jedis.pipelined()).thenReturn(pipeline);
+
+		hostPool = Mockito.mock(HostConnectionPool.class);
+
+		connection = Mockito.mock(JedisConnection.class);
+		Mockito.when(connection.getClient()).thenReturn(jedis);
+		Mockito.when(connection.getHost()).thenReturn(host);
+		Mockito.when(connection.getContext()).thenReturn(Mockito.mock(ConnectionContext.class));
+		Mockito.when(connection.getParentConnectionPool()).thenReturn(hostPool);
+
+		healthTracker = Mockito.mock(ConnectionPoolHealthTracker.class);
+
+		pool = Mockito.mock(ConnectionPoolImpl.class);
+		Mockito.when(pool.getConnectionForOperation(Matchers.any(BaseOperation.class))).thenReturn(connection);
+		Mockito.when(pool.getCPHealthTracker()).thenReturn(healthTracker);
+
+		cpMonitor = Mockito.mock(ConnectionPoolMonitor.class);
+	}
+
+	@Test
+	public void testSyncLatency() throws Exception {
+
+		DynoJedisPipeline pipeline = new DynoJedisPipeline(pool, new DynoJedisPipelineMonitor("test"), cpMonitor);
+		pipeline.set("key", "value1");
+		pipeline.set("key", "value2");
+
+		// nothing is recorded until the pipeline is synced
+		Mockito.verify(cpMonitor, Mockito.never()).incOperationSuccess(Matchers.any(Host.class), Matchers.anyLong());
+
+		pipeline.sync();
+
+		ArgumentCaptor<Long> latency = ArgumentCaptor.forClass(Long.class);
+		Mockito.verify(cpMonitor, Mockito.times(1)).incOperationSuccess(Matchers.eq(host), latency.capture());
+		Assert.assertTrue("latency: " + latency.getValue(), latency.getValue() >= TimeUnit.MILLISECONDS.toNanos(5));
+		Mockito.verify(hostPool, Mockito.times(1)).returnConnection(connection);
+	}
+
+	@Test
+	public void testSyncFailure() throws Exception {
+
+		Mockito.when(jedis.pipelined()).thenReturn(new Pipeline() {
+
+			@Override
+			public Response<String> set(String key, String value) {
+				return new Response<String>(BuilderFactory.STRING);
+			}
+
+			@Override
+			public void sync() {
+				throw new JedisConnectionException("connection reset");
+			}
+		});
+
+		DynoJedisPipeline pipeline = new DynoJedisPipeline(pool, new DynoJedisPipelineMonitor("test"), cpMonitor);
+		pipeline.set("key", "value1");
+
+		try {
+			pipeline.sync();
+			Assert.fail("TEST FAILED");
+		} catch (JedisConnectionException e) {
+			// the failure goes to the caller
+		}
+
+		Mockito.verify(cpMonitor, Mockito.never()).incOperationSuccess(Matchers.any(Host.class), Matchers.anyLong());
+		Mockito.verify(cpMonitor, Mockito.times(1)).incOperationFailure(Matchers.eq(host), Matchers.any(FatalConnectionException.class));
+		Mockito.verify(hostPool, Mockito.times(1)).returnConnection(connection);
+		Mockito.verify(healthTracker, Mockito.times(1)).trackConnectionError(Matchers.eq(hostPool), Matchers.any(FatalConnectionException.class));
+	}
+
+	@Test
+	public void testDiscardNotRecorded() throws Exception {
+
+		DynoJedisPipeline pipeline = new DynoJedisPipeline(pool, new DynoJedisPipelineMonitor("test"), cpMonitor);
+		pipeline.set("key", "value1");
+		pipeline.discardPipelineAndReleaseConnection();
+
+		// the commands were never sent, hence the pipeline neither succeeded nor failed
+		Mockito.verify(cpMonitor, Mockito.never()).incOperationSuccess(Matchers.any(Host.class), Matchers.anyLong());
+		Mockito.verify(cpMonitor, Mockito.never()).incOperationFailure(Matchers.any(Host.class), Matchers.any(DynoException.class));
+		Mockito.verify(hostPool, Mockito.times(1)).returnConnection(connection);
+	}
+}
@@ -16,6 +16,7 @@ import com.netflix.dyno.connectionpool.OperationResult;
 import com.netflix.dyno.connectionpool.exception.DynoException;
 import com.netflix.dyno.connectionpool.impl.ConnectionPoolConfigurationImpl;
 import com.netflix.dyno.connectionpool.impl.ConnectionPoolImpl;
+import com.netflix.dyno.connectionpool.impl.MonitorConsole;
 import com.netflix.dyno.connectionpool.impl.ConnectionPoolImpl.HostConnectionPoolFactory.Type;
 import com.netflix.dyno.contrib.DynoCPMonitor;
 import com.netflix.dyno.contrib.DynoOPMonitor;
@@ -116,6 +117,7 @@ public class DynoRedissonClient {
 			} catch (Exception e) {
 				throw new RuntimeException(e);
 			}
+			MonitorConsole.getInstance().addOperationMonitor(pool.getName(), opMonitor);
 			
 			final DynoRedissonClient client = new DynoRedissonClient(appName, pool);
 			return client;
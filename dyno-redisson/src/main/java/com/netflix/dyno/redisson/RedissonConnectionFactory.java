@@ -75,7 +75,7 @@ public class RedissonConnectionFactory implements ConnectionFactory<RedisAsyncCo
 
 		@Override
 		public <R> ListenableFuture<OperationResult<R>> executeAsync(AsyncOperation<RedisAsyncConnection<String, String>, R> op) throws DynoException {
-			final long start = System.currentTimeMillis();
+			final long start = System.nanoTime();
 			try { 
 				Future<R> future = op.executeAsync(rConn);
 				return new FutureOperationalResultImpl<R>(op.getName(), future, start, opMonitor).node(getHost());